@@ -0,0 +1,92 @@
+package pe.edu.vallegrande.ms_distribution.application.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * Caché local de documentos por id, acotada por tamaño y TTL. Una carga que empezó antes de una
+ * invalidación no se guarda, para no volver a cachear datos anteriores a la escritura.
+ * Aciertos y fallos se publican como cache.gets{cache=name, result=hit|miss}.
+ */
+public class ByIdCache<T> {
+
+    private final String name;
+    private final Cache<String, T> cache;
+    private final AtomicLong generation = new AtomicLong();
+
+    public ByIdCache(String name, long maximumSize, Duration ttl, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build(), name);
+    }
+
+    /**
+     * Documento desde la caché o desde loader; un resultado vacío no se cachea.
+     */
+    public Mono<T> get(String id, Supplier<Mono<T>> loader) {
+        return get(id, loadedAt -> loader.get());
+    }
+
+    /**
+     * Igual, pero loader recibe la generación con la que empieza la carga: quien comparta cargas en
+     * curso (SingleFlight) la incluye en la clave, para no unirse a una anterior a una invalidación.
+     */
+    public Mono<T> get(String id, LongFunction<Mono<T>> loader) {
+        return Mono.defer(() -> {
+            T cached = cache.getIfPresent(id);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            long loadedAt = generation.get();
+            return loader.apply(loadedAt).doOnNext(value -> putIfCurrent(id, value, loadedAt));
+        });
+    }
+
+    /**
+     * Carga por adelantado los documentos de values y devuelve cuántos recibió; como en get, si
+     * entre tanto hay una invalidación no se guarda nada de lo leído antes de ella.
+     */
+    public Mono<Long> prime(Flux<T> values, Function<T, String> idOf) {
+        return Mono.defer(() -> {
+            long loadedAt = generation.get();
+            return values.doOnNext(value -> putIfCurrent(idOf.apply(value), value, loadedAt)).count();
+        });
+    }
+
+    public void evict(String id) {
+        generation.incrementAndGet();
+        cache.invalidate(id);
+    }
+
+    public void evictAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private void putIfCurrent(String id, T value, long loadedAt) {
+        if (generation.get() != loadedAt) {
+            return;
+        }
+        cache.put(id, value);
+        if (generation.get() != loadedAt) {
+            cache.invalidate(id); // una invalidación coincidió con el put
+        }
+    }
+}
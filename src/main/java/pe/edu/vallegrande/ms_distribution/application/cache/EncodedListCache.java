@@ -0,0 +1,112 @@
+package pe.edu.vallegrande.ms_distribution.application.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import pe.edu.vallegrande.ms_distribution.application.config.EncodedListCacheProperties;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.ResponseDto;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Listados completos ya serializados: el JSON de ResponseDto por entidad, organización y estado.
+ * Entre dos cambios se responden siempre los mismos bytes, que WebFlux envuelve en el buffer de
+ * Netty sin copiarlos ni pasar por Jackson. Las escrituras del servicio invalidan los listados de
+ * su entidad y CacheInvalidationListener los de las demás réplicas; como en las otras cachés, una
+ * codificación que empezó antes de una invalidación no se guarda. El tamaño se mide en bytes y se
+ * publica como cache.gets{cache=responses.lists}.
+ */
+@Component
+public class EncodedListCache {
+
+    static final String CACHE_NAME = "responses.lists";
+
+    // Clave de "todas las organizaciones" o "todos los estados" (Caffeine no admite claves nulas)
+    private static final String ANY = "*";
+
+    private final ObjectMapper objectMapper;
+    private final Cache<Key, Encoded> cache;
+    private final Map<Class<?>, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    public EncodedListCache(EncodedListCacheProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumWeight(properties.getMaximumSize().toBytes())
+                .<Key, Encoded>weigher((key, encoded) -> encoded.json().length)
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build(), CACHE_NAME);
+    }
+
+    /**
+     * JSON del listado de type para la organización y el estado (null = todos) desde la caché o
+     * codificando lo que devuelve body; una respuesta con status=false se codifica pero no se guarda.
+     * Body debe leer del primario: lo que se guarda se sirve hasta la siguiente invalidación.
+     */
+    public <T> Mono<Encoded> get(Class<?> type, String organizationId, String status, Supplier<Mono<ResponseDto<T>>> body) {
+        Key key = new Key(type, Objects.requireNonNullElse(organizationId, ANY), Objects.requireNonNullElse(status, ANY));
+        return Mono.defer(() -> {
+            Encoded cached = cache.getIfPresent(key);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            long loadedAt = generation(type).get();
+            return body.get().map(content -> {
+                Encoded encoded = new Encoded(encode(content), content.isStatus());
+                if (encoded.status()) {
+                    putIfCurrent(key, encoded, loadedAt);
+                }
+                return encoded;
+            });
+        });
+    }
+
+    /**
+     * Tras escribir un documento de type: cualquiera de sus listados puede haber cambiado.
+     */
+    public void evict(Class<?> type) {
+        generation(type).incrementAndGet();
+        cache.asMap().keySet().removeIf(key -> key.type() == type);
+    }
+
+    private byte[] encode(ResponseDto<?> content) {
+        try {
+            return objectMapper.writeValueAsBytes(content);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot encode list response", e);
+        }
+    }
+
+    private AtomicLong generation(Class<?> type) {
+        return generations.computeIfAbsent(type, t -> new AtomicLong());
+    }
+
+    private void putIfCurrent(Key key, Encoded encoded, long loadedAt) {
+        AtomicLong generation = generation(key.type());
+        if (generation.get() != loadedAt) {
+            return;
+        }
+        cache.put(key, encoded);
+        if (generation.get() != loadedAt) {
+            cache.invalidate(key); // una invalidación coincidió con el put
+        }
+    }
+
+    /**
+     * JSON de la respuesta y su campo status, para no tener que decodificarlo al decidir el ETag.
+     */
+    public record Encoded(byte[] json, boolean status) {
+    }
+
+    private record Key(Class<?> type, String organizationId, String status) {
+    }
+}
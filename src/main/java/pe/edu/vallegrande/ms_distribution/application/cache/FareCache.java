@@ -0,0 +1,121 @@
+package pe.edu.vallegrande.ms_distribution.application.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import pe.edu.vallegrande.ms_distribution.application.config.FareCacheProperties;
+import pe.edu.vallegrande.ms_distribution.domain.models.Fare;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+/**
+ * Caché de lectura de tarifas: por id y listado de activas por organización, con tamaño y TTL
+ * acotados. Las escrituras del servicio invalidan las entradas afectadas; una carga que empezó
+ * antes de una invalidación no se guarda, para no volver a cachear datos anteriores a la escritura.
+ * Los loaders deben leer del primario por el mismo motivo.
+ * Aciertos y fallos se publican como cache.gets{cache=fares.by-id|fares.active, result=hit|miss}.
+ */
+@Component
+@Slf4j
+public class FareCache {
+
+    static final String BY_ID_CACHE = "fares.by-id";
+    static final String ACTIVE_CACHE = "fares.active";
+
+    // Clave del listado de activas de todas las organizaciones (Caffeine no admite claves nulas)
+    private static final String ALL_ORGANIZATIONS = "*";
+
+    private final ByIdCache<Fare> byId;
+    private final Cache<String, List<Fare>> active;
+    private final AtomicLong generation = new AtomicLong();
+
+    public FareCache(FareCacheProperties properties, MeterRegistry meterRegistry) {
+        this.byId = new ByIdCache<>(BY_ID_CACHE, properties.getMaximumSize(), properties.getTtl(), meterRegistry);
+        this.active = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumLists())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build(), ACTIVE_CACHE);
+    }
+
+    /**
+     * Tarifa por id desde la caché o desde loader, que recibe la generación de la carga (véase
+     * ByIdCache); un resultado vacío no se cachea.
+     */
+    public Mono<Fare> byId(String id, LongFunction<Mono<Fare>> loader) {
+        return byId.get(id, loader);
+    }
+
+    /**
+     * Tarifas activas de la organización (null = todas) desde la caché o desde loader, que recibe
+     * la generación de la carga y devuelve la lista ya reunida; igual que por id, un resultado vacío
+     * no se cachea.
+     */
+    public Flux<Fare> activeList(String organizationId, LongFunction<Mono<List<Fare>>> loader) {
+        String key = organizationId != null ? organizationId : ALL_ORGANIZATIONS;
+        return Mono.defer(() -> {
+            List<Fare> cached = active.getIfPresent(key);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            long loadedAt = generation.get();
+            return loader.apply(loadedAt)
+                    .doOnNext(fares -> {
+                        if (!fares.isEmpty()) {
+                            putIfCurrent(key, List.copyOf(fares), loadedAt);
+                        }
+                    });
+        }).flatMapIterable(fares -> fares);
+    }
+
+    /**
+     * Tras escribir una tarifa: su entrada por id y los listados de activas en los que puede aparecer.
+     */
+    public void evict(Fare fare) {
+        if (fare.getId() != null) {
+            byId.evict(fare.getId());
+        }
+        evictActive(fare.getOrganizationId());
+    }
+
+    /**
+     * Cuando no se conoce la organización (borrado por id) se descartan todos los listados.
+     */
+    public void evictId(String id) {
+        byId.evict(id);
+        evictActive(null);
+    }
+
+    public void evictActive(String organizationId) {
+        generation.incrementAndGet();
+        if (organizationId != null) {
+            active.invalidate(organizationId);
+        } else {
+            active.invalidateAll();
+        }
+        active.invalidate(ALL_ORGANIZATIONS);
+    }
+
+    public void evictAll() {
+        byId.evictAll();
+        evictActive(null);
+        log.debug("Fare cache cleared");
+    }
+
+    private void putIfCurrent(String key, List<Fare> fares, long loadedAt) {
+        if (generation.get() != loadedAt) {
+            return;
+        }
+        active.put(key, fares);
+        if (generation.get() != loadedAt) {
+            active.invalidate(key); // una invalidación coincidió con el put
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package pe.edu.vallegrande.ms_distribution.application.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Deduplica lecturas idénticas en curso: mientras una consulta con la misma clave no termina, las
+ * peticiones que llegan se suscriben a ella en vez de lanzar otra, y reciben los mismos objetos ya
+ * decodificados. Al terminar (con valor, vacío o error) la clave se libera y la siguiente petición
+ * consulta de nuevo; no es una caché. Solo se comparten resultados acotados (un documento o una
+ * lista ya reunida): un listado en streaming compartido tendría que guardarse entero para quien
+ * llega tarde. Si el resultado va a una caché, la clave debe incluir su generación, para que quien
+ * llega tras una invalidación no se una a una lectura anterior a la escritura. Las peticiones que se
+ * unieron a una consulta en curso se cuentan en distribution.reads.coalesced{query}.
+ */
+@Component
+@RequiredArgsConstructor
+public class SingleFlight {
+
+    static final String COALESCED_METRIC = "distribution.reads.coalesced";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Object> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * query identifica el tipo de consulta (etiqueta de la métrica) y key sus parámetros.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> mono(String query, String key, Supplier<Mono<T>> loader) {
+        return Mono.defer(() -> {
+            String flightKey = query + "|" + key;
+            boolean[] leader = {false};
+            Mono<T> shared = (Mono<T>) inFlight.computeIfAbsent(flightKey, k -> {
+                leader[0] = true;
+                return Mono.defer(loader).doFinally(signal -> inFlight.remove(k)).cache();
+            });
+            if (!leader[0]) {
+                counter(query).increment();
+            }
+            return shared;
+        });
+    }
+
+    private Counter counter(String query) {
+        return counters.computeIfAbsent(query, name -> Counter.builder(COALESCED_METRIC)
+                .tag("query", name)
+                .register(meterRegistry));
+    }
+}
@@ -0,0 +1,25 @@
+package pe.edu.vallegrande.ms_distribution.application.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuración de la asignación de códigos (app.codes.*).
+ */
+@Data
+@ConfigurationProperties(prefix = "app.codes")
+public class CodeAllocationProperties {
+
+    /**
+     * Cantidad de códigos reservados por nodo y prefijo en cada acceso a Mongo.
+     * Con 1 cada alta consulta el contador.
+     */
+    private int blockSize = 1;
+
+    /**
+     * Tiempo máximo para devolver los bloques sin usar al detener el servicio.
+     */
+    private Duration releaseTimeout = Duration.ofSeconds(5);
+}
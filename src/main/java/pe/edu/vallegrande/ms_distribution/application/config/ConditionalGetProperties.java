@@ -0,0 +1,21 @@
+package pe.edu.vallegrande.ms_distribution.application.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * ETags de los listados (app.http.etag.*).
+ */
+@Data
+@ConfigurationProperties(prefix = "app.http.etag")
+public class ConditionalGetProperties {
+
+    /**
+     * Tras un cambio, los listados se sirven sin ETag durante este tiempo: se leen de secundarios
+     * que pueden ir con retraso, y un ETag nuevo sobre datos viejos quedaría fijado en el cliente.
+     * Debe cubrir el max-staleness de app.read-routing para los listados.
+     */
+    private Duration settleTime = Duration.ofSeconds(90);
+}
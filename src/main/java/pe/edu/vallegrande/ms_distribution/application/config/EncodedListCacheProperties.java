@@ -0,0 +1,25 @@
+package pe.edu.vallegrande.ms_distribution.application.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Caché de listados ya codificados en JSON (app.cache.responses.*).
+ */
+@Data
+@ConfigurationProperties(prefix = "app.cache.responses")
+public class EncodedListCacheProperties {
+
+    /**
+     * Tamaño total de las respuestas que se conservan; 0 desactiva la caché.
+     */
+    private DataSize maximumSize = DataSize.ofMegabytes(32);
+
+    /**
+     * Vida máxima de una respuesta desde que se codificó, aunque ninguna escritura la invalide.
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+}
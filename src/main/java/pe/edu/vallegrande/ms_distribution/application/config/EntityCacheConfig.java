@@ -0,0 +1,25 @@
+package pe.edu.vallegrande.ms_distribution.application.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import pe.edu.vallegrande.ms_distribution.application.cache.ByIdCache;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionRoute;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionSchedule;
+
+/**
+ * Cachés por id de rutas y horarios; las invalidan las escrituras locales y el listener de change streams.
+ */
+@Configuration
+public class EntityCacheConfig {
+
+    @Bean
+    public ByIdCache<DistributionRoute> routeCache(EntityCacheProperties properties, MeterRegistry meterRegistry) {
+        return new ByIdCache<>("routes.by-id", properties.getMaximumSize(), properties.getTtl(), meterRegistry);
+    }
+
+    @Bean
+    public ByIdCache<DistributionSchedule> scheduleCache(EntityCacheProperties properties, MeterRegistry meterRegistry) {
+        return new ByIdCache<>("schedules.by-id", properties.getMaximumSize(), properties.getTtl(), meterRegistry);
+    }
+}
@@ -0,0 +1,46 @@
+package pe.edu.vallegrande.ms_distribution.application.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Cachés locales por id de rutas y horarios (app.cache.entities.*). Como cada réplica tiene la suya,
+ * se invalidan en todos los nodos a partir de los change streams de Mongo.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.cache.entities")
+public class EntityCacheProperties {
+
+    /**
+     * Documentos por colección que se conservan como máximo; 0 desactiva la caché.
+     */
+    private long maximumSize = 2000;
+
+    /**
+     * Vida máxima de una entrada; acota lo que dura un dato obsoleto si se pierde una invalidación.
+     */
+    private Duration ttl = Duration.ofMinutes(5);
+
+    /**
+     * Escucha los change streams de routes, schedules y fare para invalidar en todas las réplicas.
+     */
+    private boolean changeStreams = true;
+
+    /**
+     * Identifica el nodo en la colección de resume tokens: cada réplica reanuda desde su propia posición.
+     */
+    private String instanceId = System.getenv().getOrDefault("HOSTNAME", "local");
+
+    /**
+     * Vida de un resume token sin actualizar; el índice TTL borra los de nodos que ya no existen
+     * (cada pod reiniciado tiene otro HOSTNAME y deja el suyo).
+     */
+    private Duration resumeTokenTtl = Duration.ofDays(7);
+
+    /**
+     * Espera máxima entre intentos de reconexión del change stream.
+     */
+    private Duration maxReconnectBackoff = Duration.ofMinutes(1);
+}
@@ -0,0 +1,30 @@
+package pe.edu.vallegrande.ms_distribution.application.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Límites de la caché en memoria de tarifas (app.cache.fares.*).
+ */
+@Data
+@ConfigurationProperties(prefix = "app.cache.fares")
+public class FareCacheProperties {
+
+    /**
+     * Tarifas por id que se conservan como máximo; 0 desactiva la caché.
+     */
+    private long maximumSize = 1000;
+
+    /**
+     * Listados de tarifas activas (uno por organización más el global) que se conservan como máximo;
+     * 0 los desactiva.
+     */
+    private long maximumLists = 200;
+
+    /**
+     * Vida máxima de una entrada desde que se cargó, aunque ninguna escritura la invalide.
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+}
@@ -0,0 +1,84 @@
+package pe.edu.vallegrande.ms_distribution.application.config;
+
+import org.springframework.boot.actuate.endpoint.SecurityContext;
+import org.springframework.boot.actuate.health.AdditionalHealthEndpointPath;
+import org.springframework.boot.actuate.health.HealthEndpointGroup;
+import org.springframework.boot.actuate.health.HealthEndpointGroups;
+import org.springframework.boot.actuate.health.HealthEndpointGroupsPostProcessor;
+import org.springframework.boot.actuate.health.HttpCodeStatusMapper;
+import org.springframework.boot.actuate.health.StatusAggregator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+
+/**
+ * Indicadores que solo cuentan en el grupo readiness: se quitan del grupo principal
+ * (/actuator/health), que no admite exclusiones por configuración. Así un chequeo de Docker o del
+ * balanceador que aún apunte a /actuator/health no alterna entre UP y DOWN mientras dura el
+ * calentamiento.
+ */
+@Configuration
+public class HealthGroupsConfig {
+
+    static final Set<String> READINESS_ONLY = Set.of("warmUp");
+
+    @Bean
+    public HealthEndpointGroupsPostProcessor readinessOnlyIndicators() {
+        return HealthGroupsConfig::withoutReadinessOnly;
+    }
+
+    static HealthEndpointGroups withoutReadinessOnly(HealthEndpointGroups groups) {
+        HealthEndpointGroup primary = new PrimaryGroup(groups.getPrimary());
+        return new HealthEndpointGroups() {
+
+            @Override
+            public HealthEndpointGroup getPrimary() {
+                return primary;
+            }
+
+            @Override
+            public Set<String> getNames() {
+                return groups.getNames();
+            }
+
+            @Override
+            public HealthEndpointGroup get(String name) {
+                return groups.get(name);
+            }
+        };
+    }
+
+    private record PrimaryGroup(HealthEndpointGroup delegate) implements HealthEndpointGroup {
+
+        @Override
+        public boolean isMember(String name) {
+            return !READINESS_ONLY.contains(name) && delegate.isMember(name);
+        }
+
+        @Override
+        public boolean showComponents(SecurityContext securityContext) {
+            return delegate.showComponents(securityContext);
+        }
+
+        @Override
+        public boolean showDetails(SecurityContext securityContext) {
+            return delegate.showDetails(securityContext);
+        }
+
+        @Override
+        public StatusAggregator getStatusAggregator() {
+            return delegate.getStatusAggregator();
+        }
+
+        @Override
+        public HttpCodeStatusMapper getHttpCodeStatusMapper() {
+            return delegate.getHttpCodeStatusMapper();
+        }
+
+        @Override
+        public AdditionalHealthEndpointPath getAdditionalPath() {
+            return delegate.getAdditionalPath();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package pe.edu.vallegrande.ms_distribution.application.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.MongoPoolMetricsListener;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.QueryDiagnostics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ajustes del cliente de Mongo sobre los que Spring Boot construye desde la URI: pool
+ * (app.mongo.pool.*) y listeners de diagnóstico. Las conexiones en uso y la cola de espera ya las
+ * publica Boot (mongodb.driver.pool.checkedout y waitqueuesize); aquí se añade el tiempo de
+ * espera de cada checkout.
+ */
+@Configuration
+public class MongoClientConfig {
+
+    // Formas de consulta y consultas lentas para el endpoint JMX mongoqueries
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoDiagnosticsCustomizer(QueryDiagnostics diagnostics) {
+        return builder -> builder.addCommandListener(diagnostics);
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoPoolCustomizer(MongoPoolProperties properties, MeterRegistry meterRegistry) {
+        return builder -> builder.applyToConnectionPoolSettings(pool -> {
+            if (properties.getMaxSize() != null) {
+                pool.maxSize(properties.getMaxSize());
+            }
+            if (properties.getMinSize() != null) {
+                pool.minSize(properties.getMinSize());
+            }
+            if (properties.getMaxWaitTime() != null) {
+                pool.maxWaitTime(properties.getMaxWaitTime().toMillis(), TimeUnit.MILLISECONDS);
+            }
+            if (properties.getMaxConnectionIdleTime() != null) {
+                pool.maxConnectionIdleTime(properties.getMaxConnectionIdleTime().toMillis(), TimeUnit.MILLISECONDS);
+            }
+            if (properties.getMaxConnectionLifeTime() != null) {
+                pool.maxConnectionLifeTime(properties.getMaxConnectionLifeTime().toMillis(), TimeUnit.MILLISECONDS);
+            }
+            if (properties.getMaxConnecting() != null) {
+                pool.maxConnecting(properties.getMaxConnecting());
+            }
+            pool.addConnectionPoolListener(new MongoPoolMetricsListener(meterRegistry));
+        });
+    }
+}
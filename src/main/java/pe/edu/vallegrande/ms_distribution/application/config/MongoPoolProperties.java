@@ -0,0 +1,46 @@
+package pe.edu.vallegrande.ms_distribution.application.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Pool de conexiones del cliente reactivo de Mongo (app.mongo.pool.*), por servidor del cluster.
+ * Lo que no se configura conserva el valor del driver o de la URI.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.mongo.pool")
+public class MongoPoolProperties {
+
+    /**
+     * Conexiones máximas (driver: 100).
+     */
+    private Integer maxSize;
+
+    /**
+     * Conexiones que se mantienen abiertas aunque estén ociosas (driver: 0).
+     */
+    private Integer minSize;
+
+    /**
+     * Espera máxima por una conexión libre; es el único límite de la cola de espera en el driver
+     * actual. Al agotarse la operación falla con MongoTimeoutException.
+     */
+    private Duration maxWaitTime;
+
+    /**
+     * Tiempo ocioso tras el que una conexión se cierra.
+     */
+    private Duration maxConnectionIdleTime;
+
+    /**
+     * Vida máxima de una conexión; útil para repartir carga tras un cambio de topología.
+     */
+    private Duration maxConnectionLifeTime;
+
+    /**
+     * Conexiones que pueden establecerse a la vez (driver: 2); limita las ráfagas de apertura.
+     */
+    private Integer maxConnecting;
+}
@@ -0,0 +1,29 @@
+package pe.edu.vallegrande.ms_distribution.application.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Límites de la paginación por cursor de los listados (app.pagination.*).
+ */
+@Data
+@ConfigurationProperties(prefix = "app.pagination")
+public class PaginationProperties {
+
+    /**
+     * Tamaño de página cuando el cliente envía cursor sin size.
+     */
+    private int defaultSize = 50;
+
+    /**
+     * Tamaño máximo aceptado; valores mayores se recortan.
+     */
+    private int maxSize = 500;
+
+    public int resolveSize(Integer requested) {
+        if (requested == null) {
+            return defaultSize;
+        }
+        return Math.max(1, Math.min(requested, maxSize));
+    }
+}
@@ -0,0 +1,35 @@
+package pe.edu.vallegrande.ms_distribution.application.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Registro de consultas lentas y de formas de consulta (app.mongo.diagnostics.*),
+ * consultable en el endpoint JMX mongoqueries.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.mongo.diagnostics")
+public class QueryDiagnosticsProperties {
+
+    /**
+     * Comandos que tardan más que esto se guardan como lentos.
+     */
+    private Duration slowThreshold = Duration.ofMillis(100);
+
+    /**
+     * Consultas lentas retenidas; al llenarse se descarta la más antigua.
+     */
+    private int slowCapacity = 100;
+
+    /**
+     * Formas de consulta distintas que se siguen (las nuevas se ignoran al alcanzar el límite).
+     */
+    private int maxShapes = 500;
+
+    /**
+     * Ejecuta explain (queryPlanner, sin ejecutar la consulta) la primera vez que una forma es lenta.
+     */
+    private boolean explainSlow = true;
+}
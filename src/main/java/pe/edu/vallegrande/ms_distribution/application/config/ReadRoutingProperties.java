@@ -0,0 +1,48 @@
+package pe.edu.vallegrande.ms_distribution.application.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ReadWorkload;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Preferencia y nivel de lectura por tipo de consulta (app.read-routing.*). Lo no configurado
+ * se lee del primario; las escrituras y las lecturas por id nunca pasan por aquí.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.read-routing")
+public class ReadRoutingProperties {
+
+    /**
+     * Destino de cada tipo de consulta para todas las colecciones.
+     */
+    private Map<ReadWorkload, Target> defaults = new EnumMap<>(ReadWorkload.class);
+
+    /**
+     * Excepciones por colección (programs, routes, schedules, fare), que prevalecen sobre defaults.
+     */
+    private Map<String, Map<ReadWorkload, Target>> collections = new HashMap<>();
+
+    @Data
+    public static class Target {
+
+        /**
+         * primary, primaryPreferred, secondary, secondaryPreferred o nearest.
+         */
+        private String readPreference = "primary";
+
+        /**
+         * Retraso máximo aceptado en el secundario (mínimo 90s según Mongo); sin valor no se limita.
+         */
+        private Duration maxStaleness;
+
+        /**
+         * local, available, majority...; sin valor se usa el del cluster.
+         */
+        private String readConcern;
+    }
+}
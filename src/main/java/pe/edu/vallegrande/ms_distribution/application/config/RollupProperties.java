@@ -0,0 +1,25 @@
+package pe.edu.vallegrande.ms_distribution.application.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Resúmenes diarios de programas (app.rollups.*).
+ */
+@Data
+@ConfigurationProperties(prefix = "app.rollups")
+public class RollupProperties {
+
+    /**
+     * Cron de la reconstrucción completa; "-" la desactiva.
+     */
+    private String rebuildCron = "-";
+
+    /**
+     * Tiempo que la réplica que lanza la reconstrucción la reserva: las demás, que disparan el
+     * mismo cron, no la repiten. Debe superar lo que tarda la reconstrucción.
+     */
+    private Duration rebuildLease = Duration.ofMinutes(30);
+}
@@ -0,0 +1,36 @@
+package pe.edu.vallegrande.ms_distribution.application.config;
+
+import org.springframework.boot.autoconfigure.web.reactive.WebFluxRegistrations;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.result.condition.RequestCondition;
+import org.springframework.web.reactive.result.method.annotation.RequestMappingHandlerMapping;
+import pe.edu.vallegrande.ms_distribution.infrastructure.rest.StreamingRequestCondition;
+
+import java.lang.reflect.Method;
+
+/**
+ * Registra StreamingRequestCondition en el mapeo de controladores: las variantes en streaming
+ * solo atienden peticiones que las piden en Accept.
+ */
+@Configuration
+public class StreamingMappingConfig {
+
+    @Bean
+    public WebFluxRegistrations streamingRegistrations() {
+        return new WebFluxRegistrations() {
+            @Override
+            public RequestMappingHandlerMapping getRequestMappingHandlerMapping() {
+                return new StreamingHandlerMapping();
+            }
+        };
+    }
+
+    public static class StreamingHandlerMapping extends RequestMappingHandlerMapping {
+
+        @Override
+        protected RequestCondition<?> getCustomMethodCondition(Method method) {
+            return StreamingRequestCondition.forMethod(method);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package pe.edu.vallegrande.ms_distribution.application.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Calentamiento al arrancar (app.warm-up.*): pool de Mongo, cachés de activos por organización y
+ * código de mapeo. Mientras dura, el grupo de salud readiness responde DOWN.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.warm-up")
+public class WarmUpProperties {
+
+    /**
+     * Sin calentamiento el nodo queda listo en cuanto arranca.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Tiempo máximo de calentamiento; al agotarse el nodo pasa a listo igualmente, en frío.
+     */
+    private Duration timeout = Duration.ofMinutes(2);
+
+    /**
+     * Organizaciones que se precargan a la vez.
+     */
+    private int concurrency = 4;
+
+    /**
+     * Organizaciones que se precargan como máximo.
+     */
+    private int maxOrganizations = 500;
+
+    /**
+     * Documentos de cada colección con los que se ejercita el mapeo entidad/BSON/JSON.
+     */
+    private int mappingSamples = 20;
+
+    /**
+     * Vueltas sobre esas muestras; suficientes para que el JIT compile las rutas calientes.
+     */
+    private int mappingIterations = 200;
+}
@@ -0,0 +1,73 @@
+package pe.edu.vallegrande.ms_distribution.application.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Política común de escritura: reintento acotado con jitter para operaciones idempotentes
+ * y traducción de conflictos de versión a 409, con sus métricas por entidad.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class WriteRetryPolicy {
+
+    static final String CONFLICTS_METRIC = "distribution.write.conflicts";
+    static final String RETRIES_METRIC = "distribution.write.retries";
+
+    private final WriteRetryProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Solo para escrituras que pueden repetirse sin efecto adicional (cambios de estado, borrados masivos).
+     * No entran las actualizaciones de campos (incrementan la versión en cada aplicación) ni los
+     * borrados por id (un reintento no distingue "ya borrado" de "no existe").
+     */
+    public <T> Mono<T> retryIdempotent(Mono<T> operation, String entity) {
+        if (properties.getMaxAttempts() <= 0) {
+            return operation;
+        }
+        return operation.retryWhen(Retry.backoff(properties.getMaxAttempts(), properties.getMinBackoff())
+                .maxBackoff(properties.getMaxBackoff())
+                .jitter(properties.getJitter())
+                .filter(WriteRetryPolicy::isTransient)
+                .doBeforeRetry(signal -> {
+                    counter(RETRIES_METRIC, entity).increment();
+                    log.warn("Retrying {} write (attempt {}): {}", entity, signal.totalRetries() + 1, signal.failure().getMessage());
+                })
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    public <T> Mono<T> mapConflicts(Mono<T> operation, String entity, String id) {
+        return operation.onErrorMap(OptimisticLockingFailureException.class, error -> {
+            counter(CONFLICTS_METRIC, entity).increment();
+            return CustomException.conflict("Version conflict",
+                    entity + " " + id + " was modified by another request; reload it and retry");
+        });
+    }
+
+    static boolean isTransient(Throwable error) {
+        return !(error instanceof OptimisticLockingFailureException)
+                && (error instanceof TransientDataAccessException || error instanceof DataAccessResourceFailureException);
+    }
+
+    private Counter counter(String metric, String entity) {
+        return counters.computeIfAbsent(metric + ":" + entity, key -> Counter.builder(metric)
+                .tag("entity", entity)
+                .register(meterRegistry));
+    }
+}
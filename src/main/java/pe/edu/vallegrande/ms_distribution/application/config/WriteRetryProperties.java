@@ -0,0 +1,28 @@
+package pe.edu.vallegrande.ms_distribution.application.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Reintentos de escrituras idempotentes ante fallos transitorios de Mongo (app.write-retry.*).
+ */
+@Data
+@ConfigurationProperties(prefix = "app.write-retry")
+public class WriteRetryProperties {
+
+    /**
+     * Reintentos después del primer intento; 0 los desactiva.
+     */
+    private int maxAttempts = 3;
+
+    private Duration minBackoff = Duration.ofMillis(50);
+
+    private Duration maxBackoff = Duration.ofMillis(500);
+
+    /**
+     * Fracción aleatoria aplicada a cada espera (0 a 1) para no sincronizar reintentos entre nodos.
+     */
+    private double jitter = 0.5;
+}
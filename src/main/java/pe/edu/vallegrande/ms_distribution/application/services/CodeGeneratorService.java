@@ -0,0 +1,9 @@
+package pe.edu.vallegrande.ms_distribution.application.services;
+
+import pe.edu.vallegrande.ms_distribution.domain.enums.CodeSequence;
+import reactor.core.publisher.Mono;
+
+public interface CodeGeneratorService {
+
+    Mono<String> nextCode(CodeSequence sequence, String organizationId);
+}
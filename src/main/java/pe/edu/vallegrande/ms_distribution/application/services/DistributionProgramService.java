@@ -1,20 +1,51 @@
 package pe.edu.vallegrande.ms_distribution.application.services;
 
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionProgramCreateRequest;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.ProgramDateRangeRequest;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.ProgramKpiRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.DistributionProgramResponse;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.ProgramCalendarDayResponse;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.ProgramKpiResponse;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.CursorPage;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Set;
+
 public interface DistributionProgramService {
 
     Flux<DistributionProgramResponse> getAll();
+    // Listado completo ya reunido (status null = todos); peticiones idénticas en curso comparten la consulta
+    Mono<List<DistributionProgramResponse>> getListing(String status);
+    Mono<CursorPage<DistributionProgramResponse>> getPage(String status, String cursor, Integer size, Set<String> fields);
+    Flux<DistributionProgramResponse> getAllProjected(String status, Set<String> fields);
     Mono<DistributionProgramResponse> getById(String id);
     Mono<DistributionProgramResponse> save(DistributionProgramCreateRequest request);
     Mono<DistributionProgramResponse> update(String id, DistributionProgramCreateRequest request);
+    Mono<DistributionProgramResponse> patch(String id, DistributionProgramCreateRequest request);
     Mono<Void> delete(String id);
+    Mono<Long> deleteAll(String organizationId, String status);
     Mono<DistributionProgramResponse> activate(String id);
     Mono<DistributionProgramResponse> desactivate(String id);
 
     // Cambios de estado
     Mono<DistributionProgramResponse> changeStatus(String id, String status);
+
+    // Consultas por rango de fechas
+    Flux<DistributionProgramResponse> getByDateRange(ProgramDateRangeRequest range);
+    Flux<ProgramCalendarDayResponse> getCalendar(ProgramDateRangeRequest range);
+
+    // Indicadores agregados en Mongo
+    Flux<ProgramKpiResponse> getKpis(ProgramKpiRequest request);
+
+    // Consultas acotadas a una organización (status null = todos)
+    Flux<DistributionProgramResponse> getAllByOrganization(String organizationId, String status);
+    Mono<Long> countByOrganization(String organizationId, String status);
+    Mono<DistributionProgramResponse> getByOrganization(String organizationId, String id);
+    Mono<DistributionProgramResponse> getByOrganizationAndCode(String organizationId, String code);
+
+    // Búsquedas paginadas dentro de una organización
+    Mono<CursorPage<DistributionProgramResponse>> searchObservations(String organizationId, String text, String cursor, Integer size);
+    Mono<CursorPage<DistributionProgramResponse>> searchByCode(String organizationId, String prefix, String cursor, Integer size);
 }
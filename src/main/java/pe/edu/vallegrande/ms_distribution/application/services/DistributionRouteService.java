@@ -4,18 +4,42 @@ import pe.edu.vallegrande.ms_distribution.domain.models.DistributionRoute;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionRouteCreateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionRouteUpdateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.DistributionRouteResponse;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.CursorPage;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 public interface DistributionRouteService {
 
     Flux<DistributionRoute> getAll();
     Flux<DistributionRoute> getAllActive();
     Flux<DistributionRoute> getAllInactive();
+    // Para rellenar cachés: lee del primario, nunca de un secundario atrasado
+    Flux<DistributionRoute> getAllActiveFromPrimary();
+    // Listado completo ya reunido (status null = todos); peticiones idénticas en curso comparten la consulta
+    Mono<List<DistributionRoute>> getListing(String status);
+    Mono<CursorPage<DistributionRoute>> getPage(String status, String cursor, Integer size, Set<String> fields);
+    Flux<DistributionRoute> getAllProjected(String status, Set<String> fields);
+    Mono<Long> countByStatus(String status);
+    Mono<Map<String, Long>> countGroupedByStatus();
     Mono<DistributionRoute> getById(String id);
     Mono<DistributionRouteResponse> save(DistributionRouteCreateRequest request);
     Mono<DistributionRoute> update(String id, DistributionRouteUpdateRequest request);
+    Mono<DistributionRoute> patch(String id, DistributionRouteUpdateRequest request);
     Mono<Void> delete(String id);
+    Mono<Long> deleteAll(String organizationId, String status);
     Mono<DistributionRoute> activate(String id);
     Mono<DistributionRoute> deactivate(String id);
+
+    // Consultas acotadas a una organización (status null = todos)
+    Flux<DistributionRoute> getAllByOrganization(String organizationId, String status);
+    Mono<Long> countByOrganization(String organizationId, String status);
+    Mono<DistributionRoute> getByOrganization(String organizationId, String id);
+    Mono<DistributionRoute> getByOrganizationAndCode(String organizationId, String code);
+
+    // Búsqueda paginada por prefijo de código dentro de una organización
+    Mono<CursorPage<DistributionRoute>> searchByCode(String organizationId, String prefix, String cursor, Integer size);
 }
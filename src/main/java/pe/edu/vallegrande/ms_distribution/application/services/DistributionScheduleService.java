@@ -4,18 +4,42 @@ import pe.edu.vallegrande.ms_distribution.domain.models.DistributionSchedule;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionScheduleCreateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionScheduleUpdateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.DistributionScheduleResponse;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.CursorPage;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 public interface DistributionScheduleService {
 
     Flux<DistributionSchedule> getAll();
     Flux<DistributionSchedule> getAllActive();
     Flux<DistributionSchedule> getAllInactive();
+    // Para rellenar cachés: lee del primario, nunca de un secundario atrasado
+    Flux<DistributionSchedule> getAllActiveFromPrimary();
+    // Listado completo ya reunido (status null = todos); peticiones idénticas en curso comparten la consulta
+    Mono<List<DistributionSchedule>> getListing(String status);
+    Mono<CursorPage<DistributionSchedule>> getPage(String status, String cursor, Integer size, Set<String> fields);
+    Flux<DistributionSchedule> getAllProjected(String status, Set<String> fields);
+    Mono<Long> countByStatus(String status);
+    Mono<Map<String, Long>> countGroupedByStatus();
     Mono<DistributionSchedule> getById(String id);
     Mono<DistributionScheduleResponse> save(DistributionScheduleCreateRequest request);
     Mono<DistributionSchedule> update(String id, DistributionScheduleUpdateRequest request);
+    Mono<DistributionSchedule> patch(String id, DistributionScheduleUpdateRequest request);
     Mono<Void> delete(String id);
+    Mono<Long> deleteAll(String organizationId, String status);
     Mono<DistributionSchedule> activate(String id);
     Mono<DistributionSchedule> deactivate(String id);
+
+    // Consultas acotadas a una organización (status null = todos)
+    Flux<DistributionSchedule> getAllByOrganization(String organizationId, String status);
+    Mono<Long> countByOrganization(String organizationId, String status);
+    Mono<DistributionSchedule> getByOrganization(String organizationId, String id);
+    Mono<DistributionSchedule> getByOrganizationAndCode(String organizationId, String code);
+
+    // Búsqueda paginada por prefijo de código dentro de una organización
+    Mono<CursorPage<DistributionSchedule>> searchByCode(String organizationId, String prefix, String cursor, Integer size);
 }
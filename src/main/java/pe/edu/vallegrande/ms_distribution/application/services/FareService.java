@@ -4,18 +4,39 @@ import pe.edu.vallegrande.ms_distribution.domain.models.Fare;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.FareCreateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.FareUpdateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.FareResponse;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.CursorPage;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 public interface FareService {
 
     Flux<Fare> getAllF();
     Flux<Fare> getAllActiveF();
     Flux<Fare> getAllInactiveF();
+    // Listado completo ya reunido (status null = todos); peticiones idénticas en curso comparten la consulta
+    Mono<List<Fare>> getListingF(String status);
+    Mono<CursorPage<Fare>> getPageF(String status, String cursor, Integer size, Set<String> fields);
+    Flux<Fare> getAllProjectedF(String status, Set<String> fields);
+    Mono<Long> countByStatusF(String status);
+    Mono<Map<String, Long>> countGroupedByStatusF();
     Mono<Fare> getByIdFMono(String id);
     Mono<FareResponse> saveF(FareCreateRequest fareRequest);
     Mono<Fare> updateF(String id, FareUpdateRequest request);
     Mono<Void> deleteF(String id);
+    Mono<Long> deleteAllF(String organizationId, String status);
     Mono<Fare> activateF(String id);
     Mono<Fare> deactivateF(String id);
+
+    // Consultas acotadas a una organización (status null = todos)
+    Flux<Fare> getAllByOrganizationF(String organizationId, String status);
+    Mono<Long> countByOrganizationF(String organizationId, String status);
+    Mono<Fare> getByOrganizationF(String organizationId, String id);
+    Mono<Fare> getByOrganizationAndCodeF(String organizationId, String code);
+
+    // Búsqueda paginada por prefijo de código dentro de una organización
+    Mono<CursorPage<Fare>> searchByCodeF(String organizationId, String prefix, String cursor, Integer size);
 }
@@ -0,0 +1,22 @@
+package pe.edu.vallegrande.ms_distribution.application.services;
+
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionProgram;
+import pe.edu.vallegrande.ms_distribution.domain.models.ProgramDailyRollup;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.ProgramDateRangeRequest;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.Change;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ProgramRollupService {
+
+    // Mantenimiento incremental desde las escrituras de programas
+    Mono<Void> recordCreated(DistributionProgram program);
+    Mono<Void> recordChange(Change<DistributionProgram> change);
+    Mono<Void> recordRemoved(DistributionProgram program);
+
+    // Recalcula desde cero los de una organización (obligatoria) y devuelve cuántos quedaron
+    Mono<Long> rebuild(String organizationId);
+
+    // Resúmenes de una organización entre dos fechas, opcionalmente de una zona
+    Flux<ProgramDailyRollup> getRollups(ProgramDateRangeRequest range);
+}
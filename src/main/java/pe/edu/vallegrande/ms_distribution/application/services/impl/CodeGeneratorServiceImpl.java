@@ -0,0 +1,144 @@
+package pe.edu.vallegrande.ms_distribution.application.services.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import pe.edu.vallegrande.ms_distribution.application.config.CodeAllocationProperties;
+import pe.edu.vallegrande.ms_distribution.application.services.CodeGeneratorService;
+import pe.edu.vallegrande.ms_distribution.domain.enums.CodeSequence;
+import pe.edu.vallegrande.ms_distribution.domain.models.Sequence;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.SequenceRepository;
+
+import org.springframework.stereotype.Service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class CodeGeneratorServiceImpl implements CodeGeneratorService {
+
+    static final String ALLOCATED_METRIC = "distribution.codes.allocated";
+    static final String SOURCE_MEMORY = "memory";
+    static final String SOURCE_DATABASE = "database";
+
+    private final SequenceRepository sequenceRepository;
+    private final CodeAllocationProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    // Contadores ya inicializados en este nodo; evita consultar los códigos existentes en cada alta
+    private final Set<String> seededKeys = ConcurrentHashMap.newKeySet();
+    // Bloque reservado vigente por organización y prefijo
+    private final Map<String, CodeBlock> blocks = new ConcurrentHashMap<>();
+    private final Map<String, Counter> allocationCounters = new ConcurrentHashMap<>();
+
+    @Override
+    public Mono<String> nextCode(CodeSequence sequence, String organizationId) {
+        String key = Sequence.key(organizationId, sequence.getPrefix());
+        CodeBlock block = blocks.get(key);
+        long value = block != null ? block.take() : CodeBlock.EXHAUSTED;
+        if (value != CodeBlock.EXHAUSTED) {
+            countAllocation(sequence, SOURCE_MEMORY);
+            return Mono.just(sequence.format(value));
+        }
+        return leaseBlock(sequence, organizationId, key)
+                .map(sequence::format)
+                .doOnNext(code -> log.debug("Generated {} code: {}", sequence, code));
+    }
+
+    /**
+     * Reserva un bloque de códigos con un único $inc y entrega el primero;
+     * el resto queda en memoria para las siguientes altas.
+     */
+    private Mono<Long> leaseBlock(CodeSequence sequence, String organizationId, String key) {
+        int blockSize = Math.max(1, properties.getBlockSize());
+        return ensureSeeded(sequence, organizationId, key)
+                .then(Mono.defer(() -> sequenceRepository.increment(organizationId, sequence.getPrefix(), blockSize)))
+                .map(last -> {
+                    long first = last - blockSize + 1;
+                    if (blockSize > 1) {
+                        blocks.put(key, new CodeBlock(organizationId, sequence.getPrefix(), first + 1, last));
+                    }
+                    countAllocation(sequence, SOURCE_DATABASE);
+                    return first;
+                });
+    }
+
+    private Mono<Void> ensureSeeded(CodeSequence sequence, String organizationId, String key) {
+        if (seededKeys.contains(key)) {
+            return Mono.empty();
+        }
+        return sequenceRepository.findHighestExistingCode(sequence, organizationId)
+                .defaultIfEmpty(0L)
+                .flatMap(highest -> sequenceRepository.seed(organizationId, sequence.getPrefix(), highest))
+                .doOnSuccess(ignored -> seededKeys.add(key));
+    }
+
+    private void countAllocation(CodeSequence sequence, String source) {
+        allocationCounters.computeIfAbsent(sequence.getPrefix() + ":" + source, k -> Counter.builder(ALLOCATED_METRIC)
+                        .description("Códigos de negocio entregados por el asignador")
+                        .tag("prefix", sequence.getPrefix())
+                        .tag("source", source)
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    /**
+     * Al detener el nodo devuelve al contador los códigos no usados, siempre que
+     * ningún otro nodo haya reservado un bloque posterior; si no, quedan como hueco.
+     */
+    @PreDestroy
+    public void releaseUnusedBlocks() {
+        Flux.fromIterable(blocks.values())
+                .flatMap(block -> {
+                    long firstUnused = block.drain();
+                    if (firstUnused == CodeBlock.EXHAUSTED) {
+                        return Mono.empty();
+                    }
+                    return sequenceRepository.release(block.organizationId, block.prefix, block.last, firstUnused - 1)
+                            .doOnNext(released -> log.info("Unused {} codes {}..{} {}", block.prefix, firstUnused, block.last,
+                                    released ? "returned to counter" : "left as gap (newer block leased)"));
+                })
+                .onErrorResume(error -> {
+                    log.warn("Could not release unused code blocks: {}", error.getMessage());
+                    return Mono.empty();
+                })
+                .then()
+                .block(properties.getReleaseTimeout());
+        blocks.clear();
+    }
+
+    static final class CodeBlock {
+        static final long EXHAUSTED = -1;
+
+        private final String organizationId;
+        private final String prefix;
+        private final AtomicLong next;
+        private final long last;
+
+        CodeBlock(String organizationId, String prefix, long first, long last) {
+            this.organizationId = organizationId;
+            this.prefix = prefix;
+            this.next = new AtomicLong(first);
+            this.last = last;
+        }
+
+        long take() {
+            long value = next.getAndIncrement();
+            return value <= last ? value : EXHAUSTED;
+        }
+
+        long drain() {
+            long value = next.getAndSet(last + 1);
+            return value <= last ? value : EXHAUSTED;
+        }
+    }
+}
@@ -1,14 +1,31 @@
 package pe.edu.vallegrande.ms_distribution.application.services.impl;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import pe.edu.vallegrande.ms_distribution.application.cache.SingleFlight;
+import pe.edu.vallegrande.ms_distribution.application.config.PaginationProperties;
+import pe.edu.vallegrande.ms_distribution.application.config.WriteRetryPolicy;
+import pe.edu.vallegrande.ms_distribution.application.services.CodeGeneratorService;
 import pe.edu.vallegrande.ms_distribution.application.services.DistributionProgramService;
+import pe.edu.vallegrande.ms_distribution.application.services.ProgramRollupService;
+import pe.edu.vallegrande.ms_distribution.domain.enums.CodeSequence;
 import pe.edu.vallegrande.ms_distribution.domain.enums.Constants;
+import pe.edu.vallegrande.ms_distribution.domain.enums.ProgramStatus;
 import pe.edu.vallegrande.ms_distribution.domain.models.DistributionProgram;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.CursorPage;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionProgramCreateRequest;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.ProgramDateRangeRequest;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.ProgramKpiRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.DistributionProgramResponse;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.ProgramCalendarDayResponse;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.ProgramKpiResponse;
 import pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ChangeMarkers;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.Change;
 import pe.edu.vallegrande.ms_distribution.infrastructure.repository.DistributionProgramRepository;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.FieldUpdates;
 
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
@@ -18,131 +35,380 @@ import reactor.core.publisher.Mono;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
+@Slf4j
 @RequiredArgsConstructor
 public class DistributionProgramServiceImpl implements DistributionProgramService {
 
     private static final String DATE_PATTERN = "yyyy-MM-dd";
-    private static final String PROGRAM_PREFIX = "PROG";
     private static final String PROGRAM_NOT_FOUND_MESSAGE = "Program with ID %s not found";
+    private static final String ENTITY = "Program";
+    private static final long MAX_RANGE_DAYS = 366;
+    private static final String SCORE_SEPARATOR = "|";
+    // Dimensiones y periodos aceptados en /kpis, con su campo y su formato de $dateToString
+    private static final Map<String, String> KPI_DIMENSIONS = Map.of(
+            "organization", "organizationId", "zone", "zoneId", "route", "routeId");
+    private static final Map<String, String> KPI_PERIODS = Map.of(
+            "day", "%Y-%m-%d", "week", "%G-W%V", "month", "%Y-%m");
     
     private final DistributionProgramRepository programRepository;
+    private final CodeGeneratorService codeGenerator;
+    private final WriteRetryPolicy writePolicy;
+    private final PaginationProperties pagination;
+    private final ProgramRollupService rollups;
+    private final SingleFlight singleFlight;
+    private final ChangeMarkers changeMarkers;
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern(DATE_PATTERN);
+    // Cuenta las escrituras: una lectura no se une a otra en curso que empezó antes de una
+    private final AtomicLong writes = new AtomicLong();
 
     @Override
     public Flux<DistributionProgramResponse> getAll() {
-        return programRepository.findAll()
+        return programRepository.findListing(null)
+                .map(this::toResponse);
+    }
+
+    @Override
+    public Mono<List<DistributionProgramResponse>> getListing(String status) {
+        return Mono.defer(() -> singleFlight.mono("programs.list", Objects.requireNonNullElse(status, "ALL") + "@" + writes.get(),
+                () -> programRepository.findListing(status).map(this::toResponse).collectList()));
+    }
+
+    @Override
+    public Mono<CursorPage<DistributionProgramResponse>> getPage(String status, String cursor, Integer size, Set<String> fields) {
+        int limit = pagination.resolveSize(size);
+        return Mono.defer(() -> programRepository.findPage(status, CursorPage.decode(cursor), limit + 1, fields)
+                        .map(this::toResponse)
+                        .collectList())
+                .map(programs -> CursorPage.of(programs, limit, DistributionProgramResponse::getId));
+    }
+
+    @Override
+    public Flux<DistributionProgramResponse> getAllProjected(String status, Set<String> fields) {
+        return programRepository.findProjected(status, fields)
                 .map(this::toResponse);
     }
 
     @Override
     public Mono<DistributionProgramResponse> getById(String id) {
-        return programRepository.findById(id)
+        return Mono.defer(() -> singleFlight.mono("programs.by-id", id + "@" + writes.get(), () -> programRepository.findById(id)))
                 .switchIfEmpty(Mono.error(new CustomException(
                         HttpStatus.NOT_FOUND.value(), "Not found", String.format(PROGRAM_NOT_FOUND_MESSAGE, id))))
                 .map(this::toResponse);
     }
 
     @Override
-    public Mono<DistributionProgramResponse> save(DistributionProgramCreateRequest request) {
-        return generateNextProgramCode()
-                .flatMap(generatedCode -> {
-                    DistributionProgram program = DistributionProgram.builder()
-                            .programCode(generatedCode)
-                            .scheduleId(request.getScheduleId())
-                            .routeId(request.getRouteId())
-                            .zoneId(request.getZoneId())
-                            .organizationId(request.getOrganizationId())
-                            .streetId(request.getStreetId())
-                            .programDate(LocalDate.parse(request.getProgramDate(), dateFormatter))
-                            .plannedStartTime(request.getPlannedStartTime())
-                            .plannedEndTime(request.getPlannedEndTime())
-                            .actualStartTime(request.getActualStartTime())
-                            .actualEndTime(request.getActualEndTime())
-                            .status(request.getStatus())
-                            .responsibleUserId(request.getResponsibleUserId())
-                            .observations(request.getObservations())
-                            .createdAt(Instant.now())
-                            .build();
-
-                    return programRepository.save(program)
-                            .map(this::toResponse);
-                });
-    }
-
-    private Mono<String> generateNextProgramCode() {
-        return programRepository.findTopByOrderByProgramCodeDesc()
-                .map(this::extractNextProgramCode)
-                .defaultIfEmpty(PROGRAM_PREFIX + "001");
+    public Flux<DistributionProgramResponse> getByDateRange(ProgramDateRangeRequest range) {
+        return Flux.defer(() -> {
+            validateRange(range);
+            return programRepository.findByDateRange(range.getFrom(), range.getTo(), range.getOrganizationId(),
+                    range.getZoneId(), range.getRouteId(), range.getResponsibleUserId());
+        }).map(this::toResponse);
     }
-    
-    private String extractNextProgramCode(DistributionProgram lastProgram) {
-        String lastCode = lastProgram.getProgramCode();
-        int number = 0;
-        try {
-            String numericPart = lastCode.replace(PROGRAM_PREFIX, "");
-            number = Integer.parseInt(numericPart);
-        } catch (NumberFormatException e) {
-            // Si no es numérico, empezar desde 1
-            number = 0;
+
+    /**
+     * Agrupa por día sobre el mismo recorrido ordenado por fecha: cada día se emite en cuanto
+     * aparece el siguiente, sin volver a consultar ni acumular el rango completo.
+     */
+    @Override
+    public Flux<ProgramCalendarDayResponse> getCalendar(ProgramDateRangeRequest range) {
+        return getByDateRange(range)
+                .bufferUntilChanged(DistributionProgramResponse::getProgramDate)
+                .map(programs -> ProgramCalendarDayResponse.builder()
+                        .date(programs.get(0).getProgramDate())
+                        .total(programs.size())
+                        .programs(programs)
+                        .build());
+    }
+
+    @Override
+    public Flux<ProgramKpiResponse> getKpis(ProgramKpiRequest request) {
+        return Flux.defer(() -> {
+            validateRange(request);
+            List<String> groupFields = request.getGroupBy() == null ? List.of() : request.getGroupBy().stream()
+                    .map(dimension -> lookup(KPI_DIMENSIONS, dimension, "groupBy"))
+                    .distinct()
+                    .toList();
+            String periodFormat = request.getPeriod() == null ? null : lookup(KPI_PERIODS, request.getPeriod(), "period");
+            int tolerance = request.getToleranceMinutes() == null ? 0 : Math.max(0, request.getToleranceMinutes());
+            return programRepository.aggregateKpis(request.getFrom(), request.getTo(), request.getOrganizationId(),
+                    request.getZoneId(), request.getRouteId(), groupFields, periodFormat, tolerance);
+        });
+    }
+
+    private String lookup(Map<String, String> options, String value, String parameter) {
+        String resolved = options.get(value.trim().toLowerCase());
+        if (resolved == null) {
+            throw CustomException.badRequest("Invalid " + parameter,
+                    parameter + " must be one of " + options.keySet().stream().sorted().toList());
+        }
+        return resolved;
+    }
+
+    private void validateRange(ProgramDateRangeRequest range) {
+        if (range.getFrom() == null || range.getTo() == null) {
+            throw CustomException.badRequest("Invalid date range", "Both from and to are required (yyyy-MM-dd)");
+        }
+        if (range.getFrom().isAfter(range.getTo())) {
+            throw CustomException.badRequest("Invalid date range", "from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(range.getFrom(), range.getTo()) >= MAX_RANGE_DAYS) {
+            throw CustomException.badRequest("Invalid date range", "The range cannot exceed " + MAX_RANGE_DAYS + " days");
+        }
+    }
+
+    @Override
+    public Flux<DistributionProgramResponse> getAllByOrganization(String organizationId, String status) {
+        Flux<DistributionProgram> programs = status == null
+                ? programRepository.findAllByOrganizationId(organizationId)
+                : programRepository.findAllByOrganizationIdAndStatus(organizationId, status);
+        return programs.map(this::toResponse);
+    }
+
+    @Override
+    public Mono<Long> countByOrganization(String organizationId, String status) {
+        return status == null
+                ? programRepository.countByOrganizationId(organizationId)
+                : programRepository.countByOrganizationIdAndStatus(organizationId, status);
+    }
+
+    @Override
+    public Mono<DistributionProgramResponse> getByOrganization(String organizationId, String id) {
+        return programRepository.findByIdAndOrganizationId(id, organizationId)
+                .switchIfEmpty(Mono.error(new CustomException(
+                        HttpStatus.NOT_FOUND.value(), "Not found", String.format(PROGRAM_NOT_FOUND_MESSAGE, id) + " in organization " + organizationId)))
+                .map(this::toResponse);
+    }
+
+    @Override
+    public Mono<DistributionProgramResponse> getByOrganizationAndCode(String organizationId, String code) {
+        return programRepository.findByOrganizationIdAndProgramCode(organizationId, code)
+                .switchIfEmpty(Mono.error(new CustomException(
+                        HttpStatus.NOT_FOUND.value(), "Not found", "Program with code " + code + " not found in organization " + organizationId)))
+                .map(this::toResponse);
+    }
+
+    @Override
+    public Mono<CursorPage<DistributionProgramResponse>> searchObservations(String organizationId, String text, String cursor, Integer size) {
+        int limit = pagination.resolveSize(size);
+        return Mono.defer(() -> {
+            requireSearchTerm(organizationId, text, "q");
+            String position = CursorPage.decode(cursor);
+            Double afterScore = position != null ? scoreOf(position, cursor) : null;
+            String afterId = position != null ? position.substring(position.lastIndexOf(SCORE_SEPARATOR) + 1) : null;
+            return programRepository.searchObservations(organizationId, text.trim(), afterScore, afterId, limit + 1)
+                    .map(this::toResponse)
+                    .collectList();
+        }).map(programs -> CursorPage.of(programs, limit, program -> program.getScore() + SCORE_SEPARATOR + program.getId()));
+    }
+
+    @Override
+    public Mono<CursorPage<DistributionProgramResponse>> searchByCode(String organizationId, String prefix, String cursor, Integer size) {
+        int limit = pagination.resolveSize(size);
+        return Mono.defer(() -> {
+            requireSearchTerm(organizationId, prefix, "prefix");
+            return programRepository.findByCodePrefix(organizationId, prefix, CursorPage.decode(cursor), limit + 1)
+                    .map(this::toResponse)
+                    .collectList();
+        }).map(programs -> CursorPage.of(programs, limit, DistributionProgramResponse::getProgramCode));
+    }
+
+    private void requireSearchTerm(String organizationId, String term, String parameter) {
+        if (organizationId == null || organizationId.isBlank() || term == null || term.isBlank()) {
+            throw CustomException.badRequest("Missing search term", "Search requires an organizationId and a non-empty " + parameter);
         }
-        return String.format("%s%03d", PROGRAM_PREFIX, number + 1);
+    }
+
+    // El cursor de relevancia es "score|id" del último programa entregado
+    private Double scoreOf(String position, String cursor) {
+        int separator = position.lastIndexOf(SCORE_SEPARATOR);
+        if (separator > 0 && separator < position.length() - 1) {
+            try {
+                return Double.valueOf(position.substring(0, separator));
+            } catch (NumberFormatException ignored) {
+                // se informa abajo como cursor inválido
+            }
+        }
+        throw CustomException.badRequest("Invalid cursor", "The cursor " + cursor + " is not valid");
+    }
+
+    @Override
+    public Mono<DistributionProgramResponse> save(DistributionProgramCreateRequest request) {
+        // La fecha se valida antes de reservar un código
+        return Mono.fromCallable(() -> parseDate(request.getProgramDate()))
+                .flatMap(programDate -> codeGenerator.nextCode(CodeSequence.PROGRAM, request.getOrganizationId())
+                        .flatMap(generatedCode -> create(request, generatedCode, programDate)));
+    }
+
+    private Mono<DistributionProgramResponse> create(DistributionProgramCreateRequest request, String generatedCode, LocalDate programDate) {
+        DistributionProgram program = DistributionProgram.builder()
+                .programCode(generatedCode)
+                .scheduleId(request.getScheduleId())
+                .routeId(request.getRouteId())
+                .zoneId(request.getZoneId())
+                .organizationId(request.getOrganizationId())
+                .streetId(request.getStreetId())
+                .programDate(programDate)
+                .plannedStartTime(request.getPlannedStartTime())
+                .plannedEndTime(request.getPlannedEndTime())
+                .actualStartTime(request.getActualStartTime())
+                .actualEndTime(request.getActualEndTime())
+                .status(request.getStatus())
+                .responsibleUserId(request.getResponsibleUserId())
+                .observations(request.getObservations())
+                .createdAt(Instant.now())
+                .build();
+
+        return programRepository.save(program)
+                .onErrorMap(DuplicateKeyException.class, e -> new CustomException(
+                        HttpStatus.BAD_REQUEST.value(),
+                        "Program code already exists",
+                        "Program code " + generatedCode + " already exists"))
+                .doOnNext(saved -> listsChanged())
+                .flatMap(saved -> rollups.recordCreated(saved).thenReturn(saved))
+                .map(this::toResponse);
     }
 
     @Override
     public Mono<DistributionProgramResponse> update(String id, DistributionProgramCreateRequest request) {
-        return programRepository.findById(id)
+        Map<String, Object> fields = FieldUpdates.create()
+                .set("organizationId", request.getOrganizationId())
+                .set("zoneId", request.getZoneId())
+                .set("streetId", request.getStreetId())
+                .set("plannedStartTime", request.getPlannedStartTime())
+                .set("plannedEndTime", request.getPlannedEndTime())
+                .set("actualStartTime", request.getActualStartTime())
+                .set("actualEndTime", request.getActualEndTime())
+                .set("observations", request.getObservations())
+                .set("responsibleUserId", request.getResponsibleUserId())
+                .toMap();
+        return updateFields(id, request.getVersion(), fields);
+    }
+
+    // PATCH: solo los campos enviados; el estado se cambia por changeStatus para respetar el ciclo de vida
+    @Override
+    public Mono<DistributionProgramResponse> patch(String id, DistributionProgramCreateRequest request) {
+        return Mono.fromCallable(() -> patchFields(request))
+                .flatMap(fields -> updateFields(id, request.getVersion(), fields));
+    }
+
+    private Map<String, Object> patchFields(DistributionProgramCreateRequest request) {
+        return FieldUpdates.create()
+                .setIfPresent("organizationId", request.getOrganizationId())
+                .setIfPresent("scheduleId", request.getScheduleId())
+                .setIfPresent("routeId", request.getRouteId())
+                .setIfPresent("zoneId", request.getZoneId())
+                .setIfPresent("streetId", request.getStreetId())
+                .setIfPresent("programDate", request.getProgramDate() != null
+                        ? parseDate(request.getProgramDate()) : null)
+                .setIfPresent("plannedStartTime", request.getPlannedStartTime())
+                .setIfPresent("plannedEndTime", request.getPlannedEndTime())
+                .setIfPresent("actualStartTime", request.getActualStartTime())
+                .setIfPresent("actualEndTime", request.getActualEndTime())
+                .setIfPresent("observations", request.getObservations())
+                .setIfPresent("responsibleUserId", request.getResponsibleUserId())
+                .toMap();
+    }
+
+    // Se invoca dentro de la cadena para que una fecha mal formada llegue como 400 y no como 500
+    private LocalDate parseDate(String value) {
+        if (value == null) {
+            throw CustomException.badRequest("Invalid date", "programDate is required (" + DATE_PATTERN + ")");
+        }
+        try {
+            return LocalDate.parse(value, dateFormatter);
+        } catch (DateTimeParseException e) {
+            throw CustomException.badRequest(e.getMessage(), "programDate must be a date in " + DATE_PATTERN + " format");
+        }
+    }
+
+    // No se reintenta: el $inc de versión haría que una repetición ya aplicada cuente dos veces.
+    // La imagen previa permite mover el programa entre resúmenes diarios sin volver a leerlo
+    private Mono<DistributionProgramResponse> updateFields(String id, Long expectedVersion, Map<String, Object> fields) {
+        return writePolicy.mapConflicts(programRepository.updateFieldsTracked(id, expectedVersion, fields), ENTITY, id)
                 .switchIfEmpty(Mono.error(new CustomException(
                         HttpStatus.NOT_FOUND.value(), "Not found", String.format(PROGRAM_NOT_FOUND_MESSAGE, id))))
-                .flatMap(existing -> updateProgramFields(existing, request))
+                .doOnNext(change -> listsChanged())
+                .flatMap(change -> rollups.recordChange(change).thenReturn(change.after()))
                 .map(this::toResponse);
     }
-    
-    private Mono<DistributionProgram> updateProgramFields(DistributionProgram existing, DistributionProgramCreateRequest request) {
-        existing.setOrganizationId(request.getOrganizationId());
-        existing.setZoneId(request.getZoneId());
-        existing.setStreetId(request.getStreetId());
-        existing.setPlannedStartTime(request.getPlannedStartTime());
-        existing.setPlannedEndTime(request.getPlannedEndTime());
-        existing.setActualStartTime(request.getActualStartTime());
-        existing.setActualEndTime(request.getActualEndTime());
-        existing.setStatus(request.getStatus());
-        existing.setObservations(request.getObservations());
-        existing.setResponsibleUserId(request.getResponsibleUserId());
-        return programRepository.save(existing);
-    }
 
+    // Sin reintento: si la respuesta del primer intento se perdió, el segundo no encontraría el documento
     @Override
     public Mono<Void> delete(String id) {
-        return programRepository.findById(id)
+        return programRepository.findAndRemoveById(id)
                 .switchIfEmpty(Mono.error(new CustomException(
                         HttpStatus.NOT_FOUND.value(), "Not found", String.format(PROGRAM_NOT_FOUND_MESSAGE, id))))
-                .flatMap(programRepository::delete);
+                .doOnNext(removed -> listsChanged())
+                .flatMap(rollups::recordRemoved);
+    }
+
+    @Override
+    public Mono<Long> deleteAll(String organizationId, String status) {
+        // Nunca entre organizaciones: el estado solo acota dentro de una
+        if (organizationId == null) {
+            return Mono.error(CustomException.badRequest(
+                    "Missing organizationId", "Bulk delete requires organizationId"));
+        }
+        // Sin imágenes previas de cada documento: los resúmenes afectados se recalculan
+        return writePolicy.retryIdempotent(programRepository.removeMatching(organizationId, status), ENTITY)
+                .doOnNext(deleted -> listsChanged())
+                .flatMap(deleted -> rollups.rebuild(organizationId)
+                        .onErrorResume(error -> {
+                            log.warn("Rollup rebuild after bulk delete failed: {}", error.getMessage());
+                            return Mono.empty();
+                        })
+                        .thenReturn(deleted));
     }
 
     @Override
     public Mono<DistributionProgramResponse> activate(String id) {
-        return changeStatus(id, Constants.ACTIVE.name());
+        return transition(id, null, Constants.ACTIVE.name());
     }
 
     @Override
     public Mono<DistributionProgramResponse> desactivate(String id) {
-        return changeStatus(id, Constants.INACTIVE.name());
+        return transition(id, null, Constants.INACTIVE.name());
     }
 
     @Override
     public Mono<DistributionProgramResponse> changeStatus(String id, String status) {
-        return programRepository.findById(id)
+        // ACTIVE/INACTIVE se cambian como en activate/desactivate, sin pasar por el ciclo de vida
+        if (Constants.ACTIVE.name().equals(status) || Constants.INACTIVE.name().equals(status)) {
+            return transition(id, null, status);
+        }
+        return Mono.justOrEmpty(ProgramStatus.of(status))
+                .switchIfEmpty(Mono.error(CustomException.badRequest(
+                        "Invalid status", "Unknown program status " + status)))
+                .flatMap(target -> transition(id, target.allowedSources(), target.name()));
+    }
+
+    // allowedFrom null: cambio sin restricción de origen, en la misma actualización compare-and-set
+    private Mono<DistributionProgramResponse> transition(String id, List<String> allowedFrom, String status) {
+        return writePolicy.retryIdempotent(programRepository.transitionStatusTracked(id, allowedFrom, status), ENTITY)
                 .switchIfEmpty(Mono.error(new CustomException(
                         HttpStatus.NOT_FOUND.value(), "Not found", String.format(PROGRAM_NOT_FOUND_MESSAGE, id))))
-                .flatMap(program -> updateProgramStatus(program, status))
+                .doOnNext(change -> listsChanged())
+                .flatMap(change -> rollups.recordChange(change).thenReturn(change.after()))
+                .flatMap(program -> checkStatusTransition(program, status))
                 .map(this::toResponse);
     }
-    
-    private Mono<DistributionProgram> updateProgramStatus(DistributionProgram program, String status) {
-        program.setStatus(status);
-        return programRepository.save(program);
+
+    // Si el estado actual no permitía el cambio, Mongo dejó el documento igual
+    private Mono<DistributionProgram> checkStatusTransition(DistributionProgram program, String status) {
+        if (!Objects.equals(program.getStatus(), status)) {
+            return Mono.error(CustomException.conflict("Invalid status transition",
+                    String.format("Program %s cannot change status from %s to %s", program.getId(), program.getStatus(), status)));
+        }
+        return Mono.just(program);
     }
 
     // Mapeo de entidad a DTO
@@ -164,6 +430,14 @@ public class DistributionProgramServiceImpl implements DistributionProgramServic
                 .responsibleUserId(program.getResponsibleUserId())
                 .observations(program.getObservations())
                 .createdAt(program.getCreatedAt() != null ? program.getCreatedAt().toString() : null)
+                .version(program.getVersion())
+                .score(program.getScore())
                 .build();
     }
+
+    // Hasta que el change stream entregue el evento de esta escritura, los listados van sin ETag
+    private void listsChanged() {
+        writes.incrementAndGet();
+        changeMarkers.touch(DistributionProgram.class);
+    }
 }
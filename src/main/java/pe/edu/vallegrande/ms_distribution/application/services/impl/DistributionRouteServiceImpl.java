@@ -2,18 +2,33 @@ package pe.edu.vallegrande.ms_distribution.application.services.impl;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import pe.edu.vallegrande.ms_distribution.application.cache.ByIdCache;
+import pe.edu.vallegrande.ms_distribution.application.cache.EncodedListCache;
+import pe.edu.vallegrande.ms_distribution.application.cache.SingleFlight;
+import pe.edu.vallegrande.ms_distribution.application.config.PaginationProperties;
+import pe.edu.vallegrande.ms_distribution.application.config.WriteRetryPolicy;
+import pe.edu.vallegrande.ms_distribution.application.services.CodeGeneratorService;
 import pe.edu.vallegrande.ms_distribution.application.services.DistributionRouteService;
+import pe.edu.vallegrande.ms_distribution.domain.enums.CodeSequence;
 import pe.edu.vallegrande.ms_distribution.domain.enums.Constants;
 import pe.edu.vallegrande.ms_distribution.domain.models.DistributionRoute;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.CursorPage;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionRouteCreateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionRouteUpdateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.DistributionRouteResponse;
 import pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ChangeMarkers;
 import pe.edu.vallegrande.ms_distribution.infrastructure.repository.DistributionRouteRepository;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.FieldUpdates;
 
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import reactor.core.publisher.Flux;
@@ -26,33 +41,116 @@ import java.time.Instant;
 @RequiredArgsConstructor
 public class DistributionRouteServiceImpl implements DistributionRouteService {
 
+    private static final String ENTITY = "Route";
+
     private final DistributionRouteRepository routeRepository;
+    private final CodeGeneratorService codeGenerator;
+    private final WriteRetryPolicy writePolicy;
+    private final PaginationProperties pagination;
+    private final ByIdCache<DistributionRoute> cache;
+    private final SingleFlight singleFlight;
+    private final EncodedListCache encodedLists;
+    private final ChangeMarkers changeMarkers;
+    // Cuenta las escrituras: un listado no se une a otro en curso que empezó antes de una
+    private final AtomicLong writes = new AtomicLong();
 
     @Override
     public Flux<DistributionRoute> getAll() {
-        return routeRepository.findAll();
+        return routeRepository.findListing(null);
     }
 
     @Override
     public Flux<DistributionRoute> getAllActive() {
-        return routeRepository.findAllByStatus(Constants.ACTIVE.name());
+        return routeRepository.findListing(Constants.ACTIVE.name());
     }
 
     @Override
     public Flux<DistributionRoute> getAllInactive() {
-        return routeRepository.findAllByStatus(Constants.INACTIVE.name());
+        return routeRepository.findListing(Constants.INACTIVE.name());
+    }
+
+    @Override
+    public Mono<List<DistributionRoute>> getListing(String status) {
+        return Mono.defer(() -> singleFlight.mono("routes.list", Objects.requireNonNullElse(status, "ALL") + "@" + writes.get(),
+                () -> routeRepository.findListing(status).collectList()));
+    }
+
+    @Override
+    public Flux<DistributionRoute> getAllActiveFromPrimary() {
+        return routeRepository.findListingFromPrimary(Constants.ACTIVE.name());
+    }
+
+    @Override
+    public Mono<CursorPage<DistributionRoute>> getPage(String status, String cursor, Integer size, Set<String> fields) {
+        int limit = pagination.resolveSize(size);
+        return Mono.defer(() -> routeRepository.findPage(status, CursorPage.decode(cursor), limit + 1, fields).collectList())
+                .map(routes -> CursorPage.of(routes, limit, DistributionRoute::getId));
+    }
+
+    @Override
+    public Flux<DistributionRoute> getAllProjected(String status, Set<String> fields) {
+        return routeRepository.findProjected(status, fields);
+    }
+
+    @Override
+    public Mono<Long> countByStatus(String status) {
+        return routeRepository.countWithStatus(status);
+    }
+
+    @Override
+    public Mono<Map<String, Long>> countGroupedByStatus() {
+        return routeRepository.countGroupedByStatus();
     }
 
     @Override
     public Mono<DistributionRoute> getById(String id) {
-        return routeRepository.findById(id)
+        return cache.get(id, generation -> singleFlight.mono("routes.by-id", id + "@" + generation, () -> routeRepository.findById(id)))
                 .switchIfEmpty(Mono.error(new CustomException(
                         HttpStatus.NOT_FOUND.value(), "Route not found", "Route with ID " + id + " does not exist")));
     }
 
+    @Override
+    public Flux<DistributionRoute> getAllByOrganization(String organizationId, String status) {
+        return status == null
+                ? routeRepository.findAllByOrganizationId(organizationId)
+                : routeRepository.findAllByOrganizationIdAndStatus(organizationId, status);
+    }
+
+    @Override
+    public Mono<Long> countByOrganization(String organizationId, String status) {
+        return status == null
+                ? routeRepository.countByOrganizationId(organizationId)
+                : routeRepository.countByOrganizationIdAndStatus(organizationId, status);
+    }
+
+    @Override
+    public Mono<DistributionRoute> getByOrganization(String organizationId, String id) {
+        return routeRepository.findByIdAndOrganizationId(id, organizationId)
+                .switchIfEmpty(Mono.error(new CustomException(
+                        HttpStatus.NOT_FOUND.value(), "Route not found", "Route with ID " + id + " does not exist in organization " + organizationId)));
+    }
+
+    @Override
+    public Mono<DistributionRoute> getByOrganizationAndCode(String organizationId, String code) {
+        return routeRepository.findByOrganizationIdAndRouteCode(organizationId, code)
+                .switchIfEmpty(Mono.error(new CustomException(
+                        HttpStatus.NOT_FOUND.value(), "Route not found", "Route with code " + code + " does not exist in organization " + organizationId)));
+    }
+
+    @Override
+    public Mono<CursorPage<DistributionRoute>> searchByCode(String organizationId, String prefix, String cursor, Integer size) {
+        if (organizationId == null || organizationId.isBlank() || prefix == null || prefix.isBlank()) {
+            return Mono.error(CustomException.badRequest(
+                    "Missing search term", "Search requires an organizationId and a non-empty prefix"));
+        }
+        int limit = pagination.resolveSize(size);
+        return Mono.defer(() -> routeRepository.findByCodePrefix(organizationId, prefix, CursorPage.decode(cursor), limit + 1).collectList())
+                .map(routes -> CursorPage.of(routes, limit, DistributionRoute::getRouteCode));
+    }
+
     @Override
     public Mono<DistributionRouteResponse> save(DistributionRouteCreateRequest request) {
-        return generateNextRouteCode()
+        return codeGenerator.nextCode(CodeSequence.ROUTE, request.getOrganizationId())
             .flatMap(generatedCode -> {
 
                 // 👇 Convertimos ZoneEntry a ZoneOrder
@@ -76,6 +174,11 @@ public class DistributionRouteServiceImpl implements DistributionRouteService {
                         .build();
 
                 return routeRepository.save(route)
+                        .onErrorMap(DuplicateKeyException.class, e -> new CustomException(
+                                HttpStatus.BAD_REQUEST.value(),
+                                "Route code already exists",
+                                "Route code " + generatedCode + " already exists"))
+                        .doOnNext(saved -> listsChanged())
                         .map(saved -> DistributionRouteResponse.builder()
                                 .id(saved.getId())
                                 .organizationId(saved.getOrganizationId())
@@ -98,43 +201,68 @@ public class DistributionRouteServiceImpl implements DistributionRouteService {
             });
     }
 
-    private Mono<String> generateNextRouteCode() {
-        return routeRepository.findTopByOrderByRouteCodeDesc()
-                .map(last -> {
-                    String lastCode = last.getRouteCode(); // Ej: "RUT005"
-                    int number = Integer.parseInt(lastCode.replace("RUT", ""));
-                    return String.format("RUT%03d", number + 1);
-                })
-                .defaultIfEmpty("RUT001");
+    @Override
+    public Mono<DistributionRoute> update(String id, DistributionRouteUpdateRequest request) {
+        return updateFields(id, request.getVersion(), FieldUpdates.create()
+                .set("routeName", request.getRouteName())
+                .setIfPresent("totalEstimatedDuration", request.getTotalEstimatedDuration())
+                .set("responsibleUserId", request.getResponsibleUserId())
+                .set("zones", toZoneOrders(request.getZones()))
+                .toMap());
     }
 
-
     @Override
-    public Mono<DistributionRoute> update(String id, DistributionRouteUpdateRequest request) {
-        return routeRepository.findById(id)
-                .flatMap(existingRoute -> {
-                    existingRoute.setRouteName(request.getRouteName());
-                    existingRoute.setTotalEstimatedDuration(request.getTotalEstimatedDuration());
-                    existingRoute.setResponsibleUserId(request.getResponsibleUserId());
-                    // Si es necesario convertir las zonas del DTO a las zonas de la entidad:
-                    existingRoute.setZones(
-                            request.getZones().stream()
-                                .map(z -> new DistributionRoute.ZoneOrder(
-                                        z.getZoneId(),
-                                        z.getOrder(),
-                                        z.getEstimatedDuration()))
-                                .toList()
-                    );
-                    return routeRepository.save(existingRoute);
-                });
+    public Mono<DistributionRoute> patch(String id, DistributionRouteUpdateRequest request) {
+        return updateFields(id, request.getVersion(), FieldUpdates.create()
+                        .setIfPresent("routeName", request.getRouteName())
+                        .setIfPresent("totalEstimatedDuration", request.getTotalEstimatedDuration())
+                        .setIfPresent("responsibleUserId", request.getResponsibleUserId())
+                        .setIfPresent("zones", toZoneOrders(request.getZones()))
+                        .toMap())
+                .switchIfEmpty(Mono.error(new CustomException(
+                        HttpStatus.NOT_FOUND.value(), "Route not found", "Route with ID " + id + " does not exist")));
+    }
+
+    // No se reintenta: el $inc de versión haría que una repetición ya aplicada cuente dos veces
+    private Mono<DistributionRoute> updateFields(String id, Long expectedVersion, Map<String, Object> fields) {
+        return writePolicy.mapConflicts(routeRepository.updateFields(id, expectedVersion, fields), ENTITY, id)
+                .doOnNext(updated -> cache.evict(id))
+                .doOnNext(updated -> listsChanged());
+    }
+
+    private List<DistributionRoute.ZoneOrder> toZoneOrders(List<DistributionRouteUpdateRequest.ZoneEntry> zones) {
+        if (zones == null) {
+            return null;
+        }
+        return zones.stream()
+                .map(z -> new DistributionRoute.ZoneOrder(
+                        z.getZoneId(),
+                        z.getOrder(),
+                        z.getEstimatedDuration()))
+                .toList();
     }
 
+    // Sin reintento: si la respuesta del primer intento se perdió, el segundo no encontraría el documento
     @Override
     public Mono<Void> delete(String id) {
-        return routeRepository.findById(id)
-                .switchIfEmpty(Mono.error(new CustomException(
-                        HttpStatus.NOT_FOUND.value(), "Route not found", "Cannot delete non-existent route with id " + id)))
-                .flatMap(routeRepository::delete);
+        return routeRepository.removeById(id)
+                .doOnNext(deleted -> cache.evict(id))
+                .doOnNext(deleted -> listsChanged())
+                .flatMap(deleted -> deleted > 0 ? Mono.<Void>empty() : Mono.error(new CustomException(
+                        HttpStatus.NOT_FOUND.value(), "Route not found", "Cannot delete non-existent route with id " + id)));
+    }
+
+    @Override
+    public Mono<Long> deleteAll(String organizationId, String status) {
+        // Nunca entre organizaciones: el estado solo acota dentro de una
+        if (organizationId == null) {
+            return Mono.error(CustomException.badRequest(
+                    "Missing organizationId", "Bulk delete requires organizationId"));
+        }
+        return writePolicy.retryIdempotent(routeRepository.removeMatching(organizationId, status), ENTITY)
+                .doOnNext(deleted -> cache.evictAll())
+                .doOnNext(deleted -> listsChanged())
+                .doOnNext(deleted -> log.info("Deleted {} routes (organization {}, status {})", deleted, organizationId, status));
     }
 
     @Override
@@ -148,12 +276,18 @@ public class DistributionRouteServiceImpl implements DistributionRouteService {
     }
 
     private Mono<DistributionRoute> changeStatus(String id, String status) {
-        return routeRepository.findById(id)
+        return writePolicy.retryIdempotent(routeRepository.transitionStatus(id, null, status), ENTITY)
+                .doOnNext(changed -> cache.evict(id))
+                .doOnNext(changed -> listsChanged())
                 .switchIfEmpty(Mono.error(new CustomException(
-                        HttpStatus.NOT_FOUND.value(), "Route not found", "Cannot change status of non-existent route with id " + id)))
-                .flatMap(route -> {
-                    route.setStatus(status);
-                    return routeRepository.save(route);
-                });
+                        HttpStatus.NOT_FOUND.value(), "Route not found", "Cannot change status of non-existent route with id " + id)));
+    }
+
+    // Tras una escritura local: el JSON ya codificado de los listados deja de valer y, hasta que el
+    // change stream entregue el evento, los listados se sirven sin ETag
+    private void listsChanged() {
+        writes.incrementAndGet();
+        encodedLists.evict(DistributionRoute.class);
+        changeMarkers.touch(DistributionRoute.class);
     }
 }
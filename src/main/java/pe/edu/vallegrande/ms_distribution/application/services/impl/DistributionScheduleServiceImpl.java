@@ -2,15 +2,26 @@ package pe.edu.vallegrande.ms_distribution.application.services.impl;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import pe.edu.vallegrande.ms_distribution.application.cache.ByIdCache;
+import pe.edu.vallegrande.ms_distribution.application.cache.EncodedListCache;
+import pe.edu.vallegrande.ms_distribution.application.cache.SingleFlight;
+import pe.edu.vallegrande.ms_distribution.application.config.PaginationProperties;
+import pe.edu.vallegrande.ms_distribution.application.config.WriteRetryPolicy;
+import pe.edu.vallegrande.ms_distribution.application.services.CodeGeneratorService;
 import pe.edu.vallegrande.ms_distribution.application.services.DistributionScheduleService;
+import pe.edu.vallegrande.ms_distribution.domain.enums.CodeSequence;
 import pe.edu.vallegrande.ms_distribution.domain.enums.Constants;
 import pe.edu.vallegrande.ms_distribution.domain.models.DistributionSchedule;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.CursorPage;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionScheduleCreateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionScheduleUpdateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.DistributionScheduleResponse;
 import pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ChangeMarkers;
 import pe.edu.vallegrande.ms_distribution.infrastructure.repository.DistributionScheduleRepository;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.FieldUpdates;
 
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
@@ -18,51 +29,130 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class DistributionScheduleServiceImpl implements DistributionScheduleService {
 
+    private static final String ENTITY = "Schedule";
+
     private final DistributionScheduleRepository repository;
+    private final CodeGeneratorService codeGenerator;
+    private final WriteRetryPolicy writePolicy;
+    private final PaginationProperties pagination;
+    private final ByIdCache<DistributionSchedule> cache;
+    private final SingleFlight singleFlight;
+    private final EncodedListCache encodedLists;
+    private final ChangeMarkers changeMarkers;
+    // Cuenta las escrituras: un listado no se une a otro en curso que empezó antes de una
+    private final AtomicLong writes = new AtomicLong();
 
     @Override
     public Flux<DistributionSchedule> getAll() {
-        return repository.findAll();
+        return repository.findListing(null);
     }
 
     @Override
     public Flux<DistributionSchedule> getAllActive() {
-        return repository.findAllByStatus(Constants.ACTIVE.name());
+        return repository.findListing(Constants.ACTIVE.name());
     }
 
     @Override
     public Flux<DistributionSchedule> getAllInactive() {
-        return repository.findAllByStatus(Constants.INACTIVE.name());
+        return repository.findListing(Constants.INACTIVE.name());
+    }
+
+    @Override
+    public Mono<List<DistributionSchedule>> getListing(String status) {
+        return Mono.defer(() -> singleFlight.mono("schedules.list", Objects.requireNonNullElse(status, "ALL") + "@" + writes.get(),
+                () -> repository.findListing(status).collectList()));
+    }
+
+    @Override
+    public Flux<DistributionSchedule> getAllActiveFromPrimary() {
+        return repository.findListingFromPrimary(Constants.ACTIVE.name());
+    }
+
+    @Override
+    public Mono<CursorPage<DistributionSchedule>> getPage(String status, String cursor, Integer size, Set<String> fields) {
+        int limit = pagination.resolveSize(size);
+        return Mono.defer(() -> repository.findPage(status, CursorPage.decode(cursor), limit + 1, fields).collectList())
+                .map(schedules -> CursorPage.of(schedules, limit, DistributionSchedule::getId));
+    }
+
+    @Override
+    public Flux<DistributionSchedule> getAllProjected(String status, Set<String> fields) {
+        return repository.findProjected(status, fields);
+    }
+
+    @Override
+    public Mono<Long> countByStatus(String status) {
+        return repository.countWithStatus(status);
+    }
+
+    @Override
+    public Mono<Map<String, Long>> countGroupedByStatus() {
+        return repository.countGroupedByStatus();
     }
 
     @Override
     public Mono<DistributionSchedule> getById(String id) {
-        return repository.findById(id)
+        return cache.get(id, generation -> singleFlight.mono("schedules.by-id", id + "@" + generation, () -> repository.findById(id)))
                 .switchIfEmpty(Mono.error(new CustomException(
                         HttpStatus.NOT_FOUND.value(),
                         "Schedule not found",
                         "No schedule found with id " + id)));
     }
 
-@Override
-public Mono<DistributionScheduleResponse> save(DistributionScheduleCreateRequest request) {
-    return generateNextScheduleCode() // ← usamos el generador
-        .flatMap(generatedCode ->
-            repository.existsByScheduleCode(generatedCode)
-                .flatMap(exists -> {
-                    if (exists) {
-                        return Mono.error(new CustomException(
-                                HttpStatus.BAD_REQUEST.value(),
-                                "Schedule code already exists",
-                                "Schedule code " + generatedCode + " already exists"));
-                    }
+    @Override
+    public Flux<DistributionSchedule> getAllByOrganization(String organizationId, String status) {
+        return status == null
+                ? repository.findAllByOrganizationId(organizationId)
+                : repository.findAllByOrganizationIdAndStatus(organizationId, status);
+    }
+
+    @Override
+    public Mono<Long> countByOrganization(String organizationId, String status) {
+        return status == null
+                ? repository.countByOrganizationId(organizationId)
+                : repository.countByOrganizationIdAndStatus(organizationId, status);
+    }
 
+    @Override
+    public Mono<DistributionSchedule> getByOrganization(String organizationId, String id) {
+        return repository.findByIdAndOrganizationId(id, organizationId)
+                .switchIfEmpty(Mono.error(new CustomException(
+                        HttpStatus.NOT_FOUND.value(), "Schedule not found", "Schedule with ID " + id + " does not exist in organization " + organizationId)));
+    }
+
+    @Override
+    public Mono<DistributionSchedule> getByOrganizationAndCode(String organizationId, String code) {
+        return repository.findByOrganizationIdAndScheduleCode(organizationId, code)
+                .switchIfEmpty(Mono.error(new CustomException(
+                        HttpStatus.NOT_FOUND.value(), "Schedule not found", "Schedule with code " + code + " does not exist in organization " + organizationId)));
+    }
+
+    @Override
+    public Mono<CursorPage<DistributionSchedule>> searchByCode(String organizationId, String prefix, String cursor, Integer size) {
+        if (organizationId == null || organizationId.isBlank() || prefix == null || prefix.isBlank()) {
+            return Mono.error(CustomException.badRequest(
+                    "Missing search term", "Search requires an organizationId and a non-empty prefix"));
+        }
+        int limit = pagination.resolveSize(size);
+        return Mono.defer(() -> repository.findByCodePrefix(organizationId, prefix, CursorPage.decode(cursor), limit + 1).collectList())
+                .map(schedules -> CursorPage.of(schedules, limit, DistributionSchedule::getScheduleCode));
+    }
+
+    @Override
+    public Mono<DistributionScheduleResponse> save(DistributionScheduleCreateRequest request) {
+        return codeGenerator.nextCode(CodeSequence.SCHEDULE, request.getOrganizationId())
+                .flatMap(generatedCode -> {
                     DistributionSchedule schedule = DistributionSchedule.builder()
                             .organizationId(request.getOrganizationId())
                             .scheduleCode(generatedCode) // ← usamos el código generado
@@ -77,6 +167,11 @@ public Mono<DistributionScheduleResponse> save(DistributionScheduleCreateRequest
                             .build();
 
                     return repository.save(schedule)
+                            .doOnNext(saved -> listsChanged())
+                            .onErrorMap(DuplicateKeyException.class, e -> new CustomException(
+                                    HttpStatus.BAD_REQUEST.value(),
+                                    "Schedule code already exists",
+                                    "Schedule code " + generatedCode + " already exists"))
                             .map(saved -> DistributionScheduleResponse.builder()
                                     .id(saved.getId())
                                     .organizationId(saved.getOrganizationId())
@@ -90,48 +185,65 @@ public Mono<DistributionScheduleResponse> save(DistributionScheduleCreateRequest
                                     .status(saved.getStatus())
                                     .createdAt(saved.getCreatedAt())
                                     .build());
-                })
-        );
-}
-
-
-    private static final String SCHEDULE_PREFIX = "HOR";
-
-private Mono<String> generateNextScheduleCode() {
-    return repository.findTopByOrderByScheduleCodeDesc()
-            .map(last -> {
-                String lastCode = last.getScheduleCode(); // ej. HOR007
-                int number = 0;
-                try {
-                    number = Integer.parseInt(lastCode.replace(SCHEDULE_PREFIX, ""));
-                } catch (NumberFormatException ignored) {}
-                return String.format(SCHEDULE_PREFIX + "%03d", number + 1);
-            })
-            .defaultIfEmpty(SCHEDULE_PREFIX + "001");
-}
-
+                });
+    }
 
     @Override
     public Mono<DistributionSchedule> update(String id, DistributionScheduleUpdateRequest request) {
-        return repository.findById(id)
-                .flatMap(existing -> {
-                    existing.setRouteId(request.getRouteId());
-                    existing.setDayOfWeek(request.getDayOfWeek());
-                    existing.setStartTime(request.getStartTime());
-                    existing.setEndTime(request.getEndTime());
-                    existing.setEstimatedDuration(request.getEstimatedDuration());
-                    return repository.save(existing);
-                });
+        return updateFields(id, request.getVersion(), FieldUpdates.create()
+                .set("routeId", request.getRouteId())
+                .set("dayOfWeek", request.getDayOfWeek())
+                .set("startTime", request.getStartTime())
+                .set("endTime", request.getEndTime())
+                .set("estimatedDuration", request.getEstimatedDuration())
+                .toMap());
     }
 
     @Override
-    public Mono<Void> delete(String id) {
-        return repository.findById(id)
+    public Mono<DistributionSchedule> patch(String id, DistributionScheduleUpdateRequest request) {
+        return updateFields(id, request.getVersion(), FieldUpdates.create()
+                        .setIfPresent("routeId", request.getRouteId())
+                        .setIfPresent("dayOfWeek", request.getDayOfWeek())
+                        .setIfPresent("startTime", request.getStartTime())
+                        .setIfPresent("endTime", request.getEndTime())
+                        .setIfPresent("estimatedDuration", request.getEstimatedDuration())
+                        .toMap())
                 .switchIfEmpty(Mono.error(new CustomException(
                         HttpStatus.NOT_FOUND.value(),
                         "Schedule not found",
-                        "Cannot delete schedule with id " + id)))
-                .flatMap(repository::delete);
+                        "No schedule found with id " + id)));
+    }
+
+    // No se reintenta: el $inc de versión haría que una repetición ya aplicada cuente dos veces
+    private Mono<DistributionSchedule> updateFields(String id, Long expectedVersion, Map<String, Object> fields) {
+        return writePolicy.mapConflicts(repository.updateFields(id, expectedVersion, fields), ENTITY, id)
+                .doOnNext(updated -> cache.evict(id))
+                .doOnNext(updated -> listsChanged());
+    }
+
+    // Sin reintento: si la respuesta del primer intento se perdió, el segundo no encontraría el documento
+    @Override
+    public Mono<Void> delete(String id) {
+        return repository.removeById(id)
+                .doOnNext(deleted -> cache.evict(id))
+                .doOnNext(deleted -> listsChanged())
+                .flatMap(deleted -> deleted > 0 ? Mono.<Void>empty() : Mono.error(new CustomException(
+                        HttpStatus.NOT_FOUND.value(),
+                        "Schedule not found",
+                        "Cannot delete schedule with id " + id)));
+    }
+
+    @Override
+    public Mono<Long> deleteAll(String organizationId, String status) {
+        // Nunca entre organizaciones: el estado solo acota dentro de una
+        if (organizationId == null) {
+            return Mono.error(CustomException.badRequest(
+                    "Missing organizationId", "Bulk delete requires organizationId"));
+        }
+        return writePolicy.retryIdempotent(repository.removeMatching(organizationId, status), ENTITY)
+                .doOnNext(deleted -> cache.evictAll())
+                .doOnNext(deleted -> listsChanged())
+                .doOnNext(deleted -> log.info("Deleted {} schedules (organization {}, status {})", deleted, organizationId, status));
     }
 
     @Override
@@ -145,14 +257,20 @@ private Mono<String> generateNextScheduleCode() {
     }
 
     private Mono<DistributionSchedule> changeStatus(String id, String status) {
-        return repository.findById(id)
+        return writePolicy.retryIdempotent(repository.transitionStatus(id, null, status), ENTITY)
+                .doOnNext(changed -> cache.evict(id))
+                .doOnNext(changed -> listsChanged())
                 .switchIfEmpty(Mono.error(new CustomException(
                         HttpStatus.NOT_FOUND.value(),
                         "Schedule not found",
-                        "Cannot change status of schedule with id " + id)))
-                .flatMap(schedule -> {
-                    schedule.setStatus(status);
-                    return repository.save(schedule);
-                });
+                        "Cannot change status of schedule with id " + id)));
+    }
+
+    // Tras una escritura local: el JSON ya codificado de los listados deja de valer y, hasta que el
+    // change stream entregue el evento, los listados se sirven sin ETag
+    private void listsChanged() {
+        writes.incrementAndGet();
+        encodedLists.evict(DistributionSchedule.class);
+        changeMarkers.touch(DistributionSchedule.class);
     }
 }
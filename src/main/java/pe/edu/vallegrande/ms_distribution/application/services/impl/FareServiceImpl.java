@@ -2,127 +2,176 @@ package pe.edu.vallegrande.ms_distribution.application.services.impl;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import pe.edu.vallegrande.ms_distribution.application.cache.EncodedListCache;
+import pe.edu.vallegrande.ms_distribution.application.cache.FareCache;
+import pe.edu.vallegrande.ms_distribution.application.cache.SingleFlight;
+import pe.edu.vallegrande.ms_distribution.application.config.PaginationProperties;
+import pe.edu.vallegrande.ms_distribution.application.config.WriteRetryPolicy;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import pe.edu.vallegrande.ms_distribution.application.services.CodeGeneratorService;
 import pe.edu.vallegrande.ms_distribution.application.services.FareService;
+import pe.edu.vallegrande.ms_distribution.domain.enums.CodeSequence;
 import pe.edu.vallegrande.ms_distribution.domain.enums.Constants;
 import pe.edu.vallegrande.ms_distribution.domain.models.Fare;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.CursorPage;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.FareCreateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.FareUpdateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.FareResponse;
 import pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ChangeMarkers;
 import pe.edu.vallegrande.ms_distribution.infrastructure.repository.FareRepository;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.FieldUpdates;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Instant;
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class FareServiceImpl implements FareService {
 
+    private static final String ENTITY = "Fare";
+
     private final FareRepository fareRepository;
-    private static final String FARE_PREFIX = "TAR";
-    private static final String INITIAL_FARE_CODE = FARE_PREFIX + "001";
+    private final CodeGeneratorService codeGenerator;
+    private final WriteRetryPolicy writePolicy;
+    private final PaginationProperties pagination;
+    private final FareCache cache;
+    private final SingleFlight singleFlight;
+    private final EncodedListCache encodedLists;
+    private final ChangeMarkers changeMarkers;
+    // Cuenta las escrituras: un listado no se une a otro en curso que empezó antes de una
+    private final AtomicLong writes = new AtomicLong();
 
     @Override
     public Flux<Fare> getAllF() {
-        return fareRepository.findAll()
+        return fareRepository.findListing(null)
                 .doOnNext(f -> log.debug("Fare retrieved: {}", f))
                 .doOnError(error -> log.error("Error retrieving all fares: {}", error.getMessage()));
     }
 
     @Override
     public Flux<Fare> getAllActiveF() {
-        return fareRepository.findAllByStatus(Constants.ACTIVE.name())
+        // La caché se rellena desde el primario; las consultas derivadas por organización ya lo hacen
+        return cache.activeList(null, generation -> singleFlight.mono("fares.list", Constants.ACTIVE.name() + "@" + generation,
+                        () -> fareRepository.findListingFromPrimary(Constants.ACTIVE.name()).collectList()))
                 .doOnError(error -> log.error("Error retrieving active fares: {}", error.getMessage()));
     }
 
     @Override
     public Flux<Fare> getAllInactiveF() {
-        return fareRepository.findAllByStatus(Constants.INACTIVE.name())
+        return fareRepository.findListing(Constants.INACTIVE.name())
                 .doOnError(error -> log.error("Error retrieving inactive fares: {}", error.getMessage()));
     }
 
+    @Override
+    public Mono<List<Fare>> getListingF(String status) {
+        return Mono.defer(() -> singleFlight.mono("fares.list", Objects.requireNonNullElse(status, "ALL") + "@" + writes.get(),
+                        () -> fareRepository.findListing(status).collectList()))
+                .doOnError(error -> log.error("Error retrieving fares: {}", error.getMessage()));
+    }
+
+    @Override
+    public Mono<CursorPage<Fare>> getPageF(String status, String cursor, Integer size, Set<String> fields) {
+        int limit = pagination.resolveSize(size);
+        return Mono.defer(() -> fareRepository.findPage(status, CursorPage.decode(cursor), limit + 1, fields).collectList())
+                .map(fares -> CursorPage.of(fares, limit, Fare::getId))
+                .doOnError(error -> log.error("Error retrieving fare page: {}", error.getMessage()));
+    }
+
+    @Override
+    public Flux<Fare> getAllProjectedF(String status, Set<String> fields) {
+        return fareRepository.findProjected(status, fields);
+    }
+
+    @Override
+    public Mono<Long> countByStatusF(String status) {
+        return fareRepository.countWithStatus(status);
+    }
+
+    @Override
+    public Mono<Map<String, Long>> countGroupedByStatusF() {
+        return fareRepository.countGroupedByStatus();
+    }
+
     @Override
     public Mono<Fare> getByIdFMono(String id) {
         validateId(id);
-        return fareRepository.findById(id)
+        return cache.byId(id, generation -> singleFlight.mono("fares.by-id", id + "@" + generation, () -> fareRepository.findById(id)))
                 .switchIfEmpty(Mono.error(createFareNotFoundError(id)))
                 .doOnSuccess(fare -> log.debug("Fare found with id: {}", id))
                 .doOnError(error -> log.error("Error finding fare with id {}: {}", id, error.getMessage()));
     }
 
     @Override
-    public Mono<FareResponse> saveF(FareCreateRequest request) {
-        validateCreateRequest(request);
-        
-        return generateNextFareCode()
-                .flatMap(code -> validateFareCodeNotExists(code)
-                        .then(createAndSaveFare(request, code)))
-                .doOnSuccess(response -> log.info("Fare created successfully with code: {}", response.getFareCode()))
-                .doOnError(error -> log.error("Error creating fare: {}", error.getMessage()));
+    public Flux<Fare> getAllByOrganizationF(String organizationId, String status) {
+        if (status == null) {
+            return fareRepository.findAllByOrganizationId(organizationId);
+        }
+        // Las activas de una organización se leen en cada cálculo de facturación
+        return Constants.ACTIVE.name().equals(status)
+                ? cache.activeList(organizationId, generation -> singleFlight.mono("fares.by-organization", organizationId + "|" + status + "@" + generation,
+                        () -> fareRepository.findAllByOrganizationIdAndStatus(organizationId, status).collectList()))
+                : fareRepository.findAllByOrganizationIdAndStatus(organizationId, status);
     }
 
-    private Mono<String> generateNextFareCode() {
-        return fareRepository.findTopByOrderByFareCodeDesc()
-                .map(this::extractNextCodeFromLastFare)
-                .defaultIfEmpty(INITIAL_FARE_CODE)
-                .doOnNext(code -> log.debug("Generated fare code: {}", code));
+    @Override
+    public Mono<Long> countByOrganizationF(String organizationId, String status) {
+        return status == null
+                ? fareRepository.countByOrganizationId(organizationId)
+                : fareRepository.countByOrganizationIdAndStatus(organizationId, status);
     }
 
-    private String extractNextCodeFromLastFare(Fare lastFare) {
-        try {
-            String lastCode = lastFare.getFareCode();
-            if (lastCode == null || !lastCode.startsWith(FARE_PREFIX)) {
-                log.warn("Invalid fare code format: {}, using default", lastCode);
-                return INITIAL_FARE_CODE;
-            }
-            
-            String numericPart = lastCode.replace(FARE_PREFIX, "");
-            int number = parseNumericCode(numericPart);
-            return String.format(FARE_PREFIX + "%03d", number + 1);
-        } catch (Exception e) {
-            log.warn("Error extracting code from last fare, using default: {}", e.getMessage());
-            return INITIAL_FARE_CODE;
-        }
+    @Override
+    public Mono<Fare> getByOrganizationF(String organizationId, String id) {
+        return fareRepository.findByIdAndOrganizationId(id, organizationId)
+                .switchIfEmpty(Mono.error(new CustomException(
+                        HttpStatus.NOT_FOUND.value(), "Fare not found", "Fare with ID " + id + " does not exist in organization " + organizationId)));
     }
 
-    private int parseNumericCode(String numericPart) {
-        if (numericPart == null || numericPart.trim().isEmpty()) {
-            return 0;
-        }
-        
-        if (!numericPart.matches("\\d+")) {
-            log.warn("Invalid numeric code format: {}, using 0", numericPart);
-            return 0;
-        }
-        
-        try {
-            return Integer.parseInt(numericPart);
-        } catch (NumberFormatException e) {
-            log.warn("Cannot parse numeric code: {}, using 0", numericPart);
-            return 0;
+    @Override
+    public Mono<Fare> getByOrganizationAndCodeF(String organizationId, String code) {
+        return fareRepository.findByOrganizationIdAndFareCode(organizationId, code)
+                .switchIfEmpty(Mono.error(new CustomException(
+                        HttpStatus.NOT_FOUND.value(), "Fare not found", "Fare with code " + code + " does not exist in organization " + organizationId)));
+    }
+
+    @Override
+    public Mono<CursorPage<Fare>> searchByCodeF(String organizationId, String prefix, String cursor, Integer size) {
+        if (organizationId == null || organizationId.isBlank() || prefix == null || prefix.isBlank()) {
+            return Mono.error(CustomException.badRequest(
+                    "Missing search term", "Search requires an organizationId and a non-empty prefix"));
         }
+        int limit = pagination.resolveSize(size);
+        return Mono.defer(() -> fareRepository.findByCodePrefix(organizationId, prefix, CursorPage.decode(cursor), limit + 1).collectList())
+                .map(fares -> CursorPage.of(fares, limit, Fare::getFareCode));
     }
 
-    private Mono<Void> validateFareCodeNotExists(String fareCode) {
-        return fareRepository.existsByFareCode(fareCode)
-                .flatMap(exists -> {
-                    if (exists) {
-                        log.warn("Attempt to create fare with existing code: {}", fareCode);
-                        return Mono.error(createFareCodeExistsError(fareCode));
-                    }
-                    return Mono.empty();
-                });
+    @Override
+    public Mono<FareResponse> saveF(FareCreateRequest request) {
+        validateCreateRequest(request);
+        
+        return codeGenerator.nextCode(CodeSequence.FARE, request.getOrganizationId())
+                .flatMap(code -> createAndSaveFare(request, code))
+                .doOnNext(response -> cache.evictActive(response.getOrganizationId()))
+                .doOnNext(response -> listsChanged())
+                .doOnSuccess(response -> log.info("Fare created successfully with code: {}", response.getFareCode()))
+                .doOnError(error -> log.error("Error creating fare: {}", error.getMessage()));
     }
 
     private Mono<FareResponse> createAndSaveFare(FareCreateRequest request, String fareCode) {
         Fare fare = buildFareFromRequest(request, fareCode);
         return fareRepository.save(fare)
+                .onErrorMap(DuplicateKeyException.class, e -> createFareCodeExistsError(fareCode))
                 .map(this::mapToFareResponse)
                 .doOnSuccess(response -> log.debug("Fare saved with id: {}", response.getId()));
     }
@@ -157,39 +206,51 @@ public class FareServiceImpl implements FareService {
         validateId(id);
         validateUpdateRequest(request);
         
-        return fareRepository.findById(id)
+        // request.getDescription() is ignored because Fare model has no description field
+        Mono<Fare> write = fareRepository.updateFields(id, request.getVersion(), FieldUpdates.create()
+                .setIfPresent("fareCode", request.getFareCode())
+                .setIfPresent("fareAmount", request.getPrice() != null ? BigDecimal.valueOf(request.getPrice()) : null)
+                .toMap());
+        // No se reintenta: el $inc de versión haría que una repetición ya aplicada cuente dos veces
+        return writePolicy.mapConflicts(write, ENTITY, id)
+                .doOnNext(cache::evict)
+                .doOnNext(fare -> listsChanged())
                 .switchIfEmpty(Mono.error(createFareNotFoundError(id)))
-                .flatMap(existing -> updateFareFields(existing, request))
-                .flatMap(fareRepository::save)
+                .onErrorMap(DuplicateKeyException.class, e -> createFareCodeExistsError(request.getFareCode()))
                 .doOnSuccess(updated -> log.info("Fare updated successfully: {}", id))
                 .doOnError(error -> log.error("Error updating fare {}: {}", id, error.getMessage()));
     }
 
-    private Mono<Fare> updateFareFields(Fare existing, FareUpdateRequest request) {
-        if (request.getFareCode() != null) {
-            existing.setFareCode(request.getFareCode());
-        }
-        if (request.getPrice() != null) {
-            existing.setFareAmount(BigDecimal.valueOf(request.getPrice()));
-        }
-        // request.getDescription() is ignored because Fare model has no description field
-        return Mono.just(existing);
-    }
-
+    // Sin reintento: si la respuesta del primer intento se perdió, el segundo no encontraría el documento
     @Override
     public Mono<Void> deleteF(String id) {
         validateId(id);
         
-        return fareRepository.findById(id)
-                .switchIfEmpty(Mono.error(createFareNotFoundError(id, "Cannot delete non-existent fare")))
-                .flatMap(fare -> {
-                    log.info("Deleting fare: {}", id);
-                    return fareRepository.delete(fare);
-                })
+        log.info("Deleting fare: {}", id);
+        return fareRepository.removeById(id)
+                .doOnNext(deleted -> cache.evictId(id))
+                .doOnNext(deleted -> listsChanged())
+                .flatMap(deleted -> deleted > 0
+                        ? Mono.<Void>empty()
+                        : Mono.error(createFareNotFoundError(id, "Cannot delete non-existent fare")))
                 .doOnSuccess(v -> log.info("Fare deleted successfully: {}", id))
                 .doOnError(error -> log.error("Error deleting fare {}: {}", id, error.getMessage()));
     }
 
+    @Override
+    public Mono<Long> deleteAllF(String organizationId, String status) {
+        // Nunca entre organizaciones: el estado solo acota dentro de una
+        if (organizationId == null) {
+            return Mono.error(CustomException.badRequest(
+                    "Missing organizationId", "Bulk delete requires organizationId"));
+        }
+        return writePolicy.retryIdempotent(fareRepository.removeMatching(organizationId, status), ENTITY)
+                .doOnNext(deleted -> cache.evictAll())
+                .doOnNext(deleted -> listsChanged())
+                .doOnNext(deleted -> log.info("Deleted {} fares (organization {}, status {})", deleted, organizationId, status))
+                .doOnError(error -> log.error("Error deleting fares: {}", error.getMessage()));
+    }
+
     @Override
     public Mono<Fare> activateF(String id) {
         return changeStatus(id, Constants.ACTIVE.name());
@@ -203,21 +264,11 @@ public class FareServiceImpl implements FareService {
     private Mono<Fare> changeStatus(String id, String newStatus) {
         validateId(id);
         
-        return fareRepository.findById(id)
+        return writePolicy.retryIdempotent(fareRepository.transitionStatus(id, null, newStatus), ENTITY)
                 .switchIfEmpty(Mono.error(CustomException.notFound("Fare", id)))
-                .flatMap(fare -> {
-                    String oldStatus = fare.getStatus();
-                    if (Objects.equals(oldStatus, newStatus)) {
-                        log.debug("Fare {} already has status {}", id, newStatus);
-                        return Mono.just(fare);
-                    }
-                    
-                    fare.setStatus(newStatus);
-                    log.info("Changing fare {} status from {} to {}", id, oldStatus, newStatus);
-                    
-                    return fareRepository.save(fare)
-                            .doOnSuccess(saved -> log.debug("Status change saved for fare: {}", id));
-                })
+                .doOnNext(cache::evict)
+                .doOnNext(fare -> listsChanged())
+                .doOnNext(fare -> log.info("Fare {} status set to {} (version {})", id, newStatus, fare.getVersion()))
                 .doOnError(error -> log.error("Error changing status for fare {}: {}", id, error.getMessage()));
     }
 
@@ -273,4 +324,12 @@ public class FareServiceImpl implements FareService {
                 "The fare code " + fareCode + " is already registered"
         );
     }
-}
\ No newline at end of file
+
+    // Tras una escritura local: el JSON ya codificado de los listados deja de valer y, hasta que el
+    // change stream entregue el evento, los listados se sirven sin ETag
+    private void listsChanged() {
+        writes.incrementAndGet();
+        encodedLists.evict(Fare.class);
+        changeMarkers.touch(Fare.class);
+    }
+}
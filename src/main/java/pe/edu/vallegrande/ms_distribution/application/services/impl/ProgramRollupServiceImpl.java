@@ -0,0 +1,139 @@
+package pe.edu.vallegrande.ms_distribution.application.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import pe.edu.vallegrande.ms_distribution.application.config.RollupProperties;
+import pe.edu.vallegrande.ms_distribution.application.services.ProgramRollupService;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionProgram;
+import pe.edu.vallegrande.ms_distribution.domain.models.ProgramDailyRollup;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.ProgramDateRangeRequest;
+import pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.JobLeases;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.Change;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.ProgramRollupRepository;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+
+/**
+ * Resúmenes diarios por organización y zona. Cada escritura de un programa resta del día/estado
+ * anterior y suma al nuevo; un fallo aquí solo se registra, porque no debe deshacer la escritura
+ * del programa. La reconstrucción recalcula desde los programas y corrige esos desvíos, con un
+ * límite: un incremento que llega mientras corre puede quedar pisado por el $merge (si se aplicó
+ * antes de que escribiera ese día) o contarse dos veces (si la agregación ya vio el programa y el
+ * incremento se aplica después). Por eso conviene lanzarla en horas sin escrituras, y nunca corren
+ * dos a la vez sobre la misma organización: la siguiente ejecución sin escrituras en curso deja
+ * los resúmenes exactos.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ProgramRollupServiceImpl implements ProgramRollupService {
+
+    static final String REBUILD_JOB = "rollups.rebuild";
+
+    private final ProgramRollupRepository rollupRepository;
+    private final JobLeases leases;
+    private final RollupProperties properties;
+
+    @Override
+    public Mono<Void> recordCreated(DistributionProgram program) {
+        return apply(program, 1);
+    }
+
+    @Override
+    public Mono<Void> recordChange(Change<DistributionProgram> change) {
+        DistributionProgram before = change.before();
+        DistributionProgram after = change.after();
+        if (sameBucket(before, after) && Objects.equals(before.getStatus(), after.getStatus())) {
+            return Mono.empty();
+        }
+        return Mono.when(apply(before, -1), apply(after, 1));
+    }
+
+    @Override
+    public Mono<Void> recordRemoved(DistributionProgram program) {
+        return apply(program, -1);
+    }
+
+    @Override
+    public Mono<Long> rebuild(String organizationId) {
+        if (organizationId == null) {
+            return Mono.error(CustomException.badRequest("Missing filter", "Rollup rebuild requires an organizationId"));
+        }
+        String job = REBUILD_JOB + ":" + organizationId;
+        return leases.tryAcquire(job, properties.getRebuildLease())
+                .flatMap(acquired -> {
+                    if (!acquired) {
+                        return Mono.error(CustomException.conflict("Rebuild in progress",
+                                "Rollups of organization " + organizationId + " are already being rebuilt"));
+                    }
+                    return rollupRepository.rebuild(organizationId)
+                            .then(rollupRepository.countByOrganizationId(organizationId))
+                            .doOnNext(count -> log.info("Rebuilt {} program rollups (organization {})", count, organizationId))
+                            .flatMap(count -> leases.release(job).thenReturn(count))
+                            .onErrorResume(error -> leases.release(job).then(Mono.error(error)));
+                });
+    }
+
+    // Reconciliación completa; se desactiva con app.rollups.rebuild-cron=-. El cron salta en todas
+    // las réplicas a la vez y solo la que obtiene la reserva reconstruye
+    @Scheduled(cron = "${app.rollups.rebuild-cron:-}")
+    public void scheduledRebuild() {
+        rebuildAll().subscribe(
+                count -> { },
+                error -> log.error("Scheduled rollup rebuild failed: {}", error.getMessage()));
+    }
+
+    Mono<Long> rebuildAll() {
+        return leases.tryAcquire(REBUILD_JOB, properties.getRebuildLease())
+                .flatMap(acquired -> {
+                    if (!acquired) {
+                        log.info("Scheduled rollup rebuild skipped: another replica holds the lease");
+                        return Mono.<Long>empty();
+                    }
+                    return rollupRepository.rebuild(null)
+                            .then(rollupRepository.count())
+                            .doOnNext(count -> log.info("Rebuilt {} program rollups (all organizations)", count));
+                });
+    }
+
+    @Override
+    public Flux<ProgramDailyRollup> getRollups(ProgramDateRangeRequest range) {
+        return Flux.defer(() -> {
+            if (range.getOrganizationId() == null) {
+                return Flux.error(CustomException.badRequest("Missing filter", "Rollups require an organizationId"));
+            }
+            if (range.getFrom() == null || range.getTo() == null || range.getFrom().isAfter(range.getTo())) {
+                return Flux.error(CustomException.badRequest("Invalid date range", "from and to are required and from must not be after to"));
+            }
+            return range.getZoneId() == null
+                    ? rollupRepository.findRange(range.getOrganizationId(), range.getFrom(), range.getTo())
+                    : rollupRepository.findRangeByZone(range.getOrganizationId(), range.getZoneId(), range.getFrom(), range.getTo());
+        });
+    }
+
+    // Un programa sin fecha no pertenece a ningún día
+    private Mono<Void> apply(DistributionProgram program, long delta) {
+        if (program.getProgramDate() == null) {
+            return Mono.empty();
+        }
+        return rollupRepository.increment(program.getOrganizationId(), program.getZoneId(), program.getProgramDate(),
+                        program.getStatus(), delta)
+                .onErrorResume(error -> {
+                    log.warn("Could not update rollup for program {} ({}): {}", program.getId(), delta, error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private boolean sameBucket(DistributionProgram before, DistributionProgram after) {
+        return Objects.equals(before.getOrganizationId(), after.getOrganizationId())
+                && Objects.equals(before.getZoneId(), after.getZoneId())
+                && Objects.equals(before.getProgramDate(), after.getProgramDate());
+    }
+}
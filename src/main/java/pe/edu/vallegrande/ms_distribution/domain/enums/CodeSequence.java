@@ -0,0 +1,25 @@
+package pe.edu.vallegrande.ms_distribution.domain.enums;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Secuencias de códigos de negocio (PROG001, RUT001, HOR001, TAR001)
+ * junto con la colección y el campo donde se almacenan.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum CodeSequence {
+    PROGRAM("PROG", "programs", "programCode"),
+    ROUTE("RUT", "routes", "routeCode"),
+    SCHEDULE("HOR", "schedules", "scheduleCode"),
+    FARE("TAR", "fare", "fareCode");
+
+    private final String prefix;
+    private final String collection;
+    private final String codeField;
+
+    public String format(long value) {
+        return String.format("%s%03d", prefix, value);
+    }
+}
@@ -0,0 +1,44 @@
+package pe.edu.vallegrande.ms_distribution.domain.enums;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Ciclo de vida de un programa de distribución:
+ * PLANNED -> IN_PROGRESS | CANCELLED, IN_PROGRESS -> COMPLETED | CANCELLED.
+ * ACTIVE/INACTIVE (activate/deactivate) quedan fuera de esta tabla: son un interruptor sin
+ * restricciones de origen.
+ */
+public enum ProgramStatus {
+    PLANNED, IN_PROGRESS, COMPLETED, CANCELLED;
+
+    public Set<ProgramStatus> nextStatuses() {
+        return switch (this) {
+            case PLANNED -> EnumSet.of(IN_PROGRESS, CANCELLED);
+            case IN_PROGRESS -> EnumSet.of(COMPLETED, CANCELLED);
+            case COMPLETED, CANCELLED -> EnumSet.noneOf(ProgramStatus.class);
+        };
+    }
+
+    /**
+     * Estados desde los que se puede pasar a este.
+     */
+    public List<String> allowedSources() {
+        return Arrays.stream(values())
+                .filter(from -> from.nextStatuses().contains(this))
+                .map(Enum::name)
+                .toList();
+    }
+
+    /**
+     * Estado con ese nombre; vacío si no pertenece al ciclo de vida.
+     */
+    public static Optional<ProgramStatus> of(String name) {
+        return Arrays.stream(values())
+                .filter(status -> status.name().equals(name))
+                .findFirst();
+    }
+}
@@ -2,7 +2,11 @@ package pe.edu.vallegrande.ms_distribution.domain.models;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.TextScore;
 
 import java.time.Instant;
 import java.time.LocalDate;
@@ -12,6 +16,12 @@ import java.time.LocalDate;
 @AllArgsConstructor
 @Builder
 @Document(collection = "programs")
+@CompoundIndexes({
+    @CompoundIndex(name = "uk_programs_org_code", def = "{'organizationId': 1, 'programCode': 1}", unique = true),
+    @CompoundIndex(name = "idx_programs_org_status", def = "{'organizationId': 1, 'status': 1}"),
+    @CompoundIndex(name = "idx_programs_status_id", def = "{'status': 1, '_id': 1}"),
+    @CompoundIndex(name = "idx_programs_date_org", def = "{'programDate': 1, 'organizationId': 1}")
+})
 public class DistributionProgram {
 
     @Id
@@ -33,4 +43,10 @@ public class DistributionProgram {
     private String observations;
 
     private Instant createdAt;
+
+    @Version
+    private Long version;
+
+    @TextScore
+    private Double score; // relevancia en búsquedas de texto; no se persiste
 }
@@ -1,17 +1,27 @@
 package pe.edu.vallegrande.ms_distribution.domain.models;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
 import java.util.List;
 
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 @Document(collection = "routes")
+@CompoundIndexes({
+    @CompoundIndex(name = "uk_routes_org_code", def = "{'organizationId': 1, 'routeCode': 1}", unique = true),
+    @CompoundIndex(name = "idx_routes_org_status", def = "{'organizationId': 1, 'status': 1}"),
+    @CompoundIndex(name = "idx_routes_status_id", def = "{'status': 1, '_id': 1}")
+})
 public class DistributionRoute {
 
     @Id
@@ -31,6 +41,9 @@ public class DistributionRoute {
     private String status;
     private Instant createdAt;
 
+    @Version
+    private Long version;
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
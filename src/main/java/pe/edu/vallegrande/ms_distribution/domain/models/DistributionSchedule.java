@@ -1,17 +1,27 @@
 package pe.edu.vallegrande.ms_distribution.domain.models;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
 import java.util.List;
 
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 @Document(collection = "schedules")
+@CompoundIndexes({
+    @CompoundIndex(name = "uk_schedules_org_code", def = "{'organizationId': 1, 'scheduleCode': 1}", unique = true),
+    @CompoundIndex(name = "idx_schedules_org_status", def = "{'organizationId': 1, 'status': 1}"),
+    @CompoundIndex(name = "idx_schedules_status_id", def = "{'status': 1, '_id': 1}")
+})
 public class DistributionSchedule {
 
     @Id
@@ -33,4 +43,7 @@ public class DistributionSchedule {
     private String status;
     private Instant createdAt;
     private Instant updatedAt;
+
+    @Version
+    private Long version;
 }
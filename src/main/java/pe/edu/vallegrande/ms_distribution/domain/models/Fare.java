@@ -1,17 +1,27 @@
 package pe.edu.vallegrande.ms_distribution.domain.models;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder 
 @Document(collection = "fare")
+@CompoundIndexes({
+    @CompoundIndex(name = "uk_fare_org_code", def = "{'organizationId': 1, 'fareCode': 1}", unique = true),
+    @CompoundIndex(name = "idx_fare_org_status", def = "{'organizationId': 1, 'status': 1}"),
+    @CompoundIndex(name = "idx_fare_status_id", def = "{'status': 1, '_id': 1}")
+})
 public class Fare {
 
     @Id
@@ -27,6 +37,9 @@ public class Fare {
     private String status;
     private Instant createdAt;
 
+    @Version
+    private Long version;
+
     public void setPrice(Double price) {
         throw new UnsupportedOperationException("Unimplemented method 'setPrice'");
     }
@@ -0,0 +1,38 @@
+package pe.edu.vallegrande.ms_distribution.domain.models;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Resumen diario de programas por organización y zona. El _id es la clave compuesta
+ * organizationId|zoneId|fecha, así cada escritura de un programa toca un único documento.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "program_rollups")
+@CompoundIndex(name = "idx_program_rollups_org_date", def = "{'organizationId': 1, 'date': 1}")
+public class ProgramDailyRollup {
+
+    public static final String UNKNOWN_STATUS = "UNKNOWN";
+
+    @Id
+    private String id;
+    private String organizationId;
+    private String zoneId;
+    private LocalDate date;
+    private long total;
+    private Map<String, Long> statusCounts; // PLANNED, IN_PROGRESS, ... -> número de programas
+    private Instant updatedAt;
+
+    public static String key(String organizationId, String zoneId, LocalDate date) {
+        return String.join("|", organizationId != null ? organizationId : "", zoneId != null ? zoneId : "", date.toString());
+    }
+}
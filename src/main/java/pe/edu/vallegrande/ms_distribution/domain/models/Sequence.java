@@ -0,0 +1,30 @@
+package pe.edu.vallegrande.ms_distribution.domain.models;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Contador por organización y prefijo. El _id es la clave compuesta
+ * organizationId:prefix, por lo que el índice único de _id respalda la secuencia.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "counters")
+public class Sequence {
+
+    @Id
+    private String id;
+    private String organizationId;
+    private String prefix;
+    private long value;
+    private Instant updatedAt;
+
+    public static String key(String organizationId, String prefix) {
+        return organizationId + ":" + prefix;
+    }
+}
@@ -0,0 +1,51 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Página de un listado ordenado (por _id, código o relevancia). nextCursor es opaco para el cliente y es nulo en la última página.
+ */
+@Data
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    private List<T> items;
+    private String nextCursor;
+
+    /**
+     * Recibe hasta size + 1 elementos: si sobra uno hay página siguiente y el cursor
+     * apunta al último elemento entregado.
+     */
+    public static <T> CursorPage<T> of(List<T> fetched, int size, Function<T, String> idOf) {
+        if (fetched.size() <= size) {
+            return new CursorPage<>(fetched, null);
+        }
+        List<T> items = List.copyOf(fetched.subList(0, size));
+        return new CursorPage<>(items, encode(idOf.apply(items.get(size - 1))));
+    }
+
+    public static String encode(String id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Devuelve la posición (normalmente el _id) a partir de la cual continuar; null si no hay cursor (primera página).
+     */
+    public static String decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw CustomException.badRequest("Invalid cursor", "The cursor " + cursor + " is not valid");
+        }
+    }
+}
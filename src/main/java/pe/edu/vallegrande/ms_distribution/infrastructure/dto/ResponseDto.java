@@ -13,6 +13,7 @@ public class ResponseDto<T> {
     private boolean status;
     private T data;
     private ErrorMessage error;
+    private String nextCursor; // solo en listados paginados; nulo en la última página
 
     public ResponseDto(boolean status, T data) {
         this.status = status;
@@ -20,6 +21,12 @@ public class ResponseDto<T> {
         this.error = null;
     }
 
+    public ResponseDto(boolean status, T data, String nextCursor) {
+        this.status = status;
+        this.data = data;
+        this.nextCursor = nextCursor;
+    }
+
     public ResponseDto(boolean status, ErrorMessage error) {
         this.status = status;
         this.data = null;
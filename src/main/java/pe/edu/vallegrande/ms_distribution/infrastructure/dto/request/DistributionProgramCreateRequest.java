@@ -22,4 +22,5 @@ public class DistributionProgramCreateRequest {
     private String status;
     private String responsibleUserId;
     private String observations;
+    private Long version;          // versión leída; si se envía, la actualización es condicional
 }
@@ -20,6 +20,7 @@ public class DistributionRouteUpdateRequest {
 
     private Integer totalEstimatedDuration; // en horas
     private String responsibleUserId;
+    private Long version; // versión leída; si se envía, la actualización es condicional
 
     @Data
     @NoArgsConstructor
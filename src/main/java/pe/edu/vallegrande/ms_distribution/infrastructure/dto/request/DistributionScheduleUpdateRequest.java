@@ -23,4 +23,6 @@ public class DistributionScheduleUpdateRequest {
 
     @Positive(message = "estimatedDuration must be positive")
     private Integer estimatedDuration; // en minutos
+
+    private Long version; // versión leída; si se envía, la actualización es condicional
 }
\ No newline at end of file
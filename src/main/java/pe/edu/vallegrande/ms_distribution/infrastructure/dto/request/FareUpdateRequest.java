@@ -19,4 +19,5 @@ public class FareUpdateRequest {
     @NotBlank(message = "description is required")
     private String description;
 
+    private Long version; // versión leída; si se envía, la actualización es condicional
 }
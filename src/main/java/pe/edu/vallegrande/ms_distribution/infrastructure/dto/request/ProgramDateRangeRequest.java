@@ -0,0 +1,25 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.dto.request;
+
+import lombok.*;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+/**
+ * Filtros de las consultas por rango de fechas (query params). from y to son inclusivos.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProgramDateRangeRequest {
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;           // formato: yyyy-MM-dd
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to;             // formato: yyyy-MM-dd
+    private String organizationId;
+    private String zoneId;
+    private String routeId;
+    private String responsibleUserId;
+}
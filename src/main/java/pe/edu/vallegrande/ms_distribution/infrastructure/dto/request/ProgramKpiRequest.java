@@ -0,0 +1,19 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.dto.request;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Rango y filtros de ProgramDateRangeRequest más la forma de agrupar los indicadores.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper = true)
+@NoArgsConstructor
+public class ProgramKpiRequest extends ProgramDateRangeRequest {
+
+    private List<String> groupBy;      // organization, zone, route (vacío = un único resumen)
+    private String period;             // day, week, month (null = todo el rango)
+    private Integer toleranceMinutes;  // retraso máximo para contar como puntual (por defecto 0)
+}
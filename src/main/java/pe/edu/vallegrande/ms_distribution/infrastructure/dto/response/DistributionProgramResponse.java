@@ -1,8 +1,10 @@
 package pe.edu.vallegrande.ms_distribution.infrastructure.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
@@ -26,5 +28,7 @@ public class DistributionProgramResponse {
     private String status;
     private String responsibleUserId;
     private String observations;
+    private Double score;               // solo en resultados de búsqueda
     private String createdAt;           // Formato ISO
+    private Long version;
 }
@@ -0,0 +1,16 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.dto.response;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProgramCalendarDayResponse {
+
+    private String date;                // Formato: yyyy-MM-dd
+    private int total;
+    private List<DistributionProgramResponse> programs;
+}
@@ -0,0 +1,31 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+/**
+ * Indicadores de una combinación de organización/zona/ruta/periodo; las dimensiones no
+ * agrupadas quedan nulas y no se serializan.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProgramKpiResponse {
+
+    private String organizationId;
+    private String zoneId;
+    private String routeId;
+    private String period;              // yyyy-MM-dd, yyyy-Www o yyyy-MM según el periodo
+
+    private long totalPrograms;
+    private long completedPrograms;
+    private long cancelledPrograms;
+    private long startedPrograms;       // con hora real de inicio registrada
+    private long onTimePrograms;
+
+    private Double completionRate;      // completados / total
+    private Double onTimeRate;          // puntuales / iniciados; nulo si ninguno inició
+    private Double averageDelayMinutes; // sobre los iniciados; los adelantos cuentan como 0
+}
@@ -33,6 +33,14 @@ public class CustomException extends RuntimeException {
         );
     }
 
+    public static CustomException conflict(String message, String details) {
+        return new CustomException(
+                409,
+                message,
+                details
+        );
+    }
+
     public static CustomException internalServerError(String message, String details) {
         return new CustomException(
                 500,
@@ -0,0 +1,255 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import com.mongodb.MongoServerException;
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import pe.edu.vallegrande.ms_distribution.application.cache.ByIdCache;
+import pe.edu.vallegrande.ms_distribution.application.cache.EncodedListCache;
+import pe.edu.vallegrande.ms_distribution.application.cache.FareCache;
+import pe.edu.vallegrande.ms_distribution.application.config.EntityCacheProperties;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionProgram;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionRoute;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionSchedule;
+import pe.edu.vallegrande.ms_distribution.domain.models.Fare;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Invalida las cachés locales en todas las réplicas a partir de los change streams de routes,
+ * schedules y fare: cada nodo escucha por su cuenta y descarta los documentos que otro modificó,
+ * junto con los listados ya codificados de la colección (EncodedListCache).
+ * Cada evento, también los de programs, avanza el marcador de cambio de su colección (ChangeMarkers).
+ * El resume token de cada colección se guarda por nodo en cache_resume_tokens, de modo que tras
+ * una reconexión el stream continúa donde quedó; si Mongo ya no conserva esa posición se vacía la
+ * caché de la colección y se empieza de nuevo. Los tokens de nodos que desaparecen los borra un
+ * índice TTL sobre updatedAt.
+ */
+@Component
+@Slf4j
+public class CacheInvalidationListener {
+
+    static final String TOKENS_COLLECTION = "cache_resume_tokens";
+    static final String INVALIDATIONS_METRIC = "distribution.cache.invalidations";
+
+    private static final String TOKEN_FIELD = "token";
+    private static final String TOKEN_DATA = "_data";
+    private static final String UPDATED_AT_FIELD = "updatedAt";
+    private static final String TOKENS_TTL_INDEX = "ttl_cache_resume_tokens_updated_at";
+    // Errores de servidor cuando el token ya salió del oplog o el stream no puede reanudarse
+    private static final Set<Integer> HISTORY_LOST_CODES = Set.of(280, 286);
+    // Eventos tras los que el stream se cierra o la colección deja de ser la misma
+    private static final Set<OperationType> COLLECTION_EVENTS = Set.of(
+            OperationType.DROP, OperationType.RENAME, OperationType.DROP_DATABASE, OperationType.INVALIDATE);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final EntityCacheProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ChangeMarkers changeMarkers;
+    private final EncodedListCache encodedLists;
+    private final List<Target> targets;
+
+    private final Map<String, BsonValue> lastTokens = new ConcurrentHashMap<>();
+    private final Disposable.Composite subscriptions = Disposables.composite();
+
+    public CacheInvalidationListener(ReactiveMongoTemplate mongoTemplate, EntityCacheProperties properties,
+                                     MeterRegistry meterRegistry, ByIdCache<DistributionRoute> routeCache,
+                                     ByIdCache<DistributionSchedule> scheduleCache, FareCache fareCache,
+                                     ChangeMarkers changeMarkers, EncodedListCache encodedLists) {
+        this.mongoTemplate = mongoTemplate;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.changeMarkers = changeMarkers;
+        this.encodedLists = encodedLists;
+        this.targets = List.of(
+                // Programas no tienen caché local; se escuchan solo por su marcador
+                new Target(DistributionProgram.class, mongoTemplate.getCollectionName(DistributionProgram.class), id -> { }, () -> { }),
+                new Target(DistributionRoute.class, mongoTemplate.getCollectionName(DistributionRoute.class), routeCache::evict, routeCache::evictAll),
+                new Target(DistributionSchedule.class, mongoTemplate.getCollectionName(DistributionSchedule.class), scheduleCache::evict, scheduleCache::evictAll),
+                new Target(Fare.class, mongoTemplate.getCollectionName(Fare.class), fareCache::evictId, fareCache::evictAll));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isChangeStreams()) {
+            log.info("Change stream cache invalidation disabled");
+            return;
+        }
+        subscriptions.add(expireTokens().subscribe());
+        targets.forEach(target -> subscriptions.add(watch(target).subscribe()));
+    }
+
+    @PreDestroy
+    public void stop() {
+        subscriptions.dispose();
+    }
+
+    private Flux<Void> watch(Target target) {
+        String collection = target.collection();
+        Counter invalidations = Counter.builder(INVALIDATIONS_METRIC)
+                .tag("collection", collection)
+                .register(meterRegistry);
+
+        return Flux.defer(() -> resumeToken(collection)
+                        .map(token -> options().resumeAfter(token).build())
+                        .switchIfEmpty(Mono.fromSupplier(() -> {
+                            // Sin posición guardada no se sabe qué cambió mientras tanto
+                            target.evictAll().run();
+                            encodedLists.evict(target.type());
+                            return options().build();
+                        }))
+                        .flatMapMany(options -> mongoTemplate.changeStream(collection, options, Document.class))
+                        .doOnSubscribe(subscription -> {
+                            log.info("Watching {} for cache invalidation", collection);
+                            changeMarkers.connected(collection);
+                        }))
+                .concatMap(event -> {
+                    invalidations.increment();
+                    return apply(target, event);
+                })
+                // Hasta reconectar, los listados de la colección no llevan ETag
+                .doOnTerminate(() -> changeMarkers.disconnected(collection))
+                .onErrorResume(CacheInvalidationListener::isHistoryLost, error -> {
+                    log.warn("Resume token for {} is no longer available, clearing its cache: {}", collection, error.getMessage());
+                    return clearToken(collection).then(Mono.error(error));
+                })
+                // invalidate/drop cierran el stream: se vuelve a abrir, ya sin token
+                .repeatWhen(completed -> completed.delayElements(Duration.ofSeconds(1)))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(properties.getMaxReconnectBackoff())
+                        .doBeforeRetry(signal -> log.warn("Change stream on {} failed, reconnecting (attempt {}): {}",
+                                collection, signal.totalRetries() + 1, signal.failure().getMessage())));
+    }
+
+    private Mono<String> expireTokens() {
+        return mongoTemplate.indexOps(TOKENS_COLLECTION)
+                .ensureIndex(new Index().on(UPDATED_AT_FIELD, Sort.Direction.ASC)
+                        .expire(properties.getResumeTokenTtl())
+                        .named(TOKENS_TTL_INDEX))
+                .onErrorResume(error -> {
+                    // Sin el índice todo sigue funcionando; solo se acumulan tokens huérfanos
+                    log.warn("Could not ensure TTL index on {}: {}", TOKENS_COLLECTION, error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    // Primero se invalida, después avanza el marcador y por último se guarda la posición del stream
+    private Mono<Void> apply(Target target, ChangeStreamEvent<Document> event) {
+        Mono<Void> savePosition = invalidate(target, event);
+        BsonTimestamp clusterTime = event.getRaw() != null ? event.getRaw().getClusterTime() : null;
+        return clusterTime != null
+                ? changeMarkers.advance(target.collection(), clusterTime.getValue()).then(savePosition)
+                : savePosition;
+    }
+
+    private Mono<Void> invalidate(Target target, ChangeStreamEvent<Document> event) {
+        // Cualquier cambio, también un alta, altera los listados de la colección
+        encodedLists.evict(target.type());
+        OperationType type = event.getOperationType();
+        if (type != null && COLLECTION_EVENTS.contains(type)) {
+            target.evictAll().run();
+            return clearToken(target.collection());
+        }
+        String id = idOf(event.getRaw() != null ? event.getRaw().getDocumentKey() : null);
+        if (id != null) {
+            target.evict().accept(id);
+        }
+        return saveToken(target.collection(), event.getResumeToken());
+    }
+
+    // Se reciben también las altas: no invalidan nada pero cambian los listados
+    private ChangeStreamOptions.ChangeStreamOptionsBuilder options() {
+        return ChangeStreamOptions.builder();
+    }
+
+    // Primero la posición de este proceso; si acaba de arrancar, la que dejó guardada
+    private Mono<BsonValue> resumeToken(String collection) {
+        BsonValue inMemory = lastTokens.get(collection);
+        if (inMemory != null) {
+            return Mono.just(inMemory);
+        }
+        return mongoTemplate.findById(tokenKey(collection), Document.class, TOKENS_COLLECTION)
+                .mapNotNull(document -> document.getString(TOKEN_FIELD))
+                .map(data -> new BsonDocument(TOKEN_DATA, new BsonString(data)));
+    }
+
+    private Mono<Void> saveToken(String collection, Object token) {
+        if (!(token instanceof BsonDocument document) || !document.isString(TOKEN_DATA)) {
+            return Mono.empty();
+        }
+        lastTokens.put(collection, document);
+        return mongoTemplate.upsert(Query.query(where("_id").is(tokenKey(collection))),
+                        Update.update(TOKEN_FIELD, document.getString(TOKEN_DATA).getValue()).set(UPDATED_AT_FIELD, Instant.now()),
+                        TOKENS_COLLECTION)
+                .onErrorResume(error -> {
+                    // La posición sigue en memoria; solo se pierde si además se reinicia el proceso
+                    log.warn("Could not persist resume token for {}: {}", collection, error.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Void> clearToken(String collection) {
+        lastTokens.remove(collection);
+        return mongoTemplate.remove(Query.query(where("_id").is(tokenKey(collection))), TOKENS_COLLECTION)
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    private String tokenKey(String collection) {
+        return properties.getInstanceId() + ":" + collection;
+    }
+
+    private static String idOf(BsonDocument documentKey) {
+        BsonValue id = documentKey != null ? documentKey.get("_id") : null;
+        if (id == null) {
+            return null;
+        }
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        return id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    private static boolean isHistoryLost(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoServerException server && HISTORY_LOST_CODES.contains(server.getCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Target(Class<?> type, String collection, Consumer<String> evict, Runnable evictAll) {
+    }
+}
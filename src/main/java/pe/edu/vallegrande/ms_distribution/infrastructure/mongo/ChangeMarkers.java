@@ -0,0 +1,113 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import pe.edu.vallegrande.ms_distribution.application.config.EntityCacheProperties;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Marcador de cambio por colección: el clusterTime del último cambio visto en su change stream.
+ * Todas las réplicas ven los mismos eventos, así que llegan al mismo valor; se guarda con $max en
+ * collection_markers para que un nodo recién arrancado parta del mismo punto. Se consulta en
+ * memoria, sin leer la colección, y sirve de ETag para los listados.
+ * Solo hay marcador mientras el change stream de la colección está conectado: sin él no avanzaría
+ * y los clientes recibirían 304 sobre datos ya cambiados. Las escrituras de este nodo y cada
+ * reconexión cuentan como un cambio recién visto hasta que el stream entrega el evento.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ChangeMarkers {
+
+    static final String MARKERS_COLLECTION = "collection_markers";
+
+    private static final String CLUSTER_TIME_FIELD = "clusterTime";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final EntityCacheProperties properties;
+
+    private final Map<String, Marker> markers = new ConcurrentHashMap<>();
+    private final Map<String, Instant> localChanges = new ConcurrentHashMap<>();
+    private final Set<String> connected = ConcurrentHashMap.newKeySet();
+
+    /**
+     * clusterTime es el del último cambio; observedAt, cuándo lo vio este nodo (EPOCH si se leyó
+     * de collection_markers al arrancar).
+     */
+    public record Marker(long clusterTime, Instant observedAt) {
+    }
+
+    /**
+     * Marcador actual de la colección; vacío si los change streams están desactivados o el de la
+     * colección no está conectado, porque entonces nada lo haría avanzar.
+     */
+    public Mono<Marker> current(String collection) {
+        if (!properties.isChangeStreams() || !connected.contains(collection)) {
+            return Mono.empty();
+        }
+        Marker known = markers.get(collection);
+        if (known != null) {
+            return Mono.just(withLocalChange(collection, known));
+        }
+        return mongoTemplate.findById(collection, Document.class, MARKERS_COLLECTION)
+                .map(document -> ((Number) document.get(CLUSTER_TIME_FIELD)).longValue())
+                .defaultIfEmpty(0L)
+                .map(clusterTime -> markers.computeIfAbsent(collection, key -> new Marker(clusterTime, Instant.EPOCH)))
+                .map(marker -> withLocalChange(collection, marker));
+    }
+
+    /**
+     * Escritura hecha por este nodo en la colección de type: el marcador aún no la refleja, así que
+     * los listados se sirven sin ETag hasta que su evento llegue y pase settle-time.
+     */
+    public void touch(Class<?> type) {
+        localChanges.put(mongoTemplate.getCollectionName(type), Instant.now());
+    }
+
+    /**
+     * El change stream de la colección se abrió; lo ocurrido mientras estaba caído aún puede estar
+     * llegando, por eso cuenta también como cambio reciente.
+     */
+    public void connected(String collection) {
+        localChanges.put(collection, Instant.now());
+        connected.add(collection);
+    }
+
+    public void disconnected(String collection) {
+        connected.remove(collection);
+    }
+
+    /**
+     * Registra un cambio visto en el change stream; los eventos repetidos o atrasados no retroceden el marcador.
+     */
+    public Mono<Void> advance(String collection, long clusterTime) {
+        markers.merge(collection, new Marker(clusterTime, Instant.now()),
+                (known, seen) -> seen.clusterTime() > known.clusterTime() ? seen : known);
+        return mongoTemplate.upsert(Query.query(where("_id").is(collection)),
+                        new Update().max(CLUSTER_TIME_FIELD, clusterTime), MARKERS_COLLECTION)
+                .onErrorResume(error -> {
+                    log.warn("Could not persist change marker for {}: {}", collection, error.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Marker withLocalChange(String collection, Marker marker) {
+        Instant changedAt = localChanges.get(collection);
+        return changedAt != null && changedAt.isAfter(marker.observedAt())
+                ? new Marker(marker.clusterTime(), changedAt)
+                : marker;
+    }
+}
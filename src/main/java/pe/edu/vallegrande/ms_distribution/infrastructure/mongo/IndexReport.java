@@ -0,0 +1,31 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resultado de conciliar los índices declarados en una entidad con los existentes en su colección.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IndexReport {
+
+    private String collection;
+    private List<String> declared;
+    private List<String> existing;
+    private List<String> missing;     // declarados que no existen (fallo al crearlos)
+    private List<String> undeclared;  // existen en Mongo pero ninguna entidad los declara
+    private List<String> dropped;     // sustituidos por un índice declarado, eliminados en esta conciliación
+    private List<String> unused;      // sin accesos según $indexStats desde el último reinicio de mongod
+    private Map<String, Long> accesses;
+    private Map<String, String> errors;
+    private Instant checkedAt;
+}
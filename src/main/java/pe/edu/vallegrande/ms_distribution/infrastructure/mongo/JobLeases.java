@@ -0,0 +1,64 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Reservas de tareas programadas en job_leases: todas las réplicas disparan el mismo cron y solo la
+ * que consigue la reserva ejecuta la tarea. La reserva no se libera al terminar, sino que caduca,
+ * para que una réplica cuyo reloj va unos segundos atrás no la repita.
+ */
+@Component
+@RequiredArgsConstructor
+public class JobLeases {
+
+    static final String LEASES_COLLECTION = "job_leases";
+
+    private static final String OWNER_FIELD = "owner";
+    private static final String LOCKED_UNTIL_FIELD = "lockedUntil";
+
+    // Identifica este proceso mientras viva; una reserva no tiene que sobrevivir a un reinicio
+    private final String owner = UUID.randomUUID().toString();
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    /**
+     * true si este nodo se queda con job durante duration: no había reserva, había caducado o ya era suya.
+     * Si otra réplica la tiene, el upsert intenta insertar un _id existente y Mongo lo rechaza.
+     */
+    public Mono<Boolean> tryAcquire(String job, Duration duration) {
+        return Mono.defer(() -> {
+            Instant now = Instant.now();
+            Query free = Query.query(where("_id").is(job).orOperator(
+                    where(LOCKED_UNTIL_FIELD).lte(now),
+                    where(OWNER_FIELD).is(owner)));
+            Update take = new Update()
+                    .set(OWNER_FIELD, owner)
+                    .set("lockedAt", now)
+                    .set(LOCKED_UNTIL_FIELD, now.plus(duration));
+            return mongoTemplate.upsert(free, take, LEASES_COLLECTION)
+                    .thenReturn(true)
+                    .onErrorReturn(DuplicateKeyException.class, false);
+        });
+    }
+
+    /**
+     * Suelta job si la reserva es de este nodo; para tareas lanzadas a mano, que no deben bloquear
+     * la siguiente hasta que caduque.
+     */
+    public Mono<Void> release(String job) {
+        return mongoTemplate.remove(Query.query(where("_id").is(job).and(OWNER_FIELD).is(owner)), LEASES_COLLECTION)
+                .then();
+    }
+}
@@ -0,0 +1,34 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Endpoint mongoindexes: último informe de índices por colección; la operación de escritura vuelve
+ * a conciliar. No tiene autenticación, así que solo se expone por JMX (management.endpoints.jmx).
+ */
+@Component
+@Endpoint(id = "mongoindexes")
+@RequiredArgsConstructor
+public class MongoIndexEndpoint {
+
+    private final MongoIndexManager indexManager;
+
+    @ReadOperation
+    public Map<String, IndexReport> indexes() {
+        return indexManager.getReports();
+    }
+
+    @WriteOperation
+    public Mono<Map<String, IndexReport>> reconcile() {
+        return indexManager.reconcile()
+                .collectMap(IndexReport::getCollection, Function.identity());
+    }
+}
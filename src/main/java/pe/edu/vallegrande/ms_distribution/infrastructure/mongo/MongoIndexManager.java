@@ -0,0 +1,190 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.util.Streamable;
+import org.springframework.stereotype.Component;
+
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionProgram;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionRoute;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionSchedule;
+import pe.edu.vallegrande.ms_distribution.domain.models.Fare;
+import pe.edu.vallegrande.ms_distribution.domain.models.ProgramDailyRollup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Crea al arrancar los índices declarados con @Indexed/@CompoundIndex en las entidades, más los que
+ * las anotaciones no pueden expresar, elimina los que estos sustituyen y compara el resultado con
+ * los que existen en cada colección.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MongoIndexManager {
+
+    static final List<Class<?>> INDEXED_ENTITIES = List.of(
+            DistributionProgram.class, DistributionRoute.class, DistributionSchedule.class, Fare.class,
+            ProgramDailyRollup.class);
+
+    // El índice de texto de programas lleva la organización como prefijo y el idioma español,
+    // opciones que @TextIndexed no permite declarar
+    static final Map<Class<?>, List<IndexDefinition>> PROGRAMMATIC_INDEXES = Map.of(
+            DistributionProgram.class, List.of(definition(
+                    new Document("organizationId", 1).append("observations", "text"),
+                    new Document("name", "txt_programs_org_observations").append("default_language", "spanish"))));
+
+    // Índices antiguos y el declarado que los sustituye: el antiguo solo se elimina cuando su
+    // reemplazo existe, para no dejar la colección sin la restricción de unicidad
+    static final Map<Class<?>, Map<String, String>> SUPERSEDED_INDEXES = Map.of(
+            DistributionProgram.class, Map.of("uk_programs_code_org", "uk_programs_org_code"),
+            DistributionRoute.class, Map.of("uk_routes_code_org", "uk_routes_org_code"),
+            DistributionSchedule.class, Map.of("uk_schedules_code_org", "uk_schedules_org_code"),
+            Fare.class, Map.of("uk_fare_code_org", "uk_fare_org_code"));
+
+    private static final String ID_INDEX = "_id_";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    private final Map<String, IndexReport> reports = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrap() {
+        reconcile().subscribe(
+                report -> {
+                    if (!report.getMissing().isEmpty()) {
+                        log.warn("Collection {} is missing indexes {}: {}", report.getCollection(), report.getMissing(), report.getErrors());
+                    }
+                    if (!report.getUnused().isEmpty()) {
+                        log.info("Collection {} has unused indexes {}", report.getCollection(), report.getUnused());
+                    }
+                },
+                error -> log.error("Index reconciliation failed: {}", error.getMessage()));
+    }
+
+    public Flux<IndexReport> reconcile() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        return Flux.fromIterable(INDEXED_ENTITIES)
+                .concatMap(type -> reconcile(type, resolver))
+                .doOnNext(report -> reports.put(report.getCollection(), report));
+    }
+
+    public Map<String, IndexReport> getReports() {
+        return new TreeMap<>(reports);
+    }
+
+    private Mono<IndexReport> reconcile(Class<?> type, IndexResolver resolver) {
+        String collection = mongoTemplate.getCollectionName(type);
+        ReactiveIndexOperations indexOps = mongoTemplate.indexOps(type);
+        List<IndexDefinition> definitions = new ArrayList<>(Streamable.of(resolver.resolveIndexFor(type))
+                .map(IndexDefinition.class::cast)
+                .toList());
+        definitions.addAll(PROGRAMMATIC_INDEXES.getOrDefault(type, List.of()));
+        Map<String, String> errors = new ConcurrentHashMap<>();
+
+        return Flux.fromIterable(definitions)
+                .concatMap(definition -> indexOps.ensureIndex(definition)
+                        .onErrorResume(error -> {
+                            errors.put(nameOf(definition), error.getMessage());
+                            return Mono.empty();
+                        }))
+                .then(dropSuperseded(type, indexOps, errors))
+                .flatMap(dropped -> Mono.zip(
+                                indexOps.getIndexInfo().map(IndexInfo::getName).collectList(),
+                                indexAccesses(collection))
+                        .map(tuple -> buildReport(collection, definitions, tuple.getT1(), tuple.getT2(), dropped, errors)));
+    }
+
+    private Mono<List<String>> dropSuperseded(Class<?> type, ReactiveIndexOperations indexOps, Map<String, String> errors) {
+        Map<String, String> superseded = SUPERSEDED_INDEXES.getOrDefault(type, Map.of());
+        if (superseded.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        return indexOps.getIndexInfo()
+                .map(IndexInfo::getName)
+                .collectList()
+                .flatMapMany(existing -> Flux.fromIterable(superseded.entrySet())
+                        .filter(entry -> existing.contains(entry.getKey()) && existing.contains(entry.getValue())))
+                .concatMap(entry -> indexOps.dropIndex(entry.getKey())
+                        .doOnSuccess(done -> log.info("Dropped index {} superseded by {}", entry.getKey(), entry.getValue()))
+                        .thenReturn(entry.getKey())
+                        .onErrorResume(error -> {
+                            errors.put(entry.getKey(), error.getMessage());
+                            return Mono.empty();
+                        }))
+                .collectList();
+    }
+
+    /**
+     * Accesos por índice según $indexStats; los contadores se reinician con mongod.
+     */
+    private Mono<Map<String, Long>> indexAccesses(String collection) {
+        return mongoTemplate.getCollection(collection)
+                .flatMapMany(coll -> coll.aggregate(List.of(new Document("$indexStats", new Document()))))
+                .collectMap(
+                        stats -> stats.getString("name"),
+                        stats -> ((Number) stats.get("accesses", Document.class).get("ops")).longValue(),
+                        TreeMap::new)
+                .onErrorResume(error -> {
+                    log.debug("$indexStats unavailable for {}: {}", collection, error.getMessage());
+                    return Mono.just(Map.of());
+                });
+    }
+
+    private IndexReport buildReport(String collection, List<IndexDefinition> definitions, List<String> existing,
+                                    Map<String, Long> accesses, List<String> dropped, Map<String, String> errors) {
+        List<String> declared = definitions.stream().map(this::nameOf).toList();
+        return IndexReport.builder()
+                .collection(collection)
+                .declared(declared)
+                .existing(existing)
+                .missing(declared.stream().filter(name -> !existing.contains(name)).toList())
+                .undeclared(existing.stream()
+                        .filter(name -> !ID_INDEX.equals(name) && !declared.contains(name))
+                        .toList())
+                .dropped(dropped)
+                .unused(accesses.entrySet().stream()
+                        .filter(entry -> !ID_INDEX.equals(entry.getKey()) && entry.getValue() == 0L)
+                        .map(Map.Entry::getKey)
+                        .toList())
+                .accesses(accesses)
+                .errors(new TreeMap<>(errors))
+                .checkedAt(Instant.now())
+                .build();
+    }
+
+    private static IndexDefinition definition(Document keys, Document options) {
+        return new IndexDefinition() {
+            @Override
+            public Document getIndexKeys() {
+                return keys;
+            }
+
+            @Override
+            public Document getIndexOptions() {
+                return options;
+            }
+        };
+    }
+
+    private String nameOf(IndexDefinition definition) {
+        Object name = definition.getIndexOptions().get("name");
+        return name != null ? name.toString() : definition.getIndexKeys().toJson();
+    }
+}
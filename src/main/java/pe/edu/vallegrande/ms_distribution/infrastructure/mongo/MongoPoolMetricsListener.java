@@ -0,0 +1,50 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tiempo que cada operación espera por una conexión del pool (distribution.mongo.pool.checkout),
+ * por servidor y resultado: ok o el motivo del fallo (timeout, connection_error...).
+ */
+public class MongoPoolMetricsListener implements ConnectionPoolListener {
+
+    static final String CHECKOUT_METRIC = "distribution.mongo.pool.checkout";
+    static final String OUTCOME_OK = "ok";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public MongoPoolMetricsListener(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        timer(event.getConnectionId().getServerId().getAddress(), OUTCOME_OK)
+                .record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        timer(event.getServerId().getAddress(), event.getReason().name().toLowerCase())
+                .record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(ServerAddress server, String outcome) {
+        return timers.computeIfAbsent(server + ":" + outcome, key -> Timer.builder(CHECKOUT_METRIC)
+                .description("Time spent waiting for a pooled Mongo connection")
+                .tag("server", server.toString())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+}
@@ -0,0 +1,42 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Endpoint mongoqueries: consultas lentas recientes y formas de consulta observadas; explain
+ * vuelve a planificar cada forma y clear reinicia lo acumulado. Sin autenticación, así que solo
+ * se expone por JMX (management.endpoints.jmx.exposure), nunca por HTTP.
+ */
+@Component
+@Endpoint(id = "mongoqueries")
+@RequiredArgsConstructor
+public class MongoQueryEndpoint {
+
+    private final QueryDiagnostics diagnostics;
+
+    @ReadOperation
+    public Map<String, Object> queries() {
+        return Map.of(
+                "slowQueries", diagnostics.getSlowQueries(),
+                "shapes", diagnostics.getShapes());
+    }
+
+    @WriteOperation
+    public Mono<List<QueryShape>> explain() {
+        return diagnostics.explainAll();
+    }
+
+    @DeleteOperation
+    public void clear() {
+        diagnostics.clear();
+    }
+}
@@ -0,0 +1,306 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import pe.edu.vallegrande.ms_distribution.application.config.QueryDiagnosticsProperties;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Escucha los comandos que el driver envía a Mongo. Agrupa las lecturas y escrituras por forma
+ * (colección, comando y filtro sin valores), así cada método de repositorio queda representado
+ * por las formas que realmente produce, y guarda en un buffer circular los comandos lentos con el
+ * plan de su forma. Lo que se expone (formas y sentencias) lleva los valores sustituidos por "?";
+ * el comando original solo se conserva en memoria para poder repetir explain.
+ */
+@Component
+@Slf4j
+public class QueryDiagnostics implements CommandListener {
+
+    private static final Set<String> TRACKED_COMMANDS = Set.of(
+            "find", "aggregate", "count", "distinct", "update", "delete", "findAndModify");
+    // Campos de sesión y de transporte que explain no acepta o que no forman parte de la consulta
+    private static final Set<String> TRANSPORT_FIELDS = Set.of(
+            "lsid", "txnNumber", "$db", "$clusterTime", "$readPreference", "readConcern", "writeConcern", "apiVersion");
+    // Contienen nombres de campo o índices, no valores de los documentos
+    private static final Set<String> STRUCTURAL_FIELDS = Set.of("sort", "projection", "key", "hint");
+    private static final BsonString PLACEHOLDER = new BsonString("?");
+
+    private final QueryDiagnosticsProperties properties;
+    private final ObjectProvider<ReactiveMongoTemplate> mongoTemplate;
+
+    private final Map<Integer, BsonDocument> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, ShapeStats> shapes = new ConcurrentHashMap<>();
+    private final Deque<SlowQuery> slowQueries = new ArrayDeque<>();
+
+    public QueryDiagnostics(QueryDiagnosticsProperties properties, ObjectProvider<ReactiveMongoTemplate> mongoTemplate) {
+        this.properties = properties;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (TRACKED_COMMANDS.contains(event.getCommandName())) {
+            inFlight.put(event.getRequestId(), statement(event.getCommand()));
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        BsonDocument command = inFlight.remove(event.getRequestId());
+        if (command == null) {
+            return;
+        }
+        long millis = event.getElapsedTime(TimeUnit.MILLISECONDS);
+        String collection = collectionOf(command, event.getCommandName());
+        String shape = shapeOf(command, event.getCommandName());
+        ShapeStats stats = shapes.get(collection + ":" + shape);
+        if (stats == null && shapes.size() < properties.getMaxShapes()) {
+            stats = shapes.computeIfAbsent(collection + ":" + shape,
+                    key -> new ShapeStats(collection, event.getCommandName(), shape));
+        }
+        if (stats != null) {
+            stats.record(command, millis);
+        }
+        if (millis >= properties.getSlowThreshold().toMillis()) {
+            recordSlow(event.getCommandName(), collection, shape, command, millis, stats);
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        inFlight.remove(event.getRequestId());
+    }
+
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            List<SlowQuery> newestFirst = new ArrayList<>(slowQueries);
+            Collections.reverse(newestFirst);
+            return newestFirst;
+        }
+    }
+
+    public List<QueryShape> getShapes() {
+        return shapes.values().stream()
+                .map(ShapeStats::snapshot)
+                .sorted(Comparator.comparingLong(QueryShape::getTotalMillis).reversed())
+                .toList();
+    }
+
+    /**
+     * Vuelve a ejecutar explain sobre el último comando visto de cada forma y devuelve las formas
+     * ordenadas por tiempo acumulado; las que acaban en COLLSCAN o SORT en memoria son candidatas a índice.
+     */
+    public Mono<List<QueryShape>> explainAll() {
+        return Flux.fromIterable(shapes.values())
+                .filter(stats -> stats.sample() != null && stats.startExplain())
+                .concatMap(stats -> explain(stats.sample())
+                        .doOnNext(stats::setPlan)
+                        .doFinally(signal -> stats.finishExplain()))
+                .then(Mono.fromSupplier(this::getShapes));
+    }
+
+    public void clear() {
+        shapes.clear();
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    private void recordSlow(String commandName, String collection, String shape, BsonDocument command,
+                            long millis, ShapeStats stats) {
+        SlowQuery slow = SlowQuery.builder()
+                .at(Instant.now())
+                .collection(collection)
+                .command(commandName)
+                .durationMillis(millis)
+                .shape(shape)
+                .statement(redacted(command, commandName).toJson())
+                .plan(stats != null ? stats.plan() : null)
+                .build();
+        synchronized (slowQueries) {
+            if (slowQueries.size() >= properties.getSlowCapacity()) {
+                slowQueries.pollFirst();
+            }
+            slowQueries.addLast(slow);
+        }
+        log.warn("Slow Mongo {} on {} took {} ms: {}", commandName, collection, millis, shape);
+        // Un solo explain en curso por forma: una ráfaga de lentas, o las que superan max-shapes y
+        // no tienen dónde guardar el plan, no disparan uno cada una
+        if (properties.isExplainSlow() && slow.getPlan() == null && stats != null && stats.startExplain()) {
+            explain(command)
+                    .doFinally(signal -> stats.finishExplain())
+                    .subscribe(plan -> {
+                        slow.setPlan(plan);
+                        stats.setPlan(plan);
+                    });
+        }
+    }
+
+    private Mono<QueryPlan> explain(BsonDocument command) {
+        ReactiveMongoTemplate template = mongoTemplate.getIfAvailable();
+        if (template == null) {
+            return Mono.empty();
+        }
+        return template.executeCommand(new Document("explain", command).append("verbosity", "queryPlanner"))
+                .map(QueryPlan::of)
+                .onErrorResume(error -> Mono.just(QueryPlan.failed(error.getMessage())));
+    }
+
+    private BsonDocument statement(BsonDocument command) {
+        BsonDocument copy = new BsonDocument();
+        command.forEach((key, value) -> {
+            if (!TRANSPORT_FIELDS.contains(key)) {
+                copy.put(key, value);
+            }
+        });
+        return copy;
+    }
+
+    private String collectionOf(BsonDocument command, String commandName) {
+        BsonValue value = command.get(commandName);
+        return value != null && value.isString() ? value.asString().getValue() : "";
+    }
+
+    // El filtro, el orden y la proyección definen la forma; los valores concretos no
+    static String shapeOf(BsonDocument command, String commandName) {
+        BsonDocument shape = new BsonDocument();
+        switch (commandName) {
+            case "find" -> copyNormalized(command, shape, "filter", "sort", "projection");
+            case "count", "distinct" -> copyNormalized(command, shape, "query", "key");
+            case "findAndModify" -> copyNormalized(command, shape, "query", "sort");
+            case "aggregate" -> copyNormalized(command, shape, "pipeline");
+            case "update" -> firstStatement(command, "updates", shape);
+            case "delete" -> firstStatement(command, "deletes", shape);
+            default -> { }
+        }
+        return commandName + " " + shape.toJson();
+    }
+
+    /**
+     * El comando completo con cada valor sustituido por "?", salvo la colección y los campos que
+     * solo nombran campos o índices.
+     */
+    static BsonDocument redacted(BsonDocument command, String commandName) {
+        BsonDocument redacted = new BsonDocument();
+        command.forEach((key, value) -> redacted.put(key,
+                key.equals(commandName) || STRUCTURAL_FIELDS.contains(key) ? value : normalize(value)));
+        return redacted;
+    }
+
+    private static void firstStatement(BsonDocument command, String field, BsonDocument shape) {
+        BsonArray statements = command.getArray(field, new BsonArray());
+        if (!statements.isEmpty() && statements.get(0).isDocument()) {
+            copyNormalized(statements.get(0).asDocument(), shape, "q");
+        }
+    }
+
+    private static void copyNormalized(BsonDocument source, BsonDocument target, String... fields) {
+        for (String field : fields) {
+            if (source.containsKey(field)) {
+                target.put(field, STRUCTURAL_FIELDS.contains(field)
+                        ? source.get(field)
+                        : normalize(source.get(field)));
+            }
+        }
+    }
+
+    static BsonValue normalize(BsonValue value) {
+        if (value.isDocument()) {
+            BsonDocument normalized = new BsonDocument();
+            value.asDocument().forEach((key, nested) -> normalized.put(key, normalize(nested)));
+            return normalized;
+        }
+        if (value.isArray() && value.asArray().stream().anyMatch(BsonValue::isDocument)) {
+            BsonArray normalized = new BsonArray();
+            value.asArray().forEach(item -> normalized.add(normalize(item)));
+            return normalized;
+        }
+        return PLACEHOLDER;
+    }
+
+    private static final class ShapeStats {
+
+        private final String collection;
+        private final String command;
+        private final String shape;
+        private long count;
+        private long totalMillis;
+        private long maxMillis;
+        private Instant lastSeen;
+        private BsonDocument sample;
+        private volatile QueryPlan plan;
+        private final AtomicBoolean explaining = new AtomicBoolean();
+
+        private ShapeStats(String collection, String command, String shape) {
+            this.collection = collection;
+            this.command = command;
+            this.shape = shape;
+        }
+
+        synchronized void record(BsonDocument statement, long millis) {
+            count++;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+            lastSeen = Instant.now();
+            sample = statement;
+        }
+
+        synchronized BsonDocument sample() {
+            return sample;
+        }
+
+        QueryPlan plan() {
+            return plan;
+        }
+
+        void setPlan(QueryPlan plan) {
+            this.plan = plan;
+        }
+
+        boolean startExplain() {
+            return explaining.compareAndSet(false, true);
+        }
+
+        void finishExplain() {
+            explaining.set(false);
+        }
+
+        synchronized QueryShape snapshot() {
+            return QueryShape.builder()
+                    .collection(collection)
+                    .command(command)
+                    .shape(shape)
+                    .count(count)
+                    .totalMillis(totalMillis)
+                    .maxMillis(maxMillis)
+                    .lastSeen(lastSeen)
+                    .plan(plan)
+                    .build();
+        }
+    }
+}
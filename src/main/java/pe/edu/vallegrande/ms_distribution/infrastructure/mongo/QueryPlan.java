@@ -0,0 +1,81 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resumen del plan ganador de un explain: etapas de arriba abajo e índices usados.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class QueryPlan {
+
+    private List<String> stages;
+    private List<String> indexes;
+    private boolean collectionScan;
+    private boolean inMemorySort;
+    private String error;
+
+    public static QueryPlan failed(String error) {
+        return QueryPlan.builder().stages(List.of()).indexes(List.of()).error(error).build();
+    }
+
+    /**
+     * Acepta la salida de explain de find/count/update/delete y de aggregate, tanto del motor
+     * clásico como de SBE (winningPlan.queryPlan).
+     */
+    public static QueryPlan of(Document explain) {
+        Document planner = plannerOf(explain);
+        if (planner == null || planner.get("winningPlan") == null) {
+            return failed("No queryPlanner section in explain output");
+        }
+        Document winning = planner.get("winningPlan", Document.class);
+        if (winning.get("queryPlan") instanceof Document queryPlan) {
+            winning = queryPlan;
+        }
+        List<String> stages = new ArrayList<>();
+        List<String> indexes = new ArrayList<>();
+        walk(winning, stages, indexes);
+        return QueryPlan.builder()
+                .stages(stages)
+                .indexes(indexes)
+                .collectionScan(stages.contains("COLLSCAN"))
+                .inMemorySort(stages.contains("SORT"))
+                .build();
+    }
+
+    private static Document plannerOf(Document explain) {
+        if (explain.get("queryPlanner") instanceof Document planner) {
+            return planner;
+        }
+        // aggregate sin pushdown completo: el plan de la consulta inicial va en stages[0].$cursor
+        if (explain.get("stages") instanceof List<?> stages && !stages.isEmpty()
+                && stages.get(0) instanceof Document first && first.get("$cursor") instanceof Document cursor) {
+            return cursor.get("queryPlanner", Document.class);
+        }
+        return null;
+    }
+
+    private static void walk(Document stage, List<String> stages, List<String> indexes) {
+        stages.add(stage.getString("stage"));
+        if (stage.getString("indexName") != null) {
+            indexes.add(stage.getString("indexName"));
+        }
+        if (stage.get("inputStage") instanceof Document input) {
+            walk(input, stages, indexes);
+        }
+        if (stage.get("inputStages") instanceof List<?> inputs) {
+            inputs.stream()
+                    .filter(Document.class::isInstance)
+                    .forEach(input -> walk((Document) input, stages, indexes));
+        }
+    }
+}
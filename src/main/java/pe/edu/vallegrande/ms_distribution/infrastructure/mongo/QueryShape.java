@@ -0,0 +1,27 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Forma de consulta observada (valores sustituidos por "?") y su coste acumulado desde el arranque.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class QueryShape {
+
+    private String collection;
+    private String command;
+    private String shape;
+    private long count;
+    private long totalMillis;
+    private long maxMillis;
+    private Instant lastSeen;
+    private QueryPlan plan;
+}
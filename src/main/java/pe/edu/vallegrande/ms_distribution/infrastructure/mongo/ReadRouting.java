@@ -0,0 +1,88 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadConcernLevel;
+import com.mongodb.ReadPreference;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import pe.edu.vallegrande.ms_distribution.application.config.ReadRoutingProperties;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aplica a cada consulta la preferencia y el nivel de lectura configurados para su colección y
+ * tipo, y cuenta las lecturas por destino (distribution.reads.routed, etiqueta read_preference).
+ */
+@Component
+@RequiredArgsConstructor
+public class ReadRouting {
+
+    static final String READS_METRIC = "distribution.reads.routed";
+
+    private final ReadRoutingProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+
+    public Query apply(Query query, String collection, ReadWorkload workload) {
+        Route route = route(collection, workload);
+        route.counter().increment();
+        query.withReadPreference(route.readPreference());
+        if (route.readConcern() != null) {
+            query.withReadConcern(route.readConcern());
+        }
+        return query;
+    }
+
+    public AggregationOptions.Builder apply(AggregationOptions.Builder options, String collection, ReadWorkload workload) {
+        Route route = route(collection, workload);
+        route.counter().increment();
+        options.readPreference(route.readPreference());
+        if (route.readConcern() != null) {
+            options.readConcern(route.readConcern());
+        }
+        return options;
+    }
+
+    private Route route(String collection, ReadWorkload workload) {
+        return routes.computeIfAbsent(collection + ":" + workload, key -> {
+            ReadRoutingProperties.Target target = properties.getCollections()
+                    .getOrDefault(collection, Map.of())
+                    .getOrDefault(workload, properties.getDefaults().get(workload));
+            ReadPreference readPreference = readPreferenceOf(target);
+            return new Route(readPreference, readConcernOf(target), Counter.builder(READS_METRIC)
+                    .tag("collection", collection)
+                    .tag("workload", workload.name().toLowerCase())
+                    .tag("read_preference", readPreference.getName())
+                    .register(meterRegistry));
+        });
+    }
+
+    private ReadPreference readPreferenceOf(ReadRoutingProperties.Target target) {
+        if (target == null) {
+            return ReadPreference.primary();
+        }
+        if (target.getMaxStaleness() == null || "primary".equalsIgnoreCase(target.getReadPreference())) {
+            return ReadPreference.valueOf(target.getReadPreference());
+        }
+        return ReadPreference.valueOf(target.getReadPreference(), List.of(),
+                target.getMaxStaleness().toSeconds(), TimeUnit.SECONDS);
+    }
+
+    private ReadConcern readConcernOf(ReadRoutingProperties.Target target) {
+        if (target == null || target.getReadConcern() == null) {
+            return null;
+        }
+        return new ReadConcern(ReadConcernLevel.fromString(target.getReadConcern()));
+    }
+
+    private record Route(ReadPreference readPreference, ReadConcern readConcern, Counter counter) {
+    }
+}
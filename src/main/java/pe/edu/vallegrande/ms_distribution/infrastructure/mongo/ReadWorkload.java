@@ -0,0 +1,9 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+/**
+ * Tipos de lectura que toleran datos algo atrasados y pueden enviarse a un secundario.
+ */
+public enum ReadWorkload {
+    LIST,   // listados, páginas, recuentos y streaming
+    REPORT  // rangos de fechas, calendario e indicadores
+}
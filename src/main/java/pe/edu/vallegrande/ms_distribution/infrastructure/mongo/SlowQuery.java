@@ -0,0 +1,26 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Comando que superó app.mongo.diagnostics.slow-threshold, con el plan de su forma.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SlowQuery {
+
+    private Instant at;
+    private String collection;
+    private String command;
+    private long durationMillis;
+    private String shape;
+    private String statement;   // comando sin los campos de sesión y con los valores como "?"
+    private QueryPlan plan;     // null hasta que termine el explain
+}
@@ -0,0 +1,185 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.stereotype.Component;
+import pe.edu.vallegrande.ms_distribution.application.cache.ByIdCache;
+import pe.edu.vallegrande.ms_distribution.application.config.MongoPoolProperties;
+import pe.edu.vallegrande.ms_distribution.application.config.WarmUpProperties;
+import pe.edu.vallegrande.ms_distribution.application.services.FareService;
+import pe.edu.vallegrande.ms_distribution.domain.enums.Constants;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionRoute;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionSchedule;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.ResponseDto;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.DistributionProgramRepository;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.DistributionRouteRepository;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.DistributionScheduleRepository;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.FareRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Calienta el nodo antes de recibir tráfico: abre el pool de Mongo hasta su tamaño mínimo, precarga
+ * por organización las tarifas activas (listados) y las rutas y horarios activos (cachés por id), y
+ * repite el mapeo entidad/BSON/JSON sobre unas muestras para que el JIT lo compile. Hasta que
+ * termina, WarmUpHealthIndicator mantiene readiness en DOWN. Un fallo o el timeout no bloquean el
+ * arranque: el nodo pasa a listo en frío y queda registrado en el detalle de salud.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class StartupWarmUp {
+
+    public enum Phase { PENDING, RUNNING, COMPLETED, FAILED, TIMED_OUT, DISABLED }
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final WarmUpProperties properties;
+    private final MongoPoolProperties poolProperties;
+    private final ObjectMapper objectMapper;
+    private final FareService fareService;
+    private final DistributionProgramRepository programRepository;
+    private final DistributionRouteRepository routeRepository;
+    private final DistributionScheduleRepository scheduleRepository;
+    private final FareRepository fareRepository;
+    private final ByIdCache<DistributionRoute> routeCache;
+    private final ByIdCache<DistributionSchedule> scheduleCache;
+
+    private final Map<String, Long> loaded = new ConcurrentHashMap<>();
+    private volatile Phase phase = Phase.PENDING;
+    private volatile Instant startedAt;
+    private volatile Duration elapsed;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled()) {
+            phase = Phase.DISABLED;
+            log.info("Startup warm-up disabled");
+            return;
+        }
+        run().subscribe();
+    }
+
+    public Mono<Void> run() {
+        return Mono.defer(() -> {
+                    phase = Phase.RUNNING;
+                    startedAt = Instant.now();
+                    loaded.clear();
+                    log.info("Startup warm-up started");
+                    return openPool()
+                            .then(preloadCaches())
+                            .then(warmMapping());
+                })
+                .timeout(properties.getTimeout())
+                .doOnSuccess(done -> finish(Phase.COMPLETED))
+                .onErrorResume(error -> {
+                    finish(error instanceof TimeoutException ? Phase.TIMED_OUT : Phase.FAILED);
+                    log.warn("Startup warm-up did not complete, serving cold: {}", error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    public boolean isFinished() {
+        return phase != Phase.PENDING && phase != Phase.RUNNING;
+    }
+
+    public Map<String, Object> getDetails() {
+        Map<String, Object> details = new TreeMap<>();
+        details.put("phase", phase);
+        if (startedAt != null) {
+            details.put("startedAt", startedAt);
+        }
+        if (elapsed != null) {
+            details.put("elapsed", elapsed.toString());
+        }
+        details.put("loaded", new TreeMap<>(loaded));
+        return details;
+    }
+
+    private void finish(Phase outcome) {
+        elapsed = Duration.between(startedAt, Instant.now());
+        phase = outcome;
+        log.info("Startup warm-up {} in {} ms: {}", outcome, elapsed.toMillis(), loaded);
+    }
+
+    // Pings simultáneos: cada uno necesita su propia conexión, así el pool no espera al mantenimiento del driver
+    private Mono<Void> openPool() {
+        Integer minSize = poolProperties.getMinSize();
+        if (minSize == null || minSize <= 0) {
+            return Mono.empty();
+        }
+        return Flux.range(0, minSize)
+                .flatMap(i -> mongoTemplate.executeCommand(new Document("ping", 1)), minSize)
+                .count()
+                .doOnNext(pings -> loaded.put("connections", pings))
+                .then();
+    }
+
+    private Mono<Void> preloadCaches() {
+        String active = Constants.ACTIVE.name();
+        return Flux.merge(
+                        fareRepository.findOrganizationIds(active),
+                        routeRepository.findOrganizationIds(active),
+                        scheduleRepository.findOrganizationIds(active))
+                .distinct()
+                .take(properties.getMaxOrganizations())
+                .flatMap(organizationId -> Mono.when(
+                        fareService.getAllByOrganizationF(organizationId, active).count()
+                                .doOnNext(count -> add("fares", count)),
+                        routeCache.prime(routeRepository.findAllByOrganizationIdAndStatus(organizationId, active), DistributionRoute::getId)
+                                .doOnNext(count -> add("routes", count)),
+                        scheduleCache.prime(scheduleRepository.findAllByOrganizationIdAndStatus(organizationId, active), DistributionSchedule::getId)
+                                .doOnNext(count -> add("schedules", count)))
+                        .doOnSuccess(done -> add("organizations", 1L)), properties.getConcurrency())
+                .then(fareService.getAllActiveF().then());
+    }
+
+    private Mono<Void> warmMapping() {
+        int samples = properties.getMappingSamples();
+        return Flux.<Object>merge(
+                        programRepository.findPage(null, null, samples, null),
+                        routeRepository.findPage(null, null, samples, null),
+                        scheduleRepository.findPage(null, null, samples, null),
+                        fareRepository.findPage(null, null, samples, null))
+                .collectList()
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(this::exerciseMapping)
+                .then();
+    }
+
+    // Lectura y escritura con el conversor de Mongo y serialización como la de los controladores
+    private void exerciseMapping(List<Object> samples) {
+        MongoConverter converter = mongoTemplate.getConverter();
+        try {
+            for (int i = 0; i < properties.getMappingIterations(); i++) {
+                for (Object sample : samples) {
+                    Document document = new Document();
+                    converter.write(sample, document);
+                    objectMapper.writeValueAsBytes(new ResponseDto<>(true, converter.read(sample.getClass(), document)));
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize warm-up sample", e);
+        }
+        loaded.put("mappingSamples", (long) samples.size());
+    }
+
+    private void add(String key, long count) {
+        loaded.merge(key, count, Long::sum);
+    }
+}
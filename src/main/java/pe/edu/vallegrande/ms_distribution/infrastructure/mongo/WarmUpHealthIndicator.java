@@ -0,0 +1,25 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Componente "warmUp" de salud: DOWN mientras StartupWarmUp no ha terminado. Solo cuenta en el
+ * grupo readiness (/actuator/health/readiness), de modo que el balanceador no envía tráfico a un
+ * nodo frío; ni liveness ni el grupo principal lo incluyen (véase HealthGroupsConfig), así que el
+ * calentamiento nunca provoca un reinicio ni un /actuator/health en DOWN.
+ */
+@Component
+@RequiredArgsConstructor
+public class WarmUpHealthIndicator implements HealthIndicator {
+
+    private final StartupWarmUp warmUp;
+
+    @Override
+    public Health health() {
+        Health.Builder builder = warmUp.isFinished() ? Health.up() : Health.down();
+        return builder.withDetails(warmUp.getDetails()).build();
+    }
+}
@@ -0,0 +1,325 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import pe.edu.vallegrande.ms_distribution.domain.enums.Constants;
+import pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ReadRouting;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ReadWorkload;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Base de los fragmentos XRepositoryCustomImpl: comparte el template, la clase de la entidad y
+ * el enrutado de lecturas (los listados pueden ir a un secundario; las lecturas por id, no).
+ */
+public abstract class AbstractMongoRepositoryCustom<T> implements MongoRepositoryCustom<T> {
+
+    protected static final String ID_FIELD = "_id";
+    protected static final String STATUS_FIELD = "status";
+    protected static final String VERSION_FIELD = "version";
+    protected static final String ORGANIZATION_FIELD = "organizationId";
+    protected static final String UNKNOWN_STATUS = "UNKNOWN";
+    // Claves de idx_<colección>_status_id, declarado en todas las entidades
+    private static final Document STATUS_INDEX_KEYS = new Document(STATUS_FIELD, 1).append(ID_FIELD, 1);
+
+    protected final ReactiveMongoTemplate mongoTemplate;
+    protected final ReadRouting readRouting;
+    protected final Class<T> entityClass;
+    protected final String codeField;
+
+    protected AbstractMongoRepositoryCustom(ReactiveMongoTemplate mongoTemplate, ReadRouting readRouting,
+                                            Class<T> entityClass, String codeField) {
+        this.mongoTemplate = mongoTemplate;
+        this.readRouting = readRouting;
+        this.entityClass = entityClass;
+        this.codeField = codeField;
+    }
+
+    @Override
+    public Mono<T> transitionStatus(String id, Collection<String> allowedFrom, String newStatus) {
+        return mongoTemplate.findAndModify(byId(id), statusUpdate(allowedFrom, newStatus),
+                FindAndModifyOptions.options().returnNew(true), entityClass);
+    }
+
+    @Override
+    public Mono<T> updateFields(String id, Long expectedVersion, Map<String, Object> fields) {
+        if (fields.isEmpty()) {
+            return mongoTemplate.findById(id, entityClass);
+        }
+        return mongoTemplate.findAndModify(versioned(id, expectedVersion), setFields(fields),
+                        FindAndModifyOptions.options().returnNew(true), entityClass)
+                .switchIfEmpty(Mono.defer(() -> expectedVersion == null ? Mono.empty() : versionConflict(id, expectedVersion)));
+    }
+
+    @Override
+    public Mono<Change<T>> transitionStatusTracked(String id, Collection<String> allowedFrom, String newStatus) {
+        return mongoTemplate.findAndModify(byId(id), statusUpdate(allowedFrom, newStatus),
+                        FindAndModifyOptions.options().returnNew(false), entityClass)
+                .map(before -> allowedFrom == null || allowedFrom.contains(propertyOf(before, STATUS_FIELD))
+                        ? new Change<>(before, applied(before, Map.of(STATUS_FIELD, newStatus)))
+                        : new Change<>(before, before));
+    }
+
+    @Override
+    public Mono<Change<T>> updateFieldsTracked(String id, Long expectedVersion, Map<String, Object> fields) {
+        if (fields.isEmpty()) {
+            return mongoTemplate.findById(id, entityClass).map(current -> new Change<>(current, current));
+        }
+        return mongoTemplate.findAndModify(versioned(id, expectedVersion), setFields(fields),
+                        FindAndModifyOptions.options().returnNew(false), entityClass)
+                .map(before -> new Change<>(before, applied(before, fields)))
+                .switchIfEmpty(Mono.defer(() -> expectedVersion == null ? Mono.empty() : versionConflict(id, expectedVersion)));
+    }
+
+    @Override
+    public Flux<T> findPage(String status, String afterId, int limit, Collection<String> fields) {
+        Query query = byStatus(status);
+        if (afterId != null) {
+            query.addCriteria(where(ID_FIELD).gt(afterId));
+        }
+        query.with(Sort.by(Sort.Direction.ASC, ID_FIELD)).limit(limit);
+        return Flux.defer(() -> mongoTemplate.find(routed(project(query, fields), ReadWorkload.LIST), entityClass));
+    }
+
+    @Override
+    public Flux<T> findProjected(String status, Collection<String> fields) {
+        return Flux.defer(() -> mongoTemplate.find(routed(project(byStatus(status), fields), ReadWorkload.LIST), entityClass));
+    }
+
+    @Override
+    public Flux<T> findListing(String status) {
+        return Flux.defer(() -> mongoTemplate.find(routed(byStatus(status), ReadWorkload.LIST), entityClass));
+    }
+
+    @Override
+    public Flux<T> findListingFromPrimary(String status) {
+        return Flux.defer(() -> mongoTemplate.find(byStatus(status).withReadPreference(ReadPreference.primary()), entityClass));
+    }
+
+    /**
+     * El prefijo se expresa como rango [prefix, siguiente prefijo): son límites exactos del índice,
+     * sin expresiones regulares que escapar ni evaluar clave a clave.
+     */
+    @Override
+    public Flux<T> findByCodePrefix(String organizationId, String prefix, String afterCode, int limit) {
+        Criteria code = where(ORGANIZATION_FIELD).is(organizationId).and(codeField);
+        // Un cursor anterior al prefijo no puede ampliar el rango: entonces se empieza por el prefijo
+        if (afterCode != null && afterCode.compareTo(prefix) >= 0) {
+            code.gt(afterCode);
+        } else {
+            code.gte(prefix);
+        }
+        code.lt(prefix.substring(0, prefix.length() - 1) + (char) (prefix.charAt(prefix.length() - 1) + 1));
+        Query query = Query.query(code)
+                .with(Sort.by(Sort.Direction.ASC, codeField))
+                .limit(limit);
+        return Flux.defer(() -> mongoTemplate.find(routed(query, ReadWorkload.LIST), entityClass));
+    }
+
+    @Override
+    public Mono<Long> countWithStatus(String status) {
+        return status == null
+                ? mongoTemplate.estimatedCount(entityClass)
+                : Mono.defer(() -> mongoTemplate.count(routed(byStatus(status), ReadWorkload.LIST), entityClass));
+    }
+
+    /**
+     * Con el hint y la proyección solo de status, el plan es IXSCAN + PROJECTION_COVERED:
+     * ningún documento sale del índice. $group solo devuelve los estados presentes; los conocidos
+     * que no tienen documentos se completan con 0 para que el cliente no tenga que suponerlo.
+     */
+    @Override
+    public Mono<Map<String, Long>> countGroupedByStatus() {
+        return Flux.defer(() -> mongoTemplate.aggregate(Aggregation.newAggregation(
+                                        Aggregation.project(STATUS_FIELD).andExclude(ID_FIELD),
+                                        Aggregation.group(STATUS_FIELD).count().as("count"))
+                                .withOptions(routed(AggregationOptions.builder().hint(STATUS_INDEX_KEYS), ReadWorkload.LIST)),
+                        entityClass, Document.class))
+                .collect(this::zeroCounts, (counts, row) -> counts.put(
+                        Objects.toString(row.get(ID_FIELD), UNKNOWN_STATUS),
+                        ((Number) row.get("count")).longValue()));
+    }
+
+    /**
+     * Estados que puede tener la entidad; countGroupedByStatus los devuelve siempre, aunque sea con 0.
+     */
+    protected Collection<String> knownStatuses() {
+        return Arrays.stream(Constants.values()).map(Constants::name).toList();
+    }
+
+    private Map<String, Long> zeroCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        knownStatuses().forEach(status -> counts.put(status, 0L));
+        return counts;
+    }
+
+    @Override
+    public Flux<String> findOrganizationIds(String status) {
+        return Flux.defer(() -> mongoTemplate.findDistinct(routed(byStatus(status), ReadWorkload.LIST),
+                ORGANIZATION_FIELD, entityClass, String.class));
+    }
+
+    @Override
+    public Mono<Long> removeById(String id) {
+        return mongoTemplate.remove(byId(id), entityClass)
+                .map(DeleteResult::getDeletedCount);
+    }
+
+    @Override
+    public Mono<T> findAndRemoveById(String id) {
+        return mongoTemplate.findAndRemove(byId(id), entityClass);
+    }
+
+    @Override
+    public Mono<Long> removeMatching(String organizationId, String status) {
+        if (organizationId == null) {
+            return Mono.error(new IllegalArgumentException("A bulk delete requires an organizationId"));
+        }
+        Query query = new Query(where(ORGANIZATION_FIELD).is(organizationId));
+        if (status != null) {
+            query.addCriteria(where(STATUS_FIELD).is(status));
+        }
+        return mongoTemplate.remove(query, entityClass)
+                .map(DeleteResult::getDeletedCount);
+    }
+
+    // Solo en el camino de fallo: distingue documento inexistente de versión desactualizada
+    private <R> Mono<R> versionConflict(String id, Long expectedVersion) {
+        return mongoTemplate.exists(byId(id), entityClass)
+                .flatMap(exists -> exists
+                        ? Mono.error(new OptimisticLockingFailureException(String.format(
+                                "%s %s was modified concurrently (expected version %d)",
+                                entityClass.getSimpleName(), id, expectedVersion)))
+                        : Mono.empty());
+    }
+
+    private Query versioned(String id, Long expectedVersion) {
+        Query query = byId(id);
+        if (expectedVersion != null) {
+            query.addCriteria(where(VERSION_FIELD).is(expectedVersion));
+        }
+        return query;
+    }
+
+    private Update setFields(Map<String, Object> fields) {
+        Update update = new Update();
+        fields.forEach(update::set);
+        return update.inc(VERSION_FIELD, 1);
+    }
+
+    /**
+     * Imagen posterior calculada en memoria a partir de la previa: una copia con los campos
+     * aplicados y la versión incrementada, igual que la escritura que acaba de hacer Mongo.
+     */
+    private T applied(T before, Map<String, Object> fields) {
+        MongoConverter converter = mongoTemplate.getConverter();
+        MongoPersistentEntity<?> entity = persistentEntity();
+        Document copy = new Document();
+        converter.write(before, copy);
+        PersistentPropertyAccessor<T> accessor = entity.getPropertyAccessor(converter.read(entityClass, copy));
+        fields.forEach((name, value) -> accessor.setProperty(entity.getRequiredPersistentProperty(name), value));
+        MongoPersistentProperty version = entity.getVersionProperty();
+        if (version != null) {
+            Object current = accessor.getProperty(version);
+            accessor.setProperty(version, current == null ? 1L : ((Number) current).longValue() + 1);
+        }
+        return accessor.getBean();
+    }
+
+    private Object propertyOf(T bean, String name) {
+        MongoPersistentEntity<?> entity = persistentEntity();
+        return entity.getPropertyAccessor(bean).getProperty(entity.getRequiredPersistentProperty(name));
+    }
+
+    private MongoPersistentEntity<?> persistentEntity() {
+        return mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(entityClass);
+    }
+
+    protected Query routed(Query query, ReadWorkload workload) {
+        return readRouting.apply(query, mongoTemplate.getCollectionName(entityClass), workload);
+    }
+
+    protected AggregationOptions routed(AggregationOptions.Builder options, ReadWorkload workload) {
+        return readRouting.apply(options, mongoTemplate.getCollectionName(entityClass), workload).build();
+    }
+
+    protected Query byId(String id) {
+        return Query.query(where(ID_FIELD).is(id));
+    }
+
+    private Query byStatus(String status) {
+        Query query = new Query();
+        if (status != null) {
+            query.addCriteria(where(STATUS_FIELD).is(status));
+        }
+        return query;
+    }
+
+    /**
+     * Proyección validada contra las propiedades persistentes de la entidad, para que un nombre
+     * mal escrito no devuelva documentos vacíos sin avisar.
+     */
+    protected Query project(Query query, Collection<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return query;
+        }
+        MongoPersistentEntity<?> entity = persistentEntity();
+        for (String field : fields) {
+            if (entity.getPersistentProperty(field) == null) {
+                throw CustomException.badRequest("Unknown field",
+                        "Field " + field + " does not exist in " + entityClass.getSimpleName());
+            }
+            query.fields().include(field);
+        }
+        return query;
+    }
+
+    /**
+     * Con restricción, el $cond se evalúa dentro del mismo find-and-modify: si el estado actual
+     * no está permitido el documento queda igual (también su versión) y el llamador lo detecta
+     * en el resultado, sin una segunda consulta para distinguir "no existe" de "transición inválida".
+     * Sin restricción solo cambia (y sube la versión) si el estado es otro, así que repetir la
+     * escritura tras un error transitorio no tiene efecto adicional.
+     */
+    private UpdateDefinition statusUpdate(Collection<String> allowedFrom, String newStatus) {
+        String current = "$" + STATUS_FIELD;
+        String version = "$" + VERSION_FIELD;
+        Document allowed = allowedFrom == null
+                ? new Document("$ne", List.of(current, newStatus))
+                : new Document("$in", List.of(current, List.copyOf(allowedFrom)));
+        AggregationOperation conditionalSet = context -> new Document("$set", new Document()
+                .append(STATUS_FIELD, new Document("$cond", List.of(allowed, newStatus, current)))
+                .append(VERSION_FIELD, new Document("$cond", List.of(allowed,
+                        new Document("$add", List.of(new Document("$ifNull", List.of(version, 0L)), 1L)),
+                        version))));
+        return AggregationUpdate.from(List.of(conditionalSet));
+    }
+}
@@ -0,0 +1,8 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+/**
+ * Documento antes y después de una escritura atómica, para quien deba reaccionar a lo que cambió
+ * (p. ej. mover un contador de un estado a otro) sin volver a leerlo.
+ */
+public record Change<T>(T before, T after) {
+}
@@ -4,17 +4,23 @@ import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
 
 import pe.edu.vallegrande.ms_distribution.domain.models.DistributionProgram;
-import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.DistributionProgramResponse;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 @Repository
-public interface DistributionProgramRepository extends ReactiveMongoRepository<DistributionProgram, String> {
+public interface DistributionProgramRepository extends ReactiveMongoRepository<DistributionProgram, String>, DistributionProgramRepositoryCustom {
 
     Flux<DistributionProgram> findAllByStatus(String status);
 
-    Mono<DistributionProgram> findFirstByProgramCode(String programCode);
+    // Consultas por organización: usan los índices compuestos que empiezan por organizationId
+    Flux<DistributionProgram> findAllByOrganizationId(String organizationId);
 
-    Flux<DistributionProgramResponse> findByProgramCode(String programCode);
+    Flux<DistributionProgram> findAllByOrganizationIdAndStatus(String organizationId, String status);
 
-    Mono<DistributionProgram> findTopByOrderByProgramCodeDesc(); // <- CORRECTO
+    Mono<Long> countByOrganizationId(String organizationId);
+
+    Mono<Long> countByOrganizationIdAndStatus(String organizationId, String status);
+
+    Mono<DistributionProgram> findByIdAndOrganizationId(String id, String organizationId);
+
+    Mono<DistributionProgram> findByOrganizationIdAndProgramCode(String organizationId, String programCode);
 }
@@ -0,0 +1,36 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionProgram;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.ProgramKpiResponse;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DistributionProgramRepositoryCustom extends MongoRepositoryCustom<DistributionProgram> {
+
+    /**
+     * Programas con programDate entre from y to (inclusivos), ordenados por fecha. El rango y la
+     * organización se resuelven con idx_programs_date_org; zona, ruta y responsable (null = sin
+     * filtro) se evalúan sobre los documentos de ese rango.
+     */
+    Flux<DistributionProgram> findByDateRange(LocalDate from, LocalDate to, String organizationId,
+                                              String zoneId, String routeId, String responsibleUserId);
+
+    /**
+     * Programas de la organización cuyas observaciones contienen las palabras de text, por relevancia
+     * (score desc, _id asc) sobre txt_programs_org_observations. afterScore/afterId es la posición del
+     * último programa entregado (null = primera página); cada programa trae su score.
+     */
+    Flux<DistributionProgram> searchObservations(String organizationId, String text, Double afterScore,
+                                                 String afterId, int limit);
+
+    /**
+     * Indicadores de puntualidad y cumplimiento calculados en Mongo con un único pipeline:
+     * $match sobre el rango indexado, $group por groupFields (nombres de campo del documento)
+     * y por periodo si periodFormat no es null (formato de $dateToString). Solo viajan las filas resumen.
+     */
+    Flux<ProgramKpiResponse> aggregateKpis(LocalDate from, LocalDate to, String organizationId, String zoneId,
+                                           String routeId, List<String> groupFields, String periodFormat,
+                                           int toleranceMinutes);
+}
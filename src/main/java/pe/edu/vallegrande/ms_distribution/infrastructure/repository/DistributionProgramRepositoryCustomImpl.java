@@ -0,0 +1,186 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import pe.edu.vallegrande.ms_distribution.domain.enums.Constants;
+import pe.edu.vallegrande.ms_distribution.domain.enums.ProgramStatus;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionProgram;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.ProgramKpiResponse;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ReadRouting;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ReadWorkload;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class DistributionProgramRepositoryCustomImpl extends AbstractMongoRepositoryCustom<DistributionProgram> implements DistributionProgramRepositoryCustom {
+
+    private static final String DATE_FIELD = "programDate";
+    private static final String PERIOD_FIELD = "period";
+    private static final String DELAY_FIELD = "delay";
+    private static final String SCORE_FIELD = "score";
+    private static final String TEXT_LANGUAGE = "spanish";
+
+    public DistributionProgramRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate, ReadRouting readRouting) {
+        super(mongoTemplate, readRouting, DistributionProgram.class, "programCode");
+    }
+
+    @Override
+    protected Collection<String> knownStatuses() {
+        return Stream.concat(Arrays.stream(Constants.values()).map(Constants::name),
+                Arrays.stream(ProgramStatus.values()).map(ProgramStatus::name)).toList();
+    }
+
+    @Override
+    public Flux<DistributionProgram> findByDateRange(LocalDate from, LocalDate to, String organizationId,
+                                                     String zoneId, String routeId, String responsibleUserId) {
+        Query query = Query.query(rangeCriteria(from, to, organizationId, zoneId, routeId));
+        if (responsibleUserId != null) {
+            query.addCriteria(where("responsibleUserId").is(responsibleUserId));
+        }
+        query.with(Sort.by(Sort.Direction.ASC, DATE_FIELD)); // lo entrega el propio índice, sin ordenar en memoria
+        return Flux.defer(() -> mongoTemplate.find(routed(query, ReadWorkload.REPORT), entityClass));
+    }
+
+    @Override
+    public Flux<DistributionProgram> searchObservations(String organizationId, String text, Double afterScore,
+                                                        String afterId, int limit) {
+        List<AggregationOperation> stages = new ArrayList<>();
+        // $text tiene que ser la primera etapa; la igualdad por organización usa el prefijo del índice de texto
+        stages.add(stage("$match", new Document(ORGANIZATION_FIELD, organizationId)
+                .append("$text", new Document("$search", text).append("$language", TEXT_LANGUAGE))));
+        stages.add(stage("$addFields", new Document(SCORE_FIELD, new Document("$meta", "textScore"))));
+        if (afterScore != null && afterId != null) {
+            stages.add(Aggregation.match(new Criteria().orOperator(
+                    where(SCORE_FIELD).lt(afterScore),
+                    where(SCORE_FIELD).is(afterScore).and(ID_FIELD).gt(afterId))));
+        }
+        stages.add(stage("$sort", new Document(SCORE_FIELD, -1).append(ID_FIELD, 1)));
+        stages.add(Aggregation.limit(limit));
+        return Flux.defer(() -> mongoTemplate.aggregate(Aggregation.newAggregation(entityClass, stages)
+                        .withOptions(routed(AggregationOptions.builder(), ReadWorkload.LIST)),
+                DistributionProgram.class));
+    }
+
+    @Override
+    public Flux<ProgramKpiResponse> aggregateKpis(LocalDate from, LocalDate to, String organizationId, String zoneId,
+                                                  String routeId, List<String> groupFields, String periodFormat,
+                                                  int toleranceMinutes) {
+        List<String> keys = new ArrayList<>(groupFields);
+        if (periodFormat != null) {
+            keys.add(PERIOD_FIELD);
+        }
+        return Flux.defer(() -> mongoTemplate.aggregate(Aggregation.newAggregation(entityClass,
+                                Aggregation.match(rangeCriteria(from, to, organizationId, zoneId, routeId)),
+                                delayStage(groupFields, periodFormat),
+                                groupStage(keys, toleranceMinutes),
+                                summaryStage(keys),
+                                stage("$sort", sortKeys(keys)))
+                        .withOptions(routed(AggregationOptions.builder(), ReadWorkload.REPORT)),
+                ProgramKpiResponse.class));
+    }
+
+    private Criteria rangeCriteria(LocalDate from, LocalDate to, String organizationId, String zoneId, String routeId) {
+        Criteria criteria = where(DATE_FIELD).gte(from).lte(to);
+        if (organizationId != null) {
+            criteria.and(ORGANIZATION_FIELD).is(organizationId);
+        }
+        if (zoneId != null) {
+            criteria.and("zoneId").is(zoneId);
+        }
+        if (routeId != null) {
+            criteria.and("routeId").is(routeId);
+        }
+        return criteria;
+    }
+
+    // Conserva solo lo necesario para agrupar y calcula el retraso en minutos (null si falta alguna hora)
+    private AggregationOperation delayStage(List<String> groupFields, String periodFormat) {
+        Document projection = new Document(STATUS_FIELD, 1)
+                .append(DELAY_FIELD, new Document("$subtract", List.of(minutesOf("$actualStartTime"), minutesOf("$plannedStartTime"))));
+        groupFields.forEach(field -> projection.append(field, 1));
+        if (periodFormat != null) {
+            // La fecha se guardó a medianoche de la zona del servidor; se formatea en esa misma zona
+            projection.append(PERIOD_FIELD, new Document("$dateToString", new Document("format", periodFormat)
+                    .append("date", "$" + DATE_FIELD)
+                    .append("timezone", ZoneId.systemDefault().getId())));
+        }
+        return stage("$project", projection);
+    }
+
+    private AggregationOperation groupStage(List<String> keys, int toleranceMinutes) {
+        Document id = new Document();
+        keys.forEach(key -> id.append(key, "$" + key));
+        Document started = new Document("$ne", Arrays.asList("$" + DELAY_FIELD, null));
+        return stage("$group", new Document("_id", id)
+                .append("totalPrograms", new Document("$sum", 1))
+                .append("completedPrograms", countWhere(new Document("$eq", List.of("$" + STATUS_FIELD, ProgramStatus.COMPLETED.name()))))
+                .append("cancelledPrograms", countWhere(new Document("$eq", List.of("$" + STATUS_FIELD, ProgramStatus.CANCELLED.name()))))
+                .append("startedPrograms", countWhere(started))
+                .append("onTimePrograms", countWhere(new Document("$and", List.of(started,
+                        new Document("$lte", List.of("$" + DELAY_FIELD, toleranceMinutes))))))
+                .append("averageDelayMinutes", new Document("$avg", new Document("$cond", Arrays.asList(started,
+                        new Document("$max", List.of("$" + DELAY_FIELD, 0)), null)))));
+    }
+
+    private AggregationOperation summaryStage(List<String> keys) {
+        Document projection = new Document("_id", 0)
+                .append("totalPrograms", 1)
+                .append("completedPrograms", 1)
+                .append("cancelledPrograms", 1)
+                .append("startedPrograms", 1)
+                .append("onTimePrograms", 1)
+                .append("completionRate", new Document("$round", List.of(
+                        new Document("$divide", List.of("$completedPrograms", "$totalPrograms")), 4)))
+                .append("onTimeRate", new Document("$cond", Arrays.asList(
+                        new Document("$gt", List.of("$startedPrograms", 0)),
+                        new Document("$round", List.of(new Document("$divide", List.of("$onTimePrograms", "$startedPrograms")), 4)),
+                        null)))
+                .append("averageDelayMinutes", new Document("$round", List.of("$averageDelayMinutes", 1)));
+        keys.forEach(key -> projection.append(key, "$_id." + key));
+        return stage("$project", projection);
+    }
+
+    private Document sortKeys(List<String> keys) {
+        Document sort = new Document();
+        keys.forEach(key -> sort.append(key, 1));
+        return sort.isEmpty() ? new Document("totalPrograms", -1) : sort;
+    }
+
+    // "HH:mm" -> minutos desde medianoche; null si el valor falta o no tiene ese formato
+    private Document minutesOf(String field) {
+        return new Document("$add", List.of(
+                new Document("$multiply", List.of(toInt(new Document("$substrCP", List.of(field, 0, 2))), 60)),
+                toInt(new Document("$substrCP", List.of(field, 3, 2)))));
+    }
+
+    private Document toInt(Document input) {
+        return new Document("$convert", new Document("input", input)
+                .append("to", "int")
+                .append("onError", null)
+                .append("onNull", null));
+    }
+
+    private Document countWhere(Document condition) {
+        return new Document("$sum", new Document("$cond", List.of(condition, 1, 0)));
+    }
+
+    // Etapas escritas en BSON: el contexto tipado de la agregación no conoce los campos calculados
+    private AggregationOperation stage(String name, Document body) {
+        return context -> new Document(name, body);
+    }
+}
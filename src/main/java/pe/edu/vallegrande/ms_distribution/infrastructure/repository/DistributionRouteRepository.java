@@ -8,11 +8,20 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Repository
-public interface DistributionRouteRepository extends ReactiveMongoRepository<DistributionRoute, String> {
+public interface DistributionRouteRepository extends ReactiveMongoRepository<DistributionRoute, String>, DistributionRouteRepositoryCustom {
 
     Flux<DistributionRoute> findAllByStatus(String status);
 
-    Mono<Boolean> existsByRouteCode(String routeCode);
+    // Consultas por organización: usan los índices compuestos que empiezan por organizationId
+    Flux<DistributionRoute> findAllByOrganizationId(String organizationId);
 
-    Mono<DistributionRoute> findTopByOrderByRouteCodeDesc();
+    Flux<DistributionRoute> findAllByOrganizationIdAndStatus(String organizationId, String status);
+
+    Mono<Long> countByOrganizationId(String organizationId);
+
+    Mono<Long> countByOrganizationIdAndStatus(String organizationId, String status);
+
+    Mono<DistributionRoute> findByIdAndOrganizationId(String id, String organizationId);
+
+    Mono<DistributionRoute> findByOrganizationIdAndRouteCode(String organizationId, String routeCode);
 }
@@ -0,0 +1,6 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionRoute;
+
+public interface DistributionRouteRepositoryCustom extends MongoRepositoryCustom<DistributionRoute> {
+}
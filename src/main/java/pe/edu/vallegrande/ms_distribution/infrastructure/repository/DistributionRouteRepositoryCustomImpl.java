@@ -0,0 +1,13 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionRoute;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ReadRouting;
+
+public class DistributionRouteRepositoryCustomImpl extends AbstractMongoRepositoryCustom<DistributionRoute> implements DistributionRouteRepositoryCustom {
+
+    public DistributionRouteRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate, ReadRouting readRouting) {
+        super(mongoTemplate, readRouting, DistributionRoute.class, "routeCode");
+    }
+}
@@ -8,11 +8,20 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Repository
-public interface DistributionScheduleRepository extends ReactiveMongoRepository<DistributionSchedule, String> {
+public interface DistributionScheduleRepository extends ReactiveMongoRepository<DistributionSchedule, String>, DistributionScheduleRepositoryCustom {
 
     Flux<DistributionSchedule> findAllByStatus(String status);
 
-    Mono<Boolean> existsByScheduleCode(String scheduleCode);
+    // Consultas por organización: usan los índices compuestos que empiezan por organizationId
+    Flux<DistributionSchedule> findAllByOrganizationId(String organizationId);
 
-    Mono<DistributionSchedule> findTopByOrderByScheduleCodeDesc();
+    Flux<DistributionSchedule> findAllByOrganizationIdAndStatus(String organizationId, String status);
+
+    Mono<Long> countByOrganizationId(String organizationId);
+
+    Mono<Long> countByOrganizationIdAndStatus(String organizationId, String status);
+
+    Mono<DistributionSchedule> findByIdAndOrganizationId(String id, String organizationId);
+
+    Mono<DistributionSchedule> findByOrganizationIdAndScheduleCode(String organizationId, String scheduleCode);
 }
@@ -0,0 +1,6 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionSchedule;
+
+public interface DistributionScheduleRepositoryCustom extends MongoRepositoryCustom<DistributionSchedule> {
+}
@@ -0,0 +1,13 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionSchedule;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ReadRouting;
+
+public class DistributionScheduleRepositoryCustomImpl extends AbstractMongoRepositoryCustom<DistributionSchedule> implements DistributionScheduleRepositoryCustom {
+
+    public DistributionScheduleRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate, ReadRouting readRouting) {
+        super(mongoTemplate, readRouting, DistributionSchedule.class, "scheduleCode");
+    }
+}
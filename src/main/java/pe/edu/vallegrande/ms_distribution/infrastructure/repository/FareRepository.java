@@ -8,11 +8,20 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Repository
-public interface FareRepository extends ReactiveMongoRepository<Fare, String> {
+public interface FareRepository extends ReactiveMongoRepository<Fare, String>, FareRepositoryCustom {
 
     Flux<Fare> findAllByStatus(String status);
 
-    Mono<Boolean> existsByFareCode(String fareCode);
+    // Consultas por organización: usan los índices compuestos que empiezan por organizationId
+    Flux<Fare> findAllByOrganizationId(String organizationId);
 
-    Mono<Fare> findTopByOrderByFareCodeDesc(); // <- CORRECTO
+    Flux<Fare> findAllByOrganizationIdAndStatus(String organizationId, String status);
+
+    Mono<Long> countByOrganizationId(String organizationId);
+
+    Mono<Long> countByOrganizationIdAndStatus(String organizationId, String status);
+
+    Mono<Fare> findByIdAndOrganizationId(String id, String organizationId);
+
+    Mono<Fare> findByOrganizationIdAndFareCode(String organizationId, String fareCode);
 }
@@ -0,0 +1,13 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import pe.edu.vallegrande.ms_distribution.domain.models.Fare;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ReadRouting;
+
+public class FareRepositoryCustomImpl extends AbstractMongoRepositoryCustom<Fare> implements FareRepositoryCustom {
+
+    public FareRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate, ReadRouting readRouting) {
+        super(mongoTemplate, readRouting, Fare.class, "fareCode");
+    }
+}
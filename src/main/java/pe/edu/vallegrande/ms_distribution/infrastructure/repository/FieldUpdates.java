@@ -0,0 +1,37 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Campos a escribir con un único $set. set() incluye nulos (reemplazo, PUT);
+ * setIfPresent() solo los valores enviados (PATCH).
+ */
+public final class FieldUpdates {
+
+    private final Map<String, Object> fields = new LinkedHashMap<>();
+
+    private FieldUpdates() {
+    }
+
+    public static FieldUpdates create() {
+        return new FieldUpdates();
+    }
+
+    public FieldUpdates set(String field, Object value) {
+        fields.put(field, value);
+        return this;
+    }
+
+    public FieldUpdates setIfPresent(String field, Object value) {
+        if (value != null) {
+            fields.put(field, value);
+        }
+        return this;
+    }
+
+    public Map<String, Object> toMap() {
+        return Collections.unmodifiableMap(fields);
+    }
+}
@@ -0,0 +1,104 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Operaciones atómicas comunes a las colecciones de distribución, resueltas con una sola
+ * instrucción a Mongo en lugar de findById + save. Toda escritura incrementa la versión.
+ */
+public interface MongoRepositoryCustom<T> {
+
+    /**
+     * Cambia el estado solo si el actual está en allowedFrom (null = sin restricción)
+     * y devuelve el documento resultante; si la transición no estaba permitida conserva
+     * el estado anterior. Vacío si no existe.
+     */
+    Mono<T> transitionStatus(String id, Collection<String> allowedFrom, String newStatus);
+
+    /**
+     * Aplica los campos indicados con un $set y devuelve el documento ya actualizado;
+     * vacío si no existe. Con expectedVersion solo escribe si la versión coincide y si no
+     * emite OptimisticLockingFailureException. Sin campos solo lo lee.
+     */
+    Mono<T> updateFields(String id, Long expectedVersion, Map<String, Object> fields);
+
+    /**
+     * Igual que transitionStatus, pero devuelve también el documento previo a la escritura.
+     */
+    Mono<Change<T>> transitionStatusTracked(String id, Collection<String> allowedFrom, String newStatus);
+
+    /**
+     * Igual que updateFields, pero devuelve también el documento previo a la escritura.
+     */
+    Mono<Change<T>> updateFieldsTracked(String id, Long expectedVersion, Map<String, Object> fields);
+
+    /**
+     * Página ordenada por _id a partir de afterId (exclusivo; null = desde el inicio), opcionalmente
+     * filtrada por estado. El coste no depende de la profundidad: no hay skip.
+     * Con fields solo se leen esos campos (y _id); null o vacío = documento completo.
+     */
+    Flux<T> findPage(String status, String afterId, int limit, Collection<String> fields);
+
+    /**
+     * Todos los documentos (o los del estado indicado) completos. Como findPage y findProjected,
+     * se lee con la preferencia configurada para listados (app.read-routing).
+     */
+    Flux<T> findListing(String status);
+
+    /**
+     * Como findListing, pero siempre del primario. Es la lectura de las cargas de caché: un
+     * secundario atrasado devolvería datos anteriores a la escritura que acaba de invalidarla.
+     */
+    Flux<T> findListingFromPrimary(String status);
+
+    /**
+     * Todos los documentos (o los del estado indicado) leyendo solo los campos pedidos.
+     * Un campo que no existe en la entidad produce un error 400.
+     */
+    Flux<T> findProjected(String status, Collection<String> fields);
+
+    /**
+     * Documentos de la organización cuyo código empieza por prefix (no vacío), en orden de código y a partir
+     * de afterCode (exclusivo; null = desde el inicio). Se resuelve en el índice único {organizationId, código}.
+     */
+    Flux<T> findByCodePrefix(String organizationId, String prefix, String afterCode, int limit);
+
+    /**
+     * Número de documentos del estado indicado (null = todos) sin leer ninguno: con estado es un
+     * recuento exacto sobre el índice {status, _id}; sin él, el recuento que mantiene la colección
+     * en sus metadatos, que es aproximado (puede desviarse tras un apagado brusco o en un clúster
+     * fragmentado con migraciones en curso).
+     */
+    Mono<Long> countWithStatus(String status);
+
+    /**
+     * Recuento de todos los estados en una sola agregación cubierta por el índice {status, _id}.
+     * Incluye con 0 los estados conocidos sin documentos y agrupa en UNKNOWN los que no tienen estado.
+     */
+    Mono<Map<String, Long>> countGroupedByStatus();
+
+    /**
+     * Organizaciones distintas con documentos del estado indicado (null = todos), leídas como listado.
+     */
+    Flux<String> findOrganizationIds(String status);
+
+    /**
+     * Borra por id con un único deleteOne y devuelve los documentos afectados (0 si no existía).
+     */
+    Mono<Long> removeById(String id);
+
+    /**
+     * Borra por id y devuelve el documento eliminado; vacío si no existía.
+     */
+    Mono<T> findAndRemoveById(String id);
+
+    /**
+     * Borra los documentos de la organización, opcionalmente solo los del estado indicado, y
+     * devuelve cuántos se eliminaron. La organización es obligatoria.
+     */
+    Mono<Long> removeMatching(String organizationId, String status);
+}
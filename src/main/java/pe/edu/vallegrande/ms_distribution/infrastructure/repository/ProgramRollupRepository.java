@@ -0,0 +1,24 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import pe.edu.vallegrande.ms_distribution.domain.models.ProgramDailyRollup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+@Repository
+public interface ProgramRollupRepository extends ReactiveMongoRepository<ProgramDailyRollup, String>, ProgramRollupRepositoryCustom {
+
+    // Ambas recorren idx_program_rollups_org_date
+    @Query(value = "{ 'organizationId': ?0, 'date': { $gte: ?1, $lte: ?2 } }", sort = "{ 'date': 1 }")
+    Flux<ProgramDailyRollup> findRange(String organizationId, LocalDate from, LocalDate to);
+
+    @Query(value = "{ 'organizationId': ?0, 'zoneId': ?1, 'date': { $gte: ?2, $lte: ?3 } }", sort = "{ 'date': 1 }")
+    Flux<ProgramDailyRollup> findRangeByZone(String organizationId, String zoneId, LocalDate from, LocalDate to);
+
+    Mono<Long> countByOrganizationId(String organizationId);
+}
@@ -0,0 +1,22 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+public interface ProgramRollupRepositoryCustom {
+
+    /**
+     * Suma delta (positivo o negativo) al total del día y al contador del estado con un único
+     * upsert; crea el documento si es el primer programa de esa organización, zona y día.
+     */
+    Mono<Void> increment(String organizationId, String zoneId, LocalDate date, String status, long delta);
+
+    /**
+     * Recalcula los resúmenes desde la colección de programas; null = todas las organizaciones.
+     * Reemplaza cada día con $merge y después borra los días que ya no salieron, sin vaciar antes.
+     * Un incremento que llega mientras corre puede quedar pisado o contarse dos veces: ver
+     * ProgramRollupServiceImpl.
+     */
+    Mono<Void> rebuild(String organizationId);
+}
@@ -0,0 +1,108 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionProgram;
+import pe.edu.vallegrande.ms_distribution.domain.models.ProgramDailyRollup;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@RequiredArgsConstructor
+public class ProgramRollupRepositoryCustomImpl implements ProgramRollupRepositoryCustom {
+
+    // Marca de la reconstrucción que escribió el documento; los incrementos no la tocan
+    static final String REBUILD_RUN_FIELD = "rebuildRun";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Mono<Void> increment(String organizationId, String zoneId, LocalDate date, String status, long delta) {
+        Query query = Query.query(where("_id").is(ProgramDailyRollup.key(organizationId, zoneId, date)));
+        Update update = new Update()
+                .inc("total", delta)
+                .inc("statusCounts." + (status != null ? status : ProgramDailyRollup.UNKNOWN_STATUS), delta)
+                .setOnInsert("organizationId", organizationId)
+                .setOnInsert("zoneId", zoneId)
+                .setOnInsert("date", date)
+                .set("updatedAt", Instant.now());
+        return mongoTemplate.upsert(query, update, ProgramDailyRollup.class).then();
+    }
+
+    @Override
+    public Mono<Void> rebuild(String organizationId) {
+        return Mono.defer(() -> rebuildRun(organizationId, UUID.randomUUID().toString(), Instant.now()));
+    }
+
+    private Mono<Void> rebuildRun(String organizationId, String runId, Instant startedAt) {
+        String target = mongoTemplate.getCollectionName(ProgramDailyRollup.class);
+        List<Document> pipeline = new ArrayList<>();
+        Document match = new Document("programDate", new Document("$type", "date"));
+        if (organizationId != null) {
+            match.append("organizationId", organizationId);
+        }
+        pipeline.add(new Document("$match", match));
+        pipeline.add(new Document("$group", new Document("_id", new Document("organizationId", "$organizationId")
+                        .append("zoneId", "$zoneId")
+                        .append("date", "$programDate")
+                        .append("status", new Document("$ifNull", List.of("$status", ProgramDailyRollup.UNKNOWN_STATUS))))
+                .append("count", new Document("$sum", 1L))));
+        pipeline.add(new Document("$group", new Document("_id", new Document("organizationId", "$_id.organizationId")
+                        .append("zoneId", "$_id.zoneId")
+                        .append("date", "$_id.date"))
+                .append("total", new Document("$sum", "$count"))
+                .append("statuses", new Document("$push", new Document("k", "$_id.status").append("v", "$count")))));
+        pipeline.add(new Document("$project", new Document("_id", rollupKey())
+                .append("organizationId", "$_id.organizationId")
+                .append("zoneId", "$_id.zoneId")
+                .append("date", "$_id.date")
+                .append("total", 1)
+                .append("statusCounts", new Document("$arrayToObject", "$statuses"))
+                .append("updatedAt", Date.from(startedAt))
+                .append(REBUILD_RUN_FIELD, runId)));
+        // Reemplaza día a día sin vaciar antes: las lecturas ven siempre el valor anterior o el nuevo
+        pipeline.add(new Document("$merge", new Document("into", target)
+                .append("on", "_id")
+                .append("whenMatched", "replace")
+                .append("whenNotMatched", "insert")));
+        return aggregateInto(pipeline).then(Mono.defer(() -> removeStale(organizationId, runId, startedAt)));
+    }
+
+    // Días que la reconstrucción ya no produjo (sus programas se borraron o cambiaron de fecha). Se
+    // respetan los que un incremento tocó después de empezar, que ya cuentan programas nuevos
+    private Mono<Void> removeStale(String organizationId, String runId, Instant startedAt) {
+        Criteria stale = where(REBUILD_RUN_FIELD).ne(runId).and("updatedAt").lt(startedAt);
+        if (organizationId != null) {
+            stale = stale.and("organizationId").is(organizationId);
+        }
+        return mongoTemplate.remove(Query.query(stale), ProgramDailyRollup.class).then();
+    }
+
+    // Misma clave que ProgramDailyRollup.key; la fecha se guardó a medianoche de la zona del servidor
+    private Document rollupKey() {
+        return new Document("$concat", List.of(
+                new Document("$ifNull", List.of("$_id.organizationId", "")), "|",
+                new Document("$ifNull", List.of("$_id.zoneId", "")), "|",
+                new Document("$dateToString", new Document("format", "%Y-%m-%d")
+                        .append("date", "$_id.date")
+                        .append("timezone", ZoneId.systemDefault().getId()))));
+    }
+
+    private Mono<Void> aggregateInto(List<Document> pipeline) {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(DistributionProgram.class))
+                .flatMap(collection -> Mono.from(collection.aggregate(pipeline).toCollection()));
+    }
+}
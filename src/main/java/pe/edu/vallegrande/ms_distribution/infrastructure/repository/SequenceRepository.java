@@ -0,0 +1,10 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import pe.edu.vallegrande.ms_distribution.domain.models.Sequence;
+
+@Repository
+public interface SequenceRepository extends ReactiveMongoRepository<Sequence, String>, SequenceRepositoryCustom {
+}
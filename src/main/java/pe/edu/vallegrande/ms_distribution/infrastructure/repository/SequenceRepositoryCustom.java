@@ -0,0 +1,30 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+import pe.edu.vallegrande.ms_distribution.domain.enums.CodeSequence;
+import reactor.core.publisher.Mono;
+
+public interface SequenceRepositoryCustom {
+
+    /**
+     * Incrementa atómicamente el contador (find-and-modify con upsert)
+     * y devuelve el nuevo valor.
+     */
+    Mono<Long> increment(String organizationId, String prefix, long delta);
+
+    /**
+     * Devuelve al contador los códigos no usados de un bloque: solo aplica si
+     * nadie reservó otro bloque después (el valor sigue en leasedUpTo).
+     */
+    Mono<Boolean> release(String organizationId, String prefix, long leasedUpTo, long releasedValue);
+
+    /**
+     * Crea el contador con el valor indicado solo si todavía no existe.
+     */
+    Mono<Void> seed(String organizationId, String prefix, long value);
+
+    /**
+     * Mayor número de código ya registrado en la colección de la secuencia
+     * para la organización (datos previos a los contadores).
+     */
+    Mono<Long> findHighestExistingCode(CodeSequence sequence, String organizationId);
+}
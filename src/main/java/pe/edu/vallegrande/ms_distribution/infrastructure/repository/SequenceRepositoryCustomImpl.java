@@ -0,0 +1,73 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import pe.edu.vallegrande.ms_distribution.domain.enums.CodeSequence;
+import pe.edu.vallegrande.ms_distribution.domain.models.Sequence;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@RequiredArgsConstructor
+public class SequenceRepositoryCustomImpl implements SequenceRepositoryCustom {
+
+    private static final int MAX_CODE_DIGITS = 18;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Mono<Long> increment(String organizationId, String prefix, long delta) {
+        Query query = Query.query(where("_id").is(Sequence.key(organizationId, prefix)));
+        Update update = new Update()
+                .inc("value", delta)
+                .setOnInsert("organizationId", organizationId)
+                .setOnInsert("prefix", prefix)
+                .set("updatedAt", Instant.now());
+        return mongoTemplate.findAndModify(query, update,
+                        FindAndModifyOptions.options().upsert(true).returnNew(true), Sequence.class)
+                .map(Sequence::getValue);
+    }
+
+    @Override
+    public Mono<Boolean> release(String organizationId, String prefix, long leasedUpTo, long releasedValue) {
+        Query query = Query.query(where("_id").is(Sequence.key(organizationId, prefix)).and("value").is(leasedUpTo));
+        Update update = new Update()
+                .set("value", releasedValue)
+                .set("updatedAt", Instant.now());
+        return mongoTemplate.updateFirst(query, update, Sequence.class)
+                .map(result -> result.getModifiedCount() > 0);
+    }
+
+    @Override
+    public Mono<Void> seed(String organizationId, String prefix, long value) {
+        Query query = Query.query(where("_id").is(Sequence.key(organizationId, prefix)));
+        Update update = new Update()
+                .setOnInsert("organizationId", organizationId)
+                .setOnInsert("prefix", prefix)
+                .setOnInsert("value", value)
+                .setOnInsert("updatedAt", Instant.now());
+        return mongoTemplate.upsert(query, update, Sequence.class).then();
+    }
+
+    @Override
+    public Mono<Long> findHighestExistingCode(CodeSequence sequence, String organizationId) {
+        String field = sequence.getCodeField();
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("organizationId", organizationId)
+                        .append(field, new Document("$regex", "^" + sequence.getPrefix() + "[0-9]+$"))),
+                new Document("$group", new Document("_id", null)
+                        .append("highest", new Document("$max", new Document("$toLong",
+                                new Document("$substrCP", List.of("$" + field, sequence.getPrefix().length(), MAX_CODE_DIGITS)))))));
+        return mongoTemplate.getCollection(sequence.getCollection())
+                .flatMap(collection -> Mono.from(collection.aggregate(pipeline).first()))
+                .map(result -> ((Number) result.get("highest")).longValue());
+    }
+}
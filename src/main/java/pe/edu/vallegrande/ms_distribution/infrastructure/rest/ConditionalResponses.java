@@ -0,0 +1,101 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.rest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import pe.edu.vallegrande.ms_distribution.application.cache.EncodedListCache;
+import pe.edu.vallegrande.ms_distribution.application.config.ConditionalGetProperties;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.ResponseDto;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ChangeMarkers;
+import reactor.core.publisher.Mono;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * ETags fuertes para GET condicionales. Un documento se identifica por id y versión (o por el hash
+ * de su JSON si aún no tiene versión); un listado, por el marcador de cambio de su colección, que
+ * se comprueba antes de leer nada: con If-None-Match vigente se responde 304 sin tocar Mongo.
+ */
+@Component
+@RequiredArgsConstructor
+public class ConditionalResponses {
+
+    private final ChangeMarkers changeMarkers;
+    private final ConditionalGetProperties properties;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Respuesta de un documento con su ETag; el 304 lo resuelve Spring al comparar con If-None-Match.
+     */
+    public <T> ResponseEntity<T> document(String id, Long version, T body) {
+        String etag = version != null ? quote(id + "-" + version) : quote(contentHash(body));
+        return ResponseEntity.ok().eTag(etag).body(body);
+    }
+
+    /**
+     * Listado de collection: 304 si el cliente ya tiene la versión actual; si no, body con el ETag
+     * (las respuestas de error no lo llevan). Sin marcador o con un cambio demasiado reciente
+     * (ver ConditionalGetProperties) se responde sin ETag.
+     */
+    public <T> Mono<ResponseEntity<ResponseDto<T>>> list(ServerWebExchange exchange, String collection,
+                                                         Supplier<Mono<ResponseDto<T>>> body) {
+        return list(exchange, collection, body, ResponseDto::isStatus, Function.identity(), null);
+    }
+
+    /**
+     * Igual que list, con el cuerpo ya codificado en JSON (ver EncodedListCache): los bytes se
+     * escriben tal cual en la respuesta y, como en list, solo llevan ETag si status es true.
+     */
+    public Mono<ResponseEntity<byte[]>> encodedList(ServerWebExchange exchange, String collection,
+                                                    Supplier<Mono<EncodedListCache.Encoded>> body) {
+        return list(exchange, collection, body, EncodedListCache.Encoded::status, EncodedListCache.Encoded::json,
+                MediaType.APPLICATION_JSON);
+    }
+
+    private <B, R> Mono<ResponseEntity<R>> list(ServerWebExchange exchange, String collection, Supplier<Mono<B>> body,
+                                                Predicate<B> tagged, Function<B, R> payload, MediaType contentType) {
+        Instant settledBefore = Instant.now().minus(properties.getSettleTime());
+        return changeMarkers.current(collection)
+                .filter(marker -> marker.observedAt().isBefore(settledBefore))
+                .map(marker -> quote(collection + "-" + Long.toHexString(marker.clusterTime())))
+                .flatMap(etag -> exchange.checkNotModified(etag)
+                        ? Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).<R>build())
+                        : body.get().map(content -> ok(tagged.test(content) ? etag : null, contentType, payload.apply(content))))
+                .switchIfEmpty(Mono.defer(() -> body.get().map(content -> ok(null, contentType, payload.apply(content)))));
+    }
+
+    private static <B> ResponseEntity<B> ok(String etag, MediaType contentType, B content) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (etag != null) {
+            builder.eTag(etag);
+        }
+        if (contentType != null) {
+            builder.contentType(contentType);
+        }
+        return builder.body(content);
+    }
+
+    private String contentHash(Object body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(body));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot compute ETag", e);
+        }
+    }
+
+    private static String quote(String value) {
+        return "\"" + value + "\"";
+    }
+}
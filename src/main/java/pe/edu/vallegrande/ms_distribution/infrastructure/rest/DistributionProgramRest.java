@@ -2,36 +2,104 @@ package pe.edu.vallegrande.ms_distribution.infrastructure.rest;
 
 import lombok.RequiredArgsConstructor;
 import pe.edu.vallegrande.ms_distribution.application.services.DistributionProgramService;
+import pe.edu.vallegrande.ms_distribution.application.services.ProgramRollupService;
+import pe.edu.vallegrande.ms_distribution.domain.models.ProgramDailyRollup;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.ErrorMessage;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.ResponseDto;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionProgramCreateRequest;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.ProgramDateRangeRequest;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.ProgramKpiRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.DistributionProgramResponse;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.ProgramCalendarDayResponse;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.ProgramKpiResponse;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/v2/programs")
 @RequiredArgsConstructor
 public class DistributionProgramRest {
 
+    private static final String COLLECTION = "programs"; // marcador de cambio de los listados
+
     private final DistributionProgramService programService;
+    private final ProgramRollupService rollupService;
+    private final ConditionalResponses conditional;
 
     @GetMapping
-    public Mono<ResponseDto<List<DistributionProgramResponse>>> getAll() {
-        return programService.getAll()
+    public Mono<ResponseEntity<ResponseDto<List<DistributionProgramResponse>>>> getAll(@RequestParam(required = false) String cursor,
+                                                                                       @RequestParam(required = false) Integer size,
+                                                                                       @RequestParam(required = false) Set<String> fields,
+                                                                                       ServerWebExchange exchange) {
+        return conditional.list(exchange, COLLECTION, () -> {
+            if (cursor == null && size == null) {
+                Mono<List<DistributionProgramResponse>> items = fields == null ? programService.getListing(null) : programService.getAllProjected(null, fields).collectList();
+                return items
+                        .map(list -> new ResponseDto<>(true, list));
+            }
+            return programService.getPage(null, cursor, size, fields)
+                    .map(page -> new ResponseDto<>(true, page.getItems(), page.getNextCursor()));
+        });
+    }
+
+    @StreamingGetMapping
+    public Flux<DistributionProgramResponse> streamAll() {
+        return programService.getAll();
+    }
+
+    // Programas entre dos fechas (?from=yyyy-MM-dd&to=yyyy-MM-dd), con zona, ruta y responsable opcionales
+    @GetMapping("/range")
+    public Mono<ResponseDto<List<DistributionProgramResponse>>> getByDateRange(ProgramDateRangeRequest range) {
+        return programService.getByDateRange(range)
                 .collectList()
                 .map(list -> new ResponseDto<>(true, list));
     }
 
+    // Mismos filtros, agrupados por día
+    @GetMapping("/calendar")
+    public Mono<ResponseDto<List<ProgramCalendarDayResponse>>> getCalendar(ProgramDateRangeRequest range) {
+        return programService.getCalendar(range)
+                .collectList()
+                .map(days -> new ResponseDto<>(true, days));
+    }
+
+    // Puntualidad, retraso medio y cumplimiento calculados en Mongo (?from&to&groupBy=zone,route&period=week)
+    @GetMapping("/kpis")
+    public Mono<ResponseDto<List<ProgramKpiResponse>>> getKpis(ProgramKpiRequest request) {
+        return programService.getKpis(request)
+                .collectList()
+                .map(rows -> new ResponseDto<>(true, rows));
+    }
+
+    // Resúmenes diarios precalculados (?organizationId&from&to&zoneId): un documento por zona y día
+    @GetMapping("/rollups")
+    public Mono<ResponseDto<List<ProgramDailyRollup>>> getRollups(ProgramDateRangeRequest range) {
+        return rollupService.getRollups(range)
+                .collectList()
+                .map(rollups -> new ResponseDto<>(true, rollups));
+    }
+
+    // Recalcula los resúmenes de una organización desde sus programas; la reconstrucción completa
+    // solo la lanza el cron (app.rollups.rebuild-cron)
+    @PostMapping("/rollups/rebuild")
+    public Mono<ResponseDto<Long>> rebuildRollups(@RequestParam(required = false) String organizationId) {
+        return rollupService.rebuild(organizationId)
+                .map(count -> new ResponseDto<>(true, count));
+    }
+
     @GetMapping("/{id}")
-    public Mono<ResponseDto<DistributionProgramResponse>> getById(@PathVariable String id) {
+    public Mono<ResponseEntity<ResponseDto<DistributionProgramResponse>>> getById(@PathVariable String id) {
         return programService.getById(id)
-                .map(data -> new ResponseDto<>(true, data));
+                .map(data -> conditional.document(data.getId(), data.getVersion(), new ResponseDto<>(true, data)));
     }
 
     @PostMapping
@@ -47,12 +115,26 @@ public class DistributionProgramRest {
                 .map(data -> new ResponseDto<>(true, data));
     }
 
+    @PatchMapping("/{id}")
+    public Mono<ResponseDto<DistributionProgramResponse>> patch(@PathVariable String id, @RequestBody DistributionProgramCreateRequest request) {
+        return programService.patch(id, request)
+                .map(data -> new ResponseDto<>(true, data));
+    }
+
     @DeleteMapping("/{id}")
     public Mono<ResponseDto<Void>> delete(@PathVariable String id) {
         return programService.delete(id)
                 .thenReturn(new ResponseDto<>(true, null));
     }
 
+    // Borrado masivo de una organización (opcionalmente por estado); responde cuántos documentos se eliminaron
+    @DeleteMapping
+    public Mono<ResponseDto<Long>> deleteAll(@RequestParam(required = false) String organizationId,
+                                             @RequestParam(required = false) String status) {
+        return programService.deleteAll(organizationId, status)
+                .map(deleted -> new ResponseDto<>(true, deleted));
+    }
+
     @PatchMapping("/{id}/activate")
     public Mono<ResponseDto<DistributionProgramResponse>> activate(@PathVariable String id) {
         return programService.activate(id)
@@ -69,4 +151,9 @@ public class DistributionProgramRest {
                         new ErrorMessage(HttpStatus.BAD_REQUEST.value(), "Deactivation failed", e.getMessage()))));
     }
 
-}
\ No newline at end of file
+    @PatchMapping("/{id}/status")
+    public Mono<ResponseDto<DistributionProgramResponse>> changeStatus(@PathVariable String id, @RequestParam String status) {
+        return programService.changeStatus(id, status)
+                .map(data -> new ResponseDto<>(true, data));
+    }
+}
@@ -1,56 +1,142 @@
 package pe.edu.vallegrande.ms_distribution.infrastructure.rest;
 
 import lombok.AllArgsConstructor;
+import pe.edu.vallegrande.ms_distribution.application.cache.EncodedListCache;
 import pe.edu.vallegrande.ms_distribution.application.services.DistributionRouteService;
+import pe.edu.vallegrande.ms_distribution.domain.enums.Constants;
 import pe.edu.vallegrande.ms_distribution.domain.models.DistributionRoute;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.ErrorMessage;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.ResponseDto;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionRouteCreateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionRouteUpdateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.DistributionRouteResponse;
+import pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 
 import jakarta.validation.Valid;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/v2/routes")
 @AllArgsConstructor
 public class DistributionRouteRest {
 
+    private static final String COLLECTION = "routes"; // marcador de cambio de los listados
+
     private final DistributionRouteService routeService;
+    private final ConditionalResponses conditional;
+    private final EncodedListCache encodedLists;
 
     @GetMapping
-    public Mono<ResponseDto<List<DistributionRoute>>> getAll() {
-        return routeService.getAll()
-                .collectList()
-                .map(routes -> new ResponseDto<>(true, routes));
+    public Mono<ResponseEntity<ResponseDto<List<DistributionRoute>>>> getAll(@RequestParam(required = false) String cursor,
+                                                                             @RequestParam(required = false) Integer size,
+                                                                             @RequestParam(required = false) Set<String> fields,
+                                                                             ServerWebExchange exchange) {
+        return conditional.list(exchange, COLLECTION, () -> {
+            if (cursor == null && size == null) {
+                Mono<List<DistributionRoute>> items = fields == null ? routeService.getListing(null) : routeService.getAllProjected(null, fields).collectList();
+                return items
+                        .map(routes -> new ResponseDto<>(true, routes));
+            }
+            return page(null, cursor, size, fields);
+        });
     }
 
     @GetMapping("/active")
-    public Mono<ResponseDto<List<DistributionRoute>>> getAllActive() {
-        return routeService.getAllActive()
-                .collectList()
-                .map(routes -> new ResponseDto<>(true, routes));
+    public Mono<ResponseEntity<ResponseDto<List<DistributionRoute>>>> getAllActive(@RequestParam(required = false) String cursor,
+                                                                                   @RequestParam(required = false) Integer size,
+                                                                                   @RequestParam(required = false) Set<String> fields,
+                                                                                   ServerWebExchange exchange) {
+        return conditional.list(exchange, COLLECTION, () -> {
+            if (cursor == null && size == null) {
+                Mono<List<DistributionRoute>> items = fields == null ? routeService.getListing(Constants.ACTIVE.name()) : routeService.getAllProjected(Constants.ACTIVE.name(), fields).collectList();
+                return items
+                        .map(routes -> new ResponseDto<>(true, routes));
+            }
+            return page(Constants.ACTIVE.name(), cursor, size, fields);
+        });
+    }
+
+    // Sin paginar ni proyectar, el listado de activas es la lectura más repetida: se sirve ya
+    // codificado (EncodedListCache) y entre cambios no se vuelve a serializar
+    @GetMapping(value = "/active", params = {"!cursor", "!size", "!fields"}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<byte[]>> getAllActiveEncoded(ServerWebExchange exchange) {
+        return conditional.encodedList(exchange, COLLECTION, () -> encodedLists.get(DistributionRoute.class, null, Constants.ACTIVE.name(),
+                () -> routeService.getAllActiveFromPrimary()
+                        .collectList()
+                        .map(routes -> new ResponseDto<>(true, routes))));
     }
 
     @GetMapping("/inactive")
-    public Mono<ResponseDto<List<DistributionRoute>>> getAllInactive() {
-        return routeService.getAllInactive()
-                .collectList()
-                .map(routes -> new ResponseDto<>(true, routes));
+    public Mono<ResponseEntity<ResponseDto<List<DistributionRoute>>>> getAllInactive(@RequestParam(required = false) String cursor,
+                                                                                     @RequestParam(required = false) Integer size,
+                                                                                     @RequestParam(required = false) Set<String> fields,
+                                                                                     ServerWebExchange exchange) {
+        return conditional.list(exchange, COLLECTION, () -> {
+            if (cursor == null && size == null) {
+                Mono<List<DistributionRoute>> items = fields == null ? routeService.getListing(Constants.INACTIVE.name()) : routeService.getAllProjected(Constants.INACTIVE.name(), fields).collectList();
+                return items
+                        .map(routes -> new ResponseDto<>(true, routes));
+            }
+            return page(Constants.INACTIVE.name(), cursor, size, fields);
+        });
+    }
+
+    @StreamingGetMapping
+    public Flux<DistributionRoute> streamAll() {
+        return routeService.getAll();
+    }
+
+    @StreamingGetMapping("/active")
+    public Flux<DistributionRoute> streamActive() {
+        return routeService.getAllActive();
+    }
+
+    @StreamingGetMapping("/inactive")
+    public Flux<DistributionRoute> streamInactive() {
+        return routeService.getAllInactive();
+    }
+
+    // Recuentos sin traer documentos: el de un estado (?status=) es exacto; el total sin estado es el
+    // aproximado de los metadatos de la colección. by-status devuelve todos los estados de una vez
+    @GetMapping("/count")
+    public Mono<ResponseDto<Long>> count(@RequestParam(required = false) String status) {
+        return routeService.countByStatus(status)
+                .map(count -> new ResponseDto<>(true, count));
+    }
+
+    @GetMapping("/active/count")
+    public Mono<ResponseDto<Long>> countActive() {
+        return count(Constants.ACTIVE.name());
+    }
+
+    @GetMapping("/inactive/count")
+    public Mono<ResponseDto<Long>> countInactive() {
+        return count(Constants.INACTIVE.name());
+    }
+
+    @GetMapping("/count/by-status")
+    public Mono<ResponseDto<Map<String, Long>>> countByStatus() {
+        return routeService.countGroupedByStatus()
+                .map(counts -> new ResponseDto<>(true, counts));
     }
 
     @GetMapping("/{id}")
-    public Mono<ResponseDto<DistributionRoute>> getById(@PathVariable String id) {
+    public Mono<ResponseEntity<ResponseDto<DistributionRoute>>> getById(@PathVariable String id) {
         return routeService.getById(id)
-                .map(route -> new ResponseDto<>(true, route))
-                .onErrorResume(e -> Mono.just(new ResponseDto<>(false,
-                        new ErrorMessage(HttpStatus.NOT_FOUND.value(), "Route not found", e.getMessage()))));
+                .map(route -> conditional.document(route.getId(), route.getVersion(), new ResponseDto<>(true, route)))
+                .onErrorResume(e -> Mono.just(ResponseEntity.ok(new ResponseDto<DistributionRoute>(false,
+                        new ErrorMessage(HttpStatus.NOT_FOUND.value(), "Route not found", e.getMessage())))));
     }
 
     @PostMapping
@@ -66,13 +152,24 @@ public class DistributionRouteRest {
     public Mono<ResponseDto<DistributionRoute>> update(@PathVariable String id, @Valid @RequestBody DistributionRouteUpdateRequest request) {
         return routeService.update(id, request)
                 .map(updated -> new ResponseDto<>(true, updated))
-                .onErrorResume(e -> Mono.just(
+                .onErrorResume(e -> !(e instanceof CustomException), e -> Mono.just(
                         new ResponseDto<>(false,
                                 new ErrorMessage(HttpStatus.BAD_REQUEST.value(),
                                         "Update failed",
                                         e.getMessage()))));
         }
 
+    @PatchMapping("/{id}")
+    public Mono<ResponseDto<DistributionRoute>> patch(@PathVariable String id, @RequestBody DistributionRouteUpdateRequest request) {
+        return routeService.patch(id, request)
+                .map(updated -> new ResponseDto<>(true, updated))
+                .onErrorResume(e -> !(e instanceof CustomException), e -> Mono.just(
+                        new ResponseDto<>(false,
+                                new ErrorMessage(HttpStatus.BAD_REQUEST.value(),
+                                        "Update failed",
+                                        e.getMessage()))));
+    }
+
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public Mono<ResponseDto<Object>> delete(@PathVariable String id) {
@@ -82,6 +179,19 @@ public class DistributionRouteRest {
                         new ErrorMessage(HttpStatus.BAD_REQUEST.value(), "Delete failed", e.getMessage()))));
     }
 
+    // Borrado masivo de una organización (opcionalmente por estado); responde cuántos documentos se eliminaron
+    @DeleteMapping
+    public Mono<ResponseDto<Long>> deleteAll(@RequestParam(required = false) String organizationId,
+                                             @RequestParam(required = false) String status) {
+        return routeService.deleteAll(organizationId, status)
+                .map(deleted -> new ResponseDto<>(true, deleted))
+                .onErrorResume(e -> Mono.just(
+                        new ResponseDto<>(false,
+                                new ErrorMessage(HttpStatus.BAD_REQUEST.value(),
+                                        "Delete failed",
+                                        e.getMessage()))));
+    }
+
     @PatchMapping("/{id}/activate")
     public Mono<ResponseDto<DistributionRoute>> activate(@PathVariable String id) {
         return routeService.activate(id)
@@ -97,4 +207,14 @@ public class DistributionRouteRest {
                 .onErrorResume(e -> Mono.just(new ResponseDto<>(false,
                         new ErrorMessage(HttpStatus.BAD_REQUEST.value(), "Deactivation failed", e.getMessage()))));
     }
+
+    private Mono<ResponseDto<List<DistributionRoute>>> page(String status, String cursor, Integer size, Set<String> fields) {
+        return routeService.getPage(status, cursor, size, fields)
+                .map(page -> new ResponseDto<>(true, page.getItems(), page.getNextCursor()))
+                .onErrorResume(e -> Mono.just(
+                        new ResponseDto<>(false,
+                                new ErrorMessage(HttpStatus.BAD_REQUEST.value(),
+                                        "Invalid page request",
+                                        e.getMessage()))));
+    }
 }
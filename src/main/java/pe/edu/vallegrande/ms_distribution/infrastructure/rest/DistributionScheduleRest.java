@@ -1,59 +1,145 @@
 package pe.edu.vallegrande.ms_distribution.infrastructure.rest;
 
 import lombok.AllArgsConstructor;
+import pe.edu.vallegrande.ms_distribution.application.cache.EncodedListCache;
 import pe.edu.vallegrande.ms_distribution.application.services.DistributionScheduleService;
+import pe.edu.vallegrande.ms_distribution.domain.enums.Constants;
 import pe.edu.vallegrande.ms_distribution.domain.models.DistributionSchedule;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.ErrorMessage;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.ResponseDto;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionScheduleCreateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionScheduleUpdateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.DistributionScheduleResponse;
+import pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 
 import jakarta.validation.Valid;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/v2/schedules")
 @AllArgsConstructor
 public class DistributionScheduleRest {
 
+    private static final String COLLECTION = "schedules"; // marcador de cambio de los listados
+
     private final DistributionScheduleService service;
+    private final ConditionalResponses conditional;
+    private final EncodedListCache encodedLists;
 
     @GetMapping
-    public Mono<ResponseDto<List<DistributionSchedule>>> getAll() {
-        return service.getAll()
-                .collectList()
-                .map(result -> new ResponseDto<>(true, result));
+    public Mono<ResponseEntity<ResponseDto<List<DistributionSchedule>>>> getAll(@RequestParam(required = false) String cursor,
+                                                                                @RequestParam(required = false) Integer size,
+                                                                                @RequestParam(required = false) Set<String> fields,
+                                                                                ServerWebExchange exchange) {
+        return conditional.list(exchange, COLLECTION, () -> {
+            if (cursor == null && size == null) {
+                Mono<List<DistributionSchedule>> items = fields == null ? service.getListing(null) : service.getAllProjected(null, fields).collectList();
+                return items
+                        .map(result -> new ResponseDto<>(true, result));
+            }
+            return page(null, cursor, size, fields);
+        });
     }
 
     @GetMapping("/active")
-    public Mono<ResponseDto<List<DistributionSchedule>>> getAllActive() {
-        return service.getAllActive()
-                .collectList()
-                .map(result -> new ResponseDto<>(true, result));
+    public Mono<ResponseEntity<ResponseDto<List<DistributionSchedule>>>> getAllActive(@RequestParam(required = false) String cursor,
+                                                                                      @RequestParam(required = false) Integer size,
+                                                                                      @RequestParam(required = false) Set<String> fields,
+                                                                                      ServerWebExchange exchange) {
+        return conditional.list(exchange, COLLECTION, () -> {
+            if (cursor == null && size == null) {
+                Mono<List<DistributionSchedule>> items = fields == null ? service.getListing(Constants.ACTIVE.name()) : service.getAllProjected(Constants.ACTIVE.name(), fields).collectList();
+                return items
+                        .map(result -> new ResponseDto<>(true, result));
+            }
+            return page(Constants.ACTIVE.name(), cursor, size, fields);
+        });
+    }
+
+    // Sin paginar ni proyectar, el listado de activas es la lectura más repetida: se sirve ya
+    // codificado (EncodedListCache) y entre cambios no se vuelve a serializar
+    @GetMapping(value = "/active", params = {"!cursor", "!size", "!fields"}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<byte[]>> getAllActiveEncoded(ServerWebExchange exchange) {
+        return conditional.encodedList(exchange, COLLECTION, () -> encodedLists.get(DistributionSchedule.class, null, Constants.ACTIVE.name(),
+                () -> service.getAllActiveFromPrimary()
+                        .collectList()
+                        .map(schedules -> new ResponseDto<>(true, schedules))));
     }
 
     @GetMapping("/inactive")
-    public Mono<ResponseDto<List<DistributionSchedule>>> getAllInactive() {
-        return service.getAllInactive()
-                .collectList()
-                .map(result -> new ResponseDto<>(true, result));
+    public Mono<ResponseEntity<ResponseDto<List<DistributionSchedule>>>> getAllInactive(@RequestParam(required = false) String cursor,
+                                                                                        @RequestParam(required = false) Integer size,
+                                                                                        @RequestParam(required = false) Set<String> fields,
+                                                                                        ServerWebExchange exchange) {
+        return conditional.list(exchange, COLLECTION, () -> {
+            if (cursor == null && size == null) {
+                Mono<List<DistributionSchedule>> items = fields == null ? service.getListing(Constants.INACTIVE.name()) : service.getAllProjected(Constants.INACTIVE.name(), fields).collectList();
+                return items
+                        .map(result -> new ResponseDto<>(true, result));
+            }
+            return page(Constants.INACTIVE.name(), cursor, size, fields);
+        });
+    }
+
+    @StreamingGetMapping
+    public Flux<DistributionSchedule> streamAll() {
+        return service.getAll();
+    }
+
+    @StreamingGetMapping("/active")
+    public Flux<DistributionSchedule> streamActive() {
+        return service.getAllActive();
+    }
+
+    @StreamingGetMapping("/inactive")
+    public Flux<DistributionSchedule> streamInactive() {
+        return service.getAllInactive();
+    }
+
+    // Recuentos sin traer documentos: el de un estado (?status=) es exacto; el total sin estado es el
+    // aproximado de los metadatos de la colección. by-status devuelve todos los estados de una vez
+    @GetMapping("/count")
+    public Mono<ResponseDto<Long>> count(@RequestParam(required = false) String status) {
+        return service.countByStatus(status)
+                .map(count -> new ResponseDto<>(true, count));
+    }
+
+    @GetMapping("/active/count")
+    public Mono<ResponseDto<Long>> countActive() {
+        return count(Constants.ACTIVE.name());
+    }
+
+    @GetMapping("/inactive/count")
+    public Mono<ResponseDto<Long>> countInactive() {
+        return count(Constants.INACTIVE.name());
+    }
+
+    @GetMapping("/count/by-status")
+    public Mono<ResponseDto<Map<String, Long>>> countByStatus() {
+        return service.countGroupedByStatus()
+                .map(counts -> new ResponseDto<>(true, counts));
     }
 
     @GetMapping("/{id}")
-    public Mono<ResponseDto<DistributionSchedule>> getById(@PathVariable String id) {
+    public Mono<ResponseEntity<ResponseDto<DistributionSchedule>>> getById(@PathVariable String id) {
         return service.getById(id)
-                .map(result -> new ResponseDto<>(true, result))
-                .onErrorResume(e -> Mono.just(
-                        new ResponseDto<>(false,
+                .map(result -> conditional.document(result.getId(), result.getVersion(), new ResponseDto<>(true, result)))
+                .onErrorResume(e -> Mono.just(ResponseEntity.ok(
+                        new ResponseDto<DistributionSchedule>(false,
                                 new ErrorMessage(HttpStatus.NOT_FOUND.value(),
                                         "Schedule not found",
-                                        e.getMessage()))));
+                                        e.getMessage())))));
     }
 
     @PostMapping
@@ -72,13 +158,24 @@ public class DistributionScheduleRest {
     public Mono<ResponseDto<DistributionSchedule>> update(@PathVariable String id, @Valid @RequestBody DistributionScheduleUpdateRequest request) {
         return service.update(id, request)
             .map(updated -> new ResponseDto<>(true, updated))
-            .onErrorResume(e -> Mono.just(
+            .onErrorResume(e -> !(e instanceof CustomException), e -> Mono.just(
                     new ResponseDto<>(false,
                             new ErrorMessage(HttpStatus.BAD_REQUEST.value(),
                                     "Update failed",
                                     e.getMessage()))));
     }
 
+    @PatchMapping("/{id}")
+    public Mono<ResponseDto<DistributionSchedule>> patch(@PathVariable String id, @RequestBody DistributionScheduleUpdateRequest request) {
+        return service.patch(id, request)
+                .map(updated -> new ResponseDto<>(true, updated))
+                .onErrorResume(e -> !(e instanceof CustomException), e -> Mono.just(
+                        new ResponseDto<>(false,
+                                new ErrorMessage(HttpStatus.BAD_REQUEST.value(),
+                                        "Update failed",
+                                        e.getMessage()))));
+    }
+
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public Mono<ResponseDto<Object>> delete(@PathVariable String id) {
@@ -91,6 +188,19 @@ public class DistributionScheduleRest {
                                         e.getMessage()))));
     }
 
+    // Borrado masivo de una organización (opcionalmente por estado); responde cuántos documentos se eliminaron
+    @DeleteMapping
+    public Mono<ResponseDto<Long>> deleteAll(@RequestParam(required = false) String organizationId,
+                                             @RequestParam(required = false) String status) {
+        return service.deleteAll(organizationId, status)
+                .map(deleted -> new ResponseDto<>(true, deleted))
+                .onErrorResume(e -> Mono.just(
+                        new ResponseDto<>(false,
+                                new ErrorMessage(HttpStatus.BAD_REQUEST.value(),
+                                        "Delete failed",
+                                        e.getMessage()))));
+    }
+
     @PatchMapping("/{id}/activate")
     public Mono<ResponseDto<DistributionSchedule>> activate(@PathVariable String id) {
         return service.activate(id)
@@ -112,4 +222,14 @@ public class DistributionScheduleRest {
                                         "Deactivation failed",
                                         e.getMessage()))));
     }
+
+    private Mono<ResponseDto<List<DistributionSchedule>>> page(String status, String cursor, Integer size, Set<String> fields) {
+        return service.getPage(status, cursor, size, fields)
+                .map(page -> new ResponseDto<>(true, page.getItems(), page.getNextCursor()))
+                .onErrorResume(e -> Mono.just(
+                        new ResponseDto<>(false,
+                                new ErrorMessage(HttpStatus.BAD_REQUEST.value(),
+                                        "Invalid page request",
+                                        e.getMessage()))));
+    }
 }
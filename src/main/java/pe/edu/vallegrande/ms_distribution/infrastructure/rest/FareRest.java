@@ -1,59 +1,146 @@
 package pe.edu.vallegrande.ms_distribution.infrastructure.rest;
 
 import lombok.AllArgsConstructor;
+import pe.edu.vallegrande.ms_distribution.application.cache.EncodedListCache;
 import pe.edu.vallegrande.ms_distribution.application.services.FareService;
+import pe.edu.vallegrande.ms_distribution.domain.enums.Constants;
 import pe.edu.vallegrande.ms_distribution.domain.models.Fare;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.ErrorMessage;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.ResponseDto;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.FareCreateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.FareUpdateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.FareResponse;
+import pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 
 import jakarta.validation.Valid;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/v2/fare")
 @AllArgsConstructor
 public class FareRest {
 
+    private static final String COLLECTION = "fare"; // marcador de cambio de los listados
+
     private final FareService fareService;
+    private final ConditionalResponses conditional;
+    private final EncodedListCache encodedLists;
 
     @GetMapping
-    public Mono<ResponseDto<List<Fare>>> getAll() {
-        return fareService.getAllF()
-                .collectList()
-                .map(fares -> new ResponseDto<>(true, fares));
+    public Mono<ResponseEntity<ResponseDto<List<Fare>>>> getAll(@RequestParam(required = false) String cursor,
+                                                                @RequestParam(required = false) Integer size,
+                                                                @RequestParam(required = false) Set<String> fields,
+                                                                ServerWebExchange exchange) {
+        return conditional.list(exchange, COLLECTION, () -> {
+            if (cursor == null && size == null) {
+                Mono<List<Fare>> items = fields == null ? fareService.getListingF(null) : fareService.getAllProjectedF(null, fields).collectList();
+                return items
+                        .map(fares -> new ResponseDto<>(true, fares));
+            }
+            return page(null, cursor, size, fields);
+        });
     }
 
     @GetMapping("/active")
-    public Mono<ResponseDto<List<Fare>>> getAllActive() {
-        return fareService.getAllActiveF()
-                .collectList()
-                .map(fares -> new ResponseDto<>(true, fares));
+    public Mono<ResponseEntity<ResponseDto<List<Fare>>>> getAllActive(@RequestParam(required = false) String cursor,
+                                                                      @RequestParam(required = false) Integer size,
+                                                                      @RequestParam(required = false) Set<String> fields,
+                                                                      ServerWebExchange exchange) {
+        return conditional.list(exchange, COLLECTION, () -> {
+            if (cursor == null && size == null) {
+                Flux<Fare> items = fields == null ? fareService.getAllActiveF() : fareService.getAllProjectedF(Constants.ACTIVE.name(), fields);
+                return items
+                        .collectList()
+                        .map(fares -> new ResponseDto<>(true, fares));
+            }
+            return page(Constants.ACTIVE.name(), cursor, size, fields);
+        });
+    }
+
+    // Sin paginar ni proyectar, el listado de activas es la lectura más repetida: se sirve ya
+    // codificado (EncodedListCache) y entre cambios no se vuelve a serializar
+    @GetMapping(value = "/active", params = {"!cursor", "!size", "!fields"}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<byte[]>> getAllActiveEncoded(ServerWebExchange exchange) {
+        return conditional.encodedList(exchange, COLLECTION, () -> encodedLists.get(Fare.class, null, Constants.ACTIVE.name(),
+                () -> fareService.getAllActiveF()
+                        .collectList()
+                        .map(fares -> new ResponseDto<>(true, fares))));
     }
 
     @GetMapping("/inactive")
-    public Mono<ResponseDto<List<Fare>>> getAllInactive() {
-        return fareService.getAllInactiveF()
-                .collectList()
-                .map(fares -> new ResponseDto<>(true, fares));
+    public Mono<ResponseEntity<ResponseDto<List<Fare>>>> getAllInactive(@RequestParam(required = false) String cursor,
+                                                                        @RequestParam(required = false) Integer size,
+                                                                        @RequestParam(required = false) Set<String> fields,
+                                                                        ServerWebExchange exchange) {
+        return conditional.list(exchange, COLLECTION, () -> {
+            if (cursor == null && size == null) {
+                Mono<List<Fare>> items = fields == null ? fareService.getListingF(Constants.INACTIVE.name()) : fareService.getAllProjectedF(Constants.INACTIVE.name(), fields).collectList();
+                return items
+                        .map(fares -> new ResponseDto<>(true, fares));
+            }
+            return page(Constants.INACTIVE.name(), cursor, size, fields);
+        });
+    }
+
+    @StreamingGetMapping
+    public Flux<Fare> streamAll() {
+        return fareService.getAllF();
+    }
+
+    @StreamingGetMapping("/active")
+    public Flux<Fare> streamActive() {
+        return fareService.getAllActiveF();
+    }
+
+    @StreamingGetMapping("/inactive")
+    public Flux<Fare> streamInactive() {
+        return fareService.getAllInactiveF();
+    }
+
+    // Recuentos sin traer documentos: el de un estado (?status=) es exacto; el total sin estado es el
+    // aproximado de los metadatos de la colección. by-status devuelve todos los estados de una vez
+    @GetMapping("/count")
+    public Mono<ResponseDto<Long>> count(@RequestParam(required = false) String status) {
+        return fareService.countByStatusF(status)
+                .map(count -> new ResponseDto<>(true, count));
+    }
+
+    @GetMapping("/active/count")
+    public Mono<ResponseDto<Long>> countActive() {
+        return count(Constants.ACTIVE.name());
+    }
+
+    @GetMapping("/inactive/count")
+    public Mono<ResponseDto<Long>> countInactive() {
+        return count(Constants.INACTIVE.name());
+    }
+
+    @GetMapping("/count/by-status")
+    public Mono<ResponseDto<Map<String, Long>>> countByStatus() {
+        return fareService.countGroupedByStatusF()
+                .map(counts -> new ResponseDto<>(true, counts));
     }
 
     @GetMapping("/{id}")
-    public Mono<ResponseDto<Fare>> getById(@PathVariable String id) {
+    public Mono<ResponseEntity<ResponseDto<Fare>>> getById(@PathVariable String id) {
         return fareService.getByIdFMono(id)
-                .map(fare -> new ResponseDto<>(true, fare))
-                .onErrorResume(e -> Mono.just(
-                        new ResponseDto<>(false,
+                .map(fare -> conditional.document(fare.getId(), fare.getVersion(), new ResponseDto<>(true, fare)))
+                .onErrorResume(e -> Mono.just(ResponseEntity.ok(
+                        new ResponseDto<Fare>(false,
                                 new ErrorMessage(HttpStatus.NOT_FOUND.value(),
                                         "Fare not found",
-                                        e.getMessage()))));
+                                        e.getMessage())))));
     }
 
     @PostMapping
@@ -72,13 +159,24 @@ public class FareRest {
     public Mono<ResponseDto<Fare>> update(@PathVariable String id, @Valid @RequestBody FareUpdateRequest request) {
         return fareService.updateF(id, request)
                 .map(updatedFare -> new ResponseDto<>(true, updatedFare))
-                .onErrorResume(e -> Mono.just(
+                .onErrorResume(e -> !(e instanceof CustomException), e -> Mono.just(
                         new ResponseDto<>(false,
                                 new ErrorMessage(HttpStatus.BAD_REQUEST.value(),
                                         "Update failed",
                                         e.getMessage()))));
         }
 
+    @PatchMapping("/{id}")
+    public Mono<ResponseDto<Fare>> patch(@PathVariable String id, @RequestBody FareUpdateRequest request) {
+        return fareService.updateF(id, request)
+                .map(updated -> new ResponseDto<>(true, updated))
+                .onErrorResume(e -> !(e instanceof CustomException), e -> Mono.just(
+                        new ResponseDto<>(false,
+                                new ErrorMessage(HttpStatus.BAD_REQUEST.value(),
+                                        "Update failed",
+                                        e.getMessage()))));
+    }
+
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public Mono<ResponseDto<Object>> delete(@PathVariable String id) {
@@ -91,6 +189,19 @@ public class FareRest {
                                         e.getMessage()))));
     }
 
+    // Borrado masivo de una organización (opcionalmente por estado); responde cuántos documentos se eliminaron
+    @DeleteMapping
+    public Mono<ResponseDto<Long>> deleteAll(@RequestParam(required = false) String organizationId,
+                                             @RequestParam(required = false) String status) {
+        return fareService.deleteAllF(organizationId, status)
+                .map(deleted -> new ResponseDto<>(true, deleted))
+                .onErrorResume(e -> Mono.just(
+                        new ResponseDto<>(false,
+                                new ErrorMessage(HttpStatus.BAD_REQUEST.value(),
+                                        "Delete failed",
+                                        e.getMessage()))));
+    }
+
     @PatchMapping("/{id}/activate")
     public Mono<ResponseDto<Fare>> activate(@PathVariable String id) {
         return fareService.activateF(id)
@@ -113,4 +224,13 @@ public class FareRest {
                                         e.getMessage()))));
     }
 
+    private Mono<ResponseDto<List<Fare>>> page(String status, String cursor, Integer size, Set<String> fields) {
+        return fareService.getPageF(status, cursor, size, fields)
+                .map(page -> new ResponseDto<>(true, page.getItems(), page.getNextCursor()))
+                .onErrorResume(e -> Mono.just(
+                        new ResponseDto<>(false,
+                                new ErrorMessage(HttpStatus.BAD_REQUEST.value(),
+                                        "Invalid page request",
+                                        e.getMessage()))));
+    }
 }
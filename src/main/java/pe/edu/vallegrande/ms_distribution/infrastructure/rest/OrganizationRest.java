@@ -0,0 +1,210 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.rest;
+
+import lombok.RequiredArgsConstructor;
+import pe.edu.vallegrande.ms_distribution.application.cache.EncodedListCache;
+import pe.edu.vallegrande.ms_distribution.application.services.DistributionProgramService;
+import pe.edu.vallegrande.ms_distribution.application.services.DistributionRouteService;
+import pe.edu.vallegrande.ms_distribution.application.services.DistributionScheduleService;
+import pe.edu.vallegrande.ms_distribution.application.services.FareService;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionRoute;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionSchedule;
+import pe.edu.vallegrande.ms_distribution.domain.models.Fare;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.ResponseDto;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.DistributionProgramResponse;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Consultas de una sola organización. Cada una filtra por organizationId en Mongo, de modo que
+ * solo recorre el rango de índice de esa organización. Los listados de rutas, horarios y tarifas
+ * por estado se responden ya codificados desde EncodedListCache.
+ */
+@RestController
+@RequestMapping("/api/v2/organizations/{organizationId}")
+@RequiredArgsConstructor
+public class OrganizationRest {
+
+    private final DistributionProgramService programService;
+    private final DistributionRouteService routeService;
+    private final DistributionScheduleService scheduleService;
+    private final FareService fareService;
+    private final EncodedListCache encodedLists;
+
+    // Programas
+
+    @GetMapping("/programs")
+    public Mono<ResponseDto<List<DistributionProgramResponse>>> getPrograms(@PathVariable String organizationId,
+                                                                            @RequestParam(required = false) String status) {
+        return programService.getAllByOrganization(organizationId, status)
+                .collectList()
+                .map(list -> new ResponseDto<>(true, list));
+    }
+
+    @GetMapping("/programs/count")
+    public Mono<ResponseDto<Long>> countPrograms(@PathVariable String organizationId,
+                                                 @RequestParam(required = false) String status) {
+        return programService.countByOrganization(organizationId, status)
+                .map(count -> new ResponseDto<>(true, count));
+    }
+
+    // Búsqueda por palabras en las observaciones, ordenada por relevancia
+    @GetMapping("/programs/search")
+    public Mono<ResponseDto<List<DistributionProgramResponse>>> searchPrograms(@PathVariable String organizationId,
+                                                                               @RequestParam String q,
+                                                                               @RequestParam(required = false) String cursor,
+                                                                               @RequestParam(required = false) Integer size) {
+        return programService.searchObservations(organizationId, q, cursor, size)
+                .map(page -> new ResponseDto<>(true, page.getItems(), page.getNextCursor()));
+    }
+
+    @GetMapping("/programs/search/code")
+    public Mono<ResponseDto<List<DistributionProgramResponse>>> searchProgramsByCode(@PathVariable String organizationId,
+                                                                                     @RequestParam String prefix,
+                                                                                     @RequestParam(required = false) String cursor,
+                                                                                     @RequestParam(required = false) Integer size) {
+        return programService.searchByCode(organizationId, prefix, cursor, size)
+                .map(page -> new ResponseDto<>(true, page.getItems(), page.getNextCursor()));
+    }
+
+    @GetMapping("/programs/{id}")
+    public Mono<ResponseDto<DistributionProgramResponse>> getProgram(@PathVariable String organizationId, @PathVariable String id) {
+        return programService.getByOrganization(organizationId, id)
+                .map(data -> new ResponseDto<>(true, data));
+    }
+
+    @GetMapping("/programs/code/{code}")
+    public Mono<ResponseDto<DistributionProgramResponse>> getProgramByCode(@PathVariable String organizationId, @PathVariable String code) {
+        return programService.getByOrganizationAndCode(organizationId, code)
+                .map(data -> new ResponseDto<>(true, data));
+    }
+
+    // Rutas
+
+    @GetMapping("/routes")
+    public Mono<ResponseEntity<byte[]>> getRoutes(@PathVariable String organizationId,
+                                                  @RequestParam(required = false) String status) {
+        return encodedLists.get(DistributionRoute.class, organizationId, status,
+                        () -> routeService.getAllByOrganization(organizationId, status)
+                                .collectList()
+                                .map(routes -> new ResponseDto<>(true, routes)))
+                .map(OrganizationRest::json);
+    }
+
+    @GetMapping("/routes/count")
+    public Mono<ResponseDto<Long>> countRoutes(@PathVariable String organizationId,
+                                               @RequestParam(required = false) String status) {
+        return routeService.countByOrganization(organizationId, status)
+                .map(count -> new ResponseDto<>(true, count));
+    }
+
+    @GetMapping("/routes/search/code")
+    public Mono<ResponseDto<List<DistributionRoute>>> searchRoutesByCode(@PathVariable String organizationId,
+                                                                         @RequestParam String prefix,
+                                                                         @RequestParam(required = false) String cursor,
+                                                                         @RequestParam(required = false) Integer size) {
+        return routeService.searchByCode(organizationId, prefix, cursor, size)
+                .map(page -> new ResponseDto<>(true, page.getItems(), page.getNextCursor()));
+    }
+
+    @GetMapping("/routes/{id}")
+    public Mono<ResponseDto<DistributionRoute>> getRoute(@PathVariable String organizationId, @PathVariable String id) {
+        return routeService.getByOrganization(organizationId, id)
+                .map(route -> new ResponseDto<>(true, route));
+    }
+
+    @GetMapping("/routes/code/{code}")
+    public Mono<ResponseDto<DistributionRoute>> getRouteByCode(@PathVariable String organizationId, @PathVariable String code) {
+        return routeService.getByOrganizationAndCode(organizationId, code)
+                .map(route -> new ResponseDto<>(true, route));
+    }
+
+    // Horarios
+
+    @GetMapping("/schedules")
+    public Mono<ResponseEntity<byte[]>> getSchedules(@PathVariable String organizationId,
+                                                     @RequestParam(required = false) String status) {
+        return encodedLists.get(DistributionSchedule.class, organizationId, status,
+                        () -> scheduleService.getAllByOrganization(organizationId, status)
+                                .collectList()
+                                .map(result -> new ResponseDto<>(true, result)))
+                .map(OrganizationRest::json);
+    }
+
+    @GetMapping("/schedules/count")
+    public Mono<ResponseDto<Long>> countSchedules(@PathVariable String organizationId,
+                                                  @RequestParam(required = false) String status) {
+        return scheduleService.countByOrganization(organizationId, status)
+                .map(count -> new ResponseDto<>(true, count));
+    }
+
+    @GetMapping("/schedules/search/code")
+    public Mono<ResponseDto<List<DistributionSchedule>>> searchSchedulesByCode(@PathVariable String organizationId,
+                                                                               @RequestParam String prefix,
+                                                                               @RequestParam(required = false) String cursor,
+                                                                               @RequestParam(required = false) Integer size) {
+        return scheduleService.searchByCode(organizationId, prefix, cursor, size)
+                .map(page -> new ResponseDto<>(true, page.getItems(), page.getNextCursor()));
+    }
+
+    @GetMapping("/schedules/{id}")
+    public Mono<ResponseDto<DistributionSchedule>> getSchedule(@PathVariable String organizationId, @PathVariable String id) {
+        return scheduleService.getByOrganization(organizationId, id)
+                .map(result -> new ResponseDto<>(true, result));
+    }
+
+    @GetMapping("/schedules/code/{code}")
+    public Mono<ResponseDto<DistributionSchedule>> getScheduleByCode(@PathVariable String organizationId, @PathVariable String code) {
+        return scheduleService.getByOrganizationAndCode(organizationId, code)
+                .map(result -> new ResponseDto<>(true, result));
+    }
+
+    // Tarifas
+
+    @GetMapping("/fare")
+    public Mono<ResponseEntity<byte[]>> getFares(@PathVariable String organizationId,
+                                                 @RequestParam(required = false) String status) {
+        return encodedLists.get(Fare.class, organizationId, status,
+                        () -> fareService.getAllByOrganizationF(organizationId, status)
+                                .collectList()
+                                .map(fares -> new ResponseDto<>(true, fares)))
+                .map(OrganizationRest::json);
+    }
+
+    @GetMapping("/fare/count")
+    public Mono<ResponseDto<Long>> countFares(@PathVariable String organizationId,
+                                              @RequestParam(required = false) String status) {
+        return fareService.countByOrganizationF(organizationId, status)
+                .map(count -> new ResponseDto<>(true, count));
+    }
+
+    @GetMapping("/fare/search/code")
+    public Mono<ResponseDto<List<Fare>>> searchFaresByCode(@PathVariable String organizationId,
+                                                           @RequestParam String prefix,
+                                                           @RequestParam(required = false) String cursor,
+                                                           @RequestParam(required = false) Integer size) {
+        return fareService.searchByCodeF(organizationId, prefix, cursor, size)
+                .map(page -> new ResponseDto<>(true, page.getItems(), page.getNextCursor()));
+    }
+
+    @GetMapping("/fare/{id}")
+    public Mono<ResponseDto<Fare>> getFare(@PathVariable String organizationId, @PathVariable String id) {
+        return fareService.getByOrganizationF(organizationId, id)
+                .map(fare -> new ResponseDto<>(true, fare));
+    }
+
+    @GetMapping("/fare/code/{code}")
+    public Mono<ResponseDto<Fare>> getFareByCode(@PathVariable String organizationId, @PathVariable String code) {
+        return fareService.getByOrganizationAndCodeF(organizationId, code)
+                .map(fare -> new ResponseDto<>(true, fare));
+    }
+
+    private static ResponseEntity<byte[]> json(EncodedListCache.Encoded encoded) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(encoded.json());
+    }
+}
@@ -0,0 +1,28 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.rest;
+
+import org.springframework.core.annotation.AliasFor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Variante en streaming de un listado (Accept: application/x-ndjson o text/event-stream): cada
+ * elemento se escribe según llega de Mongo, con contrapresión y sin acumular la lista en memoria.
+ * Solo se elige si el cliente pide uno de esos tipos de forma explícita (ver
+ * StreamingRequestCondition); con Accept vacío o comodín responde el GET JSON de la misma ruta.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@RequestMapping(method = RequestMethod.GET, produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+public @interface StreamingGetMapping {
+
+    @AliasFor(annotation = RequestMapping.class, attribute = "path")
+    String[] value() default {};
+}
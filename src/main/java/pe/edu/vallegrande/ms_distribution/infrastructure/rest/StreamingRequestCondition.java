@@ -0,0 +1,52 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.rest;
+
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.result.condition.RequestCondition;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Condición de los métodos con StreamingGetMapping: exige que Accept nombre application/x-ndjson
+ * o text/event-stream. Solo con produces, Spring prefiere el método que declara tipos frente al
+ * que no declara ninguno cuando llega Accept: *&#47;*, y un cliente genérico acabaría recibiendo
+ * un stream en lugar del JSON de siempre.
+ */
+public final class StreamingRequestCondition implements RequestCondition<StreamingRequestCondition> {
+
+    private static final StreamingRequestCondition INSTANCE = new StreamingRequestCondition();
+    private static final List<MediaType> STREAMING_TYPES = List.of(MediaType.APPLICATION_NDJSON, MediaType.TEXT_EVENT_STREAM);
+
+    private StreamingRequestCondition() {
+    }
+
+    /**
+     * Condición para el método de un controlador; null si no es una variante en streaming.
+     */
+    public static StreamingRequestCondition forMethod(Method method) {
+        return AnnotatedElementUtils.hasAnnotation(method, StreamingGetMapping.class) ? INSTANCE : null;
+    }
+
+    @Override
+    public StreamingRequestCondition combine(StreamingRequestCondition other) {
+        return this;
+    }
+
+    @Override
+    public StreamingRequestCondition getMatchingCondition(ServerWebExchange exchange) {
+        try {
+            return exchange.getRequest().getHeaders().getAccept().stream()
+                    .anyMatch(accepted -> STREAMING_TYPES.stream().anyMatch(accepted::equalsTypeAndSubtype)) ? this : null;
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public int compareTo(StreamingRequestCondition other, ServerWebExchange exchange) {
+        return 0;
+    }
+}
@@ -2,9 +2,13 @@ package pe.edu.vallegrande.ms_distribution;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
+@EnableScheduling
 @OpenAPIDefinition
 public class msWaterDistributionApplication {
 
@@ -0,0 +1,39 @@
+package pe.edu.vallegrande.ms_distribution.application.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.HealthEndpointGroup;
+import org.springframework.boot.actuate.health.HealthEndpointGroups;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HealthGroupsConfigTest {
+
+    /**
+     * Escenario de Grupo principal:
+     * warmUp deja de contar en /actuator/health, pero sigue en readiness; el resto no cambia.
+     */
+    @Test
+    void withoutReadinessOnly_ShouldDropWarmUpFromPrimaryGroupOnly() {
+        HealthEndpointGroup primary = mock(HealthEndpointGroup.class);
+        HealthEndpointGroup readiness = mock(HealthEndpointGroup.class);
+        when(primary.isMember(anyString())).thenReturn(true);
+        HealthEndpointGroups groups = mock(HealthEndpointGroups.class);
+        when(groups.getPrimary()).thenReturn(primary);
+        when(groups.getNames()).thenReturn(Set.of("readiness"));
+        when(groups.get("readiness")).thenReturn(readiness);
+
+        HealthEndpointGroups processed = new HealthGroupsConfig().readinessOnlyIndicators().postProcessHealthEndpointGroups(groups);
+
+        assertFalse(processed.getPrimary().isMember("warmUp"));
+        assertTrue(processed.getPrimary().isMember("mongo"));
+        assertSame(readiness, processed.get("readiness"));
+        assertTrue(processed.getNames().contains("readiness"));
+    }
+}
@@ -0,0 +1,151 @@
+package pe.edu.vallegrande.ms_distribution.application.services.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import pe.edu.vallegrande.ms_distribution.application.config.CodeAllocationProperties;
+import pe.edu.vallegrande.ms_distribution.domain.enums.CodeSequence;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.SequenceRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class CodeGeneratorServiceImplTest {
+
+    @Mock
+    private SequenceRepository sequenceRepository;
+
+    private CodeAllocationProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private CodeGeneratorServiceImpl codeGenerator;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new CodeAllocationProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        codeGenerator = new CodeGeneratorServiceImpl(sequenceRepository, properties, meterRegistry);
+    }
+
+    @Test
+    void nextCode_ShouldSeedFromExistingCodes_OnlyOnFirstUse() {
+        AtomicLong counter = new AtomicLong();
+        when(sequenceRepository.findHighestExistingCode(CodeSequence.PROGRAM, "org-1")).thenReturn(Mono.just(9L));
+        when(sequenceRepository.seed("org-1", "PROG", 9L)).thenAnswer(inv -> {
+            counter.compareAndSet(0, 9);
+            return Mono.empty();
+        });
+        when(sequenceRepository.increment("org-1", "PROG", 1L))
+                .thenAnswer(inv -> Mono.fromSupplier(counter::incrementAndGet));
+
+        StepVerifier.create(codeGenerator.nextCode(CodeSequence.PROGRAM, "org-1"))
+                .expectNext("PROG010")
+                .verifyComplete();
+        StepVerifier.create(codeGenerator.nextCode(CodeSequence.PROGRAM, "org-1"))
+                .expectNext("PROG011")
+                .verifyComplete();
+
+        verify(sequenceRepository, times(1)).findHighestExistingCode(CodeSequence.PROGRAM, "org-1");
+        verify(sequenceRepository, times(2)).increment("org-1", "PROG", 1L);
+    }
+
+    @Test
+    void nextCode_ShouldStartAtOne_WhenOrganizationHasNoCodes() {
+        when(sequenceRepository.findHighestExistingCode(CodeSequence.FARE, "org-2")).thenReturn(Mono.empty());
+        when(sequenceRepository.seed("org-2", "TAR", 0L)).thenReturn(Mono.empty());
+        when(sequenceRepository.increment("org-2", "TAR", 1L)).thenReturn(Mono.just(1L));
+
+        StepVerifier.create(codeGenerator.nextCode(CodeSequence.FARE, "org-2"))
+                .expectNext("TAR001")
+                .verifyComplete();
+
+        verify(sequenceRepository).seed("org-2", "TAR", 0L);
+    }
+
+    @Test
+    void nextCode_ShouldNotIncrement_WhenSeedFails() {
+        when(sequenceRepository.findHighestExistingCode(CodeSequence.ROUTE, "org-1"))
+                .thenReturn(Mono.error(new RuntimeException("Database error")));
+
+        StepVerifier.create(codeGenerator.nextCode(CodeSequence.ROUTE, "org-1"))
+                .expectErrorMessage("Database error")
+                .verify();
+
+        verify(sequenceRepository, never()).increment(anyString(), anyString(), anyLong());
+    }
+
+    /**
+     * Altas concurrentes sobre bloques pequeños: varios hilos agotan el bloque a la vez y reservan
+     * el siguiente en paralelo; ningún código puede entregarse dos veces.
+     */
+    @Test
+    void nextCode_ShouldNotDuplicateCodes_WhenBlocksAreExhaustedConcurrently() {
+        int creates = 200;
+        long blockSize = 3;
+        properties.setBlockSize((int) blockSize);
+        AtomicLong counter = new AtomicLong();
+        when(sequenceRepository.findHighestExistingCode(CodeSequence.SCHEDULE, "org-1")).thenReturn(Mono.empty());
+        when(sequenceRepository.seed("org-1", "HOR", 0L)).thenReturn(Mono.empty());
+        // Como el $inc de Mongo: cada reserva recibe un rango disjunto
+        when(sequenceRepository.increment("org-1", "HOR", blockSize))
+                .thenAnswer(inv -> Mono.fromSupplier(() -> counter.addAndGet(blockSize)));
+
+        List<String> codes = Flux.range(0, creates)
+                .flatMap(i -> codeGenerator.nextCode(CodeSequence.SCHEDULE, "org-1")
+                        .subscribeOn(Schedulers.parallel()))
+                .collectList()
+                .block();
+
+        assertNotNull(codes);
+        assertEquals(creates, codes.size());
+        assertEquals(creates, new HashSet<>(codes).size());
+        // Las reservas simultáneas pueden dejar huecos, pero nunca más allá de lo reservado
+        assertTrue(counter.get() >= creates);
+    }
+
+    @Test
+    void nextCode_ShouldServeFromLeasedBlock_WithSingleIncrement() {
+        properties.setBlockSize(5);
+        when(sequenceRepository.findHighestExistingCode(CodeSequence.ROUTE, "org-1")).thenReturn(Mono.just(3L));
+        when(sequenceRepository.seed("org-1", "RUT", 3L)).thenReturn(Mono.empty());
+        when(sequenceRepository.increment("org-1", "RUT", 5L)).thenReturn(Mono.just(8L), Mono.just(13L));
+
+        List<String> codes = Flux.range(0, 6)
+                .concatMap(i -> codeGenerator.nextCode(CodeSequence.ROUTE, "org-1"))
+                .collectList()
+                .block();
+
+        assertEquals(List.of("RUT004", "RUT005", "RUT006", "RUT007", "RUT008", "RUT009"), codes);
+        verify(sequenceRepository, times(2)).increment("org-1", "RUT", 5L);
+        assertEquals(4.0, meterRegistry.get(CodeGeneratorServiceImpl.ALLOCATED_METRIC)
+                .tag("source", CodeGeneratorServiceImpl.SOURCE_MEMORY).counter().count());
+        assertEquals(2.0, meterRegistry.get(CodeGeneratorServiceImpl.ALLOCATED_METRIC)
+                .tag("source", CodeGeneratorServiceImpl.SOURCE_DATABASE).counter().count());
+    }
+
+    @Test
+    void releaseUnusedBlocks_ShouldReturnUnusedTail_OnShutdown() {
+        properties.setBlockSize(10);
+        when(sequenceRepository.findHighestExistingCode(CodeSequence.FARE, "org-1")).thenReturn(Mono.empty());
+        when(sequenceRepository.seed("org-1", "TAR", 0L)).thenReturn(Mono.empty());
+        when(sequenceRepository.increment("org-1", "TAR", 10L)).thenReturn(Mono.just(10L));
+        when(sequenceRepository.release("org-1", "TAR", 10L, 2L)).thenReturn(Mono.just(true));
+
+        codeGenerator.nextCode(CodeSequence.FARE, "org-1").block();
+        codeGenerator.nextCode(CodeSequence.FARE, "org-1").block();
+        codeGenerator.releaseUnusedBlocks();
+
+        verify(sequenceRepository).release("org-1", "TAR", 10L, 2L);
+    }
+}
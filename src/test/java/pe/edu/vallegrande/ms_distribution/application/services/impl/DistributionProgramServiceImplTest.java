@@ -2,19 +2,48 @@ package pe.edu.vallegrande.ms_distribution.application.services.impl;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.QueryTimeoutException;
+import pe.edu.vallegrande.ms_distribution.application.cache.SingleFlight;
+import pe.edu.vallegrande.ms_distribution.application.config.PaginationProperties;
+import pe.edu.vallegrande.ms_distribution.application.config.WriteRetryPolicy;
+import pe.edu.vallegrande.ms_distribution.application.config.WriteRetryProperties;
+import pe.edu.vallegrande.ms_distribution.application.services.CodeGeneratorService;
+import pe.edu.vallegrande.ms_distribution.application.services.ProgramRollupService;
+import pe.edu.vallegrande.ms_distribution.domain.enums.CodeSequence;
 import pe.edu.vallegrande.ms_distribution.domain.models.DistributionProgram;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.CursorPage;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionProgramCreateRequest;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.ProgramDateRangeRequest;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.ProgramKpiRequest;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.response.ProgramKpiResponse;
+import pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ChangeMarkers;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.Change;
 import pe.edu.vallegrande.ms_distribution.infrastructure.repository.DistributionProgramRepository;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 public class DistributionProgramServiceImplTest {
@@ -22,12 +51,34 @@ public class DistributionProgramServiceImplTest {
     @Mock
     private DistributionProgramRepository programRepository;
 
+    @Mock
+    private CodeGeneratorService codeGenerator;
+
+    @Mock
+    private ProgramRollupService rollups;
+
+    @Spy
+    private WriteRetryPolicy writePolicy = new WriteRetryPolicy(new WriteRetryProperties(), new SimpleMeterRegistry());
+
+    @Spy
+    private PaginationProperties pagination = new PaginationProperties();
+
+    @Spy
+    private SingleFlight singleFlight = new SingleFlight(new SimpleMeterRegistry());
+
+    @Mock
+    private ChangeMarkers changeMarkers;
+
     @InjectMocks
     private DistributionProgramServiceImpl distributionProgramService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(rollups.recordCreated(any())).thenReturn(Mono.empty());
+        when(rollups.recordChange(any())).thenReturn(Mono.empty());
+        when(rollups.recordRemoved(any())).thenReturn(Mono.empty());
+        when(rollups.rebuild(any())).thenReturn(Mono.just(0L));
     }
 
     @Test
@@ -40,7 +91,7 @@ public class DistributionProgramServiceImplTest {
                 .status("PENDING").responsibleUserId("u").observations("obs")
                 .createdAt(java.time.Instant.parse("2024-01-01T00:00:00Z")).build();
 
-        when(programRepository.findAll()).thenReturn(Flux.just(p1));
+        when(programRepository.findListing(null)).thenReturn(Flux.just(p1));
 
         StepVerifier.create(distributionProgramService.getAll())
                 .assertNext(resp -> {
@@ -71,7 +122,7 @@ public class DistributionProgramServiceImplTest {
     @Test
     void save_shouldGenerateDefaultCode_whenNoPrevious() {
         DistributionProgramCreateRequest req = validRequestFor("2024-01-02");
-        when(programRepository.findTopByOrderByProgramCodeDesc()).thenReturn(Mono.empty());
+        when(codeGenerator.nextCode(CodeSequence.PROGRAM, "org-1")).thenReturn(Mono.just("PROG001"));
         when(programRepository.save(ArgumentMatchers.any(DistributionProgram.class)))
                 .thenAnswer(inv -> {
                     DistributionProgram arg = inv.getArgument(0);
@@ -101,10 +152,9 @@ public class DistributionProgramServiceImplTest {
     }
 
     @Test
-    void save_shouldGenerateNextCode_whenPreviousNumeric() {
-        DistributionProgram last = DistributionProgram.builder().programCode("PROG009").build();
+    void save_shouldUseCodeAllocatedForOrganization() {
         DistributionProgramCreateRequest req = validRequestFor("2024-01-03");
-        when(programRepository.findTopByOrderByProgramCodeDesc()).thenReturn(Mono.just(last));
+        when(codeGenerator.nextCode(CodeSequence.PROGRAM, "org-1")).thenReturn(Mono.just("PROG010"));
         when(programRepository.save(any(DistributionProgram.class)))
                 .thenAnswer(inv -> {
                     DistributionProgram arg = inv.getArgument(0);
@@ -134,46 +184,40 @@ public class DistributionProgramServiceImplTest {
     }
 
     @Test
-    void save_shouldFallback_whenPreviousNonNumeric() {
-        DistributionProgram last = DistributionProgram.builder().programCode("BAD").build();
+    void save_shouldNotPersist_whenCodeAllocationFails() {
+        DistributionProgramCreateRequest req = validRequestFor("2024-01-04");
+        when(codeGenerator.nextCode(CodeSequence.PROGRAM, "org-1"))
+                .thenReturn(Mono.error(new RuntimeException("Counter unavailable")));
+
+        StepVerifier.create(distributionProgramService.save(req))
+                .expectErrorMessage("Counter unavailable")
+                .verify();
+
+        verify(programRepository, never()).save(any(DistributionProgram.class));
+    }
+
+    @Test
+    void save_shouldReturnBadRequest_whenProgramCodeAlreadyExists() {
         DistributionProgramCreateRequest req = validRequestFor("2024-01-04");
-        when(programRepository.findTopByOrderByProgramCodeDesc()).thenReturn(Mono.just(last));
+        when(codeGenerator.nextCode(CodeSequence.PROGRAM, "org-1")).thenReturn(Mono.just("PROG001"));
         when(programRepository.save(any(DistributionProgram.class)))
-                .thenAnswer(inv -> {
-                    DistributionProgram arg = inv.getArgument(0);
-                    return Mono.just(DistributionProgram.builder()
-                            .id("id")
-                            .organizationId(arg.getOrganizationId())
-                            .programCode(arg.getProgramCode())
-                            .scheduleId(arg.getScheduleId())
-                            .routeId(arg.getRouteId())
-                            .zoneId(arg.getZoneId())
-                            .streetId(arg.getStreetId())
-                            .programDate(arg.getProgramDate())
-                            .plannedStartTime(arg.getPlannedStartTime())
-                            .plannedEndTime(arg.getPlannedEndTime())
-                            .actualStartTime(arg.getActualStartTime())
-                            .actualEndTime(arg.getActualEndTime())
-                            .status(arg.getStatus())
-                            .responsibleUserId(arg.getResponsibleUserId())
-                            .observations(arg.getObservations())
-                            .createdAt(arg.getCreatedAt())
-                            .build());
-                });
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key")));
 
         StepVerifier.create(distributionProgramService.save(req))
-                .assertNext(resp -> org.junit.jupiter.api.Assertions.assertEquals("PROG001", resp.getProgramCode()))
-                .verifyComplete();
+                .expectErrorSatisfies(error -> {
+                    CustomException ce = assertInstanceOf(CustomException.class, error);
+                    assertEquals("Program code already exists", ce.getMessage());
+                })
+                .verify();
     }
 
     @Test
     void update_shouldMapAndSave_whenExists() {
         String id = "p1";
-        DistributionProgram existing = DistributionProgram.builder().id(id).build();
         DistributionProgramCreateRequest req = validRequestFor("2024-01-05");
-        when(programRepository.findById(id)).thenReturn(Mono.just(existing));
-        when(programRepository.save(any(DistributionProgram.class)))
-                .thenAnswer(inv -> Mono.just((DistributionProgram) inv.getArgument(0)));
+        DistributionProgram updated = DistributionProgram.builder().id(id)
+                .plannedStartTime("08:00").plannedEndTime("10:00").build();
+        when(programRepository.updateFieldsTracked(eq(id), isNull(), anyMap())).thenReturn(Mono.just(new Change<>(updated, updated)));
 
         StepVerifier.create(distributionProgramService.update(id, req))
                 .assertNext(resp -> {
@@ -182,39 +226,261 @@ public class DistributionProgramServiceImplTest {
                     org.junit.jupiter.api.Assertions.assertEquals("10:00", resp.getPlannedEndTime());
                 })
                 .verifyComplete();
+
+        ArgumentCaptor<Map<String, Object>> fields = ArgumentCaptor.forClass(Map.class);
+        verify(programRepository).updateFieldsTracked(eq(id), isNull(), fields.capture());
+        org.junit.jupiter.api.Assertions.assertEquals("08:00", fields.getValue().get("plannedStartTime"));
+        org.junit.jupiter.api.Assertions.assertFalse(fields.getValue().containsKey("programDate"));
+        // El estado solo cambia por changeStatus
+        org.junit.jupiter.api.Assertions.assertFalse(fields.getValue().containsKey("status"));
+        verify(programRepository, never()).findById(anyString());
+        verify(programRepository, never()).save(any(DistributionProgram.class));
     }
 
     @Test
     void update_shouldError_whenNotFound() {
-        when(programRepository.findById("missing")).thenReturn(Mono.empty());
+        when(programRepository.updateFieldsTracked(eq("missing"), isNull(), anyMap())).thenReturn(Mono.empty());
         StepVerifier.create(distributionProgramService.update("missing", validRequestFor("2024-01-06")))
                 .expectError(pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException.class)
                 .verify();
     }
 
+    @Test
+    void patch_shouldSetOnlyProvidedFields() {
+        DistributionProgramCreateRequest req = DistributionProgramCreateRequest.builder()
+                .observations("Reprogramado")
+                .programDate("2024-02-01")
+                .status("COMPLETED")
+                .build();
+        DistributionProgram updated = DistributionProgram.builder().id("p1").observations("Reprogramado").build();
+        when(programRepository.updateFieldsTracked(eq("p1"), isNull(), anyMap())).thenReturn(Mono.just(new Change<>(updated, updated)));
+
+        StepVerifier.create(distributionProgramService.patch("p1", req))
+                .assertNext(resp -> org.junit.jupiter.api.Assertions.assertEquals("Reprogramado", resp.getObservations()))
+                .verifyComplete();
+
+        ArgumentCaptor<Map<String, Object>> fields = ArgumentCaptor.forClass(Map.class);
+        verify(programRepository).updateFieldsTracked(eq("p1"), isNull(), fields.capture());
+        // El estado no se cambia por PATCH: pasa por changeStatus
+        org.junit.jupiter.api.Assertions.assertEquals(
+                Map.of("observations", "Reprogramado", "programDate", LocalDate.parse("2024-02-01")), fields.getValue());
+    }
+
+    @Test
+    void patch_shouldReturnBadRequest_whenProgramDateIsMalformed() {
+        DistributionProgramCreateRequest req = DistributionProgramCreateRequest.builder()
+                .programDate("01/02/2024")
+                .build();
+
+        StepVerifier.create(distributionProgramService.patch("p1", req))
+                .expectErrorSatisfies(error -> assertEquals(400,
+                        assertInstanceOf(CustomException.class, error).getErrorMessage().getErrorCode()))
+                .verify();
+
+        verify(programRepository, never()).updateFieldsTracked(anyString(), any(), anyMap());
+    }
+
+    @Test
+    void save_shouldReturnBadRequest_whenProgramDateIsMalformed() {
+        StepVerifier.create(distributionProgramService.save(validRequestFor("2024-13-40")))
+                .expectErrorSatisfies(error -> assertEquals(400,
+                        assertInstanceOf(CustomException.class, error).getErrorMessage().getErrorCode()))
+                .verify();
+
+        verify(codeGenerator, never()).nextCode(any(), anyString());
+        verify(programRepository, never()).save(any(DistributionProgram.class));
+    }
+
+    @Test
+    void getPage_shouldCapSizeAndMapToResponse() {
+        DistributionProgram p1 = DistributionProgram.builder().id("1").programCode("PROG001").build();
+        when(programRepository.findPage(null, null, 501, Set.of("programCode"))).thenReturn(Flux.just(p1));
+
+        StepVerifier.create(distributionProgramService.getPage(null, null, 10_000, Set.of("programCode")))
+                .assertNext(page -> {
+                    org.junit.jupiter.api.Assertions.assertEquals(1, page.getItems().size());
+                    org.junit.jupiter.api.Assertions.assertEquals("PROG001", page.getItems().get(0).getProgramCode());
+                    org.junit.jupiter.api.Assertions.assertNull(page.getNextCursor());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void searchObservations_shouldContinueAfterLastScoreAndId() {
+        DistributionProgram p1 = DistributionProgram.builder().id("a1").observations("fuga en la tubería").score(2.5).build();
+        DistributionProgram p2 = DistributionProgram.builder().id("b2").observations("tubería rota").score(1.5).build();
+        DistributionProgram p3 = DistributionProgram.builder().id("c3").observations("revisar tubería").score(1.5).build();
+        when(programRepository.searchObservations("org", "tubería", null, null, 3)).thenReturn(Flux.just(p1, p2, p3));
+        when(programRepository.searchObservations("org", "tubería", 1.5, "b2", 3)).thenReturn(Flux.just(p3));
+
+        StepVerifier.create(distributionProgramService.searchObservations("org", " tubería ", null, 2))
+                .assertNext(page -> {
+                    org.junit.jupiter.api.Assertions.assertEquals(List.of("a1", "b2"),
+                            page.getItems().stream().map(item -> item.getId()).toList());
+                    org.junit.jupiter.api.Assertions.assertEquals(2.5, page.getItems().get(0).getScore());
+                    org.junit.jupiter.api.Assertions.assertEquals(CursorPage.encode("1.5|b2"), page.getNextCursor());
+                })
+                .verifyComplete();
+
+        StepVerifier.create(distributionProgramService.searchObservations("org", "tubería", CursorPage.encode("1.5|b2"), 2))
+                .assertNext(page -> {
+                    org.junit.jupiter.api.Assertions.assertEquals("c3", page.getItems().get(0).getId());
+                    org.junit.jupiter.api.Assertions.assertNull(page.getNextCursor());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void searchObservations_shouldRejectMalformedCursorWithoutQuerying() {
+        StepVerifier.create(distributionProgramService.searchObservations("org", "tubería", CursorPage.encode("b2"), 10))
+                .expectErrorSatisfies(error -> {
+                    org.junit.jupiter.api.Assertions.assertTrue(error instanceof CustomException);
+                    org.junit.jupiter.api.Assertions.assertEquals(400, ((CustomException) error).getErrorMessage().getErrorCode());
+                })
+                .verify();
+
+        verify(programRepository, never()).searchObservations(any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void getCalendar_shouldGroupConsecutiveProgramsByDay() {
+        LocalDate monday = LocalDate.parse("2024-03-04");
+        LocalDate tuesday = LocalDate.parse("2024-03-05");
+        DistributionProgram a = DistributionProgram.builder().id("a").programDate(monday).build();
+        DistributionProgram b = DistributionProgram.builder().id("b").programDate(monday).build();
+        DistributionProgram c = DistributionProgram.builder().id("c").programDate(tuesday).build();
+        when(programRepository.findByDateRange(monday, tuesday, "org", null, "r1", null)).thenReturn(Flux.just(a, b, c));
+
+        ProgramDateRangeRequest range = ProgramDateRangeRequest.builder()
+                .from(monday).to(tuesday).organizationId("org").routeId("r1").build();
+
+        StepVerifier.create(distributionProgramService.getCalendar(range))
+                .assertNext(day -> {
+                    org.junit.jupiter.api.Assertions.assertEquals("2024-03-04", day.getDate());
+                    org.junit.jupiter.api.Assertions.assertEquals(2, day.getTotal());
+                })
+                .assertNext(day -> {
+                    org.junit.jupiter.api.Assertions.assertEquals("2024-03-05", day.getDate());
+                    org.junit.jupiter.api.Assertions.assertEquals("c", day.getPrograms().get(0).getId());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void getByDateRange_shouldError_whenFromAfterTo() {
+        ProgramDateRangeRequest range = ProgramDateRangeRequest.builder()
+                .from(LocalDate.parse("2024-03-10")).to(LocalDate.parse("2024-03-01")).build();
+
+        StepVerifier.create(distributionProgramService.getByDateRange(range))
+                .expectError(pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException.class)
+                .verify();
+
+        verify(programRepository, never()).findByDateRange(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void getKpis_shouldTranslateDimensionsAndPeriod() {
+        LocalDate from = LocalDate.parse("2024-01-01");
+        LocalDate to = LocalDate.parse("2024-03-31");
+        ProgramKpiResponse row = ProgramKpiResponse.builder().zoneId("z1").period("2024-01").totalPrograms(10).build();
+        when(programRepository.aggregateKpis(from, to, "org", null, null, List.of("zoneId"), "%Y-%m", 5))
+                .thenReturn(Flux.just(row));
+
+        ProgramKpiRequest request = new ProgramKpiRequest();
+        request.setFrom(from);
+        request.setTo(to);
+        request.setOrganizationId("org");
+        request.setGroupBy(List.of("zone", "Zone"));
+        request.setPeriod("month");
+        request.setToleranceMinutes(5);
+
+        StepVerifier.create(distributionProgramService.getKpis(request))
+                .expectNext(row)
+                .verifyComplete();
+    }
+
+    @Test
+    void getKpis_shouldError_whenDimensionUnknown() {
+        ProgramKpiRequest request = new ProgramKpiRequest();
+        request.setFrom(LocalDate.parse("2024-01-01"));
+        request.setTo(LocalDate.parse("2024-01-31"));
+        request.setGroupBy(List.of("street"));
+
+        StepVerifier.create(distributionProgramService.getKpis(request))
+                .expectError(pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException.class)
+                .verify();
+    }
+
     @Test
     void delete_shouldComplete_whenExists() {
-        DistributionProgram p = DistributionProgram.builder().id("p").build();
-        when(programRepository.findById("p")).thenReturn(Mono.just(p));
-        when(programRepository.delete(p)).thenReturn(Mono.empty());
+        DistributionProgram removed = DistributionProgram.builder().id("p").build();
+        when(programRepository.findAndRemoveById("p")).thenReturn(Mono.just(removed));
 
         StepVerifier.create(distributionProgramService.delete("p")).verifyComplete();
+
+        verify(rollups).recordRemoved(removed);
     }
 
     @Test
     void delete_shouldError_whenNotFound() {
-        when(programRepository.findById("missing")).thenReturn(Mono.empty());
+        when(programRepository.findAndRemoveById("missing")).thenReturn(Mono.empty());
         StepVerifier.create(distributionProgramService.delete("missing"))
                 .expectError(pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException.class)
                 .verify();
     }
 
+    @Test
+    void delete_shouldNotRetry_whenTransientFailure() {
+        // Un segundo intento no distinguiría "ya borrado" de "no existe" y perdería la imagen para los resúmenes
+        AtomicInteger attempts = new AtomicInteger();
+        when(programRepository.findAndRemoveById("p")).thenReturn(Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new QueryTimeoutException("socket timeout"));
+        }));
+
+        StepVerifier.create(distributionProgramService.delete("p"))
+                .expectError(QueryTimeoutException.class)
+                .verify();
+
+        assertEquals(1, attempts.get());
+        verify(rollups, never()).recordRemoved(any());
+    }
+
+    @Test
+    void deleteAll_shouldReturnDeletedCount() {
+        when(programRepository.removeMatching("org-1", "CANCELLED")).thenReturn(Mono.just(4L));
+
+        StepVerifier.create(distributionProgramService.deleteAll("org-1", "CANCELLED"))
+                .expectNext(4L)
+                .verifyComplete();
+
+        verify(rollups).rebuild("org-1");
+    }
+
+    @Test
+    void deleteAll_shouldError_whenNoFilter() {
+        StepVerifier.create(distributionProgramService.deleteAll(null, null))
+                .expectError(pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException.class)
+                .verify();
+
+        verify(programRepository, never()).removeMatching(any(), any());
+    }
+
+    @Test
+    void deleteAll_shouldError_whenOrganizationMissing() {
+        StepVerifier.create(distributionProgramService.deleteAll(null, "CANCELLED"))
+                .expectErrorSatisfies(error -> assertEquals(400,
+                        assertInstanceOf(CustomException.class, error).getErrorMessage().getErrorCode()))
+                .verify();
+
+        verify(programRepository, never()).removeMatching(any(), any());
+    }
+
     @Test
     void changeStatus_activate_shouldPersist() {
-        DistributionProgram p = DistributionProgram.builder().id("p").status("OLD").build();
-        when(programRepository.findById("p")).thenReturn(Mono.just(p));
-        when(programRepository.save(any(DistributionProgram.class)))
-                .thenAnswer(inv -> Mono.just((DistributionProgram) inv.getArgument(0)));
+        DistributionProgram p = DistributionProgram.builder().id("p").status(pe.edu.vallegrande.ms_distribution.domain.enums.Constants.ACTIVE.name()).build();
+        DistributionProgram inactive = DistributionProgram.builder().id("p").status("INACTIVE").build();
+        when(programRepository.transitionStatusTracked("p", null, "ACTIVE")).thenReturn(Mono.just(new Change<>(inactive, p)));
 
         StepVerifier.create(distributionProgramService.activate("p"))
                 .assertNext(resp -> org.junit.jupiter.api.Assertions.assertEquals(pe.edu.vallegrande.ms_distribution.domain.enums.Constants.ACTIVE.name(), resp.getStatus()))
@@ -223,10 +489,9 @@ public class DistributionProgramServiceImplTest {
 
     @Test
     void changeStatus_deactivate_shouldPersist() {
-        DistributionProgram p = DistributionProgram.builder().id("p").status("OLD").build();
-        when(programRepository.findById("p")).thenReturn(Mono.just(p));
-        when(programRepository.save(any(DistributionProgram.class)))
-                .thenAnswer(inv -> Mono.just((DistributionProgram) inv.getArgument(0)));
+        DistributionProgram p = DistributionProgram.builder().id("p").status(pe.edu.vallegrande.ms_distribution.domain.enums.Constants.INACTIVE.name()).build();
+        DistributionProgram active = DistributionProgram.builder().id("p").status("ACTIVE").build();
+        when(programRepository.transitionStatusTracked("p", null, "INACTIVE")).thenReturn(Mono.just(new Change<>(active, p)));
 
         StepVerifier.create(distributionProgramService.desactivate("p"))
                 .assertNext(resp -> org.junit.jupiter.api.Assertions.assertEquals(pe.edu.vallegrande.ms_distribution.domain.enums.Constants.INACTIVE.name(), resp.getStatus()))
@@ -235,12 +500,109 @@ public class DistributionProgramServiceImplTest {
 
     @Test
     void changeStatus_shouldError_whenNotFound() {
-        when(programRepository.findById("missing")).thenReturn(Mono.empty());
-        StepVerifier.create(distributionProgramService.changeStatus("missing", "ANY"))
-                .expectError(pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException.class)
+        when(programRepository.transitionStatusTracked("missing", List.of("PLANNED"), "IN_PROGRESS")).thenReturn(Mono.empty());
+        StepVerifier.create(distributionProgramService.changeStatus("missing", "IN_PROGRESS"))
+                .expectErrorSatisfies(error -> assertEquals(404,
+                        assertInstanceOf(CustomException.class, error).getErrorMessage().getErrorCode()))
                 .verify();
     }
 
+    @Test
+    void changeStatus_shouldReturnBadRequest_whenStatusUnknown() {
+        StepVerifier.create(distributionProgramService.changeStatus("p", "ANY"))
+                .expectErrorSatisfies(error -> assertEquals(400,
+                        assertInstanceOf(CustomException.class, error).getErrorMessage().getErrorCode()))
+                .verify();
+
+        verify(programRepository, never()).transitionStatusTracked(anyString(), any(), anyString());
+    }
+
+    /**
+     * Escenario de Activación:
+     * activate/desactivate no pasan por el ciclo de vida: un programa PLANNED se activa sin
+     * restricción de origen, igual que por changeStatus con ACTIVE.
+     */
+    @Test
+    void activate_shouldFlipStatus_outsideLifecycleTable() {
+        DistributionProgram planned = DistributionProgram.builder().id("p").status("PLANNED").build();
+        DistributionProgram active = DistributionProgram.builder().id("p").status("ACTIVE").build();
+        when(programRepository.transitionStatusTracked("p", null, "ACTIVE")).thenReturn(Mono.just(new Change<>(planned, active)));
+
+        StepVerifier.create(distributionProgramService.activate("p"))
+                .assertNext(resp -> assertEquals("ACTIVE", resp.getStatus()))
+                .verifyComplete();
+        StepVerifier.create(distributionProgramService.changeStatus("p", "ACTIVE"))
+                .assertNext(resp -> assertEquals("ACTIVE", resp.getStatus()))
+                .verifyComplete();
+
+        verify(programRepository, times(2)).transitionStatusTracked("p", null, "ACTIVE");
+    }
+
+    @Test
+    void changeStatus_shouldApply_whenTransitionAllowed() {
+        DistributionProgram before = DistributionProgram.builder().id("p").status("PLANNED").build();
+        DistributionProgram p = DistributionProgram.builder().id("p").status("IN_PROGRESS").build();
+        Change<DistributionProgram> change = new Change<>(before, p);
+        when(programRepository.transitionStatusTracked("p", List.of("PLANNED"), "IN_PROGRESS")).thenReturn(Mono.just(change));
+
+        StepVerifier.create(distributionProgramService.changeStatus("p", "IN_PROGRESS"))
+                .assertNext(resp -> org.junit.jupiter.api.Assertions.assertEquals("IN_PROGRESS", resp.getStatus()))
+                .verifyComplete();
+
+        // El resumen diario pasa el programa de PLANNED a IN_PROGRESS
+        verify(rollups).recordChange(change);
+
+        verify(programRepository, never()).findById(anyString());
+        verify(programRepository, never()).save(any(DistributionProgram.class));
+    }
+
+    /**
+     * Escenario de Marcador local:
+     * Un cambio aplicado por este nodo deja los listados sin ETag hasta que llegue su evento;
+     * si no se aplicó nada, el marcador no se toca.
+     */
+    @Test
+    void changeStatus_shouldTouchListMarker_onlyWhenApplied() {
+        DistributionProgram before = DistributionProgram.builder().id("p").status("PLANNED").build();
+        DistributionProgram after = DistributionProgram.builder().id("p").status("IN_PROGRESS").build();
+        when(programRepository.transitionStatusTracked("p", List.of("PLANNED"), "IN_PROGRESS"))
+                .thenReturn(Mono.just(new Change<>(before, after)));
+        when(programRepository.transitionStatusTracked("missing", List.of("PLANNED"), "IN_PROGRESS"))
+                .thenReturn(Mono.empty());
+
+        StepVerifier.create(distributionProgramService.changeStatus("p", "IN_PROGRESS"))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(distributionProgramService.changeStatus("missing", "IN_PROGRESS"))
+                .expectError(CustomException.class)
+                .verify();
+
+        verify(changeMarkers, times(1)).touch(DistributionProgram.class);
+    }
+
+    @Test
+    void changeStatus_shouldConflict_whenTransitionNotAllowed() {
+        DistributionProgram p = DistributionProgram.builder().id("p").status("COMPLETED").build();
+        when(programRepository.transitionStatusTracked("p", List.of("IN_PROGRESS"), "COMPLETED")).thenReturn(Mono.just(new Change<>(p, p)));
+        DistributionProgram cancelled = DistributionProgram.builder().id("c").status("CANCELLED").build();
+        when(programRepository.transitionStatusTracked("c", List.of("PLANNED"), "IN_PROGRESS")).thenReturn(Mono.just(new Change<>(cancelled, cancelled)));
+
+        // Mismo estado: idempotente
+        StepVerifier.create(distributionProgramService.changeStatus("p", "COMPLETED"))
+                .assertNext(resp -> org.junit.jupiter.api.Assertions.assertEquals("COMPLETED", resp.getStatus()))
+                .verifyComplete();
+
+        StepVerifier.create(distributionProgramService.changeStatus("c", "IN_PROGRESS"))
+                .expectErrorSatisfies(error -> {
+                    org.junit.jupiter.api.Assertions.assertTrue(error instanceof pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException);
+                    org.junit.jupiter.api.Assertions.assertEquals(409,
+                            ((pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException) error).getErrorMessage().getErrorCode());
+                })
+                .verify();
+
+        verify(programRepository, never()).findById(anyString());
+    }
+
     @Test
     void toResponse_shouldHandleNullProgramDateAndCreatedAt() {
         DistributionProgram p = DistributionProgram.builder()
@@ -300,8 +662,8 @@ public class DistributionProgramServiceImplTest {
         request.setResponsibleUserId("user-1");
         request.setObservations("Test observation");
 
-        // Mock: generateNextProgramCode returns "PROG001"
-        when(programRepository.findTopByOrderByProgramCodeDesc()).thenReturn(Mono.empty());
+        // Mock: el generador de códigos devuelve "PROG001"
+        when(codeGenerator.nextCode(CodeSequence.PROGRAM, "org-1")).thenReturn(Mono.just("PROG001"));
 
         // Act & Assert - Ejecutamos el método y validamos la respuesta
         StepVerifier.create(distributionProgramService.save(request))
@@ -341,7 +703,7 @@ public class DistributionProgramServiceImplTest {
         request.setResponsibleUserId("user-1");
         request.setObservations("Test observation");
 
-        when(programRepository.findTopByOrderByProgramCodeDesc()).thenReturn(Mono.empty());
+        when(codeGenerator.nextCode(CodeSequence.PROGRAM, "org-1")).thenReturn(Mono.just("PROG001"));
         when(programRepository.save(ArgumentMatchers.any(DistributionProgram.class)))
                 .thenReturn(Mono.error(new RuntimeException("Database error")));
 
@@ -4,24 +4,47 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
 import org.mockito.MockitoAnnotations;
+import pe.edu.vallegrande.ms_distribution.application.cache.ByIdCache;
+import pe.edu.vallegrande.ms_distribution.application.cache.EncodedListCache;
+import pe.edu.vallegrande.ms_distribution.application.cache.SingleFlight;
+import pe.edu.vallegrande.ms_distribution.application.config.EncodedListCacheProperties;
+import pe.edu.vallegrande.ms_distribution.application.config.PaginationProperties;
+import pe.edu.vallegrande.ms_distribution.application.config.WriteRetryPolicy;
+import pe.edu.vallegrande.ms_distribution.application.config.WriteRetryProperties;
+import pe.edu.vallegrande.ms_distribution.application.services.CodeGeneratorService;
+import pe.edu.vallegrande.ms_distribution.domain.enums.CodeSequence;
 import pe.edu.vallegrande.ms_distribution.domain.enums.Constants;
 import pe.edu.vallegrande.ms_distribution.domain.models.DistributionRoute;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.CursorPage;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionRouteCreateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionRouteUpdateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ChangeMarkers;
 import pe.edu.vallegrande.ms_distribution.infrastructure.repository.DistributionRouteRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
 public class DistributionRouteServiceImplTest {
@@ -29,6 +52,27 @@ public class DistributionRouteServiceImplTest {
     @Mock
     private DistributionRouteRepository routeRepository;
 
+    @Mock
+    private CodeGeneratorService codeGenerator;
+
+    @Spy
+    private WriteRetryPolicy writePolicy = new WriteRetryPolicy(new WriteRetryProperties(), new SimpleMeterRegistry());
+
+    @Spy
+    private PaginationProperties pagination = new PaginationProperties();
+
+    @Spy
+    private ByIdCache<DistributionRoute> cache = new ByIdCache<>("test", 100, Duration.ofMinutes(5), new SimpleMeterRegistry());
+
+    @Spy
+    private SingleFlight singleFlight = new SingleFlight(new SimpleMeterRegistry());
+
+    @Spy
+    private EncodedListCache encodedLists = new EncodedListCache(new EncodedListCacheProperties(), new ObjectMapper(), new SimpleMeterRegistry());
+
+    @Mock
+    private ChangeMarkers changeMarkers;
+
     @InjectMocks
     private DistributionRouteServiceImpl routeService;
 
@@ -57,8 +101,8 @@ public class DistributionRouteServiceImplTest {
         request.setTotalEstimatedDuration(5);
         request.setResponsibleUserId("user-1");
 
-        // Simula que no hay rutas previas (genera RUT001)
-        when(routeRepository.findTopByOrderByRouteCodeDesc()).thenReturn(Mono.empty());
+        // Simula el contador de la organización (genera RUT001)
+        when(codeGenerator.nextCode(CodeSequence.ROUTE, "org-1")).thenReturn(Mono.just("RUT001"));
 
         // Capturador para verificar lo que se guarda en el repositorio
         ArgumentCaptor<DistributionRoute> routeCaptor = ArgumentCaptor.forClass(DistributionRoute.class);
@@ -112,7 +156,7 @@ public class DistributionRouteServiceImplTest {
                 .verifyComplete();
 
         // Verifica que los métodos del repositorio fueron llamados correctamente
-        verify(routeRepository).findTopByOrderByRouteCodeDesc();
+        verify(codeGenerator).nextCode(CodeSequence.ROUTE, "org-1");
         verify(routeRepository).save(routeCaptor.capture());
 
         // Validamos los valores capturados antes de guardar
@@ -145,11 +189,7 @@ public class DistributionRouteServiceImplTest {
     void save_ShouldGenerateNextRouteCode_WhenPreviousRoutesExist() {
         System.out.println("➡️ Iniciando prueba: Generación de código secuencial");
         
-        // Arrange - Simula que ya existe una ruta con código RUT005
-        DistributionRoute existingRoute = DistributionRoute.builder()
-                .routeCode("RUT005")
-                .build();
-
+        // Arrange - Simula que el contador de la organización ya va en RUT005
         DistributionRouteCreateRequest request = new DistributionRouteCreateRequest();
         request.setOrganizationId("org-1");
         request.setRouteName("Nueva Ruta");
@@ -157,7 +197,7 @@ public class DistributionRouteServiceImplTest {
         request.setTotalEstimatedDuration(3);
         request.setResponsibleUserId("user-1");
 
-        when(routeRepository.findTopByOrderByRouteCodeDesc()).thenReturn(Mono.just(existingRoute));
+        when(codeGenerator.nextCode(CodeSequence.ROUTE, "org-1")).thenReturn(Mono.just("RUT006"));
         when(routeRepository.save(any(DistributionRoute.class))).thenReturn(Mono.just(
                 DistributionRoute.builder()
                         .id("route-2")
@@ -205,7 +245,7 @@ public class DistributionRouteServiceImplTest {
         request.setTotalEstimatedDuration(2);
         request.setResponsibleUserId("user-1");
 
-        when(routeRepository.findTopByOrderByRouteCodeDesc()).thenReturn(Mono.empty());
+        when(codeGenerator.nextCode(CodeSequence.ROUTE, "org-1")).thenReturn(Mono.just("RUT001"));
         when(routeRepository.save(any(DistributionRoute.class)))
                 .thenReturn(Mono.error(new RuntimeException("Database error")));
 
@@ -233,13 +273,10 @@ public class DistributionRouteServiceImplTest {
         String routeId = "route-1";
         DistributionRoute existingRoute = DistributionRoute.builder()
                 .id(routeId)
-                .status(Constants.INACTIVE.name())
+                .status(Constants.ACTIVE.name())
                 .build();
 
-        when(routeRepository.findById(routeId)).thenReturn(Mono.just(existingRoute));
-        when(routeRepository.save(any(DistributionRoute.class))).thenReturn(Mono.just(
-                DistributionRoute.builder().id(routeId).status(Constants.ACTIVE.name()).build()
-        ));
+        when(routeRepository.transitionStatus(routeId, null, Constants.ACTIVE.name())).thenReturn(Mono.just(existingRoute));
 
         // Act & Assert
         StepVerifier.create(routeService.activate(routeId))
@@ -249,9 +286,38 @@ public class DistributionRouteServiceImplTest {
                 })
                 .verifyComplete();
 
+        verify(routeRepository, never()).save(any(DistributionRoute.class));
+
         System.out.println("✔️ Prueba de activación finalizada\n");
     }
 
+    /**
+     * Escenario Negativo:
+     * Un código repetido rechazado por el índice único se informa como 400, igual que en horarios.
+     */
+    @Test
+    void save_ShouldReturnBadRequest_WhenRouteCodeAlreadyExists() {
+        // Arrange
+        DistributionRouteCreateRequest request = new DistributionRouteCreateRequest();
+        request.setOrganizationId("org-1");
+        request.setRouteName("Ruta de Prueba");
+        request.setZones(Arrays.asList(new DistributionRouteCreateRequest.ZoneEntry("zone-1", 1, 2)));
+        request.setTotalEstimatedDuration(2);
+        request.setResponsibleUserId("user-1");
+
+        when(codeGenerator.nextCode(CodeSequence.ROUTE, "org-1")).thenReturn(Mono.just("RUT001"));
+        when(routeRepository.save(any(DistributionRoute.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key")));
+
+        // Act & Assert
+        StepVerifier.create(routeService.save(request))
+                .expectErrorSatisfies(error -> {
+                    CustomException ce = assertInstanceOf(CustomException.class, error);
+                    assertEquals("Route code already exists", ce.getMessage());
+                })
+                .verify();
+    }
+
     /**
      * Escenario de Desactivación:
      * Debe desactivar una ruta existente correctamente.
@@ -264,13 +330,10 @@ public class DistributionRouteServiceImplTest {
         String routeId = "route-1";
         DistributionRoute existingRoute = DistributionRoute.builder()
                 .id(routeId)
-                .status(Constants.ACTIVE.name())
+                .status(Constants.INACTIVE.name())
                 .build();
 
-        when(routeRepository.findById(routeId)).thenReturn(Mono.just(existingRoute));
-        when(routeRepository.save(any(DistributionRoute.class))).thenReturn(Mono.just(
-                DistributionRoute.builder().id(routeId).status(Constants.INACTIVE.name()).build()
-        ));
+        when(routeRepository.transitionStatus(routeId, null, Constants.INACTIVE.name())).thenReturn(Mono.just(existingRoute));
 
         // Act & Assert
         StepVerifier.create(routeService.deactivate(routeId))
@@ -280,6 +343,8 @@ public class DistributionRouteServiceImplTest {
                 })
                 .verifyComplete();
 
+        verify(routeRepository, never()).save(any(DistributionRoute.class));
+
         System.out.println("✔️ Prueba de desactivación finalizada\n");
     }
 
@@ -293,7 +358,7 @@ public class DistributionRouteServiceImplTest {
 
         // Arrange
         String routeId = "route-inexistente";
-        when(routeRepository.findById(routeId)).thenReturn(Mono.empty());
+        when(routeRepository.transitionStatus(routeId, null, Constants.ACTIVE.name())).thenReturn(Mono.empty());
 
         // Act & Assert
         StepVerifier.create(routeService.activate(routeId))
@@ -336,7 +401,7 @@ public class DistributionRouteServiceImplTest {
                 .build()
         );
 
-        when(routeRepository.findAll()).thenReturn(Flux.fromIterable(routes));
+        when(routeRepository.findListing(null)).thenReturn(Flux.fromIterable(routes));
 
         // Act & Assert
         StepVerifier.create(routeService.getAll())
@@ -356,7 +421,7 @@ public class DistributionRouteServiceImplTest {
                 })
                 .verifyComplete();
 
-        verify(routeRepository).findAll();
+        verify(routeRepository).findListing(null);
         System.out.println("✔️ Prueba de obtener todas las rutas finalizada\n");
     }
 
@@ -384,7 +449,7 @@ public class DistributionRouteServiceImplTest {
                 .build()
         );
 
-        when(routeRepository.findAllByStatus(Constants.ACTIVE.name()))
+        when(routeRepository.findListing(Constants.ACTIVE.name()))
             .thenReturn(Flux.fromIterable(activeRoutes));
 
         // Act & Assert
@@ -401,7 +466,7 @@ public class DistributionRouteServiceImplTest {
                 })
                 .verifyComplete();
 
-        verify(routeRepository).findAllByStatus(Constants.ACTIVE.name());
+        verify(routeRepository).findListing(Constants.ACTIVE.name());
         System.out.println("✔️ Prueba de obtener rutas activas finalizada\n");
     }
 
@@ -423,7 +488,7 @@ public class DistributionRouteServiceImplTest {
                 .build()
         );
 
-        when(routeRepository.findAllByStatus(Constants.INACTIVE.name()))
+        when(routeRepository.findListing(Constants.INACTIVE.name()))
             .thenReturn(Flux.fromIterable(inactiveRoutes));
 
         // Act & Assert
@@ -435,7 +500,7 @@ public class DistributionRouteServiceImplTest {
                 })
                 .verifyComplete();
 
-        verify(routeRepository).findAllByStatus(Constants.INACTIVE.name());
+        verify(routeRepository).findListing(Constants.INACTIVE.name());
         System.out.println("✔️ Prueba de obtener rutas inactivas finalizada\n");
     }
 
@@ -520,13 +585,6 @@ public class DistributionRouteServiceImplTest {
         request.setTotalEstimatedDuration(5);
         request.setResponsibleUserId("user-2");
 
-        DistributionRoute existingRoute = DistributionRoute.builder()
-                .id(routeId)
-                .routeCode("RUT001")
-                .routeName("Ruta Original")
-                .status(Constants.ACTIVE.name())
-                .build();
-
         DistributionRoute updatedRoute = DistributionRoute.builder()
                 .id(routeId)
                 .routeCode("RUT001")
@@ -540,8 +598,7 @@ public class DistributionRouteServiceImplTest {
                 .status(Constants.ACTIVE.name())
                 .build();
 
-        when(routeRepository.findById(routeId)).thenReturn(Mono.just(existingRoute));
-        when(routeRepository.save(any(DistributionRoute.class))).thenReturn(Mono.just(updatedRoute));
+        when(routeRepository.updateFields(eq(routeId), isNull(), anyMap())).thenReturn(Mono.just(updatedRoute));
 
         // Act & Assert
         StepVerifier.create(routeService.update(routeId, request))
@@ -555,8 +612,11 @@ public class DistributionRouteServiceImplTest {
                 })
                 .verifyComplete();
 
-        verify(routeRepository).findById(routeId);
-        verify(routeRepository).save(any(DistributionRoute.class));
+        ArgumentCaptor<Map<String, Object>> fields = ArgumentCaptor.forClass(Map.class);
+        verify(routeRepository).updateFields(eq(routeId), isNull(), fields.capture());
+        assertEquals("Ruta Actualizada", fields.getValue().get("routeName"));
+        assertEquals(updatedRoute.getZones(), fields.getValue().get("zones"));
+        verify(routeRepository, never()).save(any(DistributionRoute.class));
         System.out.println("✔️ Prueba de actualización finalizada\n");
     }
 
@@ -576,17 +636,236 @@ public class DistributionRouteServiceImplTest {
         request.setTotalEstimatedDuration(3);
         request.setResponsibleUserId("user-1");
 
-        when(routeRepository.findById(routeId)).thenReturn(Mono.empty());
+        when(routeRepository.updateFields(eq(routeId), isNull(), anyMap())).thenReturn(Mono.empty());
 
         // Act & Assert
         StepVerifier.create(routeService.update(routeId, request))
                 .verifyComplete();
 
-        verify(routeRepository).findById(routeId);
         verify(routeRepository, never()).save(any(DistributionRoute.class));
         System.out.println("✔️ Prueba negativa de actualización finalizada\n");
     }
 
+    /**
+     * Escenario por Organización:
+     * Con estado debe consultar por organización y estado, sin leer otras organizaciones.
+     */
+    @Test
+    void getAllByOrganization_ShouldFilterByStatus_WhenStatusGiven() {
+        // Arrange
+        DistributionRoute route = DistributionRoute.builder().id("r1").organizationId("org-1").status(Constants.ACTIVE.name()).build();
+        when(routeRepository.findAllByOrganizationIdAndStatus("org-1", Constants.ACTIVE.name())).thenReturn(Flux.just(route));
+
+        // Act & Assert
+        StepVerifier.create(routeService.getAllByOrganization("org-1", Constants.ACTIVE.name()))
+                .expectNext(route)
+                .verifyComplete();
+
+        verify(routeRepository, never()).findListing(any());
+        verify(routeRepository, never()).findAllByOrganizationId(any());
+    }
+
+    /**
+     * Escenario Negativo por Organización:
+     * Una ruta de otra organización debe responder como inexistente.
+     */
+    @Test
+    void getByOrganization_ShouldReturnNotFound_WhenRouteBelongsToAnotherOrganization() {
+        // Arrange
+        when(routeRepository.findByIdAndOrganizationId("r1", "org-2")).thenReturn(Mono.empty());
+
+        // Act & Assert
+        StepVerifier.create(routeService.getByOrganization("org-2", "r1"))
+                .expectErrorSatisfies(error -> {
+                    assertTrue(error instanceof CustomException);
+                    assertEquals(404, ((CustomException) error).getErrorMessage().getErrorCode());
+                })
+                .verify();
+    }
+
+    /**
+     * Escenario de Paginación:
+     * Debe entregar la página pedida y un cursor que continúa tras el último elemento.
+     */
+    @Test
+    void getPage_ShouldReturnNextCursor_WhenMoreRoutesRemain() {
+        // Arrange - se piden 2 y el repositorio devuelve 3 (size + 1)
+        DistributionRoute r1 = DistributionRoute.builder().id("r1").build();
+        DistributionRoute r2 = DistributionRoute.builder().id("r2").build();
+        DistributionRoute r3 = DistributionRoute.builder().id("r3").build();
+        when(routeRepository.findPage(Constants.ACTIVE.name(), null, 3, null)).thenReturn(Flux.just(r1, r2, r3));
+        when(routeRepository.findPage(Constants.ACTIVE.name(), "r2", 3, null)).thenReturn(Flux.just(r3));
+
+        // Act & Assert - primera página
+        StepVerifier.create(routeService.getPage(Constants.ACTIVE.name(), null, 2, null))
+                .assertNext(page -> {
+                    assertEquals(List.of(r1, r2), page.getItems());
+                    assertEquals(CursorPage.encode("r2"), page.getNextCursor());
+                })
+                .verifyComplete();
+
+        // Act & Assert - última página, sin cursor siguiente
+        StepVerifier.create(routeService.getPage(Constants.ACTIVE.name(), CursorPage.encode("r2"), 2, null))
+                .assertNext(page -> {
+                    assertEquals(List.of(r3), page.getItems());
+                    assertNull(page.getNextCursor());
+                })
+                .verifyComplete();
+    }
+
+    /**
+     * Escenario de Proyección:
+     * Los campos pedidos deben llegar al repositorio para que Mongo lea solo esos.
+     */
+    @Test
+    void getAllProjected_ShouldPassFieldsToRepository() {
+        // Arrange
+        Set<String> fields = Set.of("routeCode", "routeName");
+        DistributionRoute route = DistributionRoute.builder().id("r1").routeCode("RUT001").routeName("Ruta Norte").build();
+        when(routeRepository.findProjected(Constants.ACTIVE.name(), fields)).thenReturn(Flux.just(route));
+
+        // Act & Assert
+        StepVerifier.create(routeService.getAllProjected(Constants.ACTIVE.name(), fields))
+                .assertNext(r -> {
+                    assertEquals("RUT001", r.getRouteCode());
+                    assertNull(r.getZones());
+                })
+                .verifyComplete();
+    }
+
+    /**
+     * Escenario Negativo de Paginación:
+     * Un cursor que no es base64 debe rechazarse con 400 sin consultar Mongo.
+     */
+    @Test
+    void getPage_ShouldReturnBadRequest_WhenCursorIsInvalid() {
+        StepVerifier.create(routeService.getPage(null, "not a cursor!", 10, null))
+                .expectErrorSatisfies(error -> {
+                    assertTrue(error instanceof CustomException);
+                    assertEquals(400, ((CustomException) error).getErrorMessage().getErrorCode());
+                })
+                .verify();
+
+        verify(routeRepository, never()).findPage(any(), any(), anyInt(), any());
+    }
+
+    /**
+     * Escenario de Concurrencia:
+     * Con una versión desactualizada la escritura condicional debe responder 409 sin reintentar.
+     */
+    @Test
+    void update_ShouldReturnConflict_WhenVersionIsStale() {
+        // Arrange
+        String routeId = "route-1";
+        DistributionRouteUpdateRequest request = new DistributionRouteUpdateRequest();
+        request.setRouteName("Ruta Actualizada");
+        request.setZones(Arrays.asList(new DistributionRouteUpdateRequest.ZoneEntry("zone-1", 1, 2)));
+        request.setVersion(3L);
+
+        when(routeRepository.updateFields(eq(routeId), eq(3L), anyMap()))
+                .thenReturn(Mono.error(new OptimisticLockingFailureException("stale version")));
+
+        // Act & Assert
+        StepVerifier.create(routeService.update(routeId, request))
+                .expectErrorSatisfies(error -> {
+                    assertTrue(error instanceof CustomException);
+                    assertEquals(409, ((CustomException) error).getErrorMessage().getErrorCode());
+                })
+                .verify();
+
+        verify(routeRepository, times(1)).updateFields(eq(routeId), eq(3L), anyMap());
+    }
+
+    /**
+     * Escenario de Reintento:
+     * Una actualización de campos no se repite tras un fallo transitorio: si la primera ya se
+     * aplicó, repetirla incrementaría la versión dos veces.
+     */
+    @Test
+    void update_ShouldNotRetry_WhenTransientFailure() {
+        // Arrange
+        String routeId = "route-1";
+        DistributionRouteUpdateRequest request = new DistributionRouteUpdateRequest();
+        request.setRouteName("Ruta Actualizada");
+        request.setZones(Arrays.asList(new DistributionRouteUpdateRequest.ZoneEntry("zone-1", 1, 2)));
+
+        when(routeRepository.updateFields(eq(routeId), isNull(), anyMap()))
+                .thenReturn(Mono.error(new QueryTimeoutException("socket timeout")));
+
+        // Act & Assert
+        StepVerifier.create(routeService.update(routeId, request))
+                .expectError(QueryTimeoutException.class)
+                .verify();
+
+        verify(routeRepository, times(1)).updateFields(eq(routeId), isNull(), anyMap());
+    }
+
+    /**
+     * Escenario de Reintento:
+     * Un fallo transitorio de Mongo en un cambio de estado debe reintentarse.
+     */
+    @Test
+    void activate_ShouldRetry_WhenTransientFailure() {
+        // Arrange
+        String routeId = "route-1";
+        AtomicInteger attempts = new AtomicInteger();
+        DistributionRoute activeRoute = DistributionRoute.builder().id(routeId).status(Constants.ACTIVE.name()).build();
+        when(routeRepository.transitionStatus(routeId, null, Constants.ACTIVE.name())).thenReturn(Mono.defer(() ->
+                attempts.incrementAndGet() == 1
+                        ? Mono.error(new QueryTimeoutException("socket timeout"))
+                        : Mono.just(activeRoute)));
+
+        // Act & Assert
+        StepVerifier.create(routeService.activate(routeId))
+                .assertNext(route -> assertEquals(Constants.ACTIVE.name(), route.getStatus()))
+                .verifyComplete();
+
+        assertEquals(2, attempts.get());
+    }
+
+    /**
+     * Escenario PATCH:
+     * Solo los campos enviados deben llegar al $set; las zonas no se reescriben.
+     */
+    @Test
+    void patch_ShouldSetOnlyProvidedFields() {
+        // Arrange
+        String routeId = "route-1";
+        DistributionRouteUpdateRequest request = new DistributionRouteUpdateRequest();
+        request.setRouteName("Ruta Renombrada");
+
+        DistributionRoute patchedRoute = DistributionRoute.builder()
+                .id(routeId)
+                .routeName("Ruta Renombrada")
+                .build();
+        when(routeRepository.updateFields(routeId, null, Map.of("routeName", "Ruta Renombrada"))).thenReturn(Mono.just(patchedRoute));
+
+        // Act & Assert
+        StepVerifier.create(routeService.patch(routeId, request))
+                .assertNext(route -> assertEquals("Ruta Renombrada", route.getRouteName()))
+                .verifyComplete();
+
+        verify(routeRepository, never()).findById(anyString());
+    }
+
+    /**
+     * Escenario Negativo:
+     * PATCH sobre una ruta inexistente debe responder 404.
+     */
+    @Test
+    void patch_ShouldReturnError_WhenRouteNotFound() {
+        DistributionRouteUpdateRequest request = new DistributionRouteUpdateRequest();
+        request.setResponsibleUserId("user-9");
+        when(routeRepository.updateFields(eq("route-inexistente"), isNull(), anyMap())).thenReturn(Mono.empty());
+
+        StepVerifier.create(routeService.patch("route-inexistente", request))
+                .expectErrorSatisfies(error -> {
+                    assertTrue(error instanceof CustomException);
+                    assertEquals(404, ((CustomException) error).getErrorMessage().getErrorCode());
+                })
+                .verify();
+    }
+
     /**
      * Escenario Positivo:
      * Debe eliminar una ruta existente correctamente.
@@ -597,22 +876,14 @@ public class DistributionRouteServiceImplTest {
         
         // Arrange
         String routeId = "route-1";
-        DistributionRoute route = DistributionRoute.builder()
-                .id(routeId)
-                .routeCode("RUT001")
-                .routeName("Ruta a Eliminar")
-                .status(Constants.ACTIVE.name())
-                .build();
-
-        when(routeRepository.findById(routeId)).thenReturn(Mono.just(route));
-        when(routeRepository.delete(any(DistributionRoute.class))).thenReturn(Mono.empty());
+        when(routeRepository.removeById(routeId)).thenReturn(Mono.just(1L));
 
         // Act & Assert
         StepVerifier.create(routeService.delete(routeId))
                 .verifyComplete();
 
-        verify(routeRepository).findById(routeId);
-        verify(routeRepository).delete(any(DistributionRoute.class));
+        verify(routeRepository).removeById(routeId);
+        verify(routeRepository, never()).findById(routeId);
         System.out.println("✅ Ruta eliminada correctamente");
         System.out.println("✔️ Prueba de eliminación finalizada\n");
     }
@@ -627,7 +898,7 @@ public class DistributionRouteServiceImplTest {
         
         // Arrange
         String routeId = "route-inexistente";
-        when(routeRepository.findById(routeId)).thenReturn(Mono.empty());
+        when(routeRepository.removeById(routeId)).thenReturn(Mono.just(0L));
 
         // Act & Assert
         StepVerifier.create(routeService.delete(routeId))
@@ -640,8 +911,7 @@ public class DistributionRouteServiceImplTest {
                 })
                 .verify();
 
-        verify(routeRepository).findById(routeId);
-        verify(routeRepository, never()).delete(any(DistributionRoute.class));
+        verify(routeRepository).removeById(routeId);
         System.out.println("✔️ Prueba negativa de eliminación finalizada\n");
     }
 
@@ -655,7 +925,7 @@ public class DistributionRouteServiceImplTest {
 
         // Arrange
         String routeId = "route-inexistente";
-        when(routeRepository.findById(routeId)).thenReturn(Mono.empty());
+        when(routeRepository.transitionStatus(routeId, null, Constants.INACTIVE.name())).thenReturn(Mono.empty());
 
         // Act & Assert
         StepVerifier.create(routeService.deactivate(routeId))
@@ -672,18 +942,14 @@ public class DistributionRouteServiceImplTest {
     }
 
     /**
-     * Escenario de Validación:
-     * Debe lanzar NumberFormatException cuando hay un error en el parsing del código.
+     * Escenario Negativo:
+     * No debe guardar la ruta cuando falla la asignación del código.
      */
     @Test
-    void generateNextRouteCode_ShouldThrowNumberFormatException_WhenInvalidCodeFormat() {
-        System.out.println("➡️ Iniciando prueba: Error de parsing de código inválido");
-        
-        // Arrange - Simula un código con formato inválido
-        DistributionRoute existingRoute = DistributionRoute.builder()
-                .routeCode("RUTINVALID")
-                .build();
+    void save_ShouldNotPersist_WhenCodeAllocationFails() {
+        System.out.println("➡️ Iniciando prueba: Falla del contador de códigos");
 
+        // Arrange
         DistributionRouteCreateRequest request = new DistributionRouteCreateRequest();
         request.setOrganizationId("org-1");
         request.setRouteName("Ruta de Prueba");
@@ -691,18 +957,191 @@ public class DistributionRouteServiceImplTest {
         request.setTotalEstimatedDuration(2);
         request.setResponsibleUserId("user-1");
 
-        when(routeRepository.findTopByOrderByRouteCodeDesc()).thenReturn(Mono.just(existingRoute));
+        when(codeGenerator.nextCode(CodeSequence.ROUTE, "org-1"))
+                .thenReturn(Mono.error(new RuntimeException("Counter unavailable")));
 
         // Act & Assert
         StepVerifier.create(routeService.save(request))
                 .expectErrorSatisfies(error -> {
-                    assertTrue(error instanceof NumberFormatException);
-                    assertEquals("For input string: \"INVALID\"", error.getMessage());
+                    assertEquals("Counter unavailable", error.getMessage());
                     System.out.println("❌ Error esperado: " + error.getMessage());
                 })
                 .verify();
 
-        System.out.println("✔️ Prueba de error de parsing finalizada\n");
+        verify(routeRepository, never()).save(any(DistributionRoute.class));
+        System.out.println("✔️ Prueba de falla del contador finalizada\n");
     }
-}
 
+    /**
+     * Escenario de Búsqueda por Prefijo:
+     * Debe paginar por código y continuar tras el último código entregado.
+     */
+    @Test
+    void searchByCode_ShouldPageByCode() {
+        // Arrange - se piden 2 y el repositorio devuelve 3 (size + 1)
+        DistributionRoute r1 = DistributionRoute.builder().id("r1").routeCode("RUT001").build();
+        DistributionRoute r2 = DistributionRoute.builder().id("r2").routeCode("RUT002").build();
+        DistributionRoute r3 = DistributionRoute.builder().id("r3").routeCode("RUT003").build();
+        when(routeRepository.findByCodePrefix("org-1", "RUT", null, 3)).thenReturn(Flux.just(r1, r2, r3));
+
+        // Act & Assert
+        StepVerifier.create(routeService.searchByCode("org-1", "RUT", null, 2))
+                .assertNext(page -> {
+                    assertEquals(List.of(r1, r2), page.getItems());
+                    assertEquals(CursorPage.encode("RUT002"), page.getNextCursor());
+                })
+                .verifyComplete();
+    }
+
+    /**
+     * Escenario Negativo de Búsqueda:
+     * Sin prefijo se respondería con toda la organización; debe rechazarse con 400.
+     */
+    @Test
+    void searchByCode_ShouldReturnBadRequest_WhenPrefixIsBlank() {
+        StepVerifier.create(routeService.searchByCode("org-1", " ", null, 10))
+                .expectErrorSatisfies(error -> {
+                    assertTrue(error instanceof CustomException);
+                    assertEquals(400, ((CustomException) error).getErrorMessage().getErrorCode());
+                })
+                .verify();
+
+        verify(routeRepository, never()).findByCodePrefix(any(), any(), any(), anyInt());
+    }
+
+    /**
+     * Escenario de Caché:
+     * La segunda lectura por id no debe llegar a Mongo; un cambio de estado la invalida.
+     */
+    @Test
+    void getById_ShouldServeFromCache_UntilStatusChanges() {
+        // Arrange
+        DistributionRoute active = DistributionRoute.builder().id("r1").status(Constants.ACTIVE.name()).build();
+        DistributionRoute inactive = DistributionRoute.builder().id("r1").status(Constants.INACTIVE.name()).build();
+        when(routeRepository.findById("r1")).thenReturn(Mono.just(active), Mono.just(inactive));
+        when(routeRepository.transitionStatus("r1", null, Constants.INACTIVE.name())).thenReturn(Mono.just(inactive));
+
+        // Act & Assert
+        StepVerifier.create(routeService.getById("r1")).expectNext(active).verifyComplete();
+        StepVerifier.create(routeService.getById("r1")).expectNext(active).verifyComplete();
+        StepVerifier.create(routeService.deactivate("r1")).expectNext(inactive).verifyComplete();
+        StepVerifier.create(routeService.getById("r1")).expectNext(inactive).verifyComplete();
+
+        verify(routeRepository, times(2)).findById("r1");
+    }
+
+    /**
+     * Escenario de Lecturas Concurrentes:
+     * Dos peticiones simultáneas por el mismo id comparten una sola consulta.
+     */
+    @Test
+    void getById_ShouldShareInFlightQuery_WhenRequestedConcurrently() {
+        // Arrange
+        DistributionRoute route = DistributionRoute.builder().id("r1").status(Constants.ACTIVE.name()).build();
+        Sinks.One<DistributionRoute> pending = Sinks.one();
+        when(routeRepository.findById("r1")).thenReturn(pending.asMono());
+
+        // Act & Assert
+        StepVerifier.create(Mono.zip(routeService.getById("r1"), routeService.getById("r1")))
+                .then(() -> pending.tryEmitValue(route))
+                .assertNext(both -> {
+                    assertSame(route, both.getT1());
+                    assertSame(route, both.getT2());
+                })
+                .verifyComplete();
+
+        verify(routeRepository, times(1)).findById("r1");
+    }
+
+    /**
+     * Escenario de Invalidación durante una lectura:
+     * Una lectura que empieza tras la escritura no se une a la que estaba en curso antes de ella,
+     * y el documento anterior a la escritura no queda en caché.
+     */
+    @Test
+    void getById_ShouldNotJoinFlightStartedBeforeEviction() {
+        // Arrange
+        DistributionRoute active = DistributionRoute.builder().id("r1").status(Constants.ACTIVE.name()).build();
+        DistributionRoute inactive = DistributionRoute.builder().id("r1").status(Constants.INACTIVE.name()).build();
+        Sinks.One<DistributionRoute> beforeWrite = Sinks.one();
+        when(routeRepository.findById("r1")).thenReturn(beforeWrite.asMono(), Mono.just(inactive));
+        when(routeRepository.transitionStatus("r1", null, Constants.INACTIVE.name())).thenReturn(Mono.just(inactive));
+
+        // Act & Assert
+        StepVerifier.create(routeService.getById("r1"))
+                .then(() -> {
+                    StepVerifier.create(routeService.deactivate("r1")).expectNext(inactive).verifyComplete();
+                    StepVerifier.create(routeService.getById("r1")).expectNext(inactive).verifyComplete();
+                    beforeWrite.tryEmitValue(active);
+                })
+                .expectNext(active)
+                .verifyComplete();
+        StepVerifier.create(routeService.getById("r1")).expectNext(inactive).verifyComplete();
+
+        verify(routeRepository, times(2)).findById("r1");
+    }
+
+    /**
+     * Escenario de Listados en streaming:
+     * Los listados no se comparten entre peticiones (cada una consulta Mongo), para no retener en
+     * memoria la colección entera para quien llegue tarde.
+     */
+    @Test
+    void getAllActive_ShouldNotShareInFlightQuery() {
+        // Arrange
+        DistributionRoute route = DistributionRoute.builder().id("r1").status(Constants.ACTIVE.name()).build();
+        when(routeRepository.findListing(Constants.ACTIVE.name())).thenReturn(Flux.just(route));
+
+        // Act & Assert
+        StepVerifier.create(Flux.merge(routeService.getAllActive(), routeService.getAllActive()))
+                .expectNext(route, route)
+                .verifyComplete();
+
+        verify(routeRepository, times(2)).findListing(Constants.ACTIVE.name());
+    }
+
+    /**
+     * Escenario de Relleno de cachés:
+     * El listado con el que se rellenan las cachés se lee del primario, no del listado enrutado.
+     */
+    @Test
+    void getAllActiveFromPrimary_ShouldNotUseRoutedListing() {
+        DistributionRoute route = DistributionRoute.builder().id("r1").status(Constants.ACTIVE.name()).build();
+        when(routeRepository.findListingFromPrimary(Constants.ACTIVE.name())).thenReturn(Flux.just(route));
+
+        StepVerifier.create(routeService.getAllActiveFromPrimary()).expectNext(route).verifyComplete();
+
+        verify(routeRepository, never()).findListing(any());
+    }
+
+    /**
+     * Escenario de Listados reunidos:
+     * Dos peticiones simultáneas del listado JSON comparten una consulta; una que llega tras una
+     * escritura no se une a la que empezó antes de ella.
+     */
+    @Test
+    void getListing_ShouldShareInFlightQuery_UntilAWrite() {
+        // Arrange
+        DistributionRoute route = DistributionRoute.builder().id("r1").status(Constants.ACTIVE.name()).build();
+        DistributionRoute inactive = DistributionRoute.builder().id("r1").status(Constants.INACTIVE.name()).build();
+        Sinks.Many<DistributionRoute> beforeWrite = Sinks.many().replay().all();
+        when(routeRepository.findListing(Constants.ACTIVE.name())).thenReturn(beforeWrite.asFlux(), Flux.empty());
+        when(routeRepository.transitionStatus("r1", null, Constants.INACTIVE.name())).thenReturn(Mono.just(inactive));
+
+        // Act & Assert
+        StepVerifier.create(Mono.zip(routeService.getListing(Constants.ACTIVE.name()), routeService.getListing(Constants.ACTIVE.name())))
+                .then(() -> {
+                    StepVerifier.create(routeService.deactivate("r1")).expectNext(inactive).verifyComplete();
+                    StepVerifier.create(routeService.getListing(Constants.ACTIVE.name())).expectNext(List.of()).verifyComplete();
+                    beforeWrite.tryEmitNext(route);
+                    beforeWrite.tryEmitComplete();
+                })
+                .assertNext(both -> {
+                    assertEquals(List.of(route), both.getT1());
+                    assertSame(both.getT1(), both.getT2());
+                })
+                .verifyComplete();
+
+        verify(routeRepository, times(2)).findListing(Constants.ACTIVE.name());
+    }
+}
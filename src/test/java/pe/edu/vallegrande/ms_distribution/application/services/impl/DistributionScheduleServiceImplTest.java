@@ -4,21 +4,37 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DuplicateKeyException;
+import pe.edu.vallegrande.ms_distribution.application.cache.ByIdCache;
+import pe.edu.vallegrande.ms_distribution.application.cache.EncodedListCache;
+import pe.edu.vallegrande.ms_distribution.application.cache.SingleFlight;
+import pe.edu.vallegrande.ms_distribution.application.config.EncodedListCacheProperties;
+import pe.edu.vallegrande.ms_distribution.application.config.PaginationProperties;
+import pe.edu.vallegrande.ms_distribution.application.config.WriteRetryPolicy;
+import pe.edu.vallegrande.ms_distribution.application.config.WriteRetryProperties;
+import pe.edu.vallegrande.ms_distribution.application.services.CodeGeneratorService;
+import pe.edu.vallegrande.ms_distribution.domain.enums.CodeSequence;
 import pe.edu.vallegrande.ms_distribution.domain.enums.Constants;
 import pe.edu.vallegrande.ms_distribution.domain.models.DistributionSchedule;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionScheduleCreateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionScheduleUpdateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ChangeMarkers;
 import pe.edu.vallegrande.ms_distribution.infrastructure.repository.DistributionScheduleRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -29,6 +45,27 @@ public class DistributionScheduleServiceImplTest {
     @Mock
     private DistributionScheduleRepository scheduleRepository;
 
+    @Mock
+    private CodeGeneratorService codeGenerator;
+
+    @Spy
+    private WriteRetryPolicy writePolicy = new WriteRetryPolicy(new WriteRetryProperties(), new SimpleMeterRegistry());
+
+    @Spy
+    private PaginationProperties pagination = new PaginationProperties();
+
+    @Spy
+    private ByIdCache<DistributionSchedule> cache = new ByIdCache<>("test", 100, Duration.ofMinutes(5), new SimpleMeterRegistry());
+
+    @Spy
+    private SingleFlight singleFlight = new SingleFlight(new SimpleMeterRegistry());
+
+    @Spy
+    private EncodedListCache encodedLists = new EncodedListCache(new EncodedListCacheProperties(), new ObjectMapper(), new SimpleMeterRegistry());
+
+    @Mock
+    private ChangeMarkers changeMarkers;
+
     @InjectMocks
     private DistributionScheduleServiceImpl scheduleService;
 
@@ -58,8 +95,7 @@ public class DistributionScheduleServiceImplTest {
         request.setDurationHours(6);
 
         // Simula que no hay horarios previos (genera HOR001)
-        when(scheduleRepository.findTopByOrderByScheduleCodeDesc()).thenReturn(Mono.empty());
-        when(scheduleRepository.existsByScheduleCode("HOR001")).thenReturn(Mono.just(false));
+        when(codeGenerator.nextCode(CodeSequence.SCHEDULE, "org-1")).thenReturn(Mono.just("HOR001"));
 
         // Capturador para verificar lo que se guarda en el repositorio
         ArgumentCaptor<DistributionSchedule> scheduleCaptor = ArgumentCaptor.forClass(DistributionSchedule.class);
@@ -104,8 +140,7 @@ public class DistributionScheduleServiceImplTest {
                 .verifyComplete();
 
         // Verifica que los métodos del repositorio fueron llamados correctamente
-        verify(scheduleRepository).findTopByOrderByScheduleCodeDesc();
-        verify(scheduleRepository).existsByScheduleCode("HOR001");
+        verify(codeGenerator).nextCode(CodeSequence.SCHEDULE, "org-1");
         verify(scheduleRepository).save(scheduleCaptor.capture());
 
         // Validamos los valores capturados antes de guardar
@@ -142,11 +177,7 @@ public class DistributionScheduleServiceImplTest {
     void save_ShouldGenerateNextScheduleCode_WhenPreviousSchedulesExist() {
         System.out.println("➡️ Iniciando prueba: Generación de código secuencial");
         
-        // Arrange - Simula que ya existe un horario con código HOR007
-        DistributionSchedule existingSchedule = DistributionSchedule.builder()
-                .scheduleCode("HOR007")
-                .build();
-
+        // Arrange - Simula que el contador de la organización ya va en HOR007
         DistributionScheduleCreateRequest request = new DistributionScheduleCreateRequest();
         request.setOrganizationId("org-1");
         request.setZoneId("zone-1");
@@ -156,8 +187,7 @@ public class DistributionScheduleServiceImplTest {
         request.setEndTime("16:00");
         request.setDurationHours(8);
 
-        when(scheduleRepository.findTopByOrderByScheduleCodeDesc()).thenReturn(Mono.just(existingSchedule));
-        when(scheduleRepository.existsByScheduleCode("HOR008")).thenReturn(Mono.just(false));
+        when(codeGenerator.nextCode(CodeSequence.SCHEDULE, "org-1")).thenReturn(Mono.just("HOR008"));
         when(scheduleRepository.save(any(DistributionSchedule.class))).thenReturn(Mono.just(
                 DistributionSchedule.builder().id("schedule-2").scheduleCode("HOR008").build()
         ));
@@ -191,10 +221,11 @@ public class DistributionScheduleServiceImplTest {
         request.setEndTime("17:00");
         request.setDurationHours(8);
 
-        // Simula que no hay horarios previos (genera HOR001)
-        when(scheduleRepository.findTopByOrderByScheduleCodeDesc()).thenReturn(Mono.empty());
-        // Simula que el código HOR001 ya existe
-        when(scheduleRepository.existsByScheduleCode("HOR001")).thenReturn(Mono.just(true));
+        // Simula el contador de la organización (genera HOR001)
+        when(codeGenerator.nextCode(CodeSequence.SCHEDULE, "org-1")).thenReturn(Mono.just("HOR001"));
+        // Simula que el índice único rechaza el código HOR001
+        when(scheduleRepository.save(any(DistributionSchedule.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key")));
 
         // Act & Assert
         StepVerifier.create(scheduleService.save(request))
@@ -206,8 +237,8 @@ public class DistributionScheduleServiceImplTest {
                 })
                 .verify();
 
-        // Verifica que no se intentó guardar ningún horario
-        verify(scheduleRepository, never()).save(any(DistributionSchedule.class));
+        // Verifica que el alta se intentó una sola vez
+        verify(scheduleRepository, times(1)).save(any(DistributionSchedule.class));
         System.out.println("✔️ Prueba negativa finalizada con éxito\n");
     }
 
@@ -229,8 +260,7 @@ public class DistributionScheduleServiceImplTest {
         request.setEndTime("16:00");
         request.setDurationHours(8);
 
-        when(scheduleRepository.findTopByOrderByScheduleCodeDesc()).thenReturn(Mono.empty());
-        when(scheduleRepository.existsByScheduleCode("HOR001")).thenReturn(Mono.just(false));
+        when(codeGenerator.nextCode(CodeSequence.SCHEDULE, "org-1")).thenReturn(Mono.just("HOR001"));
         when(scheduleRepository.save(any(DistributionSchedule.class)))
                 .thenReturn(Mono.error(new RuntimeException("Database error")));
 
@@ -258,13 +288,10 @@ public class DistributionScheduleServiceImplTest {
         String scheduleId = "schedule-1";
         DistributionSchedule existingSchedule = DistributionSchedule.builder()
                 .id(scheduleId)
-                .status(Constants.INACTIVE.name())
+                .status(Constants.ACTIVE.name())
                 .build();
 
-        when(scheduleRepository.findById(scheduleId)).thenReturn(Mono.just(existingSchedule));
-        when(scheduleRepository.save(any(DistributionSchedule.class))).thenReturn(Mono.just(
-                DistributionSchedule.builder().id(scheduleId).status(Constants.ACTIVE.name()).build()
-        ));
+        when(scheduleRepository.transitionStatus(scheduleId, null, Constants.ACTIVE.name())).thenReturn(Mono.just(existingSchedule));
 
         // Act & Assert
         StepVerifier.create(scheduleService.activate(scheduleId))
@@ -274,6 +301,8 @@ public class DistributionScheduleServiceImplTest {
                 })
                 .verifyComplete();
 
+        verify(scheduleRepository, never()).save(any(DistributionSchedule.class));
+
         System.out.println("✔️ Prueba de activación finalizada\n");
     }
 
@@ -289,13 +318,10 @@ public class DistributionScheduleServiceImplTest {
         String scheduleId = "schedule-1";
         DistributionSchedule existingSchedule = DistributionSchedule.builder()
                 .id(scheduleId)
-                .status(Constants.ACTIVE.name())
+                .status(Constants.INACTIVE.name())
                 .build();
 
-        when(scheduleRepository.findById(scheduleId)).thenReturn(Mono.just(existingSchedule));
-        when(scheduleRepository.save(any(DistributionSchedule.class))).thenReturn(Mono.just(
-                DistributionSchedule.builder().id(scheduleId).status(Constants.INACTIVE.name()).build()
-        ));
+        when(scheduleRepository.transitionStatus(scheduleId, null, Constants.INACTIVE.name())).thenReturn(Mono.just(existingSchedule));
 
         // Act & Assert
         StepVerifier.create(scheduleService.deactivate(scheduleId))
@@ -305,6 +331,8 @@ public class DistributionScheduleServiceImplTest {
                 })
                 .verifyComplete();
 
+        verify(scheduleRepository, never()).save(any(DistributionSchedule.class));
+
         System.out.println("✔️ Prueba de desactivación finalizada\n");
     }
 
@@ -318,7 +346,7 @@ public class DistributionScheduleServiceImplTest {
 
         // Arrange
         String scheduleId = "schedule-inexistente";
-        when(scheduleRepository.findById(scheduleId)).thenReturn(Mono.empty());
+        when(scheduleRepository.transitionStatus(scheduleId, null, Constants.ACTIVE.name())).thenReturn(Mono.empty());
 
         // Act & Assert
         StepVerifier.create(scheduleService.activate(scheduleId))
@@ -353,8 +381,7 @@ public class DistributionScheduleServiceImplTest {
         request.setEndTime("18:00");
         request.setDurationHours(8);
 
-        when(scheduleRepository.findTopByOrderByScheduleCodeDesc()).thenReturn(Mono.empty());
-        when(scheduleRepository.existsByScheduleCode("HOR001")).thenReturn(Mono.just(false));
+        when(codeGenerator.nextCode(CodeSequence.SCHEDULE, "org-1")).thenReturn(Mono.just("HOR001"));
         when(scheduleRepository.save(any(DistributionSchedule.class))).thenReturn(Mono.just(
                 DistributionSchedule.builder()
                         .id("schedule-weekend")
@@ -404,7 +431,7 @@ public class DistributionScheduleServiceImplTest {
                 .build()
         );
 
-        when(scheduleRepository.findAll()).thenReturn(Flux.fromIterable(schedules));
+        when(scheduleRepository.findListing(null)).thenReturn(Flux.fromIterable(schedules));
 
         // Act & Assert
         StepVerifier.create(scheduleService.getAll())
@@ -424,7 +451,7 @@ public class DistributionScheduleServiceImplTest {
                 })
                 .verifyComplete();
 
-        verify(scheduleRepository).findAll();
+        verify(scheduleRepository).findListing(null);
         System.out.println("✔️ Prueba de obtener todos los horarios finalizada\n");
     }
 
@@ -452,7 +479,7 @@ public class DistributionScheduleServiceImplTest {
                 .build()
         );
 
-        when(scheduleRepository.findAllByStatus(Constants.ACTIVE.name()))
+        when(scheduleRepository.findListing(Constants.ACTIVE.name()))
             .thenReturn(Flux.fromIterable(activeSchedules));
 
         // Act & Assert
@@ -469,7 +496,7 @@ public class DistributionScheduleServiceImplTest {
                 })
                 .verifyComplete();
 
-        verify(scheduleRepository).findAllByStatus(Constants.ACTIVE.name());
+        verify(scheduleRepository).findListing(Constants.ACTIVE.name());
         System.out.println("✔️ Prueba de obtener horarios activos finalizada\n");
     }
 
@@ -491,7 +518,7 @@ public class DistributionScheduleServiceImplTest {
                 .build()
         );
 
-        when(scheduleRepository.findAllByStatus(Constants.INACTIVE.name()))
+        when(scheduleRepository.findListing(Constants.INACTIVE.name()))
             .thenReturn(Flux.fromIterable(inactiveSchedules));
 
         // Act & Assert
@@ -503,7 +530,7 @@ public class DistributionScheduleServiceImplTest {
                 })
                 .verifyComplete();
 
-        verify(scheduleRepository).findAllByStatus(Constants.INACTIVE.name());
+        verify(scheduleRepository).findListing(Constants.INACTIVE.name());
         System.out.println("✔️ Prueba de obtener horarios inactivos finalizada\n");
     }
 
@@ -585,13 +612,6 @@ public class DistributionScheduleServiceImplTest {
         request.setEndTime("16:00");
         request.setEstimatedDuration(480);
 
-        DistributionSchedule existingSchedule = DistributionSchedule.builder()
-                .id(scheduleId)
-                .scheduleCode("HOR001")
-                .scheduleName("Horario Original")
-                .status(Constants.ACTIVE.name())
-                .build();
-
         DistributionSchedule updatedSchedule = DistributionSchedule.builder()
                 .id(scheduleId)
                 .scheduleCode("HOR001")
@@ -604,8 +624,7 @@ public class DistributionScheduleServiceImplTest {
                 .status(Constants.ACTIVE.name())
                 .build();
 
-        when(scheduleRepository.findById(scheduleId)).thenReturn(Mono.just(existingSchedule));
-        when(scheduleRepository.save(any(DistributionSchedule.class))).thenReturn(Mono.just(updatedSchedule));
+        when(scheduleRepository.updateFields(eq(scheduleId), isNull(), anyMap())).thenReturn(Mono.just(updatedSchedule));
 
         // Act & Assert
         StepVerifier.create(scheduleService.update(scheduleId, request))
@@ -620,8 +639,11 @@ public class DistributionScheduleServiceImplTest {
                 })
                 .verifyComplete();
 
-        verify(scheduleRepository).findById(scheduleId);
-        verify(scheduleRepository).save(any(DistributionSchedule.class));
+        ArgumentCaptor<Map<String, Object>> fields = ArgumentCaptor.forClass(Map.class);
+        verify(scheduleRepository).updateFields(eq(scheduleId), isNull(), fields.capture());
+        assertEquals("LUNES", fields.getValue().get("dayOfWeek"));
+        assertEquals(480, fields.getValue().get("estimatedDuration"));
+        verify(scheduleRepository, never()).save(any(DistributionSchedule.class));
         System.out.println("✔️ Prueba de actualización finalizada\n");
     }
 
@@ -642,17 +664,45 @@ public class DistributionScheduleServiceImplTest {
         request.setEndTime("16:00");
         request.setEstimatedDuration(480);
 
-        when(scheduleRepository.findById(scheduleId)).thenReturn(Mono.empty());
+        when(scheduleRepository.updateFields(eq(scheduleId), isNull(), anyMap())).thenReturn(Mono.empty());
 
         // Act & Assert
         StepVerifier.create(scheduleService.update(scheduleId, request))
                 .verifyComplete();
 
-        verify(scheduleRepository).findById(scheduleId);
         verify(scheduleRepository, never()).save(any(DistributionSchedule.class));
         System.out.println("✔️ Prueba negativa de actualización finalizada\n");
     }
 
+    /**
+     * Escenario PATCH:
+     * Solo los campos enviados deben llegar al $set.
+     */
+    @Test
+    void patch_ShouldSetOnlyProvidedFields() {
+        // Arrange
+        String scheduleId = "schedule-1";
+        DistributionScheduleUpdateRequest request = new DistributionScheduleUpdateRequest();
+        request.setEndTime("18:00");
+
+        DistributionSchedule patchedSchedule = DistributionSchedule.builder()
+                .id(scheduleId)
+                .startTime("08:00")
+                .endTime("18:00")
+                .build();
+        when(scheduleRepository.updateFields(scheduleId, null, Map.of("endTime", "18:00"))).thenReturn(Mono.just(patchedSchedule));
+
+        // Act & Assert
+        StepVerifier.create(scheduleService.patch(scheduleId, request))
+                .assertNext(schedule -> {
+                    assertEquals("08:00", schedule.getStartTime());
+                    assertEquals("18:00", schedule.getEndTime());
+                })
+                .verifyComplete();
+
+        verify(scheduleRepository, never()).findById(anyString());
+    }
+
     /**
      * Escenario Positivo:
      * Debe eliminar un horario existente correctamente.
@@ -663,22 +713,14 @@ public class DistributionScheduleServiceImplTest {
         
         // Arrange
         String scheduleId = "schedule-1";
-        DistributionSchedule schedule = DistributionSchedule.builder()
-                .id(scheduleId)
-                .scheduleCode("HOR001")
-                .scheduleName("Horario a Eliminar")
-                .status(Constants.ACTIVE.name())
-                .build();
-
-        when(scheduleRepository.findById(scheduleId)).thenReturn(Mono.just(schedule));
-        when(scheduleRepository.delete(any(DistributionSchedule.class))).thenReturn(Mono.empty());
+        when(scheduleRepository.removeById(scheduleId)).thenReturn(Mono.just(1L));
 
         // Act & Assert
         StepVerifier.create(scheduleService.delete(scheduleId))
                 .verifyComplete();
 
-        verify(scheduleRepository).findById(scheduleId);
-        verify(scheduleRepository).delete(any(DistributionSchedule.class));
+        verify(scheduleRepository).removeById(scheduleId);
+        verify(scheduleRepository, never()).findById(scheduleId);
         System.out.println("✅ Horario eliminado correctamente");
         System.out.println("✔️ Prueba de eliminación finalizada\n");
     }
@@ -693,7 +735,7 @@ public class DistributionScheduleServiceImplTest {
         
         // Arrange
         String scheduleId = "schedule-inexistente";
-        when(scheduleRepository.findById(scheduleId)).thenReturn(Mono.empty());
+        when(scheduleRepository.removeById(scheduleId)).thenReturn(Mono.just(0L));
 
         // Act & Assert
         StepVerifier.create(scheduleService.delete(scheduleId))
@@ -706,8 +748,7 @@ public class DistributionScheduleServiceImplTest {
                 })
                 .verify();
 
-        verify(scheduleRepository).findById(scheduleId);
-        verify(scheduleRepository, never()).delete(any(DistributionSchedule.class));
+        verify(scheduleRepository).removeById(scheduleId);
         System.out.println("✔️ Prueba negativa de eliminación finalizada\n");
     }
 
@@ -721,7 +762,7 @@ public class DistributionScheduleServiceImplTest {
 
         // Arrange
         String scheduleId = "schedule-inexistente";
-        when(scheduleRepository.findById(scheduleId)).thenReturn(Mono.empty());
+        when(scheduleRepository.transitionStatus(scheduleId, null, Constants.INACTIVE.name())).thenReturn(Mono.empty());
 
         // Act & Assert
         StepVerifier.create(scheduleService.deactivate(scheduleId))
@@ -738,18 +779,14 @@ public class DistributionScheduleServiceImplTest {
     }
 
     /**
-     * Escenario de Validación:
-     * Debe manejar correctamente la generación de código cuando hay un error en el parsing.
+     * Escenario Negativo:
+     * No debe guardar el horario cuando falla la asignación del código.
      */
     @Test
-    void generateNextScheduleCode_ShouldHandleParsingError_WhenInvalidCodeFormat() {
-        System.out.println("➡️ Iniciando prueba: Manejo de error en parsing de código");
-        
-        // Arrange - Simula un código con formato inválido
-        DistributionSchedule existingSchedule = DistributionSchedule.builder()
-                .scheduleCode("HORINVALID")
-                .build();
+    void save_ShouldNotPersist_WhenCodeAllocationFails() {
+        System.out.println("➡️ Iniciando prueba: Falla del contador de códigos");
 
+        // Arrange
         DistributionScheduleCreateRequest request = new DistributionScheduleCreateRequest();
         request.setOrganizationId("org-1");
         request.setZoneId("zone-1");
@@ -759,21 +796,18 @@ public class DistributionScheduleServiceImplTest {
         request.setEndTime("16:00");
         request.setDurationHours(8);
 
-        when(scheduleRepository.findTopByOrderByScheduleCodeDesc()).thenReturn(Mono.just(existingSchedule));
-        when(scheduleRepository.existsByScheduleCode("HOR001")).thenReturn(Mono.just(false));
-        when(scheduleRepository.save(any(DistributionSchedule.class))).thenReturn(Mono.just(
-                DistributionSchedule.builder().id("schedule-1").scheduleCode("HOR001").build()
-        ));
+        when(codeGenerator.nextCode(CodeSequence.SCHEDULE, "org-1"))
+                .thenReturn(Mono.error(new RuntimeException("Counter unavailable")));
 
         // Act & Assert
         StepVerifier.create(scheduleService.save(request))
-                .assertNext(response -> {
-                    assertEquals("HOR001", response.getScheduleCode());
-                    System.out.println("✅ Código generado correctamente después de error de parsing: " + response.getScheduleCode());
+                .expectErrorSatisfies(error -> {
+                    assertEquals("Counter unavailable", error.getMessage());
+                    System.out.println("❌ Error esperado: " + error.getMessage());
                 })
-                .verifyComplete();
+                .verify();
 
-        System.out.println("✔️ Prueba de manejo de error de parsing finalizada\n");
+        verify(scheduleRepository, never()).save(any(DistributionSchedule.class));
+        System.out.println("✔️ Prueba de falla del contador finalizada\n");
     }
 }
-
@@ -2,25 +2,40 @@ package pe.edu.vallegrande.ms_distribution.application.services.impl;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.params.ParameterizedTest;
-import org.junit.jupiter.params.provider.Arguments;
-import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DuplicateKeyException;
+import pe.edu.vallegrande.ms_distribution.application.cache.EncodedListCache;
+import pe.edu.vallegrande.ms_distribution.application.cache.FareCache;
+import pe.edu.vallegrande.ms_distribution.application.cache.SingleFlight;
+import pe.edu.vallegrande.ms_distribution.application.config.EncodedListCacheProperties;
+import pe.edu.vallegrande.ms_distribution.application.config.FareCacheProperties;
+import pe.edu.vallegrande.ms_distribution.application.config.PaginationProperties;
+import pe.edu.vallegrande.ms_distribution.application.config.WriteRetryPolicy;
+import pe.edu.vallegrande.ms_distribution.application.config.WriteRetryProperties;
+import pe.edu.vallegrande.ms_distribution.application.services.CodeGeneratorService;
+import pe.edu.vallegrande.ms_distribution.domain.enums.CodeSequence;
 import pe.edu.vallegrande.ms_distribution.domain.enums.Constants;
 import pe.edu.vallegrande.ms_distribution.domain.models.Fare;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.ResponseDto;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.FareCreateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.FareUpdateRequest;
 import pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ChangeMarkers;
 import pe.edu.vallegrande.ms_distribution.infrastructure.repository.FareRepository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.math.BigDecimal;
 import java.time.Instant;
-import java.util.stream.Stream;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -31,6 +46,27 @@ public class FareServiceImplTest {
     @Mock
     private FareRepository fareRepository;
 
+    @Mock
+    private CodeGeneratorService codeGenerator;
+
+    @Spy
+    private WriteRetryPolicy writePolicy = new WriteRetryPolicy(new WriteRetryProperties(), new SimpleMeterRegistry());
+
+    @Spy
+    private PaginationProperties pagination = new PaginationProperties();
+
+    @Spy
+    private FareCache cache = new FareCache(new FareCacheProperties(), new SimpleMeterRegistry());
+
+    @Spy
+    private SingleFlight singleFlight = new SingleFlight(new SimpleMeterRegistry());
+
+    @Spy
+    private EncodedListCache encodedLists = new EncodedListCache(new EncodedListCacheProperties(), new ObjectMapper(), new SimpleMeterRegistry());
+
+    @Mock
+    private ChangeMarkers changeMarkers;
+
     @InjectMocks
     private FareServiceImpl fareService;
 
@@ -85,8 +121,7 @@ public class FareServiceImplTest {
                 .createdAt(existing.getCreatedAt())
                 .build();
 
-        when(fareRepository.findById(id)).thenReturn(Mono.just(existing));
-        when(fareRepository.save(any(Fare.class))).thenReturn(Mono.just(saved));
+        when(fareRepository.updateFields(id, null, Map.of("fareCode", "TAR002"))).thenReturn(Mono.just(saved));
 
         // Act & Assert
         StepVerifier.create(fareService.updateF(id, update))
@@ -94,13 +129,28 @@ public class FareServiceImplTest {
                 assertEquals("TAR002", result.getFareCode());
             })
             .verifyComplete();
+
+        verify(fareRepository, never()).save(any(Fare.class));
+    }
+
+    @Test
+    void countByOrganizationF_ShouldCountAllStatuses_WhenStatusIsNull() {
+        // Arrange
+        when(fareRepository.countByOrganizationId("org-1")).thenReturn(Mono.just(7L));
+
+        // Act & Assert
+        StepVerifier.create(fareService.countByOrganizationF("org-1", null))
+            .expectNext(7L)
+            .verifyComplete();
+
+        verify(fareRepository, never()).countByOrganizationIdAndStatus(any(), any());
     }
 
     @Test
     void deleteF_ShouldError_WhenNotFound() {
         // Arrange
         String id = "fare-404";
-        when(fareRepository.findById(id)).thenReturn(Mono.empty());
+        when(fareRepository.removeById(id)).thenReturn(Mono.just(0L));
 
         // Act & Assert
         StepVerifier.create(fareService.deleteF(id))
@@ -116,13 +166,50 @@ public class FareServiceImplTest {
     void deleteF_ShouldComplete_WhenExists() {
         // Arrange
         String id = "fare-1";
-        Fare existing = Fare.builder().id(id).status(Constants.ACTIVE.name()).build();
-        when(fareRepository.findById(id)).thenReturn(Mono.just(existing));
-        when(fareRepository.delete(existing)).thenReturn(Mono.empty());
+        when(fareRepository.removeById(id)).thenReturn(Mono.just(1L));
 
         // Act & Assert
         StepVerifier.create(fareService.deleteF(id))
             .verifyComplete();
+
+        verify(fareRepository, never()).findById(id);
+    }
+
+    @Test
+    void deleteAllF_ShouldReturnDeletedCount_WhenFilteredByOrganization() {
+        // Arrange
+        when(fareRepository.removeMatching("org-1", null)).thenReturn(Mono.just(3L));
+
+        // Act & Assert
+        StepVerifier.create(fareService.deleteAllF("org-1", null))
+            .expectNext(3L)
+            .verifyComplete();
+    }
+
+    @Test
+    void deleteAllF_ShouldError_WhenNoFilter() {
+        // Act & Assert
+        StepVerifier.create(fareService.deleteAllF(null, null))
+            .expectErrorSatisfies(err -> {
+                assertTrue(err instanceof CustomException);
+                assertEquals(400, ((CustomException) err).getErrorMessage().getErrorCode());
+            })
+            .verify();
+
+        verify(fareRepository, never()).removeMatching(any(), any());
+    }
+
+    @Test
+    void deleteAllF_ShouldError_WhenOrganizationMissing() {
+        // Act & Assert: el estado solo no basta, borraría en todas las organizaciones
+        StepVerifier.create(fareService.deleteAllF(null, Constants.INACTIVE.name()))
+            .expectErrorSatisfies(err -> {
+                assertTrue(err instanceof CustomException);
+                assertEquals(400, ((CustomException) err).getErrorMessage().getErrorCode());
+            })
+            .verify();
+
+        verify(fareRepository, never()).removeMatching(any(), any());
     }
 
     @Test
@@ -130,7 +217,7 @@ public class FareServiceImplTest {
         // Arrange
         String id = "fare-1";
         Fare existing = Fare.builder().id(id).status(Constants.ACTIVE.name()).build();
-        when(fareRepository.findById(id)).thenReturn(Mono.just(existing));
+        when(fareRepository.transitionStatus(id, null, Constants.ACTIVE.name())).thenReturn(Mono.just(existing));
 
         // Act & Assert
         StepVerifier.create(fareService.activateF(id))
@@ -144,14 +231,8 @@ public class FareServiceImplTest {
     void changeStatus_ShouldPersist_WhenDifferentStatus() {
         // Arrange
         String id = "fare-1";
-        Fare existing = Fare.builder().id(id).status(Constants.INACTIVE.name()).build();
-        Fare saved = Fare.builder()
-                .id(id)
-                .status(Constants.ACTIVE.name())
-                .build();
-
-        when(fareRepository.findById(id)).thenReturn(Mono.just(existing));
-        when(fareRepository.save(any(Fare.class))).thenReturn(Mono.just(saved));
+        Fare existing = Fare.builder().id(id).status(Constants.ACTIVE.name()).build();
+        when(fareRepository.transitionStatus(id, null, Constants.ACTIVE.name())).thenReturn(Mono.just(existing));
 
         // Act & Assert
         StepVerifier.create(fareService.activateF(id))
@@ -160,11 +241,9 @@ public class FareServiceImplTest {
     }
 
     @Test
-    void saveF_ShouldGenerateSequentialCode_FromLastFare() {
-        // Arrange: último código TAR099 -> siguiente TAR100
-        Fare last = Fare.builder().fareCode("TAR099").build();
-        when(fareRepository.findTopByOrderByFareCodeDesc()).thenReturn(Mono.just(last));
-        when(fareRepository.existsByFareCode("TAR100")).thenReturn(Mono.just(false));
+    void saveF_ShouldUseCodeAllocatedForOrganization() {
+        // Arrange: el contador de la organización entrega TAR100
+        when(codeGenerator.nextCode(CodeSequence.FARE, "org-1")).thenReturn(Mono.just("TAR100"));
 
         FareCreateRequest request = FareCreateRequest.builder()
                 .organizationId("org-1")
@@ -198,144 +277,36 @@ public class FareServiceImplTest {
         assertEquals("TAR100", captor.getValue().getFareCode());
     }
 
-    /**
-     * Test parametrizado que verifica el fallback a TAR001 en diferentes escenarios de código inválido.
-     * Reemplaza 3 tests individuales similares para mejorar la mantenibilidad.
-     */
-    @ParameterizedTest
-    @MethodSource("provideInvalidFareCodeScenarios")
-    void saveF_ShouldFallbackToInitialCode_WhenLastFareCodeInvalid(String testName, String invalidFareCode, String expectedFareCode) {
-        // Arrange: código inválido -> fallback TAR001
-        Fare last = Fare.builder().fareCode(invalidFareCode).build();
-        when(fareRepository.findTopByOrderByFareCodeDesc()).thenReturn(Mono.just(last));
-        when(fareRepository.existsByFareCode(expectedFareCode)).thenReturn(Mono.just(false));
-
-        FareCreateRequest request = FareCreateRequest.builder()
-                .organizationId("org-1")
-                .fareName("Tarifa Test")
-                .fareType("MENSUAL")
-                .fareAmount(new BigDecimal("30"))
-                .build();
-
-        when(fareRepository.save(any(Fare.class)))
-                .thenAnswer(inv -> {
-                    Fare arg = inv.getArgument(0);
-                    return Mono.just(Fare.builder()
-                            .id("id-test")
-                            .organizationId(arg.getOrganizationId())
-                            .fareCode(arg.getFareCode())
-                            .fareName(arg.getFareName())
-                            .fareType(arg.getFareType())
-                            .fareAmount(arg.getFareAmount())
-                            .status(arg.getStatus())
-                            .createdAt(arg.getCreatedAt())
-                            .build());
-                });
-
-        // Act & Assert
-        StepVerifier.create(fareService.saveF(request))
-            .assertNext(resp -> {
-                assertEquals(expectedFareCode, resp.getFareCode());
-                System.out.println("✅ " + testName + " - Código generado: " + resp.getFareCode());
-            })
-            .verifyComplete();
-    }
-
-    /**
-     * Proporciona los datos para el test parametrizado de códigos de tarifa inválidos.
-     */
-    private static Stream<Arguments> provideInvalidFareCodeScenarios() {
-        return Stream.of(
-            Arguments.of("Código inválido", "BAD_CODE", "TAR001"),
-            Arguments.of("Código null", null, "TAR001"),
-            Arguments.of("Número demasiado grande", "TAR9999999999999999999999999", "TAR001")
-        );
-    }
-
     @Test
-    void saveF_ShouldFallbackToInitialCode_WhenNumericPartEmpty() {
-        // Arrange: código "TAR" -> parte numérica vacía => 0 => TAR001
-        Fare last = Fare.builder().fareCode("TAR").build();
-        when(fareRepository.findTopByOrderByFareCodeDesc()).thenReturn(Mono.just(last));
-        when(fareRepository.existsByFareCode("TAR001")).thenReturn(Mono.just(false));
+    void saveF_ShouldNotPersist_WhenCodeAllocationFails() {
+        when(codeGenerator.nextCode(CodeSequence.FARE, "org-1"))
+                .thenReturn(Mono.error(new RuntimeException("Counter unavailable")));
 
         FareCreateRequest request = FareCreateRequest.builder()
                 .organizationId("org-1")
-                .fareName("Tarifa Empty")
-                .fareType("MENSUAL")
-                .fareAmount(new BigDecimal("30"))
-                .build();
-
-        when(fareRepository.save(any(Fare.class)))
-                .thenAnswer(inv -> Mono.just(Fare.builder().id("id-6").fareCode("TAR001").build()));
-
-        // Act & Assert
-        StepVerifier.create(fareService.saveF(request))
-            .assertNext(resp -> assertEquals("TAR001", resp.getFareCode()))
-            .verifyComplete();
-    }
-
-    @Test
-    void saveF_ShouldFallbackToInitialCode_WhenNumericPartNonDigits() {
-        // Arrange: código con letras tras prefijo => no dígitos => 0 => TAR001
-        Fare last = Fare.builder().fareCode("TARABC").build();
-        when(fareRepository.findTopByOrderByFareCodeDesc()).thenReturn(Mono.just(last));
-        when(fareRepository.existsByFareCode("TAR001")).thenReturn(Mono.just(false));
-
-        FareCreateRequest request = FareCreateRequest.builder()
-                .organizationId("org-1")
-                .fareName("Tarifa NonDigits")
+                .fareName("Tarifa Test")
                 .fareType("MENSUAL")
                 .fareAmount(new BigDecimal("30"))
                 .build();
 
-        when(fareRepository.save(any(Fare.class)))
-                .thenAnswer(inv -> Mono.just(Fare.builder().id("id-7").fareCode("TAR001").build()));
-
         // Act & Assert
         StepVerifier.create(fareService.saveF(request))
-            .assertNext(resp -> assertEquals("TAR001", resp.getFareCode()))
-            .verifyComplete();
-    }
-
-    @Test
-    void saveF_ShouldFallback_WhenGetFareCodeThrows() {
-        // Arrange: forzamos excepción en getFareCode() para cubrir catch genérico
-        Fare last = org.mockito.Mockito.spy(Fare.builder().fareCode("IGNORED").build());
-        org.mockito.Mockito.doThrow(new RuntimeException("boom")).when(last).getFareCode();
-
-        when(fareRepository.findTopByOrderByFareCodeDesc()).thenReturn(Mono.just(last));
-        when(fareRepository.existsByFareCode("TAR001")).thenReturn(Mono.just(false));
-
-        FareCreateRequest request = FareCreateRequest.builder()
-                .organizationId("org-1")
-                .fareName("Tarifa Boom")
-                .fareType("MENSUAL")
-                .fareAmount(new BigDecimal("30"))
-                .build();
-
-        when(fareRepository.save(any(Fare.class)))
-                .thenAnswer(inv -> Mono.just(Fare.builder().id("id-8").fareCode("TAR001").build()));
+            .expectErrorMessage("Counter unavailable")
+            .verify();
 
-        // Act & Assert
-        StepVerifier.create(fareService.saveF(request))
-            .assertNext(resp -> assertEquals("TAR001", resp.getFareCode()))
-            .verifyComplete();
+        verify(fareRepository, never()).save(any(Fare.class));
     }
 
     @Test
     void updateF_ShouldUpdateOnlyFareCode_WhenPriceDescriptionNull() {
         String id = "fare-5";
         Fare existing = Fare.builder().id(id).fareCode("TAR001").status(Constants.ACTIVE.name()).build();
-        when(fareRepository.findById(id)).thenReturn(Mono.just(existing));
+        givenUpdateFieldsAppliesTo(existing);
 
         FareUpdateRequest update = FareUpdateRequest.builder()
                 .fareCode("TAR123")
                 .build();
 
-        when(fareRepository.save(any(Fare.class)))
-                .thenAnswer(inv -> Mono.just((Fare) inv.getArgument(0)));
-
         StepVerifier.create(fareService.updateF(id, update))
             .assertNext(updated -> assertEquals("TAR123", updated.getFareCode()))
             .verifyComplete();
@@ -344,11 +315,8 @@ public class FareServiceImplTest {
     @Test
     void deactivateF_ShouldPersist_WhenDifferentStatus() {
         String id = "fare-2";
-        Fare existing = Fare.builder().id(id).status(Constants.ACTIVE.name()).build();
-        Fare saved = Fare.builder().id(id).status(Constants.INACTIVE.name()).build();
-
-        when(fareRepository.findById(id)).thenReturn(Mono.just(existing));
-        when(fareRepository.save(any(Fare.class))).thenReturn(Mono.just(saved));
+        Fare existing = Fare.builder().id(id).status(Constants.INACTIVE.name()).build();
+        when(fareRepository.transitionStatus(id, null, Constants.INACTIVE.name())).thenReturn(Mono.just(existing));
 
         StepVerifier.create(fareService.deactivateF(id))
             .assertNext(result -> assertEquals(Constants.INACTIVE.name(), result.getStatus()))
@@ -371,16 +339,13 @@ public class FareServiceImplTest {
     void updateF_ShouldUpdateFareAmount_WhenPriceProvided() {
         String id = "fare-3";
         Fare existing = Fare.builder().id(id).fareCode("TAR001").fareAmount(new BigDecimal("10")).status(Constants.ACTIVE.name()).build();
-        when(fareRepository.findById(id)).thenReturn(Mono.just(existing));
+        givenUpdateFieldsAppliesTo(existing);
 
         FareUpdateRequest update = FareUpdateRequest.builder()
                 .fareCode("TAR009")
                 .price(99.0)
                 .build();
 
-        when(fareRepository.save(any(Fare.class)))
-                .thenAnswer(inv -> Mono.just((Fare) inv.getArgument(0)));
-
         StepVerifier.create(fareService.updateF(id, update))
             .assertNext(updated -> {
                 assertEquals("TAR009", updated.getFareCode());
@@ -393,16 +358,13 @@ public class FareServiceImplTest {
     void updateF_ShouldIgnoreDescription_WhenProvided() {
         String id = "fare-4";
         Fare existing = Fare.builder().id(id).fareCode("TAR001").status(Constants.ACTIVE.name()).build();
-        when(fareRepository.findById(id)).thenReturn(Mono.just(existing));
+        givenUpdateFieldsAppliesTo(existing);
 
         FareUpdateRequest update = FareUpdateRequest.builder()
                 .fareCode("TAR010")
                 .description("desc")
                 .build();
 
-        when(fareRepository.save(any(Fare.class)))
-                .thenAnswer(inv -> Mono.just((Fare) inv.getArgument(0)));
-
         StepVerifier.create(fareService.updateF(id, update))
             .assertNext(updated -> assertEquals("TAR010", updated.getFareCode()))
             .verifyComplete();
@@ -411,7 +373,7 @@ public class FareServiceImplTest {
 
     @Test
     void getAllF_ShouldReturnItems() {
-        when(fareRepository.findAll()).thenReturn(reactor.core.publisher.Flux.just(
+        when(fareRepository.findListing(null)).thenReturn(Flux.just(
                 Fare.builder().id("1").build(),
                 Fare.builder().id("2").build()
         ));
@@ -423,7 +385,7 @@ public class FareServiceImplTest {
 
     @Test
     void getAllF_ShouldPropagateError() {
-        when(fareRepository.findAll()).thenReturn(reactor.core.publisher.Flux.error(new RuntimeException("DB error")));
+        when(fareRepository.findListing(null)).thenReturn(Flux.error(new RuntimeException("DB error")));
 
         StepVerifier.create(fareService.getAllF())
             .expectErrorMatches(e -> e.getMessage().contains("DB error"))
@@ -432,7 +394,7 @@ public class FareServiceImplTest {
 
     @Test
     void getAllActiveF_ShouldReturnItems() {
-        when(fareRepository.findAllByStatus(Constants.ACTIVE.name())).thenReturn(reactor.core.publisher.Flux.just(
+        when(fareRepository.findListingFromPrimary(Constants.ACTIVE.name())).thenReturn(Flux.just(
                 Fare.builder().id("1").status(Constants.ACTIVE.name()).build()
         ));
 
@@ -443,7 +405,7 @@ public class FareServiceImplTest {
 
     @Test
     void getAllInactiveF_ShouldReturnItems() {
-        when(fareRepository.findAllByStatus(Constants.INACTIVE.name())).thenReturn(reactor.core.publisher.Flux.just(
+        when(fareRepository.findListing(Constants.INACTIVE.name())).thenReturn(Flux.just(
                 Fare.builder().id("1").status(Constants.INACTIVE.name()).build()
         ));
 
@@ -454,8 +416,8 @@ public class FareServiceImplTest {
 
     @Test
     void getAllActiveF_ShouldPropagateError() {
-        when(fareRepository.findAllByStatus(Constants.ACTIVE.name()))
-                .thenReturn(reactor.core.publisher.Flux.error(new RuntimeException("DB error active")));
+        when(fareRepository.findListingFromPrimary(Constants.ACTIVE.name()))
+                .thenReturn(Flux.error(new RuntimeException("DB error active")));
 
         StepVerifier.create(fareService.getAllActiveF())
             .expectErrorMatches(e -> e.getMessage().contains("DB error active"))
@@ -464,8 +426,8 @@ public class FareServiceImplTest {
 
     @Test
     void getAllInactiveF_ShouldPropagateError() {
-        when(fareRepository.findAllByStatus(Constants.INACTIVE.name()))
-                .thenReturn(reactor.core.publisher.Flux.error(new RuntimeException("DB error inactive")));
+        when(fareRepository.findListing(Constants.INACTIVE.name()))
+                .thenReturn(Flux.error(new RuntimeException("DB error inactive")));
 
         StepVerifier.create(fareService.getAllInactiveF())
             .expectErrorMatches(e -> e.getMessage().contains("DB error inactive"))
@@ -485,7 +447,7 @@ public class FareServiceImplTest {
     @Test
     void activateF_ShouldError_WhenNotFound() {
         String id = "fare-404";
-        when(fareRepository.findById(id)).thenReturn(Mono.empty());
+        when(fareRepository.transitionStatus(id, null, Constants.ACTIVE.name())).thenReturn(Mono.empty());
 
         StepVerifier.create(fareService.activateF(id))
             .expectError(CustomException.class)
@@ -532,13 +494,10 @@ public class FareServiceImplTest {
     void updateF_ShouldNotChangeFareCode_WhenFareCodeNull() {
         String id = "fare-6";
         Fare existing = Fare.builder().id(id).fareCode("TAR001").status(Constants.ACTIVE.name()).build();
-        when(fareRepository.findById(id)).thenReturn(Mono.just(existing));
+        givenUpdateFieldsAppliesTo(existing);
 
         FareUpdateRequest update = FareUpdateRequest.builder().build();
 
-        when(fareRepository.save(any(Fare.class)))
-                .thenAnswer(inv -> Mono.just((Fare) inv.getArgument(0)));
-
         StepVerifier.create(fareService.updateF(id, update))
             .assertNext(updated -> assertEquals("TAR001", updated.getFareCode()))
             .verifyComplete();
@@ -566,14 +525,6 @@ public class FareServiceImplTest {
         assertThrows(IllegalArgumentException.class, () -> fareService.saveF(r));
     }
 
-    @Test
-    void parseNumericCode_ShouldReturnZero_OnNull() throws Exception {
-        java.lang.reflect.Method m = FareServiceImpl.class.getDeclaredMethod("parseNumericCode", String.class);
-        m.setAccessible(true);
-        Object result = m.invoke(fareService, new Object[]{null});
-        assertEquals(0, ((Integer) result).intValue());
-    }
-
     /**
      * Escenario Positivo:
      * Debe crear una tarifa válida cuando la solicitud tiene datos correctos.
@@ -589,10 +540,8 @@ public class FareServiceImplTest {
                 .fareAmount(new BigDecimal("15"))
                 .build();
 
-        // Simula que no hay tarifas previas (genera TAR001)
-        when(fareRepository.findTopByOrderByFareCodeDesc()).thenReturn(Mono.empty());
-        // Simula que el código TAR001 no existe
-        when(fareRepository.existsByFareCode("TAR001")).thenReturn(Mono.just(false));
+        // Simula el contador de la organización (genera TAR001)
+        when(codeGenerator.nextCode(CodeSequence.FARE, "6896b2ecf3e398570ffd99d3")).thenReturn(Mono.just("TAR001"));
 
         // Capturador para verificar lo que se guarda en el repositorio
         ArgumentCaptor<Fare> fareCaptor = ArgumentCaptor.forClass(Fare.class);
@@ -628,8 +577,7 @@ public class FareServiceImplTest {
                 .verifyComplete();
 
         // Verifica que los métodos del repositorio fueron llamados correctamente
-        verify(fareRepository).findTopByOrderByFareCodeDesc();
-        verify(fareRepository).existsByFareCode("TAR001");
+        verify(codeGenerator).nextCode(CodeSequence.FARE, "6896b2ecf3e398570ffd99d3");
         verify(fareRepository).save(fareCaptor.capture());
 
         // Validamos los valores capturados antes de guardar
@@ -668,13 +616,11 @@ public class FareServiceImplTest {
                 .fareAmount(new BigDecimal("20"))
                 .build();
 
-        // Simula que no hay tarifas previas (genera TAR001)
-        when(fareRepository.findTopByOrderByFareCodeDesc()).thenReturn(Mono.empty());
-        // Simula que el código TAR001 ya existe
-        when(fareRepository.existsByFareCode("TAR001")).thenReturn(Mono.just(true));
-        // En caso de que por error llegue a intentar guardar, forzamos un error consistente
+        // Simula el contador de la organización (genera TAR001)
+        when(codeGenerator.nextCode(CodeSequence.FARE, "6896b2ecf3e398570ffd99d3")).thenReturn(Mono.just("TAR001"));
+        // Simula que el índice único rechaza el código TAR001
         when(fareRepository.save(any(Fare.class))).thenReturn(Mono.error(
-                new CustomException(400, "Fare code already exists", "The fare code TAR001 is already registered")
+                new DuplicateKeyException("E11000 duplicate key")
         ));
 
         // Act & Assert
@@ -690,4 +636,110 @@ public class FareServiceImplTest {
         // (Opcional) No verificamos 'never()' para evitar falsos negativos por cadenas reactivas
         System.out.println("✔️ Prueba negativa finalizada con éxito\n");
     }
-}
\ No newline at end of file
+
+    // Simula el $set de Mongo sobre el documento existente
+    private void givenUpdateFieldsAppliesTo(Fare existing) {
+        when(fareRepository.updateFields(eq(existing.getId()), isNull(), anyMap())).thenAnswer(inv -> {
+            Map<String, Object> fields = inv.getArgument(2);
+            if (fields.containsKey("fareCode")) {
+                existing.setFareCode((String) fields.get("fareCode"));
+            }
+            if (fields.containsKey("fareAmount")) {
+                existing.setFareAmount((BigDecimal) fields.get("fareAmount"));
+            }
+            return Mono.just(existing);
+        });
+    }
+
+    @Test
+    void getByIdFMono_ShouldServeSecondReadFromCache_UntilFareIsWritten() {
+        // Arrange
+        String id = "fare-1";
+        Fare fare = Fare.builder().id(id).organizationId("org-1").fareCode("TAR001").build();
+        Fare updated = Fare.builder().id(id).organizationId("org-1").fareCode("TAR002").build();
+        when(fareRepository.findById(id)).thenReturn(Mono.just(fare), Mono.just(updated));
+        when(fareRepository.updateFields(id, null, Map.of("fareCode", "TAR002"))).thenReturn(Mono.just(updated));
+
+        // Act & Assert - la segunda lectura no llega a Mongo
+        StepVerifier.create(fareService.getByIdFMono(id)).expectNext(fare).verifyComplete();
+        StepVerifier.create(fareService.getByIdFMono(id)).expectNext(fare).verifyComplete();
+        verify(fareRepository, times(1)).findById(id);
+
+        // Act & Assert - la escritura invalida la entrada y la siguiente lectura recarga
+        StepVerifier.create(fareService.updateF(id, FareUpdateRequest.builder().fareCode("TAR002").build()))
+                .expectNext(updated)
+                .verifyComplete();
+        StepVerifier.create(fareService.getByIdFMono(id))
+                .assertNext(result -> assertEquals("TAR002", result.getFareCode()))
+                .verifyComplete();
+        verify(fareRepository, times(2)).findById(id);
+    }
+
+    @Test
+    void getAllByOrganizationF_ShouldCacheActiveList_AndEvictItOnStatusChange() {
+        // Arrange
+        Fare fare = Fare.builder().id("fare-1").organizationId("org-1").status(Constants.ACTIVE.name()).build();
+        Fare inactive = Fare.builder().id("fare-1").organizationId("org-1").status(Constants.INACTIVE.name()).build();
+        when(fareRepository.findAllByOrganizationIdAndStatus("org-1", Constants.ACTIVE.name()))
+                .thenReturn(Flux.just(fare), Flux.empty());
+        when(fareRepository.transitionStatus("fare-1", null, Constants.INACTIVE.name())).thenReturn(Mono.just(inactive));
+
+        // Act & Assert
+        StepVerifier.create(fareService.getAllByOrganizationF("org-1", Constants.ACTIVE.name())).expectNext(fare).verifyComplete();
+        StepVerifier.create(fareService.getAllByOrganizationF("org-1", Constants.ACTIVE.name())).expectNext(fare).verifyComplete();
+        StepVerifier.create(fareService.deactivateF("fare-1")).expectNext(inactive).verifyComplete();
+        StepVerifier.create(fareService.getAllByOrganizationF("org-1", Constants.ACTIVE.name())).verifyComplete();
+
+        verify(fareRepository, times(2)).findAllByOrganizationIdAndStatus("org-1", Constants.ACTIVE.name());
+    }
+
+    /**
+     * Escenario de Caché de activas:
+     * Se rellena desde el primario, nunca con la lectura enrutada a secundarios, y un listado vacío
+     * no se guarda.
+     */
+    @Test
+    void getAllActiveF_ShouldLoadFromPrimary_AndNotCacheEmptyList() {
+        // Arrange
+        Fare fare = Fare.builder().id("fare-1").status(Constants.ACTIVE.name()).build();
+        when(fareRepository.findListingFromPrimary(Constants.ACTIVE.name()))
+                .thenReturn(Flux.empty(), Flux.just(fare));
+
+        // Act & Assert
+        StepVerifier.create(fareService.getAllActiveF()).verifyComplete();
+        StepVerifier.create(fareService.getAllActiveF()).expectNext(fare).verifyComplete();
+        StepVerifier.create(fareService.getAllActiveF()).expectNext(fare).verifyComplete();
+
+        verify(fareRepository, times(2)).findListingFromPrimary(Constants.ACTIVE.name());
+        verify(fareRepository, never()).findListing(any());
+    }
+
+    /**
+     * Escenario de Listados Codificados:
+     * El JSON del listado se reutiliza mientras no hay escrituras; un cambio de estado lo descarta.
+     */
+    @Test
+    void deactivateF_ShouldEvictEncodedLists() {
+        // Arrange
+        Fare fare = Fare.builder().id("fare-1").organizationId("org-1").status(Constants.ACTIVE.name()).build();
+        Fare inactive = Fare.builder().id("fare-1").organizationId("org-1").status(Constants.INACTIVE.name()).build();
+        when(fareRepository.findListingFromPrimary(Constants.ACTIVE.name()))
+                .thenReturn(Flux.just(fare), Flux.empty());
+        when(fareRepository.transitionStatus("fare-1", null, Constants.INACTIVE.name())).thenReturn(Mono.just(inactive));
+
+        // Act & Assert
+        byte[] first = encodedLists.get(Fare.class, null, Constants.ACTIVE.name(), this::activeResponse).block().json();
+        byte[] second = encodedLists.get(Fare.class, null, Constants.ACTIVE.name(), this::activeResponse).block().json();
+        assertSame(first, second);
+
+        StepVerifier.create(fareService.deactivateF("fare-1")).expectNext(inactive).verifyComplete();
+        byte[] third = encodedLists.get(Fare.class, null, Constants.ACTIVE.name(), this::activeResponse).block().json();
+        assertNotSame(first, third);
+        assertFalse(new String(third).contains("fare-1"));
+        verify(fareRepository, times(2)).findListingFromPrimary(Constants.ACTIVE.name());
+    }
+
+    private Mono<ResponseDto<List<Fare>>> activeResponse() {
+        return fareService.getAllActiveF().collectList().map(fares -> new ResponseDto<>(true, fares));
+    }
+}
@@ -1,5 +1,6 @@
 package pe.edu.vallegrande.ms_distribution.application.services.impl;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -8,10 +9,19 @@ import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.InjectMocks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import pe.edu.vallegrande.ms_distribution.application.cache.SingleFlight;
+import pe.edu.vallegrande.ms_distribution.application.config.WriteRetryPolicy;
+import pe.edu.vallegrande.ms_distribution.application.config.WriteRetryProperties;
+import pe.edu.vallegrande.ms_distribution.application.services.CodeGeneratorService;
+import pe.edu.vallegrande.ms_distribution.application.services.ProgramRollupService;
+import pe.edu.vallegrande.ms_distribution.domain.enums.CodeSequence;
 import pe.edu.vallegrande.ms_distribution.domain.models.DistributionProgram;
 import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.DistributionProgramCreateRequest;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ChangeMarkers;
 import pe.edu.vallegrande.ms_distribution.infrastructure.repository.DistributionProgramRepository;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -40,9 +50,30 @@ public class ParametrizedDistributionProgramTest {
     @Mock
     private DistributionProgramRepository programRepository;
 
+    @Mock
+    private CodeGeneratorService codeGenerator;
+
+    @Mock
+    private ProgramRollupService rollups;
+
+    @Spy
+    private WriteRetryPolicy writePolicy = new WriteRetryPolicy(new WriteRetryProperties(), new SimpleMeterRegistry());
+
+    @Spy
+    private SingleFlight singleFlight = new SingleFlight(new SimpleMeterRegistry());
+
+    @Mock
+    private ChangeMarkers changeMarkers;
+
     @InjectMocks
     private DistributionProgramServiceImpl distributionProgramService;
 
+    @BeforeEach
+    void setUp() {
+        // No todas las pruebas crean programas; el resumen diario no es lo que se valida aquí
+        lenient().when(rollups.recordCreated(any())).thenReturn(Mono.empty());
+    }
+
     /**
      * Prueba parametrizada que valida la creación de programas por diferentes tipos de participantes
      * 
@@ -71,8 +102,8 @@ public class ParametrizedDistributionProgramTest {
         DistributionProgram savedProgram = createValidProgram();
         savedProgram.setResponsibleUserId("user-" + participantType.toLowerCase());
         
-        when(programRepository.findTopByOrderByProgramCodeDesc())
-            .thenReturn(Mono.just(savedProgram));
+        when(codeGenerator.nextCode(CodeSequence.PROGRAM, "org-001"))
+            .thenReturn(Mono.just("PROG001"));
 
         if (expectedSuccess) {
             when(programRepository.save(any(DistributionProgram.class)))
@@ -147,8 +178,8 @@ public class ParametrizedDistributionProgramTest {
         savedProgram.setPlannedStartTime(startTime);
         savedProgram.setPlannedEndTime(endTime);
         
-        when(programRepository.findTopByOrderByProgramCodeDesc())
-            .thenReturn(Mono.just(savedProgram));
+        when(codeGenerator.nextCode(CodeSequence.PROGRAM, "org-001"))
+            .thenReturn(Mono.just("PROG001"));
         when(programRepository.save(any(DistributionProgram.class)))
             .thenReturn(Mono.just(savedProgram));
         
@@ -176,8 +207,8 @@ public class ParametrizedDistributionProgramTest {
         DistributionProgram savedProgram = createValidProgram();
         savedProgram.setObservations("Programa con tarifa tipo: " + fareType);
         
-        when(programRepository.findTopByOrderByProgramCodeDesc())
-            .thenReturn(Mono.just(savedProgram));
+        when(codeGenerator.nextCode(CodeSequence.PROGRAM, "org-001"))
+            .thenReturn(Mono.just("PROG001"));
         when(programRepository.save(any(DistributionProgram.class)))
             .thenReturn(Mono.just(savedProgram));
         
@@ -213,8 +244,8 @@ public class ParametrizedDistributionProgramTest {
         DistributionProgram savedProgram = createValidProgram();
         savedProgram.setProgramDate(programDate);
         
-        when(programRepository.findTopByOrderByProgramCodeDesc())
-            .thenReturn(Mono.just(savedProgram));
+        when(codeGenerator.nextCode(CodeSequence.PROGRAM, "org-001"))
+            .thenReturn(Mono.just("PROG001"));
         when(programRepository.save(any(DistributionProgram.class)))
             .thenReturn(Mono.just(savedProgram));
         
@@ -231,10 +262,9 @@ public class ParametrizedDistributionProgramTest {
     void saveProgram_whenRepositoryErrors_shouldError(String reason) {
         // Arrange
         DistributionProgramCreateRequest request = createValidRequest();
-        DistributionProgram lastProgram = createValidProgram();
 
-        when(programRepository.findTopByOrderByProgramCodeDesc())
-            .thenReturn(Mono.just(lastProgram));
+        when(codeGenerator.nextCode(CodeSequence.PROGRAM, "org-001"))
+            .thenReturn(Mono.just("PROG001"));
         when(programRepository.save(any(DistributionProgram.class)))
             .thenReturn(Mono.error(new RuntimeException("Save failed: " + reason)));
 
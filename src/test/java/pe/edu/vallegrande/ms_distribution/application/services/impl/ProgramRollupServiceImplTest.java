@@ -0,0 +1,191 @@
+package pe.edu.vallegrande.ms_distribution.application.services.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import pe.edu.vallegrande.ms_distribution.application.config.RollupProperties;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionProgram;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.ProgramDateRangeRequest;
+import pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.JobLeases;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.Change;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.ProgramRollupRepository;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class ProgramRollupServiceImplTest {
+
+    private static final LocalDate DAY = LocalDate.parse("2024-03-01");
+    private static final String ORG_REBUILD_JOB = ProgramRollupServiceImpl.REBUILD_JOB + ":org-1";
+
+    @Mock
+    private ProgramRollupRepository rollupRepository;
+
+    @Mock
+    private JobLeases leases;
+
+    private final RollupProperties properties = new RollupProperties();
+
+    private ProgramRollupServiceImpl rollupService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        rollupService = new ProgramRollupServiceImpl(rollupRepository, leases, properties);
+        when(rollupRepository.increment(any(), any(), any(), any(), anyLong())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void recordCreated_ShouldIncrementDayAndStatus() {
+        StepVerifier.create(rollupService.recordCreated(program("z1", DAY, "PLANNED"))).verifyComplete();
+
+        verify(rollupRepository).increment("org-1", "z1", DAY, "PLANNED", 1L);
+    }
+
+    @Test
+    void recordChange_ShouldMoveBetweenStatuses() {
+        Change<DistributionProgram> change = new Change<>(program("z1", DAY, "PLANNED"), program("z1", DAY, "IN_PROGRESS"));
+
+        StepVerifier.create(rollupService.recordChange(change)).verifyComplete();
+
+        verify(rollupRepository).increment("org-1", "z1", DAY, "PLANNED", -1L);
+        verify(rollupRepository).increment("org-1", "z1", DAY, "IN_PROGRESS", 1L);
+    }
+
+    @Test
+    void recordChange_ShouldMoveBetweenDays() {
+        LocalDate nextDay = DAY.plusDays(1);
+        Change<DistributionProgram> change = new Change<>(program("z1", DAY, "PLANNED"), program("z2", nextDay, "PLANNED"));
+
+        StepVerifier.create(rollupService.recordChange(change)).verifyComplete();
+
+        verify(rollupRepository).increment("org-1", "z1", DAY, "PLANNED", -1L);
+        verify(rollupRepository).increment("org-1", "z2", nextDay, "PLANNED", 1L);
+    }
+
+    @Test
+    void recordChange_ShouldSkipWrite_WhenBucketAndStatusUnchanged() {
+        Change<DistributionProgram> change = new Change<>(program("z1", DAY, "PLANNED"), program("z1", DAY, "PLANNED"));
+
+        StepVerifier.create(rollupService.recordChange(change)).verifyComplete();
+
+        verify(rollupRepository, never()).increment(any(), any(), any(), any(), anyLong());
+    }
+
+    @Test
+    void recordRemoved_ShouldIgnoreProgramsWithoutDate() {
+        StepVerifier.create(rollupService.recordRemoved(program("z1", null, "PLANNED"))).verifyComplete();
+
+        verify(rollupRepository, never()).increment(any(), any(), any(), any(), anyLong());
+    }
+
+    @Test
+    void recordCreated_ShouldNotFail_WhenRollupWriteFails() {
+        when(rollupRepository.increment(any(), any(), any(), any(), anyLong()))
+                .thenReturn(Mono.error(new IllegalStateException("timeout")));
+
+        StepVerifier.create(rollupService.recordCreated(program("z1", DAY, "PLANNED"))).verifyComplete();
+    }
+
+    @Test
+    void rebuild_ShouldReturnRollupsOfOrganization() {
+        when(leases.tryAcquire(ORG_REBUILD_JOB, properties.getRebuildLease())).thenReturn(Mono.just(true));
+        when(leases.release(ORG_REBUILD_JOB)).thenReturn(Mono.empty());
+        when(rollupRepository.rebuild("org-1")).thenReturn(Mono.empty());
+        when(rollupRepository.countByOrganizationId("org-1")).thenReturn(Mono.just(12L));
+
+        StepVerifier.create(rollupService.rebuild("org-1"))
+                .expectNext(12L)
+                .verifyComplete();
+
+        verify(leases).release(ORG_REBUILD_JOB);
+    }
+
+    /**
+     * Escenario de Reconstrucción en curso:
+     * Dos reconstrucciones de la misma organización no se solapan; la segunda recibe 409.
+     */
+    @Test
+    void rebuild_ShouldAnswerConflict_WhenAlreadyRunningForOrganization() {
+        when(leases.tryAcquire(ORG_REBUILD_JOB, properties.getRebuildLease())).thenReturn(Mono.just(false));
+
+        StepVerifier.create(rollupService.rebuild("org-1"))
+                .expectErrorSatisfies(error -> org.junit.jupiter.api.Assertions.assertEquals(409,
+                        ((CustomException) error).getErrorMessage().getErrorCode()))
+                .verify();
+
+        verify(rollupRepository, never()).rebuild(any());
+    }
+
+    /**
+     * Escenario de Fallo en la reconstrucción:
+     * La reserva se suelta aunque el pipeline falle, para no bloquear el siguiente intento.
+     */
+    @Test
+    void rebuild_ShouldReleaseLease_WhenRebuildFails() {
+        when(leases.tryAcquire(ORG_REBUILD_JOB, properties.getRebuildLease())).thenReturn(Mono.just(true));
+        when(leases.release(ORG_REBUILD_JOB)).thenReturn(Mono.empty());
+        when(rollupRepository.rebuild("org-1")).thenReturn(Mono.error(new IllegalStateException("timeout")));
+        when(rollupRepository.countByOrganizationId("org-1")).thenReturn(Mono.just(0L));
+
+        StepVerifier.create(rollupService.rebuild("org-1"))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        verify(leases).release(ORG_REBUILD_JOB);
+    }
+
+    @Test
+    void rebuild_ShouldRequireOrganization() {
+        StepVerifier.create(rollupService.rebuild(null))
+                .expectErrorSatisfies(error -> org.junit.jupiter.api.Assertions.assertEquals(400,
+                        ((CustomException) error).getErrorMessage().getErrorCode()))
+                .verify();
+
+        verify(rollupRepository, never()).rebuild(any());
+    }
+
+    @Test
+    void rebuildAll_ShouldRebuildEverything_WhenLeaseAcquired() {
+        when(leases.tryAcquire(ProgramRollupServiceImpl.REBUILD_JOB, properties.getRebuildLease())).thenReturn(Mono.just(true));
+        when(rollupRepository.rebuild(null)).thenReturn(Mono.empty());
+        when(rollupRepository.count()).thenReturn(Mono.just(40L));
+
+        StepVerifier.create(rollupService.rebuildAll())
+                .expectNext(40L)
+                .verifyComplete();
+    }
+
+    @Test
+    void rebuildAll_ShouldSkip_WhenAnotherReplicaHoldsLease() {
+        when(leases.tryAcquire(ProgramRollupServiceImpl.REBUILD_JOB, properties.getRebuildLease())).thenReturn(Mono.just(false));
+
+        StepVerifier.create(rollupService.rebuildAll()).verifyComplete();
+
+        verify(rollupRepository, never()).rebuild(any());
+    }
+
+    @Test
+    void getRollups_ShouldRequireOrganization() {
+        ProgramDateRangeRequest range = ProgramDateRangeRequest.builder().from(DAY).to(DAY.plusDays(7)).build();
+
+        StepVerifier.create(rollupService.getRollups(range))
+                .expectError(CustomException.class)
+                .verify();
+
+        verify(rollupRepository, never()).findRange(any(), any(), any());
+    }
+
+    private DistributionProgram program(String zoneId, LocalDate date, String status) {
+        return DistributionProgram.builder()
+                .id("p1").organizationId("org-1").zoneId(zoneId).programDate(date).status(status)
+                .build();
+    }
+}
@@ -0,0 +1,261 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import pe.edu.vallegrande.ms_distribution.application.cache.ByIdCache;
+import pe.edu.vallegrande.ms_distribution.application.cache.EncodedListCache;
+import pe.edu.vallegrande.ms_distribution.application.cache.FareCache;
+import pe.edu.vallegrande.ms_distribution.application.config.EntityCacheProperties;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionProgram;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionRoute;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionSchedule;
+import pe.edu.vallegrande.ms_distribution.domain.models.Fare;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CacheInvalidationListenerTest {
+
+    private static final String ROUTES = "routes";
+    private static final String TOKEN_KEY = "node-1:routes";
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Mock
+    private ReactiveIndexOperations tokenIndexes;
+
+    @Mock
+    private ByIdCache<DistributionRoute> routeCache;
+
+    @Mock
+    private ByIdCache<DistributionSchedule> scheduleCache;
+
+    @Mock
+    private FareCache fareCache;
+
+    @Mock
+    private ChangeMarkers changeMarkers;
+
+    @Mock
+    private EncodedListCache encodedLists;
+
+    private CacheInvalidationListener listener;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(mongoTemplate.getCollectionName(DistributionProgram.class)).thenReturn("programs");
+        when(mongoTemplate.getCollectionName(DistributionRoute.class)).thenReturn(ROUTES);
+        when(mongoTemplate.getCollectionName(DistributionSchedule.class)).thenReturn("schedules");
+        when(mongoTemplate.getCollectionName(Fare.class)).thenReturn("fare");
+        when(mongoTemplate.indexOps(CacheInvalidationListener.TOKENS_COLLECTION)).thenReturn(tokenIndexes);
+        when(tokenIndexes.ensureIndex(any(IndexDefinition.class))).thenReturn(Mono.just("ttl_cache_resume_tokens_updated_at"));
+        // Solo routes recibe eventos en estas pruebas; las demás colecciones quedan escuchando
+        when(mongoTemplate.changeStream(anyString(), any(ChangeStreamOptions.class), eq(Document.class))).thenReturn(Flux.never());
+        when(mongoTemplate.findById(anyString(), eq(Document.class), eq(CacheInvalidationListener.TOKENS_COLLECTION)))
+                .thenReturn(Mono.empty());
+        when(mongoTemplate.upsert(any(Query.class), any(UpdateDefinition.class), anyString()))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(mongoTemplate.remove(any(Query.class), anyString())).thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+        when(changeMarkers.advance(anyString(), anyLong())).thenReturn(Mono.empty());
+
+        EntityCacheProperties properties = new EntityCacheProperties();
+        properties.setInstanceId("node-1");
+        listener = new CacheInvalidationListener(mongoTemplate, properties, new SimpleMeterRegistry(),
+                routeCache, scheduleCache, fareCache, changeMarkers, encodedLists);
+    }
+
+    @AfterEach
+    void tearDown() {
+        listener.stop();
+    }
+
+    /**
+     * Escenario de Cambio de documento:
+     * Se descarta solo el id del documentKey y los listados codificados, avanza el marcador con el
+     * clusterTime del evento y se guarda la posición del stream.
+     */
+    @Test
+    void start_ShouldEvictDocumentKey_AndSaveResumeToken() {
+        // Arrange
+        ObjectId id = new ObjectId();
+        when(mongoTemplate.findById(TOKEN_KEY, Document.class, CacheInvalidationListener.TOKENS_COLLECTION))
+                .thenReturn(Mono.just(new Document("_id", TOKEN_KEY).append("token", "saved-token")));
+        ChangeStreamEvent<Document> change = event(OperationType.UPDATE, new BsonObjectId(id), "token-1", 42);
+        when(mongoTemplate.changeStream(eq(ROUTES), any(ChangeStreamOptions.class), eq(Document.class)))
+                .thenReturn(Flux.just(change).concatWith(Flux.never()));
+
+        // Act
+        listener.start();
+
+        // Assert
+        verify(routeCache, timeout(1000)).evict(id.toHexString());
+        verify(encodedLists).evict(DistributionRoute.class);
+        verify(changeMarkers).advance(ROUTES, new BsonTimestamp(42, 1).getValue());
+        ArgumentCaptor<Query> saved = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> token = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate, timeout(1000)).upsert(saved.capture(), token.capture(), eq(CacheInvalidationListener.TOKENS_COLLECTION));
+        assertEquals(new Document("_id", TOKEN_KEY), saved.getValue().getQueryObject());
+        assertEquals("token-1", token.getValue().getUpdateObject().get("$set", Document.class).getString("token"));
+        verify(routeCache, never()).evictAll();
+    }
+
+    /**
+     * Escenario de Reanudación:
+     * Con un token guardado el stream continúa desde él y la caché se conserva.
+     */
+    @Test
+    void start_ShouldResumeFromSavedToken() {
+        // Arrange
+        when(mongoTemplate.findById(TOKEN_KEY, Document.class, CacheInvalidationListener.TOKENS_COLLECTION))
+                .thenReturn(Mono.just(new Document("_id", TOKEN_KEY).append("token", "saved-token")));
+
+        // Act
+        listener.start();
+
+        // Assert
+        ArgumentCaptor<ChangeStreamOptions> options = ArgumentCaptor.forClass(ChangeStreamOptions.class);
+        verify(mongoTemplate, timeout(1000)).changeStream(eq(ROUTES), options.capture(), eq(Document.class));
+        assertEquals(Optional.of(new BsonDocument("_data", new BsonString("saved-token"))), options.getValue().getResumeToken());
+        verify(routeCache, never()).evictAll();
+    }
+
+    /**
+     * Escenario sin posición:
+     * Sin token no se sabe qué cambió mientras tanto: se vacía la caché y se empieza desde ahora.
+     */
+    @Test
+    void start_ShouldEvictAll_WhenNoTokenIsSaved() {
+        // Act
+        listener.start();
+
+        // Assert
+        ArgumentCaptor<ChangeStreamOptions> options = ArgumentCaptor.forClass(ChangeStreamOptions.class);
+        verify(mongoTemplate, timeout(1000)).changeStream(eq(ROUTES), options.capture(), eq(Document.class));
+        assertTrue(options.getValue().getResumeToken().isEmpty());
+        verify(routeCache).evictAll();
+        verify(encodedLists).evict(DistributionRoute.class);
+    }
+
+    /**
+     * Escenario de Historial perdido:
+     * Si Mongo ya no conserva la posición (código 286) se borra el token y, al reconectar sin él,
+     * se vacía la caché.
+     */
+    @Test
+    void start_ShouldClearTokenAndEvictAll_WhenHistoryIsLost() {
+        // Arrange
+        when(mongoTemplate.findById(TOKEN_KEY, Document.class, CacheInvalidationListener.TOKENS_COLLECTION))
+                .thenReturn(Mono.just(new Document("_id", TOKEN_KEY).append("token", "expired-token")), Mono.empty());
+        when(mongoTemplate.changeStream(eq(ROUTES), any(ChangeStreamOptions.class), eq(Document.class)))
+                .thenReturn(Flux.error(historyLost()), Flux.never());
+
+        // Act
+        listener.start();
+
+        // Assert
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, timeout(1000)).remove(removed.capture(), eq(CacheInvalidationListener.TOKENS_COLLECTION));
+        assertEquals(new Document("_id", TOKEN_KEY), removed.getValue().getQueryObject());
+        verify(routeCache, timeout(5000)).evictAll();
+    }
+
+    /**
+     * Escenario de Invalidación:
+     * invalidate (o drop) vacía la caché de la colección y descarta el token en lugar de guardarlo.
+     */
+    @Test
+    void start_ShouldEvictAllAndClearToken_WhenStreamIsInvalidated() {
+        // Arrange
+        when(mongoTemplate.findById(TOKEN_KEY, Document.class, CacheInvalidationListener.TOKENS_COLLECTION))
+                .thenReturn(Mono.just(new Document("_id", TOKEN_KEY).append("token", "saved-token")));
+        ChangeStreamEvent<Document> change = event(OperationType.INVALIDATE, null, "token-2", 43);
+        when(mongoTemplate.changeStream(eq(ROUTES), any(ChangeStreamOptions.class), eq(Document.class)))
+                .thenReturn(Flux.just(change).concatWith(Flux.never()));
+
+        // Act
+        listener.start();
+
+        // Assert
+        verify(routeCache, timeout(1000)).evictAll();
+        verify(mongoTemplate, timeout(1000)).remove(any(Query.class), eq(CacheInvalidationListener.TOKENS_COLLECTION));
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(UpdateDefinition.class), eq(CacheInvalidationListener.TOKENS_COLLECTION));
+        verify(routeCache, never()).evict(anyString());
+    }
+
+    /**
+     * Escenario de Tokens huérfanos:
+     * Al arrancar se asegura el índice TTL sobre updatedAt con la vida configurada.
+     */
+    @Test
+    void start_ShouldEnsureTtlIndexOnTokens() {
+        // Act
+        listener.start();
+
+        // Assert
+        ArgumentCaptor<IndexDefinition> index = ArgumentCaptor.forClass(IndexDefinition.class);
+        verify(tokenIndexes).ensureIndex(index.capture());
+        assertEquals(new Document("updatedAt", 1), index.getValue().getIndexKeys());
+        assertEquals(Duration.ofDays(7).toSeconds(),
+                ((Number) index.getValue().getIndexOptions().get("expireAfterSeconds")).longValue());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ChangeStreamEvent<Document> event(OperationType type, BsonValue id, String token, int seconds) {
+        ChangeStreamDocument<Document> raw = mock(ChangeStreamDocument.class);
+        when(raw.getDocumentKey()).thenReturn(id != null ? new BsonDocument("_id", id) : null);
+        when(raw.getClusterTime()).thenReturn(new BsonTimestamp(seconds, 1));
+        ChangeStreamEvent<Document> event = mock(ChangeStreamEvent.class);
+        when(event.getRaw()).thenReturn(raw);
+        when(event.getOperationType()).thenReturn(type);
+        when(event.getResumeToken()).thenReturn(new BsonDocument("_data", new BsonString(token)));
+        return event;
+    }
+
+    private static MongoCommandException historyLost() {
+        return new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+                .append("code", new BsonInt32(286))
+                .append("errmsg", new BsonString("Resume of change stream was not possible")), new ServerAddress());
+    }
+}
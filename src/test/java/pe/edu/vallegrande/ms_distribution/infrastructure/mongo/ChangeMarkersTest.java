@@ -0,0 +1,120 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import pe.edu.vallegrande.ms_distribution.application.config.EntityCacheProperties;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionRoute;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChangeMarkersTest {
+
+    private static final String ROUTES = "routes";
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private EntityCacheProperties properties;
+    private ChangeMarkers changeMarkers;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(mongoTemplate.getCollectionName(DistributionRoute.class)).thenReturn(ROUTES);
+        when(mongoTemplate.findById(anyString(), eq(Document.class), eq(ChangeMarkers.MARKERS_COLLECTION))).thenReturn(Mono.empty());
+        when(mongoTemplate.upsert(any(Query.class), any(UpdateDefinition.class), anyString()))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        properties = new EntityCacheProperties();
+        changeMarkers = new ChangeMarkers(mongoTemplate, properties);
+    }
+
+    /**
+     * Escenario sin stream:
+     * Sin change streams, o mientras el de la colección no está conectado, no hay marcador.
+     */
+    @Test
+    void current_ShouldBeEmpty_WhenStreamIsNotConnected() {
+        StepVerifier.create(changeMarkers.current(ROUTES)).verifyComplete();
+
+        changeMarkers.connected(ROUTES);
+        changeMarkers.disconnected(ROUTES);
+        StepVerifier.create(changeMarkers.current(ROUTES)).verifyComplete();
+
+        properties.setChangeStreams(false);
+        changeMarkers.connected(ROUTES);
+        StepVerifier.create(changeMarkers.current(ROUTES)).verifyComplete();
+    }
+
+    /**
+     * Escenario de Arranque:
+     * El marcador parte del valor guardado en collection_markers.
+     */
+    @Test
+    void current_ShouldStartFromStoredMarker() {
+        when(mongoTemplate.findById(ROUTES, Document.class, ChangeMarkers.MARKERS_COLLECTION))
+                .thenReturn(Mono.just(new Document("_id", ROUTES).append("clusterTime", 77L)));
+        changeMarkers.connected(ROUTES);
+
+        StepVerifier.create(changeMarkers.current(ROUTES))
+                .assertNext(marker -> assertEquals(77L, marker.clusterTime()))
+                .verifyComplete();
+    }
+
+    /**
+     * Escenario de Monotonía:
+     * Un evento atrasado no hace retroceder el marcador en memoria y en Mongo se guarda con $max.
+     */
+    @Test
+    void advance_ShouldNeverMoveBackwards() {
+        changeMarkers.connected(ROUTES);
+
+        StepVerifier.create(changeMarkers.advance(ROUTES, 200L)).verifyComplete();
+        StepVerifier.create(changeMarkers.advance(ROUTES, 100L)).verifyComplete();
+
+        StepVerifier.create(changeMarkers.current(ROUTES))
+                .assertNext(marker -> assertEquals(200L, marker.clusterTime()))
+                .verifyComplete();
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate, times(2)).upsert(any(Query.class), update.capture(), eq(ChangeMarkers.MARKERS_COLLECTION));
+        assertEquals(new Document("$max", new Document("clusterTime", 100L)), update.getAllValues().get(1).getUpdateObject());
+    }
+
+    /**
+     * Escenario de Escritura local:
+     * touch mantiene el clusterTime pero marca el cambio como recién visto.
+     */
+    @Test
+    void touch_ShouldMakeMarkerRecent() {
+        changeMarkers.connected(ROUTES);
+        StepVerifier.create(changeMarkers.advance(ROUTES, 300L)).verifyComplete();
+        Instant beforeTouch = Instant.now();
+
+        changeMarkers.touch(DistributionRoute.class);
+
+        StepVerifier.create(changeMarkers.current(ROUTES))
+                .assertNext(marker -> {
+                    assertEquals(300L, marker.clusterTime());
+                    assertTrue(!marker.observedAt().isBefore(beforeTouch));
+                })
+                .verifyComplete();
+    }
+}
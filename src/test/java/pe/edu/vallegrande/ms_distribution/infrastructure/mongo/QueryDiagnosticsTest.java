@@ -0,0 +1,148 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import pe.edu.vallegrande.ms_distribution.application.config.QueryDiagnosticsProperties;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QueryDiagnosticsTest {
+
+    @Mock
+    private ObjectProvider<ReactiveMongoTemplate> templateProvider;
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private QueryDiagnostics diagnostics;
+    private int requestId;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(templateProvider.getIfAvailable()).thenReturn(mongoTemplate);
+        QueryDiagnosticsProperties properties = new QueryDiagnosticsProperties();
+        properties.setSlowThreshold(Duration.ZERO);
+        diagnostics = new QueryDiagnostics(properties, templateProvider);
+    }
+
+    /**
+     * Escenario de Forma:
+     * Dos find con distintos valores comparten forma; el orden y la proyección se conservan.
+     */
+    @Test
+    void shapeOf_ShouldReplaceValues_AndKeepSortAndProjection() {
+        BsonDocument first = BsonDocument.parse("{find: 'fare', filter: {status: 'ACTIVE', organizationId: 'org-1'},"
+                + " sort: {fareCode: 1}, projection: {fareCode: 1}, limit: 20}");
+        BsonDocument second = BsonDocument.parse("{find: 'fare', filter: {status: 'INACTIVE', organizationId: 'org-2'},"
+                + " sort: {fareCode: 1}, projection: {fareCode: 1}, limit: 50}");
+
+        String shape = QueryDiagnostics.shapeOf(first, "find");
+
+        assertEquals("find " + BsonDocument.parse("{filter: {status: '?', organizationId: '?'},"
+                + " sort: {fareCode: 1}, projection: {fareCode: 1}}").toJson(), shape);
+        assertEquals(shape, QueryDiagnostics.shapeOf(second, "find"));
+    }
+
+    /**
+     * Escenario de Normalización:
+     * Los operadores y los documentos anidados se mantienen; las listas de valores quedan en un solo "?".
+     */
+    @Test
+    void normalize_ShouldKeepOperators_AndCollapseScalarArrays() {
+        BsonDocument filter = BsonDocument.parse("{status: {$in: ['ACTIVE', 'INACTIVE']},"
+                + " $or: [{zoneId: 'z-1'}, {routeId: 'r-1'}], programDate: {$gte: {$date: '2025-01-01T00:00:00Z'}}}");
+
+        assertEquals(BsonDocument.parse("{status: {$in: '?'}, $or: [{zoneId: '?'}, {routeId: '?'}],"
+                + " programDate: {$gte: '?'}}"), QueryDiagnostics.normalize(filter));
+    }
+
+    /**
+     * Escenario de Escritura:
+     * La forma de update y delete es el filtro de su primera sentencia.
+     */
+    @Test
+    void shapeOf_ShouldUseFirstStatementFilter_ForWrites() {
+        BsonDocument update = BsonDocument.parse("{update: 'routes', updates: [{q: {_id: 'r-1', version: 3},"
+                + " u: {$set: {status: 'ACTIVE'}}}]}");
+
+        assertEquals("update " + BsonDocument.parse("{q: {_id: '?', version: '?'}}").toJson(),
+                QueryDiagnostics.shapeOf(update, "update"));
+    }
+
+    /**
+     * Escenario de Redacción:
+     * La sentencia expuesta conserva colección, orden e índice, pero ningún valor de filtro o actualización.
+     */
+    @Test
+    void redacted_ShouldHideLiteralValues() {
+        BsonDocument command = BsonDocument.parse("{update: 'routes', ordered: true,"
+                + " updates: [{q: {organizationId: 'org-1'}, u: {$set: {routeName: 'Ruta Norte'}}}]}");
+
+        BsonDocument redacted = QueryDiagnostics.redacted(command, "update");
+
+        assertEquals(BsonDocument.parse("{update: 'routes', ordered: '?',"
+                + " updates: [{q: {organizationId: '?'}, u: {$set: {routeName: '?'}}}]}"), redacted);
+        assertFalse(redacted.toJson().contains("org-1"));
+    }
+
+    /**
+     * Escenario de Ráfaga lenta:
+     * Mientras el explain de una forma no termina, sus demás consultas lentas no lanzan otro; una vez
+     * resuelto, las siguientes reutilizan el plan. La sentencia guardada no contiene valores.
+     */
+    @Test
+    void commandSucceeded_ShouldRunOneExplainPerShape_WhileInFlight() {
+        Sinks.One<Document> explain = Sinks.one();
+        when(mongoTemplate.executeCommand(any(Document.class))).thenReturn(explain.asMono());
+
+        run("{find: 'fare', filter: {status: 'ACTIVE'}}");
+        run("{find: 'fare', filter: {status: 'INACTIVE'}}");
+        explain.tryEmitValue(new Document("queryPlanner", new Document("winningPlan",
+                new Document("stage", "COLLSCAN"))));
+        run("{find: 'fare', filter: {status: 'ACTIVE'}}");
+
+        verify(mongoTemplate, times(1)).executeCommand(any(Document.class));
+        SlowQuery latest = diagnostics.getSlowQueries().get(0);
+        assertEquals(3, diagnostics.getSlowQueries().size());
+        assertTrue(latest.getPlan().isCollectionScan());
+        assertEquals(BsonDocument.parse("{find: 'fare', filter: {status: '?'}}").toJson(), latest.getStatement());
+    }
+
+    private void run(String json) {
+        BsonDocument command = BsonDocument.parse(json);
+        String commandName = command.getFirstKey();
+        int id = ++requestId;
+
+        CommandStartedEvent started = mock(CommandStartedEvent.class);
+        when(started.getCommandName()).thenReturn(commandName);
+        when(started.getRequestId()).thenReturn(id);
+        when(started.getCommand()).thenReturn(command);
+        diagnostics.commandStarted(started);
+
+        CommandSucceededEvent succeeded = mock(CommandSucceededEvent.class);
+        when(succeeded.getCommandName()).thenReturn(commandName);
+        when(succeeded.getRequestId()).thenReturn(id);
+        when(succeeded.getElapsedTime(TimeUnit.MILLISECONDS)).thenReturn(150L);
+        diagnostics.commandSucceeded(succeeded);
+    }
+}
@@ -0,0 +1,75 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryPlanTest {
+
+    /**
+     * Escenario de Plan clásico:
+     * Recorre las etapas de arriba abajo y recoge los índices usados.
+     */
+    @Test
+    void of_ShouldWalkClassicWinningPlan() {
+        Document explain = Document.parse("{queryPlanner: {winningPlan: {stage: 'FETCH',"
+                + " inputStage: {stage: 'IXSCAN', indexName: 'idx_fare_status_id'}}}}");
+
+        QueryPlan plan = QueryPlan.of(explain);
+
+        assertEquals(List.of("FETCH", "IXSCAN"), plan.getStages());
+        assertEquals(List.of("idx_fare_status_id"), plan.getIndexes());
+        assertFalse(plan.isCollectionScan());
+        assertFalse(plan.isInMemorySort());
+    }
+
+    /**
+     * Escenario de Motor SBE:
+     * El plan ganador viene dentro de winningPlan.queryPlan.
+     */
+    @Test
+    void of_ShouldReadSbeQueryPlan() {
+        Document explain = Document.parse("{queryPlanner: {winningPlan: {queryPlan: {stage: 'SORT',"
+                + " inputStage: {stage: 'COLLSCAN'}}, slotBasedPlan: {}}}}");
+
+        QueryPlan plan = QueryPlan.of(explain);
+
+        assertEquals(List.of("SORT", "COLLSCAN"), plan.getStages());
+        assertTrue(plan.isCollectionScan());
+        assertTrue(plan.isInMemorySort());
+    }
+
+    /**
+     * Escenario de Agregación:
+     * Sin pushdown completo el plan está en stages[0].$cursor; las ramas de inputStages también cuentan.
+     */
+    @Test
+    void of_ShouldReadAggregateCursorStage() {
+        Document explain = Document.parse("{stages: [{$cursor: {queryPlanner: {winningPlan: {stage: 'OR',"
+                + " inputStages: [{stage: 'IXSCAN', indexName: 'a'}, {stage: 'IXSCAN', indexName: 'b'}]}}}},"
+                + " {$group: {_id: '$status'}}]}");
+
+        QueryPlan plan = QueryPlan.of(explain);
+
+        assertEquals(List.of("OR", "IXSCAN", "IXSCAN"), plan.getStages());
+        assertEquals(List.of("a", "b"), plan.getIndexes());
+    }
+
+    /**
+     * Escenario sin plan:
+     * Una salida sin queryPlanner se resume como fallo en lugar de lanzar.
+     */
+    @Test
+    void of_ShouldReturnFailedPlan_WhenNoPlanner() {
+        QueryPlan plan = QueryPlan.of(new Document("ok", 1));
+
+        assertNotNull(plan.getError());
+        assertTrue(plan.getStages().isEmpty());
+    }
+}
@@ -0,0 +1,136 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadPreference;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Query;
+import pe.edu.vallegrande.ms_distribution.application.config.ReadRoutingProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ReadRoutingTest {
+
+    private ReadRoutingProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private ReadRouting readRouting;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ReadRoutingProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        readRouting = new ReadRouting(properties, meterRegistry);
+    }
+
+    /**
+     * Escenario sin configuración:
+     * Lo que no se configura se lee del primario y con el nivel de lectura del cluster.
+     */
+    @Test
+    void apply_ShouldReadFromPrimary_WhenNothingIsConfigured() {
+        Query query = readRouting.apply(new Query(), "fare", ReadWorkload.LIST);
+
+        assertEquals(ReadPreference.primary(), query.getReadPreference());
+        assertNull(query.getReadConcern());
+    }
+
+    /**
+     * Escenario por tipo de lectura:
+     * Cada tipo usa su propio destino; el que no está configurado sigue en el primario.
+     */
+    @Test
+    void apply_ShouldUseTargetOfWorkload() {
+        properties.getDefaults().put(ReadWorkload.LIST, target("secondaryPreferred", Duration.ofSeconds(90), "local"));
+
+        Query list = readRouting.apply(new Query(), "fare", ReadWorkload.LIST);
+        Query report = readRouting.apply(new Query(), "fare", ReadWorkload.REPORT);
+
+        assertEquals(ReadPreference.secondaryPreferred(90, TimeUnit.SECONDS), list.getReadPreference());
+        assertEquals(ReadConcern.LOCAL, list.getReadConcern());
+        assertEquals(ReadPreference.primary(), report.getReadPreference());
+        assertNull(report.getReadConcern());
+    }
+
+    /**
+     * Escenario de excepción por colección:
+     * La configuración de la colección prevalece sobre defaults solo para esa colección.
+     */
+    @Test
+    void apply_ShouldPreferCollectionTarget_OverDefaults() {
+        properties.getDefaults().put(ReadWorkload.REPORT, target("secondary", null, null));
+        Map<ReadWorkload, ReadRoutingProperties.Target> programs = new EnumMap<>(ReadWorkload.class);
+        programs.put(ReadWorkload.REPORT, target("nearest", null, "majority"));
+        properties.getCollections().put("programs", programs);
+
+        Query programReport = readRouting.apply(new Query(), "programs", ReadWorkload.REPORT);
+        Query routeReport = readRouting.apply(new Query(), "routes", ReadWorkload.REPORT);
+
+        assertEquals(ReadPreference.nearest(), programReport.getReadPreference());
+        assertEquals(ReadConcern.MAJORITY, programReport.getReadConcern());
+        assertEquals(ReadPreference.secondary(), routeReport.getReadPreference());
+        assertNull(routeReport.getReadConcern());
+    }
+
+    /**
+     * Escenario de primario con retraso máximo:
+     * El primario no admite maxStaleness, así que se ignora en lugar de fallar al crear la preferencia.
+     */
+    @Test
+    void apply_ShouldIgnoreMaxStaleness_WhenTargetIsPrimary() {
+        properties.getDefaults().put(ReadWorkload.LIST, target("primary", Duration.ofSeconds(120), null));
+
+        Query query = readRouting.apply(new Query(), "routes", ReadWorkload.LIST);
+
+        assertEquals(ReadPreference.primary(), query.getReadPreference());
+    }
+
+    /**
+     * Escenario de Agregación:
+     * Las opciones de agregación reciben la misma preferencia y nivel de lectura que las consultas.
+     */
+    @Test
+    void apply_ShouldRouteAggregationOptions() {
+        properties.getDefaults().put(ReadWorkload.REPORT, target("secondaryPreferred", Duration.ofSeconds(90), "available"));
+
+        AggregationOptions options = readRouting.apply(AggregationOptions.builder(), "schedules", ReadWorkload.REPORT).build();
+
+        assertEquals(ReadPreference.secondaryPreferred(90, TimeUnit.SECONDS), options.getReadPreference());
+        assertEquals(ReadConcern.AVAILABLE, options.getReadConcern());
+    }
+
+    /**
+     * Escenario de Métrica:
+     * Cada lectura suma en distribution.reads.routed con su colección, tipo y destino.
+     */
+    @Test
+    void apply_ShouldCountReadsPerRoute() {
+        properties.getDefaults().put(ReadWorkload.LIST, target("secondaryPreferred", null, null));
+
+        readRouting.apply(new Query(), "fare", ReadWorkload.LIST);
+        readRouting.apply(AggregationOptions.builder(), "fare", ReadWorkload.LIST);
+        readRouting.apply(new Query(), "fare", ReadWorkload.REPORT);
+
+        assertEquals(2.0, meterRegistry.get(ReadRouting.READS_METRIC)
+                .tags("collection", "fare", "workload", "list", "read_preference", "secondaryPreferred")
+                .counter().count());
+        assertEquals(1.0, meterRegistry.get(ReadRouting.READS_METRIC)
+                .tags("collection", "fare", "workload", "report", "read_preference", "primary")
+                .counter().count());
+    }
+
+    private static ReadRoutingProperties.Target target(String readPreference, Duration maxStaleness, String readConcern) {
+        ReadRoutingProperties.Target target = new ReadRoutingProperties.Target();
+        target.setReadPreference(readPreference);
+        target.setMaxStaleness(maxStaleness);
+        target.setReadConcern(readConcern);
+        return target;
+    }
+}
@@ -0,0 +1,174 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.mongo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import pe.edu.vallegrande.ms_distribution.application.cache.ByIdCache;
+import pe.edu.vallegrande.ms_distribution.application.config.MongoPoolProperties;
+import pe.edu.vallegrande.ms_distribution.application.config.WarmUpProperties;
+import pe.edu.vallegrande.ms_distribution.application.services.FareService;
+import pe.edu.vallegrande.ms_distribution.domain.enums.Constants;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionRoute;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionSchedule;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.DistributionProgramRepository;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.DistributionRouteRepository;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.DistributionScheduleRepository;
+import pe.edu.vallegrande.ms_distribution.infrastructure.repository.FareRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StartupWarmUpTest {
+
+    private static final String ACTIVE = Constants.ACTIVE.name();
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+    @Mock
+    private FareService fareService;
+    @Mock
+    private DistributionProgramRepository programRepository;
+    @Mock
+    private DistributionRouteRepository routeRepository;
+    @Mock
+    private DistributionScheduleRepository scheduleRepository;
+    @Mock
+    private FareRepository fareRepository;
+
+    private WarmUpProperties properties;
+    private StartupWarmUp warmUp;
+    private WarmUpHealthIndicator indicator;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new WarmUpProperties();
+        properties.setMappingIterations(1);
+        warmUp = new StartupWarmUp(mongoTemplate, properties, new MongoPoolProperties(), new ObjectMapper(),
+                fareService, programRepository, routeRepository, scheduleRepository, fareRepository,
+                new ByIdCache<DistributionRoute>("routes.by-id", 10, Duration.ofMinutes(1), new SimpleMeterRegistry()),
+                new ByIdCache<DistributionSchedule>("schedules.by-id", 10, Duration.ofMinutes(1), new SimpleMeterRegistry()));
+        indicator = new WarmUpHealthIndicator(warmUp);
+
+        when(fareRepository.findOrganizationIds(ACTIVE)).thenReturn(Flux.just("org-1"));
+        when(routeRepository.findOrganizationIds(ACTIVE)).thenReturn(Flux.just("org-1"));
+        when(scheduleRepository.findOrganizationIds(ACTIVE)).thenReturn(Flux.empty());
+        when(fareService.getAllByOrganizationF("org-1", ACTIVE)).thenReturn(Flux.empty());
+        when(fareService.getAllActiveF()).thenReturn(Flux.empty());
+        when(routeRepository.findAllByOrganizationIdAndStatus("org-1", ACTIVE)).thenReturn(Flux.just(
+                DistributionRoute.builder().id("r1").build(), DistributionRoute.builder().id("r2").build()));
+        when(scheduleRepository.findAllByOrganizationIdAndStatus("org-1", ACTIVE)).thenReturn(Flux.empty());
+        when(programRepository.findPage(any(), any(), anyInt(), any())).thenReturn(Flux.empty());
+        when(routeRepository.findPage(any(), any(), anyInt(), any())).thenReturn(Flux.empty());
+        when(scheduleRepository.findPage(any(), any(), anyInt(), any())).thenReturn(Flux.empty());
+        when(fareRepository.findPage(any(), any(), anyInt(), any())).thenReturn(Flux.empty());
+    }
+
+    /**
+     * Escenario de Calentamiento completo:
+     * Readiness pasa de DOWN a UP al terminar, con lo precargado en el detalle.
+     */
+    @Test
+    void run_ShouldMoveReadinessFromDownToUp_WhenCompleted() {
+        assertEquals(Status.DOWN, indicator.health().getStatus());
+        assertEquals(StartupWarmUp.Phase.PENDING, indicator.health().getDetails().get("phase"));
+
+        StepVerifier.create(warmUp.run()).verifyComplete();
+
+        Health health = indicator.health();
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals(StartupWarmUp.Phase.COMPLETED, health.getDetails().get("phase"));
+        assertEquals(Map.of("organizations", 1L, "fares", 0L, "routes", 2L, "schedules", 0L, "mappingSamples", 0L),
+                health.getDetails().get("loaded"));
+    }
+
+    /**
+     * Escenario de Calentamiento en curso:
+     * Mientras una precarga no termina, readiness sigue en DOWN con la fase RUNNING.
+     */
+    @Test
+    void run_ShouldKeepReadinessDown_WhileRunning() {
+        Sinks.Many<String> organizations = Sinks.many().unicast().onBackpressureBuffer();
+        when(fareRepository.findOrganizationIds(ACTIVE)).thenReturn(organizations.asFlux());
+
+        StepVerifier.create(warmUp.run())
+                .then(() -> {
+                    assertFalse(warmUp.isFinished());
+                    assertEquals(Status.DOWN, indicator.health().getStatus());
+                    assertEquals(StartupWarmUp.Phase.RUNNING, indicator.health().getDetails().get("phase"));
+                    organizations.tryEmitComplete();
+                })
+                .verifyComplete();
+
+        assertEquals(Status.UP, indicator.health().getStatus());
+    }
+
+    /**
+     * Escenario de Fallo:
+     * Un error no bloquea el arranque: run termina sin error y el nodo queda listo en frío (FAILED).
+     */
+    @Test
+    void run_ShouldServeCold_WhenPreloadFails() {
+        when(fareRepository.findOrganizationIds(ACTIVE)).thenReturn(Flux.error(new IllegalStateException("boom")));
+
+        StepVerifier.create(warmUp.run()).verifyComplete();
+
+        Health health = indicator.health();
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals(StartupWarmUp.Phase.FAILED, health.getDetails().get("phase"));
+    }
+
+    /**
+     * Escenario de Timeout:
+     * Si el calentamiento supera app.warm-up.timeout el nodo pasa a listo igualmente (TIMED_OUT).
+     */
+    @Test
+    void run_ShouldServeCold_WhenTimeoutExpires() {
+        when(fareRepository.findOrganizationIds(ACTIVE)).thenReturn(Flux.never());
+
+        StepVerifier.withVirtualTime(() -> warmUp.run())
+                .expectSubscription()
+                .then(() -> assertFalse(warmUp.isFinished()))
+                .thenAwait(properties.getTimeout())
+                .verifyComplete();
+
+        Health health = indicator.health();
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals(StartupWarmUp.Phase.TIMED_OUT, health.getDetails().get("phase"));
+    }
+
+    /**
+     * Escenario de Calentamiento desactivado:
+     * Con app.warm-up.enabled=false el nodo queda listo al arrancar sin consultar Mongo.
+     */
+    @Test
+    void start_ShouldBeReadyImmediately_WhenDisabled() {
+        properties.setEnabled(false);
+
+        warmUp.start();
+
+        assertTrue(warmUp.isFinished());
+        assertEquals(Status.UP, indicator.health().getStatus());
+        assertEquals(StartupWarmUp.Phase.DISABLED, indicator.health().getDetails().get("phase"));
+        verify(fareRepository, never()).findOrganizationIds(anyString());
+    }
+}
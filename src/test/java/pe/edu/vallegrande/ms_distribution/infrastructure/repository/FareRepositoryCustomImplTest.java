@@ -0,0 +1,214 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import pe.edu.vallegrande.ms_distribution.application.config.ReadRoutingProperties;
+import pe.edu.vallegrande.ms_distribution.domain.models.Fare;
+import pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ReadRouting;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FareRepositoryCustomImplTest {
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private FareRepositoryCustomImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        // Tipos simples de Mongo como los registra Boot: BigDecimal no se introspecciona como entidad
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        when(mongoTemplate.getConverter()).thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext));
+        when(mongoTemplate.getCollectionName(Fare.class)).thenReturn("fare");
+        repository = new FareRepositoryCustomImpl(mongoTemplate,
+                new ReadRouting(new ReadRoutingProperties(), new SimpleMeterRegistry()));
+    }
+
+    /**
+     * Escenario de Proyección:
+     * Solo los campos pedidos llegan a la proyección de Mongo y el documento devuelto se serializa
+     * sin los demás.
+     */
+    @Test
+    void findProjected_ShouldIncludeOnlyRequestedFields() throws Exception {
+        // Arrange: Mongo devuelve el documento ya proyectado (id y los dos campos)
+        when(mongoTemplate.find(any(Query.class), eq(Fare.class))).thenReturn(Flux.just(
+                Fare.builder().id("fare-1").fareCode("TAR001").fareAmount(new BigDecimal("2.50")).build()));
+
+        // Act & Assert
+        StepVerifier.create(repository.findProjected("ACTIVE", new LinkedHashSet<>(List.of("fareCode", "fareAmount"))))
+                .assertNext(fare -> {
+                    JsonNode json = new ObjectMapper().valueToTree(fare);
+                    Set<String> names = new TreeSet<>();
+                    json.fieldNames().forEachRemaining(names::add);
+                    assertEquals(Set.of("id", "fareCode", "fareAmount"), names);
+                })
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Fare.class));
+        assertEquals(new Document("fareCode", 1).append("fareAmount", 1), query.getValue().getFieldsObject());
+        assertEquals(new Document("status", "ACTIVE"), query.getValue().getQueryObject());
+    }
+
+    /**
+     * Escenario de Validación:
+     * Un campo que no existe en la entidad responde 400 sin consultar Mongo.
+     */
+    @Test
+    void findProjected_ShouldReturnBadRequest_WhenFieldIsUnknown() {
+        StepVerifier.create(repository.findProjected(null, Set.of("fareCode", "precio")))
+                .expectErrorSatisfies(error -> {
+                    CustomException exception = assertInstanceOf(CustomException.class, error);
+                    assertEquals(400, exception.getErrorMessage().getErrorCode());
+                    assertEquals("Field precio does not exist in Fare", exception.getErrorMessage().getDetails());
+                })
+                .verify();
+
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Fare.class));
+    }
+
+    /**
+     * Escenario de Página proyectada:
+     * La misma validación se aplica a findPage con campos.
+     */
+    @Test
+    void findPage_ShouldReturnBadRequest_WhenFieldIsUnknown() {
+        StepVerifier.create(repository.findPage(null, null, 10, List.of("precio")))
+                .expectErrorSatisfies(error -> assertEquals(400,
+                        assertInstanceOf(CustomException.class, error).getErrorMessage().getErrorCode()))
+                .verify();
+
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Fare.class));
+    }
+
+    /**
+     * Escenario de Recuento total:
+     * Sin estado se usa el recuento de los metadatos de la colección, sin consultar documentos.
+     */
+    @Test
+    void countWithStatus_ShouldUseEstimatedCount_WhenStatusIsNull() {
+        when(mongoTemplate.estimatedCount(Fare.class)).thenReturn(Mono.just(12L));
+
+        StepVerifier.create(repository.countWithStatus(null))
+                .expectNext(12L)
+                .verifyComplete();
+
+        verify(mongoTemplate, never()).count(any(Query.class), eq(Fare.class));
+    }
+
+    /**
+     * Escenario de Recuento por estado:
+     * Con estado se hace un recuento exacto filtrado por status.
+     */
+    @Test
+    void countWithStatus_ShouldCountMatchingDocuments_WhenStatusIsGiven() {
+        when(mongoTemplate.count(any(Query.class), eq(Fare.class))).thenReturn(Mono.just(7L));
+
+        StepVerifier.create(repository.countWithStatus("ACTIVE"))
+                .expectNext(7L)
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).count(query.capture(), eq(Fare.class));
+        assertEquals(new Document("status", "ACTIVE"), query.getValue().getQueryObject());
+        verify(mongoTemplate, never()).estimatedCount(Fare.class);
+    }
+
+    /**
+     * Escenario de Recuento agrupado:
+     * Una sola agregación $project + $group forzada al índice {status, _id}; los estados conocidos
+     * sin documentos salen con 0 y los documentos sin estado, en UNKNOWN.
+     */
+    @Test
+    void countGroupedByStatus_ShouldGroupOnStatusIndex_AndFillMissingStatuses() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Fare.class), eq(Document.class))).thenReturn(Flux.just(
+                new Document("_id", "ACTIVE").append("count", 7),
+                new Document("_id", null).append("count", 1L)));
+
+        StepVerifier.create(repository.countGroupedByStatus())
+                .expectNext(Map.of("ACTIVE", 7L, "INACTIVE", 0L, "UNKNOWN", 1L))
+                .verifyComplete();
+
+        ArgumentCaptor<Aggregation> aggregation = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate).aggregate(aggregation.capture(), eq(Fare.class), eq(Document.class));
+        assertEquals(List.of(
+                        new Document("$project", new Document("status", 1).append("_id", 0)),
+                        new Document("$group", new Document("_id", "$status").append("count", new Document("$sum", 1)))),
+                aggregation.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT));
+        assertEquals(Optional.of(new Document("status", 1).append("_id", 1)),
+                aggregation.getValue().getOptions().getHintObject());
+    }
+
+    /**
+     * Escenario de Colección vacía:
+     * Sin documentos, el recuento agrupado sigue devolviendo todos los estados conocidos.
+     */
+    @Test
+    void countGroupedByStatus_ShouldReturnZeros_WhenCollectionIsEmpty() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Fare.class), eq(Document.class))).thenReturn(Flux.empty());
+
+        StepVerifier.create(repository.countGroupedByStatus())
+                .expectNext(Map.of("ACTIVE", 0L, "INACTIVE", 0L))
+                .verifyComplete();
+    }
+
+    /**
+     * Escenario de Prefijo con cursor:
+     * El cursor dentro del rango continúa tras el último código; uno anterior al prefijo no saca
+     * resultados de fuera del prefijo.
+     */
+    @Test
+    void findByCodePrefix_ShouldKeepBothBounds() {
+        when(mongoTemplate.find(any(Query.class), eq(Fare.class))).thenReturn(Flux.empty());
+
+        StepVerifier.create(repository.findByCodePrefix("org-1", "TAR", "TAR005", 10)).verifyComplete();
+        StepVerifier.create(repository.findByCodePrefix("org-1", "TAR", "AAA999", 10)).verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(query.capture(), eq(Fare.class));
+        assertEquals(new Document("organizationId", "org-1")
+                        .append("fareCode", new Document("$gt", "TAR005").append("$lt", "TAS")),
+                query.getAllValues().get(0).getQueryObject());
+        assertEquals(new Document("organizationId", "org-1")
+                        .append("fareCode", new Document("$gte", "TAR").append("$lt", "TAS")),
+                query.getAllValues().get(1).getQueryObject());
+        assertEquals(10, query.getAllValues().get(1).getLimit());
+    }
+}
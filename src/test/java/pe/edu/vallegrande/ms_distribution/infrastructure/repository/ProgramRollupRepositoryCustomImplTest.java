@@ -0,0 +1,99 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.repository;
+
+import com.mongodb.reactivestreams.client.AggregatePublisher;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import pe.edu.vallegrande.ms_distribution.domain.models.DistributionProgram;
+import pe.edu.vallegrande.ms_distribution.domain.models.ProgramDailyRollup;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.when;
+
+class ProgramRollupRepositoryCustomImplTest {
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+    @Mock
+    private MongoCollection<Document> programs;
+    @Mock
+    private AggregatePublisher<Document> aggregate;
+
+    private ProgramRollupRepositoryCustomImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(mongoTemplate.getCollectionName(ProgramDailyRollup.class)).thenReturn("program_rollups");
+        when(mongoTemplate.getCollectionName(DistributionProgram.class)).thenReturn("distribution_programs");
+        when(mongoTemplate.getCollection("distribution_programs")).thenReturn(Mono.just(programs));
+        when(programs.aggregate(anyList())).thenReturn(aggregate);
+        when(aggregate.toCollection()).thenReturn(Mono.empty());
+        when(mongoTemplate.remove(any(Query.class), eq(ProgramDailyRollup.class))).thenReturn(Mono.empty());
+        repository = new ProgramRollupRepositoryCustomImpl(mongoTemplate);
+    }
+
+    /**
+     * Escenario de Reconstrucción de una organización:
+     * No se vacía antes: el pipeline reemplaza cada día con $merge y solo después se borran los
+     * días de esa organización que no escribió esta ejecución ni tocó un incremento posterior.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void rebuild_ShouldMergeFirstAndThenRemoveOnlyStaleDaysOfOrganization() {
+        StepVerifier.create(repository.rebuild("org-1")).verifyComplete();
+
+        InOrder order = inOrder(programs, mongoTemplate);
+        ArgumentCaptor<List<Document>> pipeline = ArgumentCaptor.forClass(List.class);
+        order.verify(programs).aggregate(pipeline.capture());
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        order.verify(mongoTemplate).remove(removed.capture(), eq(ProgramDailyRollup.class));
+
+        List<Document> stages = pipeline.getValue();
+        Document merge = (Document) stages.get(stages.size() - 1).get("$merge");
+        assertEquals("program_rollups", merge.get("into"));
+        assertEquals("replace", merge.get("whenMatched"));
+        assertFalse(stages.stream().anyMatch(stage -> stage.containsKey("$out")));
+
+        Document project = (Document) stages.get(stages.size() - 2).get("$project");
+        Object runId = project.get(ProgramRollupRepositoryCustomImpl.REBUILD_RUN_FIELD);
+        Document stale = removed.getValue().getQueryObject();
+        assertEquals("org-1", stale.get("organizationId"));
+        assertEquals(new Document("$ne", runId), stale.get(ProgramRollupRepositoryCustomImpl.REBUILD_RUN_FIELD));
+        assertTrue(((Document) stale.get("updatedAt")).containsKey("$lt"));
+    }
+
+    /**
+     * Escenario de Reconstrucción completa:
+     * Tampoco usa $out, que descartaría los incrementos aplicados mientras corre la agregación.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void rebuild_ShouldMergeEverything_WithoutReplacingCollection() {
+        StepVerifier.create(repository.rebuild(null)).verifyComplete();
+
+        ArgumentCaptor<List<Document>> pipeline = ArgumentCaptor.forClass(List.class);
+        org.mockito.Mockito.verify(programs).aggregate(pipeline.capture());
+        assertTrue(pipeline.getValue().get(pipeline.getValue().size() - 1).containsKey("$merge"));
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        org.mockito.Mockito.verify(mongoTemplate).remove(removed.capture(), eq(ProgramDailyRollup.class));
+        assertFalse(removed.getValue().getQueryObject().containsKey("organizationId"));
+    }
+}
@@ -0,0 +1,168 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import pe.edu.vallegrande.ms_distribution.application.cache.EncodedListCache;
+import pe.edu.vallegrande.ms_distribution.application.config.ConditionalGetProperties;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.ErrorMessage;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.ResponseDto;
+import pe.edu.vallegrande.ms_distribution.infrastructure.mongo.ChangeMarkers;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.when;
+
+class ConditionalResponsesTest {
+
+    private static final String ROUTES = "routes";
+    private static final String ETAG = "\"routes-1f\"";
+
+    @Mock
+    private ChangeMarkers changeMarkers;
+
+    private ConditionalResponses conditional;
+    private final AtomicInteger reads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        conditional = new ConditionalResponses(changeMarkers, new ConditionalGetProperties(), new ObjectMapper());
+    }
+
+    /**
+     * Escenario de 304:
+     * Con el ETag vigente en If-None-Match se responde 304 sin leer el listado.
+     */
+    @Test
+    void list_ShouldAnswerNotModified_WhenEtagMatches() {
+        when(changeMarkers.current(ROUTES)).thenReturn(Mono.just(settled(0x1f)));
+
+        StepVerifier.create(conditional.list(exchange(ETAG), ROUTES, this::body))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+                    assertEquals(ETAG, response.getHeaders().getETag());
+                })
+                .verifyComplete();
+        assertEquals(0, reads.get());
+    }
+
+    /**
+     * Escenario de 200:
+     * Con un ETag anterior se devuelve el listado con el ETag nuevo.
+     */
+    @Test
+    void list_ShouldAnswerOkWithEtag_WhenEtagIsStale() {
+        when(changeMarkers.current(ROUTES)).thenReturn(Mono.just(settled(0x20)));
+
+        StepVerifier.create(conditional.list(exchange(ETAG), ROUTES, this::body))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.OK, response.getStatusCode());
+                    assertEquals("\"routes-20\"", response.getHeaders().getETag());
+                })
+                .verifyComplete();
+        assertEquals(1, reads.get());
+    }
+
+    /**
+     * Escenario de Cambio reciente:
+     * Dentro de settle-time no hay 304 ni ETag, aunque If-None-Match coincida.
+     */
+    @Test
+    void list_ShouldOmitEtag_WithinSettleTime() {
+        when(changeMarkers.current(ROUTES)).thenReturn(Mono.just(new ChangeMarkers.Marker(0x1f, Instant.now())));
+
+        StepVerifier.create(conditional.list(exchange(ETAG), ROUTES, this::body))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.OK, response.getStatusCode());
+                    assertNull(response.getHeaders().getETag());
+                })
+                .verifyComplete();
+    }
+
+    /**
+     * Escenario sin marcador:
+     * Sin change stream conectado se responde siempre el listado, sin ETag.
+     */
+    @Test
+    void list_ShouldOmitEtag_WhenNoMarker() {
+        when(changeMarkers.current(ROUTES)).thenReturn(Mono.empty());
+
+        StepVerifier.create(conditional.list(exchange(ETAG), ROUTES, this::body))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.OK, response.getStatusCode());
+                    assertNull(response.getHeaders().getETag());
+                })
+                .verifyComplete();
+    }
+
+    /**
+     * Escenario de Error:
+     * Una respuesta de error no lleva ETag.
+     */
+    @Test
+    void list_ShouldOmitEtag_OnErrorBody() {
+        when(changeMarkers.current(ROUTES)).thenReturn(Mono.just(settled(0x20)));
+
+        StepVerifier.create(conditional.list(exchange(null), ROUTES,
+                        () -> Mono.just(new ResponseDto<List<String>>(false, new ErrorMessage(500, "Error", "boom")))))
+                .assertNext(response -> assertNull(response.getHeaders().getETag()))
+                .verifyComplete();
+    }
+
+    /**
+     * Escenario de Listado codificado:
+     * Los bytes se devuelven tal cual y, como en list, solo llevan ETag si status es true.
+     */
+    @Test
+    void encodedList_ShouldTagOnlySuccessfulBodies() {
+        when(changeMarkers.current(ROUTES)).thenReturn(Mono.just(settled(0x20)));
+        byte[] ok = "{\"status\":true}".getBytes(StandardCharsets.UTF_8);
+        byte[] error = "{\"status\":false}".getBytes(StandardCharsets.UTF_8);
+
+        StepVerifier.create(conditional.encodedList(exchange(null), ROUTES, () -> Mono.just(new EncodedListCache.Encoded(ok, true))))
+                .assertNext(response -> {
+                    assertSame(ok, response.getBody());
+                    assertEquals("\"routes-20\"", response.getHeaders().getETag());
+                    assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+                })
+                .verifyComplete();
+        StepVerifier.create(conditional.encodedList(exchange(null), ROUTES, () -> Mono.just(new EncodedListCache.Encoded(error, false))))
+                .assertNext(response -> {
+                    assertSame(error, response.getBody());
+                    assertNull(response.getHeaders().getETag());
+                })
+                .verifyComplete();
+    }
+
+    private Mono<ResponseDto<List<String>>> body() {
+        reads.incrementAndGet();
+        return Mono.just(new ResponseDto<>(true, List.of("route-1")));
+    }
+
+    private static ChangeMarkers.Marker settled(long clusterTime) {
+        return new ChangeMarkers.Marker(clusterTime, Instant.now().minusSeconds(600));
+    }
+
+    private static MockServerWebExchange exchange(String ifNoneMatch) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/api/v2/routes");
+        if (ifNoneMatch != null) {
+            request.ifNoneMatch(ifNoneMatch);
+        }
+        return MockServerWebExchange.from(request);
+    }
+}
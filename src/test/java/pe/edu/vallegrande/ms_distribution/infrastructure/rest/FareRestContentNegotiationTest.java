@@ -0,0 +1,132 @@
+package pe.edu.vallegrande.ms_distribution.infrastructure.rest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import pe.edu.vallegrande.ms_distribution.application.cache.EncodedListCache;
+import pe.edu.vallegrande.ms_distribution.application.config.StreamingMappingConfig;
+import pe.edu.vallegrande.ms_distribution.application.services.FareService;
+import pe.edu.vallegrande.ms_distribution.domain.models.Fare;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.ResponseDto;
+import pe.edu.vallegrande.ms_distribution.infrastructure.dto.request.FareUpdateRequest;
+import pe.edu.vallegrande.ms_distribution.infrastructure.exception.CustomException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Negociación de contenido de los listados: JSON por defecto, streaming solo si se pide en Accept.
+ */
+@WebFluxTest(controllers = FareRest.class)
+@Import(StreamingMappingConfig.class)
+class FareRestContentNegotiationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockitoBean
+    private FareService fareService;
+
+    @MockitoBean
+    private ConditionalResponses conditional;
+
+    @MockitoBean
+    private EncodedListCache encodedLists;
+
+    @BeforeEach
+    void setUp() {
+        List<Fare> fares = List.of(
+                Fare.builder().id("fare-1").fareCode("TAR001").build(),
+                Fare.builder().id("fare-2").fareCode("TAR002").build());
+        when(fareService.getAllF()).thenReturn(Flux.fromIterable(fares));
+        when(fareService.getListingF(null)).thenReturn(Mono.just(fares));
+        when(conditional.list(any(), anyString(), any())).thenAnswer(invocation -> {
+            Supplier<Mono<ResponseDto<Object>>> body = invocation.getArgument(2);
+            return body.get().map(ResponseEntity::ok);
+        });
+    }
+
+    @Test
+    void getAll_ShouldAnswerJson_WhenAcceptIsWildcard() {
+        webTestClient.get().uri("/api/v2/fare")
+                .accept(MediaType.ALL)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(true)
+                .jsonPath("$.data.length()").isEqualTo(2);
+    }
+
+    @Test
+    void getAll_ShouldAnswerJson_WhenAcceptIsMissing() {
+        webTestClient.get().uri("/api/v2/fare")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.data[0].fareCode").isEqualTo("TAR001");
+    }
+
+    @Test
+    void getAll_ShouldStreamNdjson_WhenRequested() {
+        Flux<Fare> body = webTestClient.get().uri("/api/v2/fare")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Fare.class)
+                .getResponseBody();
+
+        StepVerifier.create(body.map(Fare::getFareCode))
+                .expectNext("TAR001", "TAR002")
+                .verifyComplete();
+    }
+
+    @Test
+    void getAll_ShouldStreamServerSentEvents_WhenRequested() {
+        Flux<Fare> body = webTestClient.get().uri("/api/v2/fare")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+                .returnResult(Fare.class)
+                .getResponseBody();
+
+        StepVerifier.create(body.map(Fare::getFareCode))
+                .expectNext("TAR001", "TAR002")
+                .verifyComplete();
+    }
+
+    /**
+     * Escenario de Actualización concurrente:
+     * El conflicto de versión llega al cliente como 409, no como un 200 con error de validación.
+     */
+    @Test
+    void update_ShouldAnswerConflict_WhenVersionIsStale() {
+        when(fareService.updateF(anyString(), any(FareUpdateRequest.class)))
+                .thenReturn(Mono.error(CustomException.conflict("Version conflict", "Fare fare-1 was modified")));
+
+        webTestClient.put().uri("/api/v2/fare/fare-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(FareUpdateRequest.builder().fareCode("TAR001").price(2.5).description("Tarifa").version(1L).build())
+                .exchange()
+                .expectStatus().isEqualTo(409)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(false)
+                .jsonPath("$.error.errorCode").isEqualTo(409);
+    }
+}